@@ -74,6 +74,7 @@ import static com.facebook.presto.hive.HiveErrorCode.HIVE_INVALID_METADATA;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_INVALID_PARTITION_VALUE;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_UNKNOWN_ERROR;
 import static com.facebook.presto.hive.HiveSessionProperties.getNodeSelectionStrategy;
+import static com.facebook.presto.hive.HiveSessionProperties.isOrderBasedExecutionEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isUseListDirectoryCache;
 import static com.facebook.presto.hive.HiveUtil.getFooterCount;
 import static com.facebook.presto.hive.HiveUtil.getHeaderCount;
@@ -381,6 +382,11 @@ public class BackgroundHiveSplitLoader
         // therefore we must not split files when it is enabled.
         Properties schema = getHiveSchema(storage.getSerdeParameters(), table.getParameters());
         boolean splittable = getHeaderCount(schema) == 0 && getFooterCount(schema) == 0 && !s3SelectPushdownEnabled;
+        // The files of a sorted bucket are read as whole splits, so that each bucket is a sorted stream
+        // that the planner can rely on, see HiveMetadata#getTableLayout
+        if (isOrderBasedExecutionEnabled(session) && isSortedBucketed(table)) {
+            splittable = false;
+        }
 
         // Bucketed partitions are fully loaded immediately since all files must be loaded to determine the file to bucket mapping
         if (tableBucketInfo.isPresent()) {
@@ -556,6 +562,13 @@ public class BackgroundHiveSplitLoader
         }
     }
 
+    private static boolean isSortedBucketed(Table table)
+    {
+        return table.getStorage().getBucketProperty()
+                .map(bucketProperty -> !bucketProperty.getSortedBy().isEmpty())
+                .orElse(false);
+    }
+
     private static List<HivePartitionKey> getPartitionKeys(Table table, Optional<Partition> partition)
     {
         if (!partition.isPresent()) {
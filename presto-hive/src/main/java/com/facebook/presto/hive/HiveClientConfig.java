@@ -168,6 +168,8 @@ public class HiveClientConfig
 
     private DataSize pageFileStripeMaxSize = new DataSize(24, MEGABYTE);
 
+    private boolean orderBasedExecutionEnabled;
+
     public int getMaxInitialSplits()
     {
         return maxInitialSplits;
@@ -1366,4 +1368,17 @@ public class HiveClientConfig
         this.pageFileStripeMaxSize = pageFileStripeMaxSize;
         return this;
     }
+
+    public boolean isOrderBasedExecutionEnabled()
+    {
+        return orderBasedExecutionEnabled;
+    }
+
+    @Config("hive.order-based-execution-enabled")
+    @ConfigDescription("Experimental: expose the sort order of the buckets of unpartitioned bucketed sorted tables to the planner, and read each of their bucket files as a single split")
+    public HiveClientConfig setOrderBasedExecutionEnabled(boolean orderBasedExecutionEnabled)
+    {
+        this.orderBasedExecutionEnabled = orderBasedExecutionEnabled;
+        return this;
+    }
 }
@@ -57,10 +57,12 @@ import com.facebook.presto.spi.ConnectorViewDefinition;
 import com.facebook.presto.spi.Constraint;
 import com.facebook.presto.spi.DiscretePredicates;
 import com.facebook.presto.spi.InMemoryRecordSet;
+import com.facebook.presto.spi.LocalProperty;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.SchemaTableName;
 import com.facebook.presto.spi.SchemaTablePrefix;
+import com.facebook.presto.spi.SortingProperty;
 import com.facebook.presto.spi.StandardErrorCode;
 import com.facebook.presto.spi.SystemTable;
 import com.facebook.presto.spi.TableNotFoundException;
@@ -170,6 +172,7 @@ import static com.facebook.presto.hive.HiveSessionProperties.isBucketExecutionEn
 import static com.facebook.presto.hive.HiveSessionProperties.isCollectColumnStatisticsOnWrite;
 import static com.facebook.presto.hive.HiveSessionProperties.isOfflineDataDebugModeEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isOptimizedMismatchedBucketCount;
+import static com.facebook.presto.hive.HiveSessionProperties.isOrderBasedExecutionEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isRespectTableFormat;
 import static com.facebook.presto.hive.HiveSessionProperties.isShufflePartitionedColumnsForTableWriteEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isSortedWriteToTempPathEnabled;
@@ -2079,6 +2082,22 @@ public class HiveMetadata
                             .collect(toList())));
         }
 
+        Optional<Set<ColumnHandle>> streamPartitioningColumns = Optional.empty();
+        List<LocalProperty<ColumnHandle>> localProperties = ImmutableList.of();
+        if (tablePartitioning.isPresent() && isOrderBasedExecutionEnabled(session)) {
+            HiveBucketHandle bucketHandle = hiveLayoutHandle.getBucketHandle().get();
+            Optional<HiveBucketProperty> bucketProperty = table.getStorage().getBucketProperty();
+            // a bucket is a single sorted stream only if it is one file, read as one split:
+            // the table must not be partitioned, and the buckets must be read as they were written
+            if (table.getPartitionColumns().isEmpty() &&
+                    bucketHandle.getReadBucketCount() == bucketHandle.getTableBucketCount() &&
+                    bucketProperty.isPresent() &&
+                    !bucketProperty.get().getSortedBy().isEmpty()) {
+                streamPartitioningColumns = Optional.of(ImmutableSet.copyOf(tablePartitioning.get().getPartitioningColumns()));
+                localProperties = getSortingProperties(table, bucketProperty.get().getSortedBy());
+            }
+        }
+
         TupleDomain<ColumnHandle> predicate;
         if (hiveLayoutHandle.isPushdownFilterEnabled()) {
             predicate = hiveLayoutHandle.getDomainPredicate()
@@ -2096,9 +2115,25 @@ public class HiveMetadata
                 Optional.empty(),
                 predicate,
                 tablePartitioning,
-                Optional.empty(),
+                streamPartitioningColumns,
                 discretePredicates,
-                ImmutableList.of());
+                localProperties);
+    }
+
+    private static List<LocalProperty<ColumnHandle>> getSortingProperties(Table table, List<SortingColumn> sortedBy)
+    {
+        Map<String, HiveColumnHandle> columnHandles = hiveColumnHandles(table).stream()
+                .collect(toImmutableMap(HiveColumnHandle::getName, identity()));
+        ImmutableList.Builder<LocalProperty<ColumnHandle>> localProperties = ImmutableList.builder();
+        for (SortingColumn sortingColumn : sortedBy) {
+            HiveColumnHandle columnHandle = columnHandles.get(sortingColumn.getColumnName());
+            if (columnHandle == null) {
+                // the rows are only sorted on the prefix of the sort columns that is known
+                break;
+            }
+            localProperties.add(new SortingProperty<>(columnHandle, sortingColumn.getOrder().getSortOrder()));
+        }
+        return localProperties.build();
     }
 
     @Override
@@ -14,6 +14,8 @@
 package com.facebook.presto.hive;
 
 import com.facebook.presto.common.Subfield;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.NullableValue;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeManager;
@@ -25,6 +27,7 @@ import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
+import com.facebook.presto.spi.FixedPageSource;
 import com.facebook.presto.spi.RecordCursor;
 import com.facebook.presto.spi.RecordPageSource;
 import com.facebook.presto.spi.SchemaTableName;
@@ -59,6 +62,7 @@ import static com.facebook.presto.hive.HiveColumnHandle.ColumnType.REGULAR;
 import static com.facebook.presto.hive.HiveColumnHandle.ColumnType.SYNTHESIZED;
 import static com.facebook.presto.hive.HivePageSourceProvider.ColumnMapping.toColumnHandles;
 import static com.facebook.presto.hive.HiveUtil.getPrefilledColumnValue;
+import static com.facebook.presto.hive.HiveUtil.parsePartitionValue;
 import static com.facebook.presto.hive.metastore.MetastoreUtil.getHiveSchema;
 import static com.facebook.presto.hive.metastore.MetastoreUtil.reconstructPartitionSchema;
 import static com.facebook.presto.spi.relation.ExpressionOptimizer.Level.OPTIMIZED;
@@ -126,6 +130,14 @@ public class HivePageSourceProvider
         HiveSplit hiveSplit = (HiveSplit) split;
         Path path = new Path(hiveSplit.getPath());
 
+        TupleDomain<HiveColumnHandle> dynamicFilterPredicate = splitContext.getDynamicFilterPredicate()
+                .map(predicate -> predicate.transform(HiveColumnHandle.class::cast))
+                .orElse(TupleDomain.all());
+        if (!partitionMatchesPredicate(hiveSplit, dynamicFilterPredicate, hiveStorageTimeZone, typeManager)) {
+            return new FixedPageSource(ImmutableList.of());
+        }
+        dynamicFilterPredicate = dynamicFilterPredicate.transform(column -> column.getColumnType() == REGULAR ? column : null);
+
         Configuration configuration = hdfsEnvironment.getConfiguration(new HdfsContext(session, hiveSplit.getDatabase(), hiveSplit.getTable()), path);
 
         if (hiveLayout.isPushdownFilterEnabled()) {
@@ -139,7 +151,8 @@ public class HivePageSourceProvider
                     hiveStorageTimeZone,
                     typeManager,
                     optimizedRowExpressionCache,
-                    splitContext);
+                    splitContext,
+                    dynamicFilterPredicate);
             if (selectivePageSource.isPresent()) {
                 return selectivePageSource.get();
             }
@@ -158,7 +171,8 @@ public class HivePageSourceProvider
                 hiveSplit.getStorage(),
                 hiveLayout.getDomainPredicate()
                         .transform(Subfield::getRootName)
-                        .transform(hiveLayout.getPredicateColumns()::get),
+                        .transform(hiveLayout.getPredicateColumns()::get)
+                        .intersect(dynamicFilterPredicate),
                 selectedColumns,
                 hiveLayout.getPredicateColumns(),
                 hiveSplit.getPartitionKeys(),
@@ -192,7 +206,8 @@ public class HivePageSourceProvider
             DateTimeZone hiveStorageTimeZone,
             TypeManager typeManager,
             LoadingCache<RowExpressionCacheKey, RowExpression> rowExpressionCache,
-            SplitContext splitContext)
+            SplitContext splitContext,
+            TupleDomain<HiveColumnHandle> dynamicFilterPredicate)
     {
         Set<HiveColumnHandle> interimColumns = ImmutableSet.<HiveColumnHandle>builder()
                 .addAll(layout.getPredicateColumns().values())
@@ -247,7 +262,7 @@ public class HivePageSourceProvider
                     coercers,
                     bucketAdaptation,
                     outputColumns,
-                    layout.getDomainPredicate(),
+                    layout.getDomainPredicate().intersect(dynamicFilterPredicate.transform(column -> new Subfield(column.getName()))),
                     optimizedRemainingPredicate,
                     hiveStorageTimeZone,
                     new HiveFileContext(splitContext.isCacheable(), split.getExtraFileInfo().map(BinaryExtraHiveFileInfo::new)));
@@ -259,6 +274,27 @@ public class HivePageSourceProvider
         return Optional.empty();
     }
 
+    private static boolean partitionMatchesPredicate(HiveSplit split, TupleDomain<HiveColumnHandle> predicate, DateTimeZone timeZone, TypeManager typeManager)
+    {
+        if (predicate.isNone()) {
+            return false;
+        }
+        Map<HiveColumnHandle, Domain> domains = predicate.getDomains().get();
+        for (HivePartitionKey partitionKey : split.getPartitionKeys()) {
+            for (Map.Entry<HiveColumnHandle, Domain> entry : domains.entrySet()) {
+                HiveColumnHandle column = entry.getKey();
+                if (column.isPartitionKey() && column.getName().equals(partitionKey.getName())) {
+                    Type type = typeManager.getType(column.getTypeSignature());
+                    NullableValue value = parsePartitionValue(split.getPartitionName(), partitionKey.getValue(), type, timeZone);
+                    if (!entry.getValue().includesNullableValue(value.getValue())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     public static Optional<ConnectorPageSource> createHivePageSource(
             Set<HiveRecordCursorProvider> cursorProviders,
             Set<HiveBatchPageSourceFactory> pageSourceFactories,
@@ -100,6 +100,7 @@ public final class HiveSessionProperties
     public static final String OFFLINE_DATA_DEBUG_MODE_ENABLED = "offline_data_debug_mode_enabled";
     public static final String FAIL_FAST_ON_INSERT_INTO_IMMUTABLE_PARTITIONS_ENABLED = "fail_fast_on_insert_into_immutable_partitions_enabled";
     public static final String USE_LIST_DIRECTORY_CACHE = "use_list_directory_cache";
+    public static final String ORDER_BASED_EXECUTION_ENABLED = "order_based_execution_enabled";
 
     private final List<PropertyMetadata<?>> sessionProperties;
 
@@ -416,6 +417,11 @@ public final class HiveSessionProperties
                         "Experimental: enable adaptive filter reordering",
                         hiveClientConfig.isAdaptiveFilterReorderingEnabled(),
                         false),
+                booleanProperty(
+                        ORDER_BASED_EXECUTION_ENABLED,
+                        "Experimental: expose the sort order of the buckets of unpartitioned bucketed sorted tables to the planner, and read each of their bucket files as a single split",
+                        hiveClientConfig.isOrderBasedExecutionEnabled(),
+                        false),
                 integerProperty(
                         VIRTUAL_BUCKET_COUNT,
                         "Number of virtual bucket assigned for unbucketed tables",
@@ -785,4 +791,9 @@ public final class HiveSessionProperties
     {
         return session.getProperty(USE_LIST_DIRECTORY_CACHE, Boolean.class);
     }
+
+    public static boolean isOrderBasedExecutionEnabled(ConnectorSession session)
+    {
+        return session.getProperty(ORDER_BASED_EXECUTION_ENABLED, Boolean.class);
+    }
 }
@@ -17,12 +17,14 @@ import com.facebook.airlift.concurrent.BoundedExecutor;
 import com.facebook.airlift.stats.CounterStat;
 import com.facebook.presto.common.Subfield;
 import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.NullableValue;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.hive.HiveBucketing.HiveBucketFilter;
 import com.facebook.presto.hive.metastore.Column;
 import com.facebook.presto.hive.metastore.Partition;
 import com.facebook.presto.hive.metastore.SemiTransactionalHiveMetastore;
 import com.facebook.presto.hive.metastore.Table;
+import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
@@ -51,6 +53,7 @@ import java.util.Optional;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 import static com.facebook.presto.hive.BackgroundHiveSplitLoader.BucketSplitInfo.createBucketSplitInfo;
 import static com.facebook.presto.hive.HiveColumnHandle.isPathColumnHandle;
@@ -68,6 +71,7 @@ import static com.facebook.presto.spi.StandardErrorCode.SERVER_SHUTTING_DOWN;
 import static com.facebook.presto.spi.connector.ConnectorSplitManager.SplitSchedulingStrategy.GROUPED_SCHEDULING;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Iterables.transform;
@@ -186,6 +190,15 @@ public class HiveSplitManager
         List<HivePartition> partitions = layout.getPartitions()
                 .orElseThrow(() -> new PrestoException(GENERIC_INTERNAL_ERROR, "Layout does not contain partitions"));
 
+        // prune partitions with the dynamic filters that have already been collected
+        Supplier<TupleDomain<ColumnHandle>> dynamicFilter = splitSchedulingContext.getDynamicFilter();
+        TupleDomain<ColumnHandle> initialDynamicFilter = dynamicFilter.get();
+        if (!initialDynamicFilter.isAll()) {
+            partitions = partitions.stream()
+                    .filter(hivePartition -> partitionMatches(hivePartition, initialDynamicFilter))
+                    .collect(toImmutableList());
+        }
+
         // short circuit if we don't have any partitions
         HivePartition partition = Iterables.getFirst(partitions, null);
         if (partition == null) {
@@ -216,6 +229,8 @@ public class HiveSplitManager
             hiveBucketProperty = bucketHandle.map(HiveBucketHandle::toTableBucketProperty);
         }
         Iterable<HivePartitionMetadata> hivePartitions = getPartitionMetadata(metastore, table, tableName, partitions, hiveBucketProperty, session);
+        // dynamic filters collected while splits are being loaded skip the listing of the remaining partitions
+        hivePartitions = Iterables.filter(hivePartitions, metadata -> partitionMatches(metadata.getHivePartition(), dynamicFilter.get()));
 
         HiveSplitLoader hiveSplitLoader = new BackgroundHiveSplitLoader(
                 table,
@@ -276,6 +291,21 @@ public class HiveSplitManager
         return splitSource;
     }
 
+    private static boolean partitionMatches(HivePartition partition, TupleDomain<ColumnHandle> dynamicFilter)
+    {
+        if (dynamicFilter.isNone()) {
+            return false;
+        }
+        Map<ColumnHandle, Domain> domains = dynamicFilter.getDomains().get();
+        for (Map.Entry<ColumnHandle, NullableValue> entry : partition.getKeys().entrySet()) {
+            Domain allowedDomain = domains.get(entry.getKey());
+            if (allowedDomain != null && !allowedDomain.includesNullableValue(entry.getValue().getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static Optional<Domain> getPathDomain(TupleDomain<Subfield> domainPredicate, Map<String, HiveColumnHandle> predicateColumns)
     {
         checkArgument(!domainPredicate.isNone(), "Unexpected domain predicate: none");
@@ -132,7 +132,8 @@ public class TestHiveClientConfig
                 .setFileStatusCacheExpireAfterWrite(new Duration(0, TimeUnit.SECONDS))
                 .setFileStatusCacheMaxSize(0)
                 .setFileStatusCacheTables("")
-                .setPageFileStripeMaxSize(new DataSize(24, Unit.MEGABYTE)));
+                .setPageFileStripeMaxSize(new DataSize(24, Unit.MEGABYTE))
+                .setOrderBasedExecutionEnabled(false));
     }
 
     @Test
@@ -228,6 +229,7 @@ public class TestHiveClientConfig
                 .put("hive.file-status-cache-size", "1000")
                 .put("hive.file-status-cache-expire-time", "30m")
                 .put("hive.pagefile.writer.stripe-max-size", "1kB")
+                .put("hive.order-based-execution-enabled", "true")
                 .build();
 
         HiveClientConfig expected = new HiveClientConfig()
@@ -320,7 +322,8 @@ public class TestHiveClientConfig
                 .setFileStatusCacheTables("foo.bar1,foo.bar2")
                 .setFileStatusCacheMaxSize(1000)
                 .setFileStatusCacheExpireAfterWrite(new Duration(30, TimeUnit.MINUTES))
-                .setPageFileStripeMaxSize(new DataSize(1, Unit.KILOBYTE));
+                .setPageFileStripeMaxSize(new DataSize(1, Unit.KILOBYTE))
+                .setOrderBasedExecutionEnabled(true);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
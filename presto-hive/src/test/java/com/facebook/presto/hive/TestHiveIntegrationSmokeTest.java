@@ -23,11 +23,15 @@ import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.metadata.QualifiedObjectName;
 import com.facebook.presto.metadata.TableLayout;
 import com.facebook.presto.metadata.TableMetadata;
+import com.facebook.presto.operator.OperatorStats;
+import com.facebook.presto.operator.ScanFilterAndProjectOperator;
+import com.facebook.presto.operator.TableScanOperator;
 import com.facebook.presto.spi.CatalogSchemaTableName;
 import com.facebook.presto.spi.ColumnMetadata;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.Constraint;
+import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.spi.plan.MarkDistinctNode;
 import com.facebook.presto.spi.security.Identity;
@@ -35,6 +39,7 @@ import com.facebook.presto.spi.security.SelectedRole;
 import com.facebook.presto.sql.analyzer.FeaturesConfig.PartialMergePushdownStrategy;
 import com.facebook.presto.sql.planner.Plan;
 import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.RowNumberNode;
 import com.facebook.presto.sql.planner.plan.TableWriterMergeNode;
 import com.facebook.presto.sql.planner.plan.TopNRowNumberNode;
@@ -69,16 +74,19 @@ import java.util.Optional;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.LongStream;
 
 import static com.facebook.airlift.json.JsonCodec.jsonCodec;
 import static com.facebook.presto.SystemSessionProperties.COLOCATED_JOIN;
 import static com.facebook.presto.SystemSessionProperties.CONCURRENT_LIFESPANS_PER_NODE;
 import static com.facebook.presto.SystemSessionProperties.DYNAMIC_SCHEDULE_FOR_GROUPED_EXECUTION;
+import static com.facebook.presto.SystemSessionProperties.ENABLE_DYNAMIC_FILTERING;
 import static com.facebook.presto.SystemSessionProperties.EXCHANGE_MATERIALIZATION_STRATEGY;
 import static com.facebook.presto.SystemSessionProperties.GROUPED_EXECUTION_FOR_AGGREGATION;
 import static com.facebook.presto.SystemSessionProperties.GROUPED_EXECUTION_FOR_ELIGIBLE_TABLE_SCANS;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
+import static com.facebook.presto.SystemSessionProperties.MERGE_JOIN;
 import static com.facebook.presto.SystemSessionProperties.PARTIAL_MERGE_PUSHDOWN_STRATEGY;
 import static com.facebook.presto.SystemSessionProperties.PARTITIONING_PROVIDER_CATALOG;
 import static com.facebook.presto.common.predicate.Marker.Bound.EXACTLY;
@@ -99,6 +107,7 @@ import static com.facebook.presto.hive.HiveQueryRunner.TPCH_SCHEMA;
 import static com.facebook.presto.hive.HiveQueryRunner.createBucketedSession;
 import static com.facebook.presto.hive.HiveQueryRunner.createMaterializeExchangesSession;
 import static com.facebook.presto.hive.HiveQueryRunner.createQueryRunner;
+import static com.facebook.presto.hive.HiveSessionProperties.ORDER_BASED_EXECUTION_ENABLED;
 import static com.facebook.presto.hive.HiveSessionProperties.PUSHDOWN_FILTER_ENABLED;
 import static com.facebook.presto.hive.HiveSessionProperties.RCFILE_OPTIMIZED_WRITER_ENABLED;
 import static com.facebook.presto.hive.HiveSessionProperties.SORTED_WRITE_TEMP_PATH_SUBDIRECTORY_COUNT;
@@ -113,6 +122,7 @@ import static com.facebook.presto.hive.HiveTestUtils.TYPE_MANAGER;
 import static com.facebook.presto.hive.HiveUtil.columnExtraInfo;
 import static com.facebook.presto.spi.security.SelectedRole.Type.ROLE;
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType.BROADCAST;
+import static com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType.PARTITIONED;
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.PartialMergePushdownStrategy.PUSH_THROUGH_LOW_MEMORY_OPERATORS;
 import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_MATERIALIZED;
@@ -644,6 +654,76 @@ public class TestHiveIntegrationSmokeTest
         assertFalse(getQueryRunner().tableExists(session, "test_create_partitioned_table_as"));
     }
 
+    @Test
+    public void testDynamicPartitionPruning()
+    {
+        assertUpdate("" +
+                "CREATE TABLE test_dynamic_partition_pruning " +
+                "WITH (partitioned_by = ARRAY['order_status']) " +
+                "AS SELECT orderkey, custkey, orderstatus AS order_status FROM tpch.tiny.orders",
+                "SELECT count(*) FROM orders");
+
+        long totalRows = (long) computeActual("SELECT count(*) FROM orders").getOnlyValue();
+        long matchingRows = (long) computeActual("SELECT count(*) FROM orders WHERE orderstatus = 'F'").getOnlyValue();
+        String selectiveJoin = "SELECT t.orderkey FROM test_dynamic_partition_pruning t JOIN (VALUES 'F', 'X') v(status) ON t.order_status = v.status";
+        String emptyJoin = "SELECT count(*) FROM test_dynamic_partition_pruning t JOIN (SELECT orderstatus FROM orders WHERE orderkey < 0) o ON t.order_status = o.orderstatus";
+
+        for (String joinDistributionType : ImmutableList.of(BROADCAST.name(), PARTITIONED.name())) {
+            Session session = Session.builder(getSession())
+                    .setSystemProperty(ENABLE_DYNAMIC_FILTERING, "true")
+                    .setSystemProperty(JOIN_DISTRIBUTION_TYPE, joinDistributionType)
+                    .build();
+            Session disabled = Session.builder(session)
+                    .setSystemProperty(ENABLE_DYNAMIC_FILTERING, "false")
+                    .build();
+
+            assertQuery(session, selectiveJoin, "SELECT orderkey FROM orders WHERE orderstatus = 'F'");
+            assertQuery(session, emptyJoin, "SELECT 0");
+
+            // only the partitions matching the build side are read; the build side is not a table scan, so only the probe side is counted
+            assertEquals(getTableScanStats(disabled, selectiveJoin, OperatorStats::getRawInputPositions), totalRows, joinDistributionType);
+            assertEquals(getTableScanStats(session, selectiveJoin, OperatorStats::getRawInputPositions), matchingRows, joinDistributionType);
+        }
+
+        assertUpdate("DROP TABLE test_dynamic_partition_pruning");
+    }
+
+    @Test
+    public void testDynamicFilteringRowsOfJoinDistributions()
+    {
+        assertUpdate(
+                "CREATE TABLE test_dynamic_filtering_rows AS SELECT orderkey, orderstatus FROM tpch.tiny.orders",
+                "SELECT count(*) FROM orders");
+        long matchingRows = (long) computeActual("SELECT count(*) FROM orders WHERE orderstatus = 'F'").getOnlyValue();
+
+        // broadcast joins filter the rows of the probe side in the scan of the same task, partitioned joins
+        // through the predicate the coordinator attaches to the splits, which the selective readers apply
+        for (String joinDistributionType : ImmutableList.of(BROADCAST.name(), PARTITIONED.name())) {
+            Session session = Session.builder(getSession())
+                    .setSystemProperty(ENABLE_DYNAMIC_FILTERING, "true")
+                    .setSystemProperty(JOIN_DISTRIBUTION_TYPE, joinDistributionType)
+                    .setCatalogSessionProperty(catalog, PUSHDOWN_FILTER_ENABLED, "true")
+                    .build();
+            assertEquals(
+                    getTableScanStats(session, "SELECT t.orderkey FROM test_dynamic_filtering_rows t JOIN (VALUES 'F', 'X') v(status) ON t.orderstatus = v.status", OperatorStats::getOutputPositions),
+                    matchingRows,
+                    joinDistributionType);
+        }
+
+        assertUpdate("DROP TABLE test_dynamic_filtering_rows");
+    }
+
+    private long getTableScanStats(Session session, @Language("SQL") String sql, ToLongFunction<OperatorStats> statistic)
+    {
+        DistributedQueryRunner queryRunner = (DistributedQueryRunner) getQueryRunner();
+        QueryId queryId = queryRunner.executeWithQueryId(session, sql).getQueryId();
+        return queryRunner.getQueryInfo(queryId).getQueryStats().getOperatorSummaries().stream()
+                .filter(summary -> summary.getOperatorType().equals(TableScanOperator.class.getSimpleName()) ||
+                        summary.getOperatorType().equals(ScanFilterAndProjectOperator.class.getSimpleName()))
+                .mapToLong(statistic)
+                .sum();
+    }
+
     @Test
     public void testCreatePartitionedTableAsShuffleOnPartitionColumns()
     {
@@ -3295,6 +3375,65 @@ public class TestHiveIntegrationSmokeTest
         };
     }
 
+    @Test
+    public void testMergeJoinOfBucketedSortedTables()
+    {
+        try {
+            assertUpdate(
+                    "CREATE TABLE test_merge_join_orders\n" +
+                            "WITH (bucket_count = 13, bucketed_by = ARRAY['orderkey'], sorted_by = ARRAY['orderkey']) AS\n" +
+                            "SELECT orderkey, orderstatus FROM orders",
+                    15000);
+            assertUpdate(
+                    "CREATE TABLE test_merge_join_lineitem\n" +
+                            "WITH (bucket_count = 13, bucketed_by = ARRAY['orderkey'], sorted_by = ARRAY['orderkey']) AS\n" +
+                            "SELECT orderkey, linenumber FROM lineitem",
+                    60175);
+
+            Session mergeJoin = Session.builder(getSession())
+                    .setSystemProperty(MERGE_JOIN, "true")
+                    .setSystemProperty(COLOCATED_JOIN, "true")
+                    .setSystemProperty(GROUPED_EXECUTION_FOR_AGGREGATION, "true")
+                    .setSystemProperty(GROUPED_EXECUTION_FOR_ELIGIBLE_TABLE_SCANS, "true")
+                    .setCatalogSessionProperty(catalog, ORDER_BASED_EXECUTION_ENABLED, "true")
+                    .build();
+
+            // the buckets are joined one by one, each of them as a single sorted stream
+            assertQuery(
+                    mergeJoin,
+                    "SELECT o.orderkey, o.orderstatus, l.linenumber FROM test_merge_join_orders o JOIN test_merge_join_lineitem l ON o.orderkey = l.orderkey",
+                    "SELECT o.orderkey, o.orderstatus, l.linenumber FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey",
+                    assertMergeJoinIsPresent(true));
+            assertQuery(
+                    mergeJoin,
+                    "SELECT o.orderkey, o.orderstatus, l.linenumber FROM test_merge_join_orders o LEFT JOIN test_merge_join_lineitem l ON o.orderkey = l.orderkey AND l.linenumber > 5",
+                    "SELECT o.orderkey, o.orderstatus, l.linenumber FROM orders o LEFT JOIN (SELECT * FROM lineitem WHERE linenumber > 5) l ON o.orderkey = l.orderkey",
+                    assertMergeJoinIsPresent(true));
+
+            // without order-based execution the sort order of the buckets is not known, and a hash join is used
+            assertQuery(
+                    Session.builder(mergeJoin)
+                            .setCatalogSessionProperty(catalog, ORDER_BASED_EXECUTION_ENABLED, "false")
+                            .build(),
+                    "SELECT o.orderkey, o.orderstatus, l.linenumber FROM test_merge_join_orders o JOIN test_merge_join_lineitem l ON o.orderkey = l.orderkey",
+                    "SELECT o.orderkey, o.orderstatus, l.linenumber FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey",
+                    assertMergeJoinIsPresent(false));
+        }
+        finally {
+            assertUpdate("DROP TABLE IF EXISTS test_merge_join_orders");
+            assertUpdate("DROP TABLE IF EXISTS test_merge_join_lineitem");
+        }
+    }
+
+    private static Consumer<Plan> assertMergeJoinIsPresent(boolean present)
+    {
+        return plan -> assertEquals(
+                searchFrom(plan.getRoot())
+                        .where(node -> node instanceof MergeJoinNode)
+                        .matches(),
+                present);
+    }
+
     @Test
     public void testGroupedExecution()
     {
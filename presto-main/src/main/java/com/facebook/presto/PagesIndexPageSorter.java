@@ -43,6 +43,8 @@ public class PagesIndexPageSorter
     {
         PagesIndex pagesIndex = pagesIndexFactory.newPagesIndex(types, expectedPositions);
         pages.forEach(pagesIndex::addPage);
+        // connectors do not pass a memory context to reserve the memory of the normalized key sort in,
+        // so the pages are sorted with the comparator sort, which needs no memory beyond the index
         pagesIndex.sort(sortChannels, sortOrders);
 
         return pagesIndex.getValueAddresses().toLongArray(null);
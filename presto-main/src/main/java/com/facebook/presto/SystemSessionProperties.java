@@ -16,6 +16,7 @@ package com.facebook.presto;
 import com.facebook.presto.execution.QueryManagerConfig;
 import com.facebook.presto.execution.QueryManagerConfig.ExchangeMaterializationStrategy;
 import com.facebook.presto.execution.TaskManagerConfig;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.memory.MemoryManagerConfig;
 import com.facebook.presto.memory.NodeMemoryConfig;
 import com.facebook.presto.spi.PrestoException;
@@ -26,13 +27,17 @@ import com.facebook.presto.sql.analyzer.FeaturesConfig.JoinDistributionType;
 import com.facebook.presto.sql.analyzer.FeaturesConfig.JoinReorderingStrategy;
 import com.facebook.presto.sql.analyzer.FeaturesConfig.PartialMergePushdownStrategy;
 import com.facebook.presto.sql.analyzer.FeaturesConfig.PartitioningPrecisionStrategy;
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
 import javax.inject.Inject;
 
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.stream.Stream;
@@ -109,7 +114,13 @@ public final class SystemSessionProperties
     public static final String FAST_INEQUALITY_JOINS = "fast_inequality_joins";
     public static final String QUERY_PRIORITY = "query_priority";
     public static final String SPILL_ENABLED = "spill_enabled";
+    public static final String ORDER_BY_SPILL_ENABLED = "order_by_spill_enabled";
+    public static final String WINDOW_SPILL_ENABLED = "window_spill_enabled";
+    public static final String TOPN_ROW_NUMBER_SPILL_ENABLED = "topn_row_number_spill_enabled";
+    public static final String DISTINCT_SPILL_ENABLED = "distinct_spill_enabled";
+    public static final String SEMI_JOIN_SPILL_ENABLED = "semi_join_spill_enabled";
     public static final String AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT = "aggregation_operator_unspill_memory_limit";
+    public static final String SPILLER_PARTITION_COUNT = "spiller_partition_count";
     public static final String OPTIMIZE_DISTINCT_AGGREGATIONS = "optimize_mixed_distinct_aggregations";
     public static final String LEGACY_ROW_FIELD_ORDINAL_ACCESS = "legacy_row_field_ordinal_access";
     public static final String LEGACY_MAP_SUBSCRIPT = "do_not_use_legacy_map_subscript";
@@ -150,6 +161,20 @@ public final class SystemSessionProperties
     public static final String EXPERIMENTAL_FUNCTIONS_ENABLED = "experimental_functions_enabled";
     public static final String USE_LEGACY_SCHEDULER = "use_legacy_scheduler";
     public static final String OPTIMIZE_COMMON_SUB_EXPRESSIONS = "optimize_common_sub_expressions";
+    public static final String ENABLE_DYNAMIC_FILTERING = "enable_dynamic_filtering";
+    public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT = "dynamic_filtering_max_per_driver_row_count";
+    public static final String DYNAMIC_FILTERING_WAIT_TIMEOUT = "dynamic_filtering_wait_timeout";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION = "adaptive_partial_aggregation";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS = "adaptive_partial_aggregation_min_rows";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD = "adaptive_partial_aggregation_unique_rows_ratio_threshold";
+    public static final String FLAT_GROUP_BY_HASH = "flat_group_by_hash";
+    public static final String DIRECT_JOIN_LOOKUP_SOURCE = "direct_join_lookup_source";
+    public static final String JOIN_BLOOM_FILTER = "join_bloom_filter";
+    public static final String SKEWED_JOIN_KEYS = "skewed_join_keys";
+    public static final String MERGE_JOIN = "merge_join";
+    public static final String TOP_N_DYNAMIC_FILTERING = "top_n_dynamic_filtering";
+    public static final String EXCHANGE_COMPRESSION_CODEC = "exchange_compression_codec";
+    public static final String EXCHANGE_SHARED_DICTIONARY_PAGE_MERGING = "exchange_shared_dictionary_page_merging";
 
     private final List<PropertyMetadata<?>> sessionProperties;
 
@@ -524,6 +549,31 @@ public final class SystemSessionProperties
                             return spillEnabled;
                         },
                         value -> value),
+                booleanProperty(
+                        ORDER_BY_SPILL_ENABLED,
+                        "Spill in OrderBy if spill_enabled is also set",
+                        featuresConfig.isOrderBySpillEnabled(),
+                        false),
+                booleanProperty(
+                        WINDOW_SPILL_ENABLED,
+                        "Enable window spilling if spill_enabled",
+                        featuresConfig.isWindowSpillEnabled(),
+                        false),
+                booleanProperty(
+                        TOPN_ROW_NUMBER_SPILL_ENABLED,
+                        "Spill in TopNRowNumber if spill_enabled is also set",
+                        featuresConfig.isTopNRowNumberSpillEnabled(),
+                        false),
+                booleanProperty(
+                        DISTINCT_SPILL_ENABLED,
+                        "Spill in MarkDistinct and DistinctLimit if spill_enabled is also set",
+                        featuresConfig.isDistinctSpillEnabled(),
+                        false),
+                booleanProperty(
+                        SEMI_JOIN_SPILL_ENABLED,
+                        "Spill the set of a semi join if spill_enabled is also set",
+                        featuresConfig.isSemiJoinSpillEnabled(),
+                        false),
                 new PropertyMetadata<>(
                         AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT,
                         "Experimental: How much memory can should be allocated per aggragation operator in unspilling process",
@@ -533,6 +583,15 @@ public final class SystemSessionProperties
                         false,
                         value -> DataSize.valueOf((String) value),
                         DataSize::toString),
+                new PropertyMetadata<>(
+                        SPILLER_PARTITION_COUNT,
+                        "Number of partitions the rows are hashed into when an operator spills them to be read back one partition at a time",
+                        INTEGER,
+                        Integer.class,
+                        featuresConfig.getSpillerPartitionCount(),
+                        false,
+                        value -> validateIntegerValue(value, SPILLER_PARTITION_COUNT, 1, false),
+                        object -> object),
                 booleanProperty(
                         OPTIMIZE_DISTINCT_AGGREGATIONS,
                         "Optimize mixed non-distinct and distinct aggregations",
@@ -762,6 +821,99 @@ public final class SystemSessionProperties
                         OPTIMIZE_COMMON_SUB_EXPRESSIONS,
                         "Extract and compute common sub-expressions in projection",
                         featuresConfig.isOptimizeCommonSubExpressions(),
+                        false),
+                booleanProperty(
+                        ENABLE_DYNAMIC_FILTERING,
+                        "Experimental: Filter the probe side of hash joins with values collected from the build side",
+                        featuresConfig.isEnableDynamicFiltering(),
+                        false),
+                new PropertyMetadata<>(
+                        DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT,
+                        "Maximum number of distinct build side values collected per driver before dynamic filters fall back to a min/max range",
+                        INTEGER,
+                        Integer.class,
+                        featuresConfig.getDynamicFilteringMaxPerDriverRowCount(),
+                        false,
+                        value -> validateIntegerValue(value, DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT, 1, false),
+                        object -> object),
+                new PropertyMetadata<>(
+                        DYNAMIC_FILTERING_WAIT_TIMEOUT,
+                        "Maximum time split enumeration of a probe side table scan waits for the dynamic filters of joins in other stages",
+                        VARCHAR,
+                        Duration.class,
+                        featuresConfig.getDynamicFilteringWaitTimeout(),
+                        false,
+                        value -> Duration.valueOf((String) value),
+                        Duration::toString),
+                booleanProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION,
+                        "Stop aggregating in partial aggregations that do not reduce the number of rows",
+                        featuresConfig.isAdaptivePartialAggregationEnabled(),
+                        false),
+                new PropertyMetadata<>(
+                        ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS,
+                        "Number of input rows after which a partial aggregation decides whether to stop aggregating",
+                        INTEGER,
+                        Integer.class,
+                        featuresConfig.getAdaptivePartialAggregationMinRows(),
+                        false,
+                        value -> validateIntegerValue(value, ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS, 1, false),
+                        object -> object),
+                doubleProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD,
+                        "Ratio of groups to input rows above which a partial aggregation stops aggregating",
+                        featuresConfig.getAdaptivePartialAggregationUniqueRowsRatioThreshold(),
+                        false),
+                booleanProperty(
+                        FLAT_GROUP_BY_HASH,
+                        "Experimental: Store the groups of fixed width keys as flat records instead of in per channel block builders",
+                        featuresConfig.isFlatGroupByHashEnabled(),
+                        false),
+                booleanProperty(
+                        DIRECT_JOIN_LOOKUP_SOURCE,
+                        "Index the build side of joins on a single dense integer key by an array instead of a hash table",
+                        featuresConfig.isDirectJoinLookupSourceEnabled(),
+                        false),
+                booleanProperty(
+                        JOIN_BLOOM_FILTER,
+                        "Test probe rows against a Bloom filter of the build keys before looking them up in the join hash table",
+                        featuresConfig.isJoinBloomFilterEnabled(),
+                        false),
+                new PropertyMetadata<>(
+                        SKEWED_JOIN_KEYS,
+                        "Hot join key values of partitioned joins as comma separated table.column=value pairs, e.g. orders.custkey=42,tpch.orders.custkey=7",
+                        VARCHAR,
+                        String.class,
+                        null,
+                        false,
+                        value -> validateSkewedJoinKeys((String) value),
+                        value -> value),
+                booleanProperty(
+                        MERGE_JOIN,
+                        "Use a merge join when both inputs of an inner or left join are single streams sorted on the join keys",
+                        featuresConfig.isMergeJoinEnabled(),
+                        false),
+                booleanProperty(
+                        TOP_N_DYNAMIC_FILTERING,
+                        "Experimental: Filter the table scans below a TopN with the range of the leading sort key that can still make it into the result",
+                        featuresConfig.isTopNDynamicFilteringEnabled(),
+                        false),
+                new PropertyMetadata<>(
+                        EXCHANGE_COMPRESSION_CODEC,
+                        format("Codec of the pages of compressed exchanges. Options are %s",
+                                Stream.of(CompressionCodec.values())
+                                        .map(CompressionCodec::name)
+                                        .collect(joining(","))),
+                        VARCHAR,
+                        CompressionCodec.class,
+                        featuresConfig.getExchangeCompressionCodec(),
+                        false,
+                        value -> CompressionCodec.valueOf(((String) value).toUpperCase()),
+                        CompressionCodec::name),
+                booleanProperty(
+                        EXCHANGE_SHARED_DICTIONARY_PAGE_MERGING,
+                        "Combine consecutive pages that share a dictionary before sending them through an exchange, so that the dictionary is sent once",
+                        featuresConfig.isExchangeSharedDictionaryPageMergingEnabled(),
                         false));
     }
 
@@ -1044,6 +1196,31 @@ public final class SystemSessionProperties
         return session.getSystemProperty(SPILL_ENABLED, Boolean.class);
     }
 
+    public static boolean isOrderBySpillEnabled(Session session)
+    {
+        return session.getSystemProperty(ORDER_BY_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isWindowSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(WINDOW_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isTopNRowNumberSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(TOPN_ROW_NUMBER_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isDistinctSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(DISTINCT_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isSemiJoinSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(SEMI_JOIN_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
     public static DataSize getAggregationOperatorUnspillMemoryLimit(Session session)
     {
         DataSize memoryLimitForMerge = session.getSystemProperty(AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT, DataSize.class);
@@ -1051,6 +1228,11 @@ public final class SystemSessionProperties
         return memoryLimitForMerge;
     }
 
+    public static int getSpillerPartitionCount(Session session)
+    {
+        return session.getSystemProperty(SPILLER_PARTITION_COUNT, Integer.class);
+    }
+
     public static boolean isOptimizeDistinctAggregationEnabled(Session session)
     {
         return session.getSystemProperty(OPTIMIZE_DISTINCT_AGGREGATIONS, Boolean.class);
@@ -1293,4 +1475,114 @@ public final class SystemSessionProperties
     {
         return session.getSystemProperty(OPTIMIZE_COMMON_SUB_EXPRESSIONS, Boolean.class);
     }
+
+    public static boolean isEnableDynamicFiltering(Session session)
+    {
+        return session.getSystemProperty(ENABLE_DYNAMIC_FILTERING, Boolean.class);
+    }
+
+    public static int getDynamicFilteringMaxPerDriverRowCount(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT, Integer.class);
+    }
+
+    public static Duration getDynamicFilteringWaitTimeout(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_WAIT_TIMEOUT, Duration.class);
+    }
+
+    public static boolean isAdaptivePartialAggregationEnabled(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION, Boolean.class);
+    }
+
+    public static int getAdaptivePartialAggregationMinRows(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS, Integer.class);
+    }
+
+    public static double getAdaptivePartialAggregationUniqueRowsRatioThreshold(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD, Double.class);
+    }
+
+    public static boolean isFlatGroupByHashEnabled(Session session)
+    {
+        return session.getSystemProperty(FLAT_GROUP_BY_HASH, Boolean.class);
+    }
+
+    public static boolean isDirectJoinLookupSourceEnabled(Session session)
+    {
+        return session.getSystemProperty(DIRECT_JOIN_LOOKUP_SOURCE, Boolean.class);
+    }
+
+    public static boolean isJoinBloomFilterEnabled(Session session)
+    {
+        return session.getSystemProperty(JOIN_BLOOM_FILTER, Boolean.class);
+    }
+
+    /**
+     * Returns the hot values of join keys by lower case column name.
+     */
+    public static ListMultimap<String, String> getSkewedJoinKeys(Session session)
+    {
+        String value = session.getSystemProperty(SKEWED_JOIN_KEYS, String.class);
+        if (value == null) {
+            return ImmutableListMultimap.of();
+        }
+        return parseSkewedJoinKeys(value);
+    }
+
+    private static String validateSkewedJoinKeys(String value)
+    {
+        if (value != null) {
+            parseSkewedJoinKeys(value);
+        }
+        return value;
+    }
+
+    private static ListMultimap<String, String> parseSkewedJoinKeys(String value)
+    {
+        ImmutableListMultimap.Builder<String, String> skewedJoinKeys = ImmutableListMultimap.builder();
+        for (String entry : Splitter.on(',').trimResults().omitEmptyStrings().split(value)) {
+            List<String> parts = Splitter.on('=').limit(2).trimResults().splitToList(entry);
+            if (parts.size() != 2 || !isQualifiedColumnName(parts.get(0)) || parts.get(1).isEmpty()) {
+                throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s must be a list of table.column=value pairs: %s", SKEWED_JOIN_KEYS, value));
+            }
+            skewedJoinKeys.put(parts.get(0).toLowerCase(Locale.ENGLISH), parts.get(1));
+        }
+        return skewedJoinKeys.build();
+    }
+
+    private static boolean isQualifiedColumnName(String name)
+    {
+        List<String> parts = Splitter.on('.').splitToList(name);
+        return (parts.size() == 2 || parts.size() == 3) && parts.stream().noneMatch(String::isEmpty);
+    }
+
+    public static boolean isMergeJoinEnabled(Session session)
+    {
+        return session.getSystemProperty(MERGE_JOIN, Boolean.class);
+    }
+
+    public static boolean isTopNDynamicFilteringEnabled(Session session)
+    {
+        return session.getSystemProperty(TOP_N_DYNAMIC_FILTERING, Boolean.class);
+    }
+
+    /**
+     * The codec of the pages of exchanges, which is {@link CompressionCodec#NONE} unless exchange compression is enabled
+     */
+    public static CompressionCodec getExchangeCompressionCodec(Session session)
+    {
+        if (!isExchangeCompressionEnabled(session)) {
+            return CompressionCodec.NONE;
+        }
+        return session.getSystemProperty(EXCHANGE_COMPRESSION_CODEC, CompressionCodec.class);
+    }
+
+    public static boolean isExchangeSharedDictionaryPageMergingEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_SHARED_DICTIONARY_PAGE_MERGING, Boolean.class);
+    }
 }
@@ -130,6 +130,7 @@ public final class SqlStageExecution
     private final AtomicReference<OutputBuffers> outputBuffers = new AtomicReference<>();
 
     private final ListenerManager<Set<Lifespan>> completedLifespansChangeListeners = new ListenerManager<>();
+    private final ListenerManager<TaskStatus> dynamicFilterDomainsListeners = new ListenerManager<>();
 
     @GuardedBy("this")
     private Optional<StageTaskRecoveryCallback> stageTaskRecoveryCallback = Optional.empty();
@@ -246,6 +247,14 @@ public final class SqlStageExecution
         completedLifespansChangeListeners.addListener(newlyCompletedDriverGroupConsumer);
     }
 
+    /**
+     * Listener is notified with the status of a task every time the task reports the domains of more dynamic filters.
+     */
+    public void addDynamicFilterDomainsListener(Consumer<TaskStatus> dynamicFilterDomainsConsumer)
+    {
+        dynamicFilterDomainsListeners.addListener(dynamicFilterDomainsConsumer);
+    }
+
     public synchronized void registerStageTaskRecoveryCallback(StageTaskRecoveryCallback stageTaskRecoveryCallback)
     {
         checkState(!this.stageTaskRecoveryCallback.isPresent(), "stageTaskRecoveryCallback should be registered only once");
@@ -670,6 +679,7 @@ public final class SqlStageExecution
         private long previousUserMemory;
         private long previousSystemMemory;
         private final Set<Lifespan> completedDriverGroups = new HashSet<>();
+        private long reportedDynamicFilterDomainsVersion;
 
         @Override
         public void stateChanged(TaskStatus taskStatus)
@@ -677,6 +687,7 @@ public final class SqlStageExecution
             try {
                 updateMemoryUsage(taskStatus);
                 updateCompletedDriverGroups(taskStatus);
+                updateDynamicFilterDomains(taskStatus);
             }
             finally {
                 updateTaskStatus(taskStatus);
@@ -710,6 +721,17 @@ public final class SqlStageExecution
             // Making changes to completedDriverGroups will change newlyCompletedDriverGroups.
             completedDriverGroups.addAll(newlyCompletedDriverGroups);
         }
+
+        private synchronized void updateDynamicFilterDomains(TaskStatus taskStatus)
+        {
+            // domains are only ever added to the task status, and every addition increments the version
+            long dynamicFilterDomainsVersion = taskStatus.getDynamicFilterDomainsVersion();
+            if (dynamicFilterDomainsVersion <= reportedDynamicFilterDomainsVersion) {
+                return;
+            }
+            reportedDynamicFilterDomainsVersion = dynamicFilterDomainsVersion;
+            dynamicFilterDomainsListeners.invoke(taskStatus, executor);
+        }
     }
 
     @FunctionalInterface
@@ -17,6 +17,7 @@ import com.facebook.airlift.concurrent.SetThreadName;
 import com.facebook.airlift.log.Logger;
 import com.facebook.airlift.stats.CounterStat;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.execution.buffer.BufferResult;
 import com.facebook.presto.execution.buffer.LazyOutputBuffer;
@@ -35,6 +36,7 @@ import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.PlanFragment;
 import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -46,6 +48,7 @@ import javax.annotation.Nullable;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -256,6 +259,8 @@ public class SqlTask
         Set<Lifespan> completedDriverGroups = ImmutableSet.of();
         long fullGcCount = 0;
         Duration fullGcTime = new Duration(0, MILLISECONDS);
+        long dynamicFilterDomainsVersion = 0;
+        Map<String, Domain> dynamicFilterDomains = ImmutableMap.of();
         if (taskHolder.getFinalTaskInfo() != null) {
             TaskStats taskStats = taskHolder.getFinalTaskInfo().getStats();
             queuedPartitionedDrivers = taskStats.getQueuedPartitionedDrivers();
@@ -265,6 +270,8 @@ public class SqlTask
             systemMemoryReservation = taskStats.getSystemMemoryReservation();
             fullGcCount = taskStats.getFullGcCount();
             fullGcTime = taskStats.getFullGcTime();
+            dynamicFilterDomainsVersion = taskHolder.getFinalTaskInfo().getTaskStatus().getDynamicFilterDomainsVersion();
+            dynamicFilterDomains = taskHolder.getFinalTaskInfo().getTaskStatus().getDynamicFilterDomains();
         }
         else if (taskHolder.getTaskExecution() != null) {
             long physicalWrittenBytes = 0;
@@ -281,6 +288,9 @@ public class SqlTask
             completedDriverGroups = taskContext.getCompletedDriverGroups();
             fullGcCount = taskContext.getFullGcCount();
             fullGcTime = taskContext.getFullGcTime();
+            // the version goes first, so that the domains are never older than the version reported with them
+            dynamicFilterDomainsVersion = taskContext.getDynamicFilterDomainsVersion();
+            dynamicFilterDomains = taskContext.getDynamicFilterDomains();
         }
 
         return new TaskStatus(
@@ -300,7 +310,9 @@ public class SqlTask
                 userMemoryReservation,
                 systemMemoryReservation,
                 fullGcCount,
-                fullGcTime);
+                fullGcTime,
+                dynamicFilterDomainsVersion,
+                dynamicFilterDomains);
     }
 
     private TaskStats getTaskStats(TaskHolder taskHolder)
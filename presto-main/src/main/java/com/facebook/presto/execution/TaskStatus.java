@@ -13,15 +13,18 @@
  */
 package com.facebook.presto.execution;
 
+import com.facebook.presto.common.predicate.Domain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.airlift.units.DataSize;
 import io.airlift.units.Duration;
 
 import java.net.URI;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static com.facebook.presto.execution.TaskState.PLANNED;
@@ -74,6 +77,11 @@ public class TaskStatus
 
     private final List<ExecutionFailureInfo> failures;
 
+    // Incremented every time the task collects the domains of more dynamic filters. The domains are only
+    // sent to a coordinator that has not seen this version yet, otherwise they are left out.
+    private final long dynamicFilterDomainsVersion;
+    private final Map<String, Domain> dynamicFilterDomains;
+
     @JsonCreator
     public TaskStatus(
             @JsonProperty("taskId") TaskId taskId,
@@ -92,7 +100,9 @@ public class TaskStatus
             @JsonProperty("memoryReservation") DataSize memoryReservation,
             @JsonProperty("systemMemoryReservation") DataSize systemMemoryReservation,
             @JsonProperty("fullGcCount") long fullGcCount,
-            @JsonProperty("fullGcTime") Duration fullGcTime)
+            @JsonProperty("fullGcTime") Duration fullGcTime,
+            @JsonProperty("dynamicFilterDomainsVersion") long dynamicFilterDomainsVersion,
+            @JsonProperty("dynamicFilterDomains") Map<String, Domain> dynamicFilterDomains)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.taskInstanceId = requireNonNull(taskInstanceId, "taskInstanceId is null");
@@ -122,6 +132,10 @@ public class TaskStatus
         checkArgument(fullGcCount >= 0, "fullGcCount is negative");
         this.fullGcCount = fullGcCount;
         this.fullGcTime = requireNonNull(fullGcTime, "fullGcTime is null");
+
+        checkArgument(dynamicFilterDomainsVersion >= 0, "dynamicFilterDomainsVersion is negative");
+        this.dynamicFilterDomainsVersion = dynamicFilterDomainsVersion;
+        this.dynamicFilterDomains = ImmutableMap.copyOf(requireNonNull(dynamicFilterDomains, "dynamicFilterDomains is null"));
     }
 
     @JsonProperty
@@ -226,6 +240,42 @@ public class TaskStatus
         return fullGcTime;
     }
 
+    @JsonProperty
+    public long getDynamicFilterDomainsVersion()
+    {
+        return dynamicFilterDomainsVersion;
+    }
+
+    @JsonProperty
+    public Map<String, Domain> getDynamicFilterDomains()
+    {
+        return dynamicFilterDomains;
+    }
+
+    public TaskStatus withDynamicFilterDomains(Map<String, Domain> dynamicFilterDomains)
+    {
+        return new TaskStatus(
+                taskId,
+                taskInstanceId,
+                version,
+                state,
+                self,
+                nodeId,
+                completedDriverGroups,
+                failures,
+                queuedPartitionedDrivers,
+                runningPartitionedDrivers,
+                outputBufferUtilization,
+                outputBufferOverutilized,
+                physicalWrittenDataSize,
+                memoryReservation,
+                systemMemoryReservation,
+                fullGcCount,
+                fullGcTime,
+                dynamicFilterDomainsVersion,
+                dynamicFilterDomains);
+    }
+
     @Override
     public String toString()
     {
@@ -254,7 +304,9 @@ public class TaskStatus
                 new DataSize(0, BYTE),
                 new DataSize(0, BYTE),
                 0,
-                new Duration(0, MILLISECONDS));
+                new Duration(0, MILLISECONDS),
+                0,
+                ImmutableMap.of());
     }
 
     public static TaskStatus failWith(TaskStatus taskStatus, TaskState state, List<ExecutionFailureInfo> exceptions)
@@ -276,6 +328,8 @@ public class TaskStatus
                 taskStatus.getMemoryReservation(),
                 taskStatus.getSystemMemoryReservation(),
                 taskStatus.getFullGcCount(),
-                taskStatus.getFullGcTime());
+                taskStatus.getFullGcTime(),
+                taskStatus.getDynamicFilterDomainsVersion(),
+                taskStatus.getDynamicFilterDomains());
     }
 }
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.buffer;
+
+import com.facebook.presto.spi.page.PageCodecMarker;
+import com.facebook.presto.spi.page.PageCompressor;
+import com.facebook.presto.spi.page.PageDecompressor;
+import io.airlift.compress.Compressor;
+import io.airlift.compress.Decompressor;
+import io.airlift.compress.lz4.Lz4Compressor;
+import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.snappy.SnappyCompressor;
+import io.airlift.compress.snappy.SnappyDecompressor;
+import io.airlift.compress.zstd.ZstdCompressor;
+import io.airlift.compress.zstd.ZstdDecompressor;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Codec of the serialized pages of exchanges and spill. ZSTD compresses better than LZ4 and Snappy at a
+ * higher CPU cost, which pays off where the network or the disk is the bottleneck.
+ */
+public enum CompressionCodec
+{
+    NONE,
+    LZ4,
+    ZSTD,
+    SNAPPY;
+
+    public Optional<PageCompressor> createPageCompressor()
+    {
+        switch (this) {
+            case NONE:
+                return Optional.empty();
+            case LZ4:
+                return Optional.of(new AirliftPageCompressor(new Lz4Compressor(), Optional.empty()));
+            case ZSTD:
+                return Optional.of(new AirliftPageCompressor(new ZstdCompressor(), Optional.of(PageCodecMarker.ZSTD)));
+            case SNAPPY:
+                return Optional.of(new AirliftPageCompressor(new SnappyCompressor(), Optional.of(PageCodecMarker.SNAPPY)));
+            default:
+                throw new UnsupportedOperationException("Unsupported compression codec: " + this);
+        }
+    }
+
+    public Optional<PageDecompressor> createPageDecompressor()
+    {
+        switch (this) {
+            case NONE:
+                return Optional.empty();
+            case LZ4:
+                return Optional.of(new AirliftPageDecompressor(new Lz4Decompressor(), Optional.empty()));
+            case ZSTD:
+                return Optional.of(new AirliftPageDecompressor(new ZstdDecompressor(), Optional.of(PageCodecMarker.ZSTD)));
+            case SNAPPY:
+                return Optional.of(new AirliftPageDecompressor(new SnappyDecompressor(), Optional.of(PageCodecMarker.SNAPPY)));
+            default:
+                throw new UnsupportedOperationException("Unsupported compression codec: " + this);
+        }
+    }
+
+    private static class AirliftPageCompressor
+            implements PageCompressor
+    {
+        private final Compressor compressor;
+        private final Optional<PageCodecMarker> codecMarker;
+
+        public AirliftPageCompressor(Compressor compressor, Optional<PageCodecMarker> codecMarker)
+        {
+            this.compressor = requireNonNull(compressor, "compressor is null");
+            this.codecMarker = requireNonNull(codecMarker, "codecMarker is null");
+        }
+
+        @Override
+        public int maxCompressedLength(int uncompressedSize)
+        {
+            return compressor.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(
+                byte[] input,
+                int inputOffset,
+                int inputLength,
+                byte[] output,
+                int outputOffset,
+                int maxOutputLength)
+        {
+            return compressor.compress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+        }
+
+        @Override
+        public void compress(ByteBuffer input, ByteBuffer output)
+        {
+            compressor.compress(input, output);
+        }
+
+        @Override
+        public Optional<PageCodecMarker> getCodecMarker()
+        {
+            return codecMarker;
+        }
+    }
+
+    private static class AirliftPageDecompressor
+            implements PageDecompressor
+    {
+        private final Decompressor decompressor;
+        private final Optional<PageCodecMarker> codecMarker;
+
+        public AirliftPageDecompressor(Decompressor decompressor, Optional<PageCodecMarker> codecMarker)
+        {
+            this.decompressor = requireNonNull(decompressor, "decompressor is null");
+            this.codecMarker = requireNonNull(codecMarker, "codecMarker is null");
+        }
+
+        @Override
+        public int decompress(
+                byte[] input,
+                int inputOffset,
+                int inputLength,
+                byte[] output,
+                int outputOffset,
+                int maxOutputLength)
+        {
+            return decompressor.decompress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+        }
+
+        @Override
+        public void decompress(ByteBuffer input, ByteBuffer output)
+        {
+            decompressor.decompress(input, output);
+        }
+
+        @Override
+        public Optional<PageCodecMarker> getCodecMarker()
+        {
+            return codecMarker;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.SqlStageExecution;
+import com.facebook.presto.execution.StageExecutionState;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.DynamicFilters.ScanTarget;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.SubPlan;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.sql.planner.DynamicFilters.findScanTargetsAcrossFragments;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.util.concurrent.Futures.allAsList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dynamic filters of a query as seen by the coordinator. The domains collected by the tasks
+ * of the join stages are merged here and handed to the split managers of the probe side
+ * table scans, so connectors can skip whole partitions before enumerating their splits.
+ * The merged predicate is also attached to the splits of the scans when they are assigned,
+ * so the connectors on the workers can skip the rows of partitioned joins, whose build side
+ * is in another stage than the scan.
+ */
+@ThreadSafe
+public class QueryDynamicFilters
+{
+    private static final QueryDynamicFilters EMPTY = new QueryDynamicFilters(ImmutableMap.of(), ImmutableListMultimap.of());
+
+    private final Map<String, Filter> filters;
+    private final ImmutableListMultimap<PlanNodeId, Target> targets;
+
+    private QueryDynamicFilters(Map<String, Filter> filters, ImmutableListMultimap<PlanNodeId, Target> targets)
+    {
+        this.filters = ImmutableMap.copyOf(requireNonNull(filters, "filters is null"));
+        this.targets = requireNonNull(targets, "targets is null");
+    }
+
+    public static QueryDynamicFilters empty()
+    {
+        return EMPTY;
+    }
+
+    public static QueryDynamicFilters create(SubPlan plan)
+    {
+        List<PlanFragment> fragments = plan.getAllFragments();
+        Map<PlanFragmentId, PlanFragment> fragmentsById = fragments.stream()
+                .collect(toImmutableMap(PlanFragment::getId, Function.identity()));
+
+        ImmutableMap.Builder<PlanNodeId, TableScanNode> scans = ImmutableMap.builder();
+        ImmutableMap.Builder<PlanNodeId, PlanFragmentId> scanFragments = ImmutableMap.builder();
+        for (PlanFragment fragment : fragments) {
+            for (PlanNode node : searchFrom(fragment.getRoot()).where(TableScanNode.class::isInstance).findAll()) {
+                scans.put(node.getId(), (TableScanNode) node);
+                scanFragments.put(node.getId(), fragment.getId());
+            }
+        }
+        Map<PlanNodeId, TableScanNode> scansById = scans.build();
+        Map<PlanNodeId, PlanFragmentId> scanFragmentsById = scanFragments.build();
+
+        ImmutableMap.Builder<String, Filter> filters = ImmutableMap.builder();
+        ImmutableListMultimap.Builder<PlanNodeId, Target> targets = ImmutableListMultimap.builder();
+        for (PlanFragment fragment : fragments) {
+            List<JoinNode> joins = searchFrom(fragment.getRoot())
+                    .where(node -> node instanceof JoinNode && !((JoinNode) node).getDynamicFilters().isEmpty())
+                    .findAll();
+            for (JoinNode join : joins) {
+                boolean replicated = join.getDistributionType().map(REPLICATED::equals).orElse(false);
+                for (Map.Entry<String, VariableReferenceExpression> entry : join.getDynamicFilters().entrySet()) {
+                    Filter filter = new Filter(entry.getKey(), fragment.getId(), entry.getValue().getType(), replicated);
+                    filters.put(entry.getKey(), filter);
+                    for (JoinNode.EquiJoinClause clause : join.getCriteria()) {
+                        if (!clause.getRight().equals(entry.getValue())) {
+                            continue;
+                        }
+                        for (ScanTarget scanTarget : findScanTargetsAcrossFragments(join.getLeft(), clause.getLeft(), fragmentsById)) {
+                            TableScanNode scan = scansById.get(scanTarget.getScanId());
+                            ColumnHandle column = scan.getAssignments().get(scanTarget.getVariable());
+                            boolean remote = !scanFragmentsById.get(scan.getId()).equals(fragment.getId());
+                            targets.put(scan.getId(), new Target(filter, column, remote));
+                        }
+                    }
+                }
+            }
+        }
+        return new QueryDynamicFilters(filters.build(), targets.build());
+    }
+
+    /**
+     * Starts collecting the domains of the dynamic filters produced by the joins of the given stage.
+     */
+    public void registerStage(SqlStageExecution stage)
+    {
+        PlanFragmentId fragmentId = stage.getFragment().getId();
+        if (filters.values().stream().noneMatch(filter -> filter.getFragmentId().equals(fragmentId))) {
+            return;
+        }
+        Runnable update = () -> update(
+                fragmentId,
+                stage.getState(),
+                stage.getAllTasks().stream()
+                        .map(task -> task.getTaskStatus().getDynamicFilterDomains())
+                        .collect(toImmutableList()));
+        stage.addDynamicFilterDomainsListener(taskStatus -> update.run());
+        stage.addStateChangeListener(state -> update.run());
+    }
+
+    /**
+     * Completes the dynamic filters produced by the joins of the given fragment that can be
+     * completed with the domains reported so far by its tasks.
+     */
+    @VisibleForTesting
+    void update(PlanFragmentId fragmentId, StageExecutionState state, List<Map<String, Domain>> taskDomains)
+    {
+        for (Filter filter : filters.values()) {
+            if (filter.getFragmentId().equals(fragmentId)) {
+                filter.update(state, taskDomains);
+            }
+        }
+    }
+
+    /**
+     * Returns the constraint on the columns of the given table scan derived from the dynamic
+     * filters that have been collected so far. Filters that are still pending do not constrain.
+     */
+    public Supplier<TupleDomain<ColumnHandle>> getPredicateSupplier(PlanNodeId scanId)
+    {
+        List<Target> scanTargets = targets.get(scanId);
+        if (scanTargets.isEmpty()) {
+            return TupleDomain::all;
+        }
+        return () -> {
+            TupleDomain<ColumnHandle> predicate = TupleDomain.all();
+            for (Target target : scanTargets) {
+                Optional<Domain> domain = target.getFilter().getDomain();
+                if (domain.isPresent()) {
+                    predicate = predicate.intersect(TupleDomain.withColumnDomains(ImmutableMap.of(target.getColumn(), domain.get())));
+                }
+            }
+            return predicate;
+        };
+    }
+
+    /**
+     * Returns a future that completes once all dynamic filters of the given table scan that are
+     * produced by other stages have been collected. Filters produced by the stage of the scan
+     * itself are not waited for, as their joins can not make progress before the scan is scheduled.
+     */
+    public ListenableFuture<?> getBlockedFuture(PlanNodeId scanId)
+    {
+        List<ListenableFuture<?>> futures = targets.get(scanId).stream()
+                .filter(Target::isRemote)
+                .map(target -> target.getFilter().getCompletedFuture())
+                .collect(toImmutableList());
+        if (futures.isEmpty()) {
+            return immediateFuture(null);
+        }
+        return nonCancellationPropagating(allAsList(futures));
+    }
+
+    @ThreadSafe
+    private static class Filter
+    {
+        private final String filterId;
+        private final PlanFragmentId fragmentId;
+        private final Type type;
+        private final boolean replicated;
+        private final SettableFuture<Domain> domain = SettableFuture.create();
+
+        public Filter(String filterId, PlanFragmentId fragmentId, Type type, boolean replicated)
+        {
+            this.filterId = requireNonNull(filterId, "filterId is null");
+            this.fragmentId = requireNonNull(fragmentId, "fragmentId is null");
+            this.type = requireNonNull(type, "type is null");
+            this.replicated = replicated;
+        }
+
+        public PlanFragmentId getFragmentId()
+        {
+            return fragmentId;
+        }
+
+        public Optional<Domain> getDomain()
+        {
+            if (!domain.isDone()) {
+                return Optional.empty();
+            }
+            return Optional.of(getFutureValue(domain));
+        }
+
+        public ListenableFuture<?> getCompletedFuture()
+        {
+            return domain;
+        }
+
+        public synchronized void update(StageExecutionState state, List<Map<String, Domain>> taskDomains)
+        {
+            if (domain.isDone()) {
+                return;
+            }
+
+            List<Domain> reported = new ArrayList<>();
+            for (Map<String, Domain> domains : taskDomains) {
+                Domain taskDomain = domains.get(filterId);
+                if (taskDomain != null) {
+                    reported.add(taskDomain);
+                }
+            }
+
+            if (replicated && !reported.isEmpty()) {
+                // every task sees the whole build side
+                domain.set(reported.get(0));
+            }
+            else if (isTaskSchedulingComplete(state) && !taskDomains.isEmpty() && reported.size() == taskDomains.size()) {
+                domain.set(Domain.union(reported));
+            }
+            else if (state.isDone()) {
+                domain.set(Domain.all(type));
+            }
+        }
+
+        private static boolean isTaskSchedulingComplete(StageExecutionState state)
+        {
+            return state == StageExecutionState.FINISHED_TASK_SCHEDULING ||
+                    state == StageExecutionState.SCHEDULING_SPLITS ||
+                    state == StageExecutionState.SCHEDULED ||
+                    state == StageExecutionState.RUNNING ||
+                    state == StageExecutionState.FINISHED;
+        }
+    }
+
+    private static class Target
+    {
+        private final Filter filter;
+        private final ColumnHandle column;
+        private final boolean remote;
+
+        public Target(Filter filter, ColumnHandle column, boolean remote)
+        {
+            this.filter = requireNonNull(filter, "filter is null");
+            this.column = requireNonNull(column, "column is null");
+            this.remote = remote;
+        }
+
+        public Filter getFilter()
+        {
+            return filter;
+        }
+
+        public ColumnHandle getColumn()
+        {
+            return column;
+        }
+
+        public boolean isRemote()
+        {
+            return remote;
+        }
+    }
+}
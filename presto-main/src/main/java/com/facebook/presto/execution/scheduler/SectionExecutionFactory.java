@@ -63,7 +63,9 @@ import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
+import static com.facebook.airlift.concurrent.MoreFutures.addTimeout;
 import static com.facebook.presto.SystemSessionProperties.getConcurrentLifespansPerNode;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringWaitTimeout;
 import static com.facebook.presto.SystemSessionProperties.getMaxTasksPerStage;
 import static com.facebook.presto.SystemSessionProperties.getWriterMinSize;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedScaleWriterProducerBuffer;
@@ -210,6 +212,7 @@ public class SectionExecutionFactory
                 failureDetector,
                 schedulerStats,
                 tableWriteInfo);
+        splitSourceFactory.getDynamicFilters().registerStage(stageExecution);
 
         PartitioningHandle partitioningHandle = plan.getFragment().getPartitioning();
         List<RemoteSourceNode> remoteSourceNodes = plan.getFragment().getRemoteSourceNodes();
@@ -287,7 +290,21 @@ public class SectionExecutionFactory
             SplitPlacementPolicy placementPolicy = new DynamicSplitPlacementPolicy(nodeSelector, stageExecution::getAllTasks);
 
             checkArgument(!plan.getFragment().getStageExecutionDescriptor().isStageGroupedExecution());
-            return newSourcePartitionedSchedulerAsStageScheduler(stageExecution, planNodeId, splitSource, placementPolicy, splitBatchSize);
+            // wait for the dynamic filters of joins in other stages, so the connector can prune splits before enumerating them
+            // and skip the rows of the splits that do not match them. The wait timeout starts when the stage is first scheduled,
+            // not when the scheduler is created, as the stages of later phases are created long before they run.
+            return newSourcePartitionedSchedulerAsStageScheduler(
+                    stageExecution,
+                    planNodeId,
+                    splitSource,
+                    placementPolicy,
+                    splitBatchSize,
+                    () -> addTimeout(
+                            splitSourceFactory.getDynamicFilters().getBlockedFuture(planNodeId),
+                            () -> null,
+                            getDynamicFilteringWaitTimeout(session),
+                            scheduledExecutor),
+                    splitSourceFactory.getDynamicFilters().getPredicateSupplier(planNodeId));
         }
         else if (partitioningHandle.equals(SCALED_WRITER_DISTRIBUTION)) {
             Supplier<Collection<TaskStatus>> sourceTasksProvider = () -> childStageExecutions.stream()
@@ -13,12 +13,14 @@
  */
 package com.facebook.presto.execution.scheduler;
 
+import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.RemoteTask;
 import com.facebook.presto.execution.SqlStageExecution;
 import com.facebook.presto.execution.scheduler.FixedSourcePartitionedScheduler.BucketedSplitPlacementPolicy;
 import com.facebook.presto.metadata.InternalNode;
 import com.facebook.presto.metadata.Split;
+import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.connector.ConnectorPartitionHandle;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.split.EmptySplit;
@@ -33,6 +35,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -40,6 +43,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
@@ -53,7 +57,9 @@ import static com.facebook.presto.spi.connector.NotPartitionedPartitionHandle.NO
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
 import static java.util.Objects.requireNonNull;
 
@@ -91,6 +97,7 @@ public class SourcePartitionedScheduler
     private final int splitBatchSize;
     private final PlanNodeId partitionedNode;
     private final boolean groupedExecution;
+    private final Supplier<TupleDomain<ColumnHandle>> dynamicFilter;
 
     // TODO: Add LIFESPAN_ADDED into SourcePartitionedScheduler#State and remove this boolean
     private boolean lifespanAdded;
@@ -106,7 +113,8 @@ public class SourcePartitionedScheduler
             SplitSource splitSource,
             SplitPlacementPolicy splitPlacementPolicy,
             int splitBatchSize,
-            boolean groupedExecution)
+            boolean groupedExecution,
+            Supplier<TupleDomain<ColumnHandle>> dynamicFilter)
     {
         this.stage = requireNonNull(stage, "stage is null");
         this.partitionedNode = requireNonNull(partitionedNode, "partitionedNode is null");
@@ -116,6 +124,7 @@ public class SourcePartitionedScheduler
         checkArgument(splitBatchSize > 0, "splitBatchSize must be at least one");
         this.splitBatchSize = splitBatchSize;
         this.groupedExecution = groupedExecution;
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
     }
 
     public PlanNodeId getPlanNodeId()
@@ -137,13 +146,40 @@ public class SourcePartitionedScheduler
             SplitPlacementPolicy splitPlacementPolicy,
             int splitBatchSize)
     {
-        SourcePartitionedScheduler sourcePartitionedScheduler = new SourcePartitionedScheduler(stage, partitionedNode, splitSource, splitPlacementPolicy, splitBatchSize, false);
+        return newSourcePartitionedSchedulerAsStageScheduler(stage, partitionedNode, splitSource, splitPlacementPolicy, splitBatchSize, () -> immediateFuture(null), TupleDomain::all);
+    }
+
+    /**
+     * Same as {@link #newSourcePartitionedSchedulerAsStageScheduler(SqlStageExecution, PlanNodeId, SplitSource, SplitPlacementPolicy, int)},
+     * but no splits are requested from the split source before the future supplied by {@code dynamicFilterFuture}
+     * completes, and the predicate supplied by {@code dynamicFilter} at the time a split is assigned is attached to it.
+     * The future is requested the first time the stage is scheduled, so a timeout applied to it only starts then.
+     */
+    public static StageScheduler newSourcePartitionedSchedulerAsStageScheduler(
+            SqlStageExecution stage,
+            PlanNodeId partitionedNode,
+            SplitSource splitSource,
+            SplitPlacementPolicy splitPlacementPolicy,
+            int splitBatchSize,
+            Supplier<ListenableFuture<?>> dynamicFilterFuture,
+            Supplier<TupleDomain<ColumnHandle>> dynamicFilter)
+    {
+        requireNonNull(dynamicFilterFuture, "dynamicFilterFuture is null");
+        SourcePartitionedScheduler sourcePartitionedScheduler = new SourcePartitionedScheduler(stage, partitionedNode, splitSource, splitPlacementPolicy, splitBatchSize, false, dynamicFilter);
         sourcePartitionedScheduler.startLifespan(Lifespan.taskWide(), NOT_PARTITIONED);
 
         return new StageScheduler() {
+            private ListenableFuture<?> dynamicFilterBlocked;
+
             @Override
             public ScheduleResult schedule()
             {
+                if (dynamicFilterBlocked == null) {
+                    dynamicFilterBlocked = requireNonNull(dynamicFilterFuture.get(), "dynamicFilterFuture is null");
+                }
+                if (!dynamicFilterBlocked.isDone()) {
+                    return ScheduleResult.blocked(false, ImmutableSet.of(), dynamicFilterBlocked, WAITING_FOR_SOURCE, 0);
+                }
                 ScheduleResult scheduleResult = sourcePartitionedScheduler.schedule();
                 sourcePartitionedScheduler.drainCompletelyScheduledLifespans();
                 return scheduleResult;
@@ -176,7 +212,7 @@ public class SourcePartitionedScheduler
             int splitBatchSize,
             boolean groupedExecution)
     {
-        return new SourcePartitionedScheduler(stage, partitionedNode, splitSource, splitPlacementPolicy, splitBatchSize, groupedExecution);
+        return new SourcePartitionedScheduler(stage, partitionedNode, splitSource, splitPlacementPolicy, splitBatchSize, groupedExecution, TupleDomain::all);
     }
 
     @Override
@@ -450,13 +486,16 @@ public class SourcePartitionedScheduler
     {
         ImmutableSet.Builder<RemoteTask> newTasks = ImmutableSet.builder();
 
+        // the connectors of the workers may use the filters of joins in other stages to skip rows
+        TupleDomain<ColumnHandle> dynamicFilterPredicate = splitAssignment.isEmpty() ? TupleDomain.all() : dynamicFilter.get();
+
         ImmutableSet<InternalNode> nodes = ImmutableSet.<InternalNode>builder()
                 .addAll(splitAssignment.keySet())
                 .addAll(noMoreSplitsNotification.keySet())
                 .build();
         for (InternalNode node : nodes) {
             ImmutableMultimap<PlanNodeId, Split> splits = ImmutableMultimap.<PlanNodeId, Split>builder()
-                    .putAll(partitionedNode, splitAssignment.get(node))
+                    .putAll(partitionedNode, attachDynamicFilter(splitAssignment.get(node), dynamicFilterPredicate))
                     .build();
 
             ImmutableMultimap.Builder<PlanNodeId, Lifespan> noMoreSplits = ImmutableMultimap.builder();
@@ -472,6 +511,21 @@ public class SourcePartitionedScheduler
         return newTasks.build();
     }
 
+    private static Iterable<Split> attachDynamicFilter(Collection<Split> splits, TupleDomain<ColumnHandle> dynamicFilterPredicate)
+    {
+        if (dynamicFilterPredicate.isAll()) {
+            return splits;
+        }
+        return splits.stream()
+                .map(split -> new Split(
+                        split.getConnectorId(),
+                        split.getTransactionHandle(),
+                        split.getConnectorSplit(),
+                        split.getLifespan(),
+                        split.getSplitContext().withDynamicFilterPredicate(dynamicFilterPredicate)))
+                .collect(toImmutableList());
+    }
+
     private Set<RemoteTask> finalizeTaskCreationIfNecessary()
     {
         // only lock down tasks if there is a sub stage that could block waiting for this stage to create all tasks
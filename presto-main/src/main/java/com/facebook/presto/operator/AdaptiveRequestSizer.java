@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Sizes the requests of an {@link ExchangeClient} from the responses of every upstream task on its own, rather than
+ * from the average response of all of them.
+ * <p>
+ * A response that fills at least half of the requested size means the task has more output buffered than it was asked
+ * for, so its next request asks for twice as much, up to the max response size. Otherwise the task produced the response
+ * over the round trip of the request, and its next request asks for twice its average response size, which is its
+ * throughput times the latency of its requests. The tasks that produce get large requests and the idle ones get small
+ * ones, so that the buffer of the exchange goes to the former.
+ */
+@NotThreadSafe
+public class AdaptiveRequestSizer
+{
+    private final long minRequestSizeInBytes;
+    private final long maxRequestSizeInBytes;
+    private final double alpha;
+
+    private final Map<URI, ClientState> clients = new HashMap<>();
+
+    private int pendingRequests;
+    private long pendingRequestedBytes;
+    private long pendingExpectedBytes;
+
+    public AdaptiveRequestSizer(long minRequestSizeInBytes, long maxRequestSizeInBytes, double alpha)
+    {
+        checkArgument(minRequestSizeInBytes > 0, "minRequestSizeInBytes must be greater than zero");
+        checkArgument(alpha >= 0.0 && alpha <= 1.0, "alpha must be between 0 and 1: %s", alpha);
+        this.minRequestSizeInBytes = min(minRequestSizeInBytes, maxRequestSizeInBytes);
+        this.maxRequestSizeInBytes = maxRequestSizeInBytes;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Records a request to the client and returns the max response size to request.
+     */
+    public long startRequest(URI location)
+    {
+        ClientState client = clients.computeIfAbsent(location, ignored -> new ClientState(min(minRequestSizeInBytes * 2, maxRequestSizeInBytes), minRequestSizeInBytes));
+        finishRequest(client);
+
+        client.requestedBytes = client.nextRequestSizeInBytes;
+        client.expectedBytes = max((long) client.responseSize.get(), 1);
+        pendingRequests++;
+        pendingRequestedBytes += client.requestedBytes;
+        pendingExpectedBytes += client.expectedBytes;
+        return client.requestedBytes;
+    }
+
+    /**
+     * Adjusts the size of the next request to the client to its response to the pending request.
+     */
+    public void responseReceived(URI location, long responseSizeInBytes)
+    {
+        ClientState client = clients.get(location);
+        if (client == null || client.requestedBytes == 0) {
+            return;
+        }
+
+        long requestedBytes = client.requestedBytes;
+        finishRequest(client);
+        client.responseSize.update(responseSizeInBytes);
+
+        long nextRequestSizeInBytes;
+        if (responseSizeInBytes * 2 >= requestedBytes) {
+            nextRequestSizeInBytes = requestedBytes * 2;
+        }
+        else {
+            nextRequestSizeInBytes = (long) (client.responseSize.get() * 2);
+        }
+        client.nextRequestSizeInBytes = min(max(nextRequestSizeInBytes, minRequestSizeInBytes), maxRequestSizeInBytes);
+    }
+
+    /**
+     * Records that the pending request to the client, if any, is over, whether or not there was a response.
+     */
+    public void requestFinished(URI location)
+    {
+        ClientState client = clients.get(location);
+        if (client != null) {
+            finishRequest(client);
+        }
+    }
+
+    public int getPendingRequests()
+    {
+        return pendingRequests;
+    }
+
+    public long getPendingRequestedBytes()
+    {
+        return pendingRequestedBytes;
+    }
+
+    /**
+     * Returns the number of bytes the pending requests are expected to return, going by the average response size of each client.
+     */
+    public long getPendingExpectedBytes()
+    {
+        return pendingExpectedBytes;
+    }
+
+    @VisibleForTesting
+    long getNextRequestSizeInBytes(URI location)
+    {
+        ClientState client = clients.get(location);
+        return client == null ? min(minRequestSizeInBytes * 2, maxRequestSizeInBytes) : client.nextRequestSizeInBytes;
+    }
+
+    private void finishRequest(ClientState client)
+    {
+        if (client.requestedBytes == 0) {
+            return;
+        }
+        pendingRequests--;
+        pendingRequestedBytes -= client.requestedBytes;
+        pendingExpectedBytes -= client.expectedBytes;
+        client.requestedBytes = 0;
+        client.expectedBytes = 0;
+    }
+
+    private class ClientState
+    {
+        private final ExponentialMovingAverage responseSize;
+
+        private long nextRequestSizeInBytes;
+
+        // The requested and the expected size of the pending request, or 0 if there is none
+        private long requestedBytes;
+        private long expectedBytes;
+
+        public ClientState(long nextRequestSizeInBytes, long initialResponseSizeInBytes)
+        {
+            this.nextRequestSizeInBytes = nextRequestSizeInBytes;
+            this.responseSize = new ExponentialMovingAverage(alpha, initialResponseSizeInBytes);
+        }
+    }
+
+    private static class ExponentialMovingAverage
+    {
+        private final double alpha;
+        private double value;
+
+        public ExponentialMovingAverage(double alpha, double initialValue)
+        {
+            this.alpha = alpha;
+            this.value = initialValue;
+        }
+
+        public void update(double newValue)
+        {
+            value += alpha * (newValue - value);
+        }
+
+        public double get()
+        {
+            return value;
+        }
+    }
+}
@@ -103,7 +103,7 @@ public class AggregationOperator
         requireNonNull(accumulatorFactories, "accumulatorFactories is null");
         ImmutableList.Builder<Aggregator> builder = ImmutableList.builder();
         for (AccumulatorFactory accumulatorFactory : accumulatorFactories) {
-            builder.add(new Aggregator(accumulatorFactory, step));
+            builder.add(new Aggregator(accumulatorFactory, step, useSystemMemory ? systemMemoryContext : userMemoryContext));
         }
         aggregates = builder.build();
     }
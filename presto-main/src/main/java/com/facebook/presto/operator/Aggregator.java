@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.aggregation.Accumulator;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.spi.plan.AggregationNode;
@@ -28,11 +29,11 @@ class Aggregator
     private final AggregationNode.Step step;
     private final int intermediateChannel;
 
-    Aggregator(AccumulatorFactory accumulatorFactory, AggregationNode.Step step)
+    Aggregator(AccumulatorFactory accumulatorFactory, AggregationNode.Step step, LocalMemoryContext sortMemoryContext)
     {
         if (step.isInputRaw()) {
             intermediateChannel = -1;
-            aggregation = accumulatorFactory.createAccumulator();
+            aggregation = accumulatorFactory.createAccumulator(sortMemoryContext);
         }
         else {
             checkArgument(accumulatorFactory.getInputChannels().size() == 1, "expected 1 input channel for intermediate aggregation");
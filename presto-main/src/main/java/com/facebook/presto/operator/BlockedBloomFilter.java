@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static it.unimi.dsi.fastutil.HashCommon.nextPowerOfTwo;
+
+/**
+ * Bloom filter over the raw hashes of the join keys of a lookup source. The bits of a key are all
+ * set in one 512 bit block, one bit in each of the 8 words of the block, so a lookup touches a
+ * single cache line.
+ */
+public final class BlockedBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BlockedBloomFilter.class).instanceSize();
+
+    private static final int WORDS_PER_BLOCK = 8;
+    private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Long.SIZE;
+    private static final int BITS_PER_ENTRY = 16;
+
+    // odd multipliers used to derive the bit of every word of the block from the hash of a key
+    private static final int[] SALTS = {
+            0x47b6137b,
+            0x44974d91,
+            0x8824ad5b,
+            0xa2b7289d,
+            0x705495c7,
+            0x2df1424b,
+            0x9efc4947,
+            0x5c6bfb31};
+
+    private final long[] words;
+    private final int blockMask;
+
+    public BlockedBloomFilter(int expectedEntries)
+    {
+        long bitCount = Math.max(1L, (long) expectedEntries) * BITS_PER_ENTRY;
+        int blockCount = (int) nextPowerOfTwo((bitCount + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK);
+        this.words = new long[blockCount * WORDS_PER_BLOCK];
+        this.blockMask = blockCount - 1;
+    }
+
+    public void add(long rawHash)
+    {
+        long hash = murmurHash3(rawHash);
+        int blockOffset = getBlockOffset(hash);
+        int key = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            words[blockOffset + i] |= getBit(key, i);
+        }
+    }
+
+    public boolean mightContain(long rawHash)
+    {
+        long hash = murmurHash3(rawHash);
+        int blockOffset = getBlockOffset(hash);
+        int key = (int) hash;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            if ((words[blockOffset + i] & getBit(key, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(words);
+    }
+
+    private int getBlockOffset(long hash)
+    {
+        return ((int) (hash >>> 32) & blockMask) * WORDS_PER_BLOCK;
+    }
+
+    private static long getBit(int key, int word)
+    {
+        // the top 6 bits of the product select one of the 64 bits of the word
+        return 1L << ((key * SALTS[word]) >>> 26);
+    }
+}
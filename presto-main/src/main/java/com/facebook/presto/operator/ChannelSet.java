@@ -20,10 +20,12 @@ import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isFlatGroupByHashEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.facebook.presto.type.UnknownType.UNKNOWN;
 import static java.util.Objects.requireNonNull;
@@ -81,6 +83,11 @@ public class ChannelSet
         private final LocalMemoryContext localMemoryContext;
 
         public ChannelSetBuilder(Type type, Optional<Integer> hashChannel, int expectedPositions, OperatorContext operatorContext, JoinCompiler joinCompiler)
+        {
+            this(type, hashChannel, expectedPositions, operatorContext, operatorContext.localUserMemoryContext(), joinCompiler);
+        }
+
+        public ChannelSetBuilder(Type type, Optional<Integer> hashChannel, int expectedPositions, OperatorContext operatorContext, LocalMemoryContext localMemoryContext, JoinCompiler joinCompiler)
         {
             List<Type> types = ImmutableList.of(type);
             this.hash = createGroupByHash(
@@ -89,16 +96,30 @@ public class ChannelSet
                     hashChannel,
                     expectedPositions,
                     isDictionaryAggregationEnabled(operatorContext.getSession()),
+                    isFlatGroupByHashEnabled(operatorContext.getSession()),
                     joinCompiler,
                     this::updateMemoryReservation);
             this.nullBlockPage = new Page(type.createBlockBuilder(null, 1, UNKNOWN.getFixedSize()).appendNull().build());
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
-            this.localMemoryContext = operatorContext.localUserMemoryContext();
+            this.localMemoryContext = requireNonNull(localMemoryContext, "localMemoryContext is null");
         }
 
         public ChannelSet build()
         {
-            return new ChannelSet(hash, hash.contains(0, nullBlockPage, HASH_CHANNELS), HASH_CHANNELS);
+            return new ChannelSet(hash, containsNull(), HASH_CHANNELS);
+        }
+
+        /**
+         * Returns the values added so far, see {@link MarkDistinctHash#getDistinctValues()}.
+         */
+        public Iterator<Page> getValues()
+        {
+            return MarkDistinctHash.getDistinctValues(hash, 1);
+        }
+
+        public boolean containsNull()
+        {
+            return hash.contains(0, nullBlockPage, HASH_CHANNELS);
         }
 
         public long getEstimatedSize()
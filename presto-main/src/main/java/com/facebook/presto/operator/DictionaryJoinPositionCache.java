@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.Arrays;
+
+/**
+ * Join positions of the entries of the dictionary of a dictionary encoded probe key, looked up once per
+ * entry and kept for as long as the following pages share the dictionary and the lookup source.
+ */
+@NotThreadSafe
+public class DictionaryJoinPositionCache
+{
+    // join positions are never below -1
+    public static final long UNKNOWN_JOIN_POSITION = -2;
+
+    @Nullable
+    private LookupSource lastLookupSource;
+    @Nullable
+    private DictionaryId lastDictionaryId;
+    @Nullable
+    private Page lastDictionaryPage;
+    @Nullable
+    private long[] lastJoinPositions;
+    private long lastDictionaryUsageCount;
+
+    /**
+     * Returns the join positions of the dictionary entries of the block, {@link #UNKNOWN_JOIN_POSITION} for the
+     * entries that were not looked up yet, or null if the rows of the block should be looked up one by one.
+     */
+    @Nullable
+    public long[] getJoinPositions(LookupSource lookupSource, DictionaryBlock block)
+    {
+        Block dictionary = block.getDictionary();
+        if (lookupSource != lastLookupSource || !block.getDictionarySourceId().equals(lastDictionaryId) || lastDictionaryPage.getPositionCount() != dictionary.getPositionCount()) {
+            // Cache the dictionary if:
+            //   this is the first block
+            //   there is only one entry in the dictionary
+            //   the last dictionary was used for more positions than were in the dictionary
+            boolean shouldCacheDictionary = lastDictionaryPage == null || dictionary.getPositionCount() == 1 || lastDictionaryUsageCount >= lastDictionaryPage.getPositionCount();
+
+            // record the usage count regardless of the caching choice, so we have stats for next time
+            lastDictionaryUsageCount = 0;
+            lastLookupSource = lookupSource;
+            lastDictionaryId = block.getDictionarySourceId();
+            lastDictionaryPage = new Page(dictionary);
+            lastJoinPositions = null;
+
+            if (shouldCacheDictionary && lookupSource.isJoinPositionDeterminedByKeys()) {
+                lastJoinPositions = new long[dictionary.getPositionCount()];
+                Arrays.fill(lastJoinPositions, UNKNOWN_JOIN_POSITION);
+            }
+        }
+        lastDictionaryUsageCount += block.getPositionCount();
+        return lastJoinPositions;
+    }
+
+    /**
+     * Looks up the dictionary entry and records its join position in the array returned by {@link #getJoinPositions}.
+     */
+    public long lookup(LookupSource lookupSource, int dictionaryId)
+    {
+        long joinPosition = lookupSource.getJoinPosition(dictionaryId, lastDictionaryPage, lastDictionaryPage);
+        lastJoinPositions[dictionaryId] = joinPosition;
+        return joinPosition;
+    }
+}
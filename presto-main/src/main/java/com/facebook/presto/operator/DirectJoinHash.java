@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import java.util.Optional;
+
+import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Lookup source for a single integer join key with a dense range of values. The first build position
+ * of every key is stored at the offset of the key from the smallest key, so a probe is a bounds check
+ * and an array load instead of hashing the key and walking a hash table.
+ */
+public final class DirectJoinHash
+        implements LookupSource
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DirectJoinHash.class).instanceSize();
+
+    private final PagesHashStrategy pagesHashStrategy;
+    private final LongArrayList addresses;
+    private final Type keyType;
+    private final long minKey;
+    // the first build position of each key, or -1
+    private final int[] positionByKey;
+    private final long sizeInBytes;
+
+    @Nullable
+    private final JoinFilterFunction filterFunction;
+
+    @Nullable
+    private final PositionLinks positionLinks;
+
+    public DirectJoinHash(
+            PagesHashStrategy pagesHashStrategy,
+            LongArrayList addresses,
+            Type keyType,
+            long minKey,
+            int[] positionByKey,
+            long sizeInBytes,
+            Optional<JoinFilterFunction> filterFunction,
+            Optional<PositionLinks> positionLinks)
+    {
+        this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
+        this.addresses = requireNonNull(addresses, "addresses is null");
+        this.keyType = requireNonNull(keyType, "keyType is null");
+        this.minKey = minKey;
+        this.positionByKey = requireNonNull(positionByKey, "positionByKey is null");
+        this.sizeInBytes = sizeInBytes;
+        this.filterFunction = requireNonNull(filterFunction, "filterFunction can not be null").orElse(null);
+        this.positionLinks = requireNonNull(positionLinks, "positionLinks is null").orElse(null);
+    }
+
+    @Override
+    public boolean isEmpty()
+    {
+        return getJoinPositionCount() == 0;
+    }
+
+    @Override
+    public int getChannelCount()
+    {
+        return pagesHashStrategy.getChannelCount();
+    }
+
+    @Override
+    public long getJoinPositionCount()
+    {
+        return addresses.size();
+    }
+
+    @Override
+    public long getInMemorySizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeInBytes + (positionLinks == null ? 0 : positionLinks.getSizeInBytes());
+    }
+
+    @Override
+    public long joinPositionWithinPartition(long joinPosition)
+    {
+        return joinPosition;
+    }
+
+    @Override
+    public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage, long rawHash)
+    {
+        // the key itself is the address, the hash is not needed
+        return getJoinPosition(position, hashChannelsPage, allChannelsPage);
+    }
+
+    @Override
+    public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage)
+    {
+        Block keyBlock = hashChannelsPage.getBlock(0);
+        if (keyBlock.isNull(position)) {
+            return -1;
+        }
+        long offset = keyType.getLong(keyBlock, position) - minKey;
+        // a key below the smallest key wraps around to a huge unsigned offset
+        if (Long.compareUnsigned(offset, positionByKey.length) >= 0) {
+            return -1;
+        }
+        int joinPosition = positionByKey[(int) offset];
+        if (joinPosition == -1 || positionLinks == null) {
+            return joinPosition;
+        }
+        return positionLinks.start(joinPosition, position, allChannelsPage);
+    }
+
+    @Override
+    public boolean isJoinPositionDeterminedByKeys()
+    {
+        return positionLinks == null || positionLinks instanceof ArrayPositionLinks;
+    }
+
+    @Override
+    public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+    {
+        if (positionLinks == null) {
+            return -1;
+        }
+        return positionLinks.next(toIntExact(currentJoinPosition), probePosition, allProbeChannelsPage);
+    }
+
+    @Override
+    public boolean isJoinPositionEligible(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+    {
+        return filterFunction == null || filterFunction.filter(toIntExact(currentJoinPosition), probePosition, allProbeChannelsPage);
+    }
+
+    @Override
+    public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        long pageAddress = addresses.getLong(toIntExact(position));
+        pagesHashStrategy.appendTo(decodeSliceIndex(pageAddress), decodePosition(pageAddress), pageBuilder, outputChannelOffset);
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.operator.JoinUtils.channelsToPages;
+import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static io.airlift.slice.SizeOf.sizeOfIntArray;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Builds a {@link DirectJoinHash} when the build side is joined on a single integer channel whose
+ * values are dense, i.e. the range of the keys is at most a small multiple of the number of rows.
+ */
+public class DirectJoinHashSupplier
+        implements LookupSourceSupplier
+{
+    // the key array holds at most this many slots per build row
+    private static final int MAX_RANGE_TO_ROWS_RATIO = 4;
+
+    private final Session session;
+    private final PagesHashStrategy pagesHashStrategy;
+    private final LongArrayList addresses;
+    private final List<Page> pages;
+    private final Type keyType;
+    private final long minKey;
+    private final int[] positionByKey;
+    private final Optional<PositionLinks.Factory> positionLinks;
+    private final Optional<JoinFilterFunctionFactory> filterFunctionFactory;
+    private final List<JoinFilterFunctionFactory> searchFunctionFactories;
+
+    private DirectJoinHashSupplier(
+            Session session,
+            PagesHashStrategy pagesHashStrategy,
+            LongArrayList addresses,
+            List<List<Block>> channels,
+            int keyChannel,
+            Type keyType,
+            long minKey,
+            int keyCount,
+            Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+            List<JoinFilterFunctionFactory> searchFunctionFactories)
+    {
+        this.session = requireNonNull(session, "session is null");
+        this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
+        this.addresses = requireNonNull(addresses, "addresses is null");
+        this.keyType = requireNonNull(keyType, "keyType is null");
+        this.minKey = minKey;
+        this.filterFunctionFactory = requireNonNull(filterFunctionFactory, "filterFunctionFactory is null");
+        this.searchFunctionFactories = ImmutableList.copyOf(searchFunctionFactories);
+        requireNonNull(channels, "channels is null");
+
+        List<Block> keyBlocks = channels.get(keyChannel);
+        PositionLinks.FactoryBuilder positionLinksFactoryBuilder = ArrayPositionLinks.builder(addresses.size());
+        positionByKey = new int[keyCount];
+        Arrays.fill(positionByKey, -1);
+        for (int position = 0; position < addresses.size(); position++) {
+            long address = addresses.getLong(position);
+            Block block = keyBlocks.get(decodeSliceIndex(address));
+            int blockPosition = decodePosition(address);
+            if (block.isNull(blockPosition)) {
+                continue;
+            }
+            int offset = (int) (keyType.getLong(block, blockPosition) - minKey);
+            int joinPosition = position;
+            if (positionByKey[offset] != -1) {
+                // same as PagesHash, the new position becomes the head of the chain of positions with this key
+                joinPosition = positionLinksFactoryBuilder.link(position, positionByKey[offset]);
+            }
+            positionByKey[offset] = joinPosition;
+        }
+
+        this.pages = channelsToPages(channels);
+        this.positionLinks = positionLinksFactoryBuilder.isEmpty() ? Optional.empty() : Optional.of(positionLinksFactoryBuilder.build());
+    }
+
+    /**
+     * Returns a supplier of a direct-addressed lookup source, or empty when the join is not on a single
+     * integer channel, or the keys are too sparse to be indexed by an array.
+     */
+    public static Optional<LookupSourceSupplier> tryCreate(
+            Session session,
+            Supplier<PagesHashStrategy> pagesHashStrategy,
+            LongArrayList addresses,
+            List<Type> types,
+            List<List<Block>> channels,
+            List<Integer> joinChannels,
+            Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+            Optional<Integer> sortChannel,
+            List<JoinFilterFunctionFactory> searchFunctionFactories)
+    {
+        if (!isSupported(types, joinChannels, sortChannel) || addresses.isEmpty()) {
+            return Optional.empty();
+        }
+        int keyChannel = joinChannels.get(0);
+        Type keyType = types.get(keyChannel);
+
+        List<Block> keyBlocks = channels.get(keyChannel);
+        long minKey = Long.MAX_VALUE;
+        long maxKey = Long.MIN_VALUE;
+        for (int position = 0; position < addresses.size(); position++) {
+            long address = addresses.getLong(position);
+            Block block = keyBlocks.get(decodeSliceIndex(address));
+            int blockPosition = decodePosition(address);
+            if (!block.isNull(blockPosition)) {
+                long key = keyType.getLong(block, blockPosition);
+                minKey = Math.min(minKey, key);
+                maxKey = Math.max(maxKey, key);
+            }
+        }
+        if (minKey > maxKey) {
+            // all keys are null
+            return Optional.empty();
+        }
+
+        // a negative range means the subtraction overflowed
+        long range = maxKey - minKey;
+        if (range < 0 || range >= Integer.MAX_VALUE || range >= (long) MAX_RANGE_TO_ROWS_RATIO * addresses.size()) {
+            return Optional.empty();
+        }
+        return Optional.of(new DirectJoinHashSupplier(
+                session,
+                pagesHashStrategy.get(),
+                addresses,
+                channels,
+                keyChannel,
+                keyType,
+                minKey,
+                (int) range + 1,
+                filterFunctionFactory,
+                searchFunctionFactories));
+    }
+
+    /**
+     * Returns true if a join on the given channels may be served by a direct-addressed lookup source,
+     * depending on the density of the keys.
+     */
+    public static boolean isSupported(List<Type> types, List<Integer> joinChannels, Optional<Integer> sortChannel)
+    {
+        if (joinChannels.size() != 1 || sortChannel.isPresent()) {
+            return false;
+        }
+        Type type = types.get(joinChannels.get(0));
+        return type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT);
+    }
+
+    /**
+     * Returns the upper bound of the size of the key array built for the given number of rows.
+     */
+    public static long getMaxKeyArraySizeInBytes(int positionCount)
+    {
+        return sizeOfIntArray(toIntExact(Math.min((long) MAX_RANGE_TO_ROWS_RATIO * positionCount, Integer.MAX_VALUE)));
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return 0;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return 0;
+    }
+
+    @Override
+    public long checksum()
+    {
+        return positionLinks.map(PositionLinks.Factory::checksum).orElse(0L);
+    }
+
+    @Override
+    public DirectJoinHash get()
+    {
+        // We need to create new JoinFilterFunction per each thread using it, since those functions
+        // are not thread safe...
+        Optional<JoinFilterFunction> filterFunction =
+                filterFunctionFactory.map(factory -> factory.create(session.getSqlFunctionProperties(), addresses, pages));
+        return new DirectJoinHash(
+                pagesHashStrategy,
+                addresses,
+                keyType,
+                minKey,
+                positionByKey,
+                sizeOf(addresses.elements()) + pagesHashStrategy.getSizeInBytes() + sizeOf(positionByKey),
+                filterFunction,
+                positionLinks.map(links -> {
+                    List<JoinFilterFunction> searchFunctions = searchFunctionFactories.stream()
+                            .map(factory -> factory.create(session.getSqlFunctionProperties(), addresses, pages))
+                            .collect(toImmutableList());
+                    return links.create(searchFunctions);
+                }));
+    }
+}
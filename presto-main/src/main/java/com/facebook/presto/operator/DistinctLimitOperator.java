@@ -18,20 +18,29 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isFlatGroupByHashEnabled;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class DistinctLimitOperator
@@ -48,6 +57,8 @@ public class DistinctLimitOperator
         private final Optional<Integer> hashChannel;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public DistinctLimitOperatorFactory(
                 int operatorId,
@@ -56,7 +67,9 @@ public class DistinctLimitOperator
                 List<Integer> distinctChannels,
                 long limit,
                 Optional<Integer> hashChannel,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -67,6 +80,8 @@ public class DistinctLimitOperator
             this.limit = limit;
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -77,7 +92,7 @@ public class DistinctLimitOperator
             List<Type> distinctTypes = distinctChannels.stream()
                     .map(sourceTypes::get)
                     .collect(toImmutableList());
-            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler);
+            return new DistinctLimitOperator(operatorContext, sourceTypes, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -89,12 +104,13 @@ public class DistinctLimitOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler);
+            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private Page inputPage;
     private long remainingLimit;
@@ -102,18 +118,47 @@ public class DistinctLimitOperator
     private boolean finishing;
 
     private final List<Integer> outputChannels;
-    private final GroupByHash groupByHash;
+    // null once the distinct values have been spilled
+    private GroupByHash groupByHash;
     private long nextDistinctId;
 
     // for yield when memory is not available
     private GroupByIdBlock groupByIds;
     private Work<GroupByIdBlock> unfinishedWork;
 
-    public DistinctLimitOperator(OperatorContext operatorContext, List<Integer> distinctChannels, List<Type> distinctTypes, long limit, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    private final List<Type> sourceTypes;
+    private final List<Type> distinctTypes;
+    private final int[] distinctChannels;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+
+    private Optional<MarkDistinctSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private Iterator<Page> unspilledPages;
+
+    public DistinctLimitOperator(
+            OperatorContext operatorContext,
+            List<Type> sourceTypes,
+            List<Integer> distinctChannels,
+            List<Type> distinctTypes,
+            long limit,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+        this.sourceTypes = ImmutableList.copyOf(requireNonNull(sourceTypes, "sourceTypes is null"));
         requireNonNull(distinctChannels, "distinctChannels is null");
+        this.distinctTypes = ImmutableList.copyOf(requireNonNull(distinctTypes, "distinctTypes is null"));
+        this.distinctChannels = Ints.toArray(distinctChannels);
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         checkArgument(limit >= 0, "limit must be at least zero");
         requireNonNull(hashChannel, "hashChannel is null");
 
@@ -128,6 +173,7 @@ public class DistinctLimitOperator
                 hashChannel,
                 Math.min((int) limit, 10_000),
                 isDictionaryAggregationEnabled(operatorContext.getSession()),
+                isFlatGroupByHashEnabled(operatorContext.getSession()),
                 joinCompiler,
                 this::updateMemoryReservation);
         remainingLimit = limit;
@@ -148,9 +194,18 @@ public class DistinctLimitOperator
     @Override
     public boolean isFinished()
     {
+        if (spiller.isPresent()) {
+            return remainingLimit == 0 || (finishing && unspilledPages != null && !unspilledPages.hasNext());
+        }
         return !hasUnfinishedInput() && (finishing || remainingLimit == 0);
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
+    }
+
     @Override
     public boolean needsInput()
     {
@@ -161,6 +216,13 @@ public class DistinctLimitOperator
     public void addInput(Page page)
     {
         checkState(needsInput());
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (spiller.isPresent()) {
+            // distinct values are found when the spilled partitions are read back
+            spillInProgress = spiller.get().spillInput(page);
+            return;
+        }
 
         inputPage = page;
         unfinishedWork = groupByHash.getGroupIds(page);
@@ -171,6 +233,10 @@ public class DistinctLimitOperator
     @Override
     public Page getOutput()
     {
+        if (spiller.isPresent()) {
+            return getSpilledOutput();
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             return null;
         }
@@ -216,6 +282,84 @@ public class DistinctLimitOperator
         return result;
     }
 
+    private Page getSpilledOutput()
+    {
+        if (!finishing || remainingLimit == 0) {
+            return null;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
+        if (unspilledPages == null) {
+            unspilledPages = spiller.get().unspill();
+        }
+        if (!unspilledPages.hasNext()) {
+            return null;
+        }
+
+        // the last channel marks the first occurrence of each distinct value
+        Page page = unspilledPages.next();
+        Block distinctMask = page.getBlock(page.getChannelCount() - 1);
+        int distinctCount = 0;
+        int[] distinctPositions = new int[page.getPositionCount()];
+        for (int position = 0; position < page.getPositionCount() && remainingLimit > 0; position++) {
+            if (BOOLEAN.getBoolean(distinctMask, position)) {
+                distinctPositions[distinctCount] = position;
+                distinctCount++;
+                remainingLimit--;
+            }
+        }
+        if (distinctCount == 0) {
+            return null;
+        }
+        int outputPositions = distinctCount;
+        Block[] blocks = outputChannels.stream()
+                .map(page::getBlock)
+                .map(block -> block.getPositions(distinctPositions, 0, outputPositions))
+                .toArray(Block[]::new);
+        return new Page(distinctCount, blocks);
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+        if (finishing || remainingLimit == 0 || spiller.isPresent() || hasUnfinishedInput()) {
+            // stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        spiller = Optional.of(new MarkDistinctSpiller(sourceTypes, distinctTypes, distinctChannels, partitioningSpillerFactory, operatorContext, joinCompiler));
+        spillInProgress = spiller.get().spillDistinctValues(MarkDistinctHash.getDistinctValues(groupByHash, distinctTypes.size()));
+        finishMemoryRevoke = Optional.of(() -> {
+            groupByHash = null;
+            updateMemoryReservation();
+        });
+        return spillInProgress;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
+    @Override
+    public void close()
+    {
+        localUserMemoryContext.setBytes(0);
+        localRevocableMemoryContext.setBytes(0);
+        if (spiller.isPresent()) {
+            try {
+                spiller.get().close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     private boolean processUnfinishedWork()
     {
         verify(unfinishedWork != null);
@@ -244,7 +388,14 @@ public class DistinctLimitOperator
     {
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(groupByHash.getEstimatedSize());
+        long hashSize = groupByHash == null ? 0 : groupByHash.getEstimatedSize();
+        if (spillEnabled) {
+            // the distinct values are revocable until they have been spilled
+            localRevocableMemoryContext.setBytes(hashSize);
+        }
+        else {
+            localUserMemoryContext.setBytes(hashSize);
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
@@ -0,0 +1,611 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LazyBlock;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.CharType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.VarbinaryType;
+import com.facebook.presto.common.type.VarcharType;
+import com.facebook.presto.metadata.Split;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.RecordCursor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.Slice;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.common.predicate.Marker.Bound.EXACTLY;
+import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Applies the dynamic filters collected by the joins above a table scan to the scanned data.
+ * An instance is shared by all the scan operators of a pipeline; the predicate only becomes
+ * effective once the build side of the corresponding join has finished. The ranges published by
+ * the TopNs above the scan are applied as soon as they are known, and narrow as the TopNs progress.
+ */
+@ThreadSafe
+public class DynamicFilter
+{
+    private final List<Source> sources;
+    private final List<TopNSource> topNSources;
+    private final List<ColumnHandle> columns;
+
+    private volatile State state = new State(0, 0, ImmutableMap.of(), false);
+
+    public DynamicFilter(List<Source> sources, List<ColumnHandle> columns)
+    {
+        this(sources, ImmutableList.of(), columns);
+    }
+
+    public DynamicFilter(List<Source> sources, List<TopNSource> topNSources, List<ColumnHandle> columns)
+    {
+        this.sources = ImmutableList.copyOf(requireNonNull(sources, "sources is null"));
+        this.topNSources = ImmutableList.copyOf(requireNonNull(topNSources, "topNSources is null"));
+        checkArgument(!sources.isEmpty() || !topNSources.isEmpty(), "sources is empty");
+        this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
+    }
+
+    public boolean isComplete()
+    {
+        return getState().completedSources == sources.size();
+    }
+
+    /**
+     * Returns the predicate on the scanned columns that is known at this point.
+     */
+    public TupleDomain<ColumnHandle> getCurrentPredicate()
+    {
+        State state = getState();
+        if (state.none) {
+            return TupleDomain.none();
+        }
+        return TupleDomain.withColumnDomains(state.domains.entrySet().stream()
+                .collect(ImmutableMap.toImmutableMap(entry -> columns.get(entry.getKey()), Map.Entry::getValue)));
+    }
+
+    /**
+     * Passes the current predicate to the connector with the split, narrowing the predicate the
+     * coordinator may have attached already. The predicate is advisory, connectors are not
+     * required to apply it.
+     */
+    public Split attachTo(Split split)
+    {
+        TupleDomain<ColumnHandle> predicate = getCurrentPredicate();
+        if (predicate.isAll()) {
+            return split;
+        }
+        return new Split(
+                split.getConnectorId(),
+                split.getTransactionHandle(),
+                split.getConnectorSplit(),
+                split.getLifespan(),
+                split.getSplitContext().withDynamicFilterPredicate(predicate));
+    }
+
+    /**
+     * Removes the rows not matching the current predicate from the page.
+     * Columns that are not filtered on are kept lazy.
+     */
+    public Page filter(Page page)
+    {
+        State state = getState();
+        int positionCount = page.getPositionCount();
+        if (state.none) {
+            return page.getRegion(0, 0);
+        }
+        if (state.filters.isEmpty() || positionCount == 0) {
+            return page;
+        }
+
+        int[] positions = null;
+        int retainedCount = positionCount;
+        for (ChannelFilter filter : state.filters) {
+            Block block = page.getBlock(filter.getChannel()).getLoadedBlock();
+            int count = 0;
+            if (positions == null) {
+                positions = new int[positionCount];
+                for (int position = 0; position < positionCount; position++) {
+                    if (filter.test(block, position)) {
+                        positions[count++] = position;
+                    }
+                }
+            }
+            else {
+                for (int i = 0; i < retainedCount; i++) {
+                    if (filter.test(block, positions[i])) {
+                        positions[count++] = positions[i];
+                    }
+                }
+            }
+            retainedCount = count;
+            if (retainedCount == 0) {
+                return page.getRegion(0, 0);
+            }
+        }
+
+        if (retainedCount == positionCount) {
+            return page;
+        }
+
+        int[] retainedPositions = positions;
+        int length = retainedCount;
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            Block block = page.getBlock(channel);
+            if (block instanceof LazyBlock && !((LazyBlock) block).isLoaded()) {
+                LazyBlock lazyBlock = (LazyBlock) block;
+                blocks[channel] = new LazyBlock(length, filtered -> filtered.setBlock(lazyBlock.getLoadedBlock().getPositions(retainedPositions, 0, length)));
+            }
+            else {
+                blocks[channel] = block.getPositions(retainedPositions, 0, length);
+            }
+        }
+        return new Page(length, blocks);
+    }
+
+    /**
+     * Skips the rows not matching the current predicate while the cursor is advanced.
+     */
+    public RecordCursor filter(RecordCursor cursor, LongConsumer prunedPositionsConsumer)
+    {
+        return new FilteringRecordCursor(cursor, prunedPositionsConsumer);
+    }
+
+    private State getState()
+    {
+        State current = state;
+        long topNVersion = getTopNVersion();
+        if (current.completedSources == sources.size() && current.topNVersion == topNVersion) {
+            return current;
+        }
+
+        int completedSources = 0;
+        for (Source source : sources) {
+            if (source.getFilter().isComplete()) {
+                completedSources++;
+            }
+        }
+        if (completedSources == current.completedSources && topNVersion == current.topNVersion) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (state.completedSources < completedSources || state.topNVersion < topNVersion) {
+                state = createState();
+            }
+            return state;
+        }
+    }
+
+    // the ranges of the TopNs only narrow, so the sum of their versions tells whether any of them changed
+    private long getTopNVersion()
+    {
+        long version = 0;
+        for (TopNSource source : topNSources) {
+            version += source.getFilter().getVersion();
+        }
+        return version;
+    }
+
+    private State createState()
+    {
+        // read the versions before the ranges, so that a range that narrows meanwhile is picked up by the next state
+        long topNVersion = getTopNVersion();
+        int completedSources = 0;
+        Map<Integer, Domain> domains = new HashMap<>();
+        for (Source source : sources) {
+            if (!source.getFilter().isComplete()) {
+                continue;
+            }
+            completedSources++;
+            TupleDomain<String> result = getFutureValue(source.getFilter().getResultFuture());
+            if (result.isNone()) {
+                return new State(sources.size(), topNVersion, ImmutableMap.of(), true);
+            }
+            for (Map.Entry<String, Domain> entry : result.getDomains().get().entrySet()) {
+                Integer channel = source.getChannels().get(entry.getKey());
+                if (channel != null) {
+                    domains.merge(channel, entry.getValue(), Domain::intersect);
+                }
+            }
+        }
+        for (TopNSource source : topNSources) {
+            domains.merge(source.getChannel(), source.getFilter().getDomain(), Domain::intersect);
+        }
+        boolean none = domains.values().stream().anyMatch(Domain::isNone);
+        return new State(completedSources, topNVersion, domains, none);
+    }
+
+    private class FilteringRecordCursor
+            implements RecordCursor
+    {
+        private final RecordCursor delegate;
+        private final LongConsumer prunedPositionsConsumer;
+
+        private FilteringRecordCursor(RecordCursor delegate, LongConsumer prunedPositionsConsumer)
+        {
+            this.delegate = requireNonNull(delegate, "delegate is null");
+            this.prunedPositionsConsumer = requireNonNull(prunedPositionsConsumer, "prunedPositionsConsumer is null");
+        }
+
+        @Override
+        public boolean advanceNextPosition()
+        {
+            while (delegate.advanceNextPosition()) {
+                State state = getState();
+                if (state.none) {
+                    // none of the remaining rows can match
+                    prunedPositionsConsumer.accept(1);
+                    return false;
+                }
+                if (matches(state.filters)) {
+                    return true;
+                }
+                prunedPositionsConsumer.accept(1);
+            }
+            return false;
+        }
+
+        private boolean matches(List<ChannelFilter> filters)
+        {
+            for (ChannelFilter filter : filters) {
+                if (!filter.test(delegate)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long getCompletedBytes()
+        {
+            return delegate.getCompletedBytes();
+        }
+
+        @Override
+        public long getReadTimeNanos()
+        {
+            return delegate.getReadTimeNanos();
+        }
+
+        @Override
+        public Type getType(int field)
+        {
+            return delegate.getType(field);
+        }
+
+        @Override
+        public boolean getBoolean(int field)
+        {
+            return delegate.getBoolean(field);
+        }
+
+        @Override
+        public long getLong(int field)
+        {
+            return delegate.getLong(field);
+        }
+
+        @Override
+        public double getDouble(int field)
+        {
+            return delegate.getDouble(field);
+        }
+
+        @Override
+        public Slice getSlice(int field)
+        {
+            return delegate.getSlice(field);
+        }
+
+        @Override
+        public Object getObject(int field)
+        {
+            return delegate.getObject(field);
+        }
+
+        @Override
+        public boolean isNull(int field)
+        {
+            return delegate.isNull(field);
+        }
+
+        @Override
+        public long getSystemMemoryUsage()
+        {
+            return delegate.getSystemMemoryUsage();
+        }
+
+        @Override
+        public void close()
+        {
+            delegate.close();
+        }
+    }
+
+    public static class Source
+    {
+        private final LocalDynamicFilter filter;
+        // dynamic filter id -> scan channel
+        private final Map<String, Integer> channels;
+
+        public Source(LocalDynamicFilter filter, Map<String, Integer> channels)
+        {
+            this.filter = requireNonNull(filter, "filter is null");
+            this.channels = ImmutableMap.copyOf(requireNonNull(channels, "channels is null"));
+        }
+
+        public LocalDynamicFilter getFilter()
+        {
+            return filter;
+        }
+
+        public Map<String, Integer> getChannels()
+        {
+            return channels;
+        }
+    }
+
+    public static class TopNSource
+    {
+        private final TopNDynamicFilter filter;
+        private final int channel;
+
+        public TopNSource(TopNDynamicFilter filter, int channel)
+        {
+            this.filter = requireNonNull(filter, "filter is null");
+            this.channel = channel;
+        }
+
+        public TopNDynamicFilter getFilter()
+        {
+            return filter;
+        }
+
+        public int getChannel()
+        {
+            return channel;
+        }
+    }
+
+    @Immutable
+    private static class State
+    {
+        private final int completedSources;
+        private final long topNVersion;
+        private final Map<Integer, Domain> domains;
+        private final List<ChannelFilter> filters;
+        private final boolean none;
+
+        private State(int completedSources, long topNVersion, Map<Integer, Domain> domains, boolean none)
+        {
+            this.completedSources = completedSources;
+            this.topNVersion = topNVersion;
+            this.domains = ImmutableMap.copyOf(domains);
+            this.none = none;
+            this.filters = none ? ImmutableList.of() : domains.entrySet().stream()
+                    .filter(entry -> !entry.getValue().isAll())
+                    .map(entry -> createChannelFilter(entry.getKey(), entry.getValue()))
+                    .collect(toImmutableList());
+        }
+    }
+
+    private static ChannelFilter createChannelFilter(int channel, Domain domain)
+    {
+        Type type = domain.getType();
+        if (domain.isNullAllowed() || !type.isOrderable()) {
+            return new DomainFilter(channel, domain);
+        }
+
+        List<Range> ranges = domain.getValues().getRanges().getOrderedRanges();
+        boolean singleValues = ranges.stream().allMatch(Range::isSingleValue);
+        if (type.getJavaType() == long.class) {
+            if (singleValues) {
+                LongOpenHashSet values = new LongOpenHashSet(ranges.size());
+                ranges.forEach(range -> values.add((long) range.getSingleValue()));
+                return new LongValuesFilter(channel, type, values);
+            }
+            if (ranges.size() == 1 && isInclusiveRange(ranges.get(0))) {
+                Range range = ranges.get(0);
+                long min = range.getLow().isLowerUnbounded() ? Long.MIN_VALUE : (long) range.getLow().getValue();
+                long max = range.getHigh().isUpperUnbounded() ? Long.MAX_VALUE : (long) range.getHigh().getValue();
+                return new LongRangeFilter(channel, type, min, max);
+            }
+        }
+        if (type.getJavaType() == Slice.class && singleValues && (type instanceof VarcharType || type instanceof CharType || type instanceof VarbinaryType)) {
+            ObjectOpenHashSet<Slice> values = new ObjectOpenHashSet<>(ranges.size());
+            ranges.forEach(range -> values.add((Slice) range.getSingleValue()));
+            return new SliceValuesFilter(channel, type, values);
+        }
+        return new DomainFilter(channel, domain);
+    }
+
+    // the bounds of the range are either inclusive or unbounded, as for the min/max ranges of joins and the ranges of TopNs
+    private static boolean isInclusiveRange(Range range)
+    {
+        return (range.getLow().isLowerUnbounded() || range.getLow().getBound() == EXACTLY) &&
+                (range.getHigh().isUpperUnbounded() || range.getHigh().getBound() == EXACTLY);
+    }
+
+    private abstract static class ChannelFilter
+    {
+        private final int channel;
+
+        protected ChannelFilter(int channel)
+        {
+            this.channel = channel;
+        }
+
+        public int getChannel()
+        {
+            return channel;
+        }
+
+        public abstract boolean test(Block block, int position);
+
+        public abstract boolean test(RecordCursor cursor);
+    }
+
+    private static class LongValuesFilter
+            extends ChannelFilter
+    {
+        private final Type type;
+        private final LongOpenHashSet values;
+
+        private LongValuesFilter(int channel, Type type, LongOpenHashSet values)
+        {
+            super(channel);
+            this.type = type;
+            this.values = values;
+        }
+
+        @Override
+        public boolean test(Block block, int position)
+        {
+            return !block.isNull(position) && values.contains(type.getLong(block, position));
+        }
+
+        @Override
+        public boolean test(RecordCursor cursor)
+        {
+            return !cursor.isNull(getChannel()) && values.contains(cursor.getLong(getChannel()));
+        }
+    }
+
+    private static class LongRangeFilter
+            extends ChannelFilter
+    {
+        private final Type type;
+        private final long min;
+        private final long max;
+
+        private LongRangeFilter(int channel, Type type, long min, long max)
+        {
+            super(channel);
+            this.type = type;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean test(Block block, int position)
+        {
+            if (block.isNull(position)) {
+                return false;
+            }
+            long value = type.getLong(block, position);
+            return value >= min && value <= max;
+        }
+
+        @Override
+        public boolean test(RecordCursor cursor)
+        {
+            if (cursor.isNull(getChannel())) {
+                return false;
+            }
+            long value = cursor.getLong(getChannel());
+            return value >= min && value <= max;
+        }
+    }
+
+    private static class SliceValuesFilter
+            extends ChannelFilter
+    {
+        private final Type type;
+        private final ObjectOpenHashSet<Slice> values;
+
+        private SliceValuesFilter(int channel, Type type, ObjectOpenHashSet<Slice> values)
+        {
+            super(channel);
+            this.type = type;
+            this.values = values;
+        }
+
+        @Override
+        public boolean test(Block block, int position)
+        {
+            return !block.isNull(position) && values.contains(type.getSlice(block, position));
+        }
+
+        @Override
+        public boolean test(RecordCursor cursor)
+        {
+            return !cursor.isNull(getChannel()) && values.contains(cursor.getSlice(getChannel()));
+        }
+    }
+
+    private static class DomainFilter
+            extends ChannelFilter
+    {
+        private final Domain domain;
+
+        private DomainFilter(int channel, Domain domain)
+        {
+            super(channel);
+            this.domain = domain;
+        }
+
+        @Override
+        public boolean test(Block block, int position)
+        {
+            return domain.includesNullableValue(readNativeValue(domain.getType(), block, position));
+        }
+
+        @Override
+        public boolean test(RecordCursor cursor)
+        {
+            int channel = getChannel();
+            if (cursor.isNull(channel)) {
+                return domain.isNullAllowed();
+            }
+            Class<?> javaType = domain.getType().getJavaType();
+            Object value;
+            if (javaType == long.class) {
+                value = cursor.getLong(channel);
+            }
+            else if (javaType == double.class) {
+                value = cursor.getDouble(channel);
+            }
+            else if (javaType == boolean.class) {
+                value = cursor.getBoolean(channel);
+            }
+            else if (javaType == Slice.class) {
+                value = cursor.getSlice(channel);
+            }
+            else {
+                value = cursor.getObject(channel);
+            }
+            return domain.includesNullableValue(value);
+        }
+    }
+}
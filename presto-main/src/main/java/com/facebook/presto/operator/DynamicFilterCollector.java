@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.common.type.CharType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.VarbinaryType;
+import com.facebook.presto.common.type.VarcharType;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOfLongArray;
+import static io.airlift.slice.SizeOf.sizeOfObjectArray;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.Hash.DEFAULT_LOAD_FACTOR;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Collects the distinct values of the join channels seen by a single {@link HashBuilderOperator}.
+ * Once more than {@code maxDistinctValues} values are seen for a channel, only the min/max
+ * range of the values is kept.
+ */
+public class DynamicFilterCollector
+{
+    private final List<String> filterIds;
+    private final List<Integer> channels;
+    private final List<ValueCollector> collectors;
+    private final LocalMemoryContext memoryContext;
+
+    public DynamicFilterCollector(Map<String, Integer> buildChannels, List<Type> buildTypes, int maxDistinctValues, LocalMemoryContext memoryContext)
+    {
+        requireNonNull(buildChannels, "buildChannels is null");
+        requireNonNull(buildTypes, "buildTypes is null");
+        checkArgument(maxDistinctValues > 0, "maxDistinctValues must be positive");
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+
+        ImmutableList.Builder<String> filterIds = ImmutableList.builder();
+        ImmutableList.Builder<Integer> channels = ImmutableList.builder();
+        ImmutableList.Builder<ValueCollector> collectors = ImmutableList.builder();
+        for (Map.Entry<String, Integer> entry : buildChannels.entrySet()) {
+            Type type = buildTypes.get(entry.getValue());
+            filterIds.add(entry.getKey());
+            channels.add(entry.getValue());
+            if (type.getJavaType() == long.class) {
+                collectors.add(new LongValueCollector(type, maxDistinctValues));
+            }
+            else if (type.getJavaType() == Slice.class) {
+                collectors.add(new SliceValueCollector(type, maxDistinctValues));
+            }
+            else {
+                throw new IllegalArgumentException("Unsupported dynamic filter type: " + type);
+            }
+        }
+        this.filterIds = filterIds.build();
+        this.channels = channels.build();
+        this.collectors = collectors.build();
+    }
+
+    public void add(Page page)
+    {
+        long retainedSize = 0;
+        for (int i = 0; i < collectors.size(); i++) {
+            ValueCollector collector = collectors.get(i);
+            collector.add(page.getBlock(channels.get(i)));
+            retainedSize += collector.getRetainedSizeInBytes();
+        }
+        memoryContext.setBytes(retainedSize);
+    }
+
+    /**
+     * Returns the collected domains keyed by dynamic filter id and releases the collected values.
+     */
+    public TupleDomain<String> build()
+    {
+        ImmutableMap.Builder<String, Domain> domains = ImmutableMap.builder();
+        for (int i = 0; i < collectors.size(); i++) {
+            domains.put(filterIds.get(i), collectors.get(i).build());
+        }
+        memoryContext.setBytes(0);
+        return TupleDomain.withColumnDomains(domains.build());
+    }
+
+    public void close()
+    {
+        memoryContext.close();
+    }
+
+    private interface ValueCollector
+    {
+        void add(Block block);
+
+        Domain build();
+
+        long getRetainedSizeInBytes();
+    }
+
+    private static class LongValueCollector
+            implements ValueCollector
+    {
+        private final Type type;
+        private final int maxDistinctValues;
+
+        private LongOpenHashSet values = new LongOpenHashSet();
+        private boolean empty = true;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        private LongValueCollector(Type type, int maxDistinctValues)
+        {
+            this.type = requireNonNull(type, "type is null");
+            this.maxDistinctValues = maxDistinctValues;
+        }
+
+        @Override
+        public void add(Block block)
+        {
+            for (int position = 0; position < block.getPositionCount(); position++) {
+                if (block.isNull(position)) {
+                    continue;
+                }
+                long value = type.getLong(block, position);
+                empty = false;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                if (values != null) {
+                    values.add(value);
+                    if (values.size() > maxDistinctValues) {
+                        // fall back to the min/max range
+                        values = null;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Domain build()
+        {
+            if (empty) {
+                return Domain.none(type);
+            }
+            if (values == null) {
+                return Domain.create(ValueSet.ofRanges(Range.range(type, min, true, max, true)), false);
+            }
+            List<Object> distinctValues = new ArrayList<>(values);
+            values = null;
+            return Domain.create(ValueSet.copyOf(type, distinctValues), false);
+        }
+
+        @Override
+        public long getRetainedSizeInBytes()
+        {
+            if (values == null) {
+                return 0;
+            }
+            return sizeOfLongArray(arraySize(Math.max(values.size(), 1), DEFAULT_LOAD_FACTOR));
+        }
+    }
+
+    private static class SliceValueCollector
+            implements ValueCollector
+    {
+        private final Type type;
+        private final int maxDistinctValues;
+        // the byte order of a slice matches the ordering of the type only for these types
+        private final boolean orderedByBytes;
+
+        private ObjectOpenHashSet<Slice> values = new ObjectOpenHashSet<>();
+        private long valuesSizeInBytes;
+        private boolean empty = true;
+        private Slice min;
+        private Slice max;
+
+        private SliceValueCollector(Type type, int maxDistinctValues)
+        {
+            this.type = requireNonNull(type, "type is null");
+            this.maxDistinctValues = maxDistinctValues;
+            this.orderedByBytes = type instanceof VarcharType || type instanceof CharType || type instanceof VarbinaryType;
+        }
+
+        @Override
+        public void add(Block block)
+        {
+            for (int position = 0; position < block.getPositionCount(); position++) {
+                if (block.isNull(position)) {
+                    continue;
+                }
+                Slice value = type.getSlice(block, position);
+                empty = false;
+                if (orderedByBytes) {
+                    if (min == null || value.compareTo(min) < 0) {
+                        min = Slices.copyOf(value);
+                    }
+                    if (max == null || value.compareTo(max) > 0) {
+                        max = Slices.copyOf(value);
+                    }
+                }
+                if (values != null && !values.contains(value)) {
+                    Slice copy = Slices.copyOf(value);
+                    values.add(copy);
+                    valuesSizeInBytes += copy.getRetainedSize();
+                    if (values.size() > maxDistinctValues) {
+                        values = null;
+                        valuesSizeInBytes = 0;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public Domain build()
+        {
+            if (empty) {
+                return Domain.none(type);
+            }
+            if (values == null) {
+                if (!orderedByBytes) {
+                    return Domain.all(type);
+                }
+                return Domain.create(ValueSet.ofRanges(Range.range(type, min, true, max, true)), false);
+            }
+            List<Object> distinctValues = new ArrayList<>(values);
+            values = null;
+            valuesSizeInBytes = 0;
+            return Domain.create(ValueSet.copyOf(type, distinctValues), false);
+        }
+
+        @Override
+        public long getRetainedSizeInBytes()
+        {
+            if (values == null) {
+                return 0;
+            }
+            return valuesSizeInBytes + sizeOfObjectArray(arraySize(Math.max(values.size(), 1), DEFAULT_LOAD_FACTOR));
+        }
+    }
+}
@@ -118,6 +118,8 @@ public class ExchangeClient
     private long successfulRequests;
     @GuardedBy("this")
     private final ExponentialMovingAverage responseSizeExponentialMovingAverage;
+    @GuardedBy("this")
+    private final Optional<AdaptiveRequestSizer> adaptiveRequestSizer;
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
@@ -135,6 +137,7 @@ public class ExchangeClient
             boolean acknowledgePages,
             boolean asyncPageTransportEnabled,
             double responseSizeExponentialMovingAverageDecayingAlpha,
+            boolean adaptiveRequestSizingEnabled,
             HttpClient httpClient,
             DriftClient<ThriftTaskClient> driftClient,
             ScheduledExecutorService scheduler,
@@ -155,6 +158,12 @@ public class ExchangeClient
         this.maxBufferRetainedSizeInBytes = Long.MIN_VALUE;
         this.pageBufferClientCallbackExecutor = requireNonNull(pageBufferClientCallbackExecutor, "pageBufferClientCallbackExecutor is null");
         this.responseSizeExponentialMovingAverage = new ExponentialMovingAverage(responseSizeExponentialMovingAverageDecayingAlpha, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        if (adaptiveRequestSizingEnabled) {
+            this.adaptiveRequestSizer = Optional.of(new AdaptiveRequestSizer(DEFAULT_MAX_PAGE_SIZE_IN_BYTES, maxResponseSize.toBytes(), responseSizeExponentialMovingAverageDecayingAlpha));
+        }
+        else {
+            this.adaptiveRequestSizer = Optional.empty();
+        }
     }
 
     public ExchangeClientStatus getStatus()
@@ -172,7 +181,26 @@ public class ExchangeClient
             if (bufferedPages > 0 && pageBuffer.peekLast() == NO_MORE_PAGES) {
                 bufferedPages--;
             }
-            return new ExchangeClientStatus(bufferRetainedSizeInBytes, maxBufferRetainedSizeInBytes, responseSizeExponentialMovingAverage.get(), successfulRequests, bufferedPages, noMoreLocations, pageBufferClientStatus);
+            int pendingRequests;
+            long pendingRequestedBytes;
+            if (adaptiveRequestSizer.isPresent()) {
+                pendingRequests = adaptiveRequestSizer.get().getPendingRequests();
+                pendingRequestedBytes = adaptiveRequestSizer.get().getPendingRequestedBytes();
+            }
+            else {
+                pendingRequests = allClients.size() - queuedClients.size() - completedClients.size();
+                pendingRequestedBytes = pendingRequests * min(responseSizeExponentialMovingAverage.get() * 2, maxResponseSize.toBytes());
+            }
+            return new ExchangeClientStatus(
+                    bufferRetainedSizeInBytes,
+                    maxBufferRetainedSizeInBytes,
+                    responseSizeExponentialMovingAverage.get(),
+                    successfulRequests,
+                    bufferedPages,
+                    noMoreLocations,
+                    pendingRequests,
+                    pendingRequestedBytes,
+                    pageBufferClientStatus);
         }
     }
 
@@ -252,6 +280,7 @@ public class ExchangeClient
         closeQuietly(client);
         removedClients.add(client);
         completedClients.add(client);
+        adaptiveRequestSizer.ifPresent(sizer -> sizer.requestFinished(location));
     }
 
     public synchronized void noMoreLocations()
@@ -380,6 +409,10 @@ public class ExchangeClient
         if (neededBytes <= 0) {
             return;
         }
+        if (adaptiveRequestSizer.isPresent()) {
+            scheduleAdaptiveRequests(adaptiveRequestSizer.get(), neededBytes);
+            return;
+        }
         long averageResponseSize = max(1, responseSizeExponentialMovingAverage.get());
         int clientCount = (int) ((1.0 * neededBytes / averageResponseSize) * concurrentRequestMultiplier);
         clientCount = max(clientCount, 1);
@@ -404,6 +437,28 @@ public class ExchangeClient
         }
     }
 
+    /**
+     * Schedules requests for as long as the responses they are expected to return, going by the responses of each client so far,
+     * fit the free buffer space times the concurrent request multiplier. There is always at least one pending request.
+     */
+    private synchronized void scheduleAdaptiveRequests(AdaptiveRequestSizer sizer, long neededBytes)
+    {
+        long maxPendingExpectedBytes = neededBytes * concurrentRequestMultiplier;
+        while (sizer.getPendingRequests() == 0 || sizer.getPendingExpectedBytes() < maxPendingExpectedBytes) {
+            PageBufferClient client = queuedClients.poll();
+            if (client == null) {
+                // no more clients available
+                return;
+            }
+
+            if (removedClients.contains(client)) {
+                continue;
+            }
+
+            client.scheduleRequest(new DataSize(sizer.startRequest(client.getLocation()), BYTE));
+        }
+    }
+
     public synchronized ListenableFuture<?> isBlocked()
     {
         if (isClosed() || isFailed() || pageBuffer.peek() != null) {
@@ -414,7 +469,7 @@ public class ExchangeClient
         return future;
     }
 
-    private synchronized boolean addPages(List<SerializedPage> pages)
+    private synchronized boolean addPages(PageBufferClient client, List<SerializedPage> pages)
     {
         if (isClosed() || isFailed()) {
             return false;
@@ -440,6 +495,7 @@ public class ExchangeClient
                 .mapToLong(SerializedPage::getSizeInBytes)
                 .sum();
         responseSizeExponentialMovingAverage.update(responseSize);
+        adaptiveRequestSizer.ifPresent(sizer -> sizer.responseReceived(client.getLocation(), responseSize));
 
         return true;
     }
@@ -456,6 +512,7 @@ public class ExchangeClient
 
     private synchronized void requestComplete(PageBufferClient client)
     {
+        adaptiveRequestSizer.ifPresent(sizer -> sizer.requestFinished(client.getLocation()));
         if (!queuedClients.contains(client)) {
             queuedClients.add(client);
         }
@@ -466,6 +523,7 @@ public class ExchangeClient
     {
         requireNonNull(client, "client is null");
         completedClients.add(client);
+        adaptiveRequestSizer.ifPresent(sizer -> sizer.requestFinished(client.getLocation()));
         scheduleRequestIfNecessary();
     }
 
@@ -506,7 +564,7 @@ public class ExchangeClient
         {
             requireNonNull(client, "client is null");
             requireNonNull(pages, "pages is null");
-            return ExchangeClient.this.addPages(pages);
+            return ExchangeClient.this.addPages(client, pages);
         }
 
         @Override
@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.http.client.HttpClientConfig;
 import io.airlift.units.DataSize;
 import io.airlift.units.DataSize.Unit;
@@ -39,6 +40,7 @@ public class ExchangeClientConfig
     private boolean acknowledgePages = true;
     private double responseSizeExponentialMovingAverageDecayingAlpha = 0.1;
     private boolean asyncPageTransportEnabled;
+    private boolean adaptiveRequestSizingEnabled;
 
     @NotNull
     public DataSize getMaxBufferSize()
@@ -182,4 +184,17 @@ public class ExchangeClientConfig
         this.asyncPageTransportEnabled = asyncPageTransportEnabled;
         return this;
     }
+
+    public boolean isAdaptiveRequestSizingEnabled()
+    {
+        return adaptiveRequestSizingEnabled;
+    }
+
+    @Config("exchange.adaptive-request-sizing-enabled")
+    @ConfigDescription("Size the requests to every upstream task from its own responses, rather than from the average response of all tasks")
+    public ExchangeClientConfig setAdaptiveRequestSizingEnabled(boolean adaptiveRequestSizingEnabled)
+    {
+        this.adaptiveRequestSizingEnabled = adaptiveRequestSizingEnabled;
+        return this;
+    }
 }
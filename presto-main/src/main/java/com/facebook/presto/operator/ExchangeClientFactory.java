@@ -48,6 +48,7 @@ public class ExchangeClientFactory
     private final boolean acknowledgePages;
     private final boolean asyncPageTransportEnabled;
     private final double responseSizeExponentialMovingAverageDecayingAlpha;
+    private final boolean adaptiveRequestSizingEnabled;
     private final ScheduledExecutorService scheduler;
     private final ThreadPoolExecutorMBean executorMBean;
     private final ExecutorService pageBufferClientCallbackExecutor;
@@ -68,6 +69,7 @@ public class ExchangeClientFactory
                 config.isAsyncPageTransportEnabled(),
                 config.getPageBufferClientMaxCallbackThreads(),
                 config.getResponseSizeExponentialMovingAverageDecayingAlpha(),
+                config.isAdaptiveRequestSizingEnabled(),
                 httpClient,
                 driftClient,
                 scheduler);
@@ -82,6 +84,7 @@ public class ExchangeClientFactory
             boolean asyncPageTransportEnabled,
             int pageBufferClientMaxCallbackThreads,
             double responseSizeExponentialMovingAverageDecayingAlpha,
+            boolean adaptiveRequestSizingEnabled,
             HttpClient httpClient,
             DriftClient<ThriftTaskClient> driftClient,
             ScheduledExecutorService scheduler)
@@ -106,6 +109,7 @@ public class ExchangeClientFactory
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) pageBufferClientCallbackExecutor);
 
         this.responseSizeExponentialMovingAverageDecayingAlpha = responseSizeExponentialMovingAverageDecayingAlpha;
+        this.adaptiveRequestSizingEnabled = adaptiveRequestSizingEnabled;
 
         checkArgument(maxBufferedBytes.toBytes() > 0, "maxBufferSize must be at least 1 byte: %s", maxBufferedBytes);
         checkArgument(maxResponseSize.toBytes() > 0, "maxResponseSize must be at least 1 byte: %s", maxResponseSize);
@@ -137,6 +141,7 @@ public class ExchangeClientFactory
                 acknowledgePages,
                 asyncPageTransportEnabled,
                 responseSizeExponentialMovingAverageDecayingAlpha,
+                adaptiveRequestSizingEnabled,
                 httpClient,
                 driftClient,
                 scheduler,
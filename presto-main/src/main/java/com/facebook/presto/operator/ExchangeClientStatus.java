@@ -32,6 +32,8 @@ public class ExchangeClientStatus
     private final long successfulRequestsCount;
     private final int bufferedPages;
     private final boolean noMoreLocations;
+    private final int pendingRequests;
+    private final long pendingRequestedBytes;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
 
     @JsonCreator
@@ -42,6 +44,8 @@ public class ExchangeClientStatus
             @JsonProperty("successfulRequestsCount") long successFullRequestsCount,
             @JsonProperty("bufferedPages") int bufferedPages,
             @JsonProperty("noMoreLocations") boolean noMoreLocations,
+            @JsonProperty("pendingRequests") int pendingRequests,
+            @JsonProperty("pendingRequestedBytes") long pendingRequestedBytes,
             @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
     {
         this.bufferedBytes = bufferedBytes;
@@ -50,6 +54,8 @@ public class ExchangeClientStatus
         this.successfulRequestsCount = successFullRequestsCount;
         this.bufferedPages = bufferedPages;
         this.noMoreLocations = noMoreLocations;
+        this.pendingRequests = pendingRequests;
+        this.pendingRequestedBytes = pendingRequestedBytes;
         this.pageBufferClientStatuses = ImmutableList.copyOf(requireNonNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
     }
 
@@ -89,6 +95,21 @@ public class ExchangeClientStatus
         return noMoreLocations;
     }
 
+    @JsonProperty
+    public int getPendingRequests()
+    {
+        return pendingRequests;
+    }
+
+    /**
+     * Returns the sum of the max response sizes of the pending requests.
+     */
+    @JsonProperty
+    public long getPendingRequestedBytes()
+    {
+        return pendingRequestedBytes;
+    }
+
     @JsonProperty
     public List<PageBufferClientStatus> getPageBufferClientStatuses()
     {
@@ -111,6 +132,8 @@ public class ExchangeClientStatus
                 .add("successfulRequestsCount", successfulRequestsCount)
                 .add("bufferedPages", bufferedPages)
                 .add("noMoreLocations", noMoreLocations)
+                .add("pendingRequests", pendingRequests)
+                .add("pendingRequestedBytes", pendingRequestedBytes)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
                 .toString();
     }
@@ -125,6 +148,8 @@ public class ExchangeClientStatus
                 successfulRequestsCount + other.successfulRequestsCount,
                 bufferedPages + other.bufferedPages,
                 noMoreLocations && other.noMoreLocations, // if at least one has some locations, mergee has some too
+                pendingRequests + other.pendingRequests,
+                pendingRequestedBytes + other.pendingRequestedBytes,
                 ImmutableList.of()); // pageBufferClientStatuses may be long, so we don't want to combine the lists
     }
 
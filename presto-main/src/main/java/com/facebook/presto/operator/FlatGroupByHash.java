@@ -0,0 +1,550 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.array.LongBigArray;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.PrestoException;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.RealType.REAL;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Double.doubleToLongBits;
+import static java.lang.Double.longBitsToDouble;
+import static java.lang.Float.floatToIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Group by hash for keys that are all fixed width. Instead of keeping the keys in blocks and addressing
+ * them through a {@link PagesHashStrategy}, every group is stored as a record of longs in a single slab:
+ * a null mask, the raw hash and one long per key channel. Comparing a row with a group is therefore a
+ * compare of a few consecutive longs.
+ * <p>
+ * Floating point keys are stored with their canonical bits, so NaN is not distinct from NaN, as for the
+ * hash of the key.
+ */
+public class FlatGroupByHash
+        implements GroupByHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(FlatGroupByHash.class).instanceSize();
+
+    private static final float FILL_RATIO = 0.75f;
+    private static final int NULL_MASK_OFFSET = 0;
+    private static final int RAW_HASH_OFFSET = 1;
+    private static final int VALUES_OFFSET = 2;
+    private static final int MAX_CHANNEL_COUNT = Long.SIZE;
+
+    private final List<Type> types;
+    private final List<Type> hashTypes;
+    private final int[] hashChannels;
+    private final KeyEncoding[] keyEncodings;
+    private final HashGenerator hashGenerator;
+    // hashes the key channels of the rows passed to contains
+    private final InterpretedHashGenerator keyHashGenerator;
+    private final boolean outputRawHash;
+    private final int recordSize;
+
+    private int hashCapacity;
+    private int maxFill;
+    private int mask;
+
+    // the hash table from the hash of a key to the group id, with a byte of the raw hash to skip most mismatches
+    private int[] groupIdsByHash;
+    private byte[] rawHashByHashPosition;
+
+    // the records of the groups, recordSize longs per group
+    private final LongBigArray groupRecords;
+
+    // the record of the row being looked up
+    private final long[] row;
+
+    private int nextGroupId;
+    private long hashCollisions;
+    private double expectedHashCollisions;
+
+    // reserve enough memory before rehash
+    private final UpdateMemory updateMemory;
+    private long preallocatedMemoryInBytes;
+    private long currentPageSizeInBytes;
+
+    public FlatGroupByHash(
+            List<? extends Type> hashTypes,
+            int[] hashChannels,
+            Optional<Integer> inputHashChannel,
+            int expectedSize,
+            UpdateMemory updateMemory)
+    {
+        this.hashTypes = ImmutableList.copyOf(requireNonNull(hashTypes, "hashTypes is null"));
+        requireNonNull(hashChannels, "hashChannels is null");
+        checkArgument(isSupported(hashTypes), "unsupported hash types: %s", hashTypes);
+        checkArgument(hashTypes.size() == hashChannels.length, "hashTypes and hashChannels have different sizes");
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+        this.hashChannels = hashChannels.clone();
+
+        this.keyEncodings = new KeyEncoding[hashChannels.length];
+        for (int i = 0; i < hashChannels.length; i++) {
+            keyEncodings[i] = KeyEncoding.of(this.hashTypes.get(i));
+        }
+
+        requireNonNull(inputHashChannel, "inputHashChannel is null");
+        this.outputRawHash = inputHashChannel.isPresent();
+        this.types = outputRawHash ? ImmutableList.<Type>builder().addAll(this.hashTypes).add(BIGINT).build() : this.hashTypes;
+        this.hashGenerator = inputHashChannel.isPresent() ? new PrecomputedHashGenerator(inputHashChannel.get()) : new InterpretedHashGenerator(this.hashTypes, this.hashChannels);
+
+        this.keyHashGenerator = new InterpretedHashGenerator(this.hashTypes, IntStream.range(0, hashChannels.length).toArray());
+
+        this.recordSize = VALUES_OFFSET + hashChannels.length;
+        this.row = new long[recordSize];
+
+        hashCapacity = arraySize(expectedSize, FILL_RATIO);
+        maxFill = calculateMaxFill(hashCapacity);
+        mask = hashCapacity - 1;
+        groupIdsByHash = new int[hashCapacity];
+        Arrays.fill(groupIdsByHash, -1);
+        rawHashByHashPosition = new byte[hashCapacity];
+
+        groupRecords = new LongBigArray();
+        groupRecords.ensureCapacity((long) maxFill * recordSize);
+
+        // This interface is used for actively reserving memory (push model) for rehash.
+        // The caller can also query memory usage on this object (pull model)
+        this.updateMemory = requireNonNull(updateMemory, "updateMemory is null");
+    }
+
+    /**
+     * Returns whether all types are fixed width types, whose values are equal exactly when their bits are.
+     */
+    public static boolean isSupported(List<? extends Type> hashTypes)
+    {
+        if (hashTypes.isEmpty() || hashTypes.size() > MAX_CHANNEL_COUNT) {
+            return false;
+        }
+        return hashTypes.stream().allMatch(type -> KeyEncoding.of(type) != null);
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return INSTANCE_SIZE +
+                sizeOf(groupIdsByHash) +
+                sizeOf(rawHashByHashPosition) +
+                groupRecords.sizeOf() +
+                sizeOf(row) +
+                preallocatedMemoryInBytes;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return types;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        checkArgument(groupId >= 0 && groupId < nextGroupId, "invalid groupId: %s", groupId);
+        long recordOffset = (long) groupId * recordSize;
+        long nullMask = groupRecords.get(recordOffset + NULL_MASK_OFFSET);
+        for (int i = 0; i < hashTypes.size(); i++) {
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset + i);
+            if ((nullMask & (1L << i)) != 0) {
+                blockBuilder.appendNull();
+            }
+            else {
+                keyEncodings[i].writeValue(hashTypes.get(i), blockBuilder, groupRecords.get(recordOffset + VALUES_OFFSET + i));
+            }
+        }
+        if (outputRawHash) {
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(outputChannelOffset + hashTypes.size()), groupRecords.get(recordOffset + RAW_HASH_OFFSET));
+        }
+    }
+
+    @Override
+    public Work<?> addPage(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new AddPageWork(page);
+    }
+
+    @Override
+    public Work<GroupByIdBlock> getGroupIds(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new GetGroupIdsWork(page);
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels)
+    {
+        long rawHash = keyHashGenerator.hashPosition(position, channel -> page.getBlock(hashChannels[channel]));
+        readRow(position, page, hashChannels, rawHash);
+        return findGroupId((int) getHashPosition(row[RAW_HASH_OFFSET], mask)) != -1;
+    }
+
+    @Override
+    public long getRawHash(int groupId)
+    {
+        return groupRecords.get((long) groupId * recordSize + RAW_HASH_OFFSET);
+    }
+
+    @VisibleForTesting
+    @Override
+    public int getCapacity()
+    {
+        return hashCapacity;
+    }
+
+    private int putIfAbsent(int position, Page page)
+    {
+        long rawHash = hashGenerator.hashPosition(position, page);
+        readRow(position, page, hashChannels, rawHash);
+
+        int hashPosition = (int) getHashPosition(rawHash, mask);
+        byte hashPrefix = (byte) rawHash;
+        // look for an empty slot or a slot containing this key
+        while (groupIdsByHash[hashPosition] != -1) {
+            if (rawHashByHashPosition[hashPosition] == hashPrefix && rowEqualsGroup(groupIdsByHash[hashPosition])) {
+                return groupIdsByHash[hashPosition];
+            }
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+            hashCollisions++;
+        }
+        return addNewGroup(hashPosition, hashPrefix);
+    }
+
+    private int findGroupId(int hashPosition)
+    {
+        byte hashPrefix = (byte) row[RAW_HASH_OFFSET];
+        while (groupIdsByHash[hashPosition] != -1) {
+            if (rawHashByHashPosition[hashPosition] == hashPrefix && rowEqualsGroup(groupIdsByHash[hashPosition])) {
+                return groupIdsByHash[hashPosition];
+            }
+            hashPosition = (hashPosition + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void readRow(int position, Page page, int[] channels, long rawHash)
+    {
+        long nullMask = 0;
+        for (int i = 0; i < channels.length; i++) {
+            Block block = page.getBlock(channels[i]);
+            if (block.isNull(position)) {
+                nullMask |= 1L << i;
+                row[VALUES_OFFSET + i] = 0;
+            }
+            else {
+                row[VALUES_OFFSET + i] = keyEncodings[i].readValue(hashTypes.get(i), block, position);
+            }
+        }
+        row[NULL_MASK_OFFSET] = nullMask;
+        row[RAW_HASH_OFFSET] = rawHash;
+    }
+
+    private boolean rowEqualsGroup(int groupId)
+    {
+        long recordOffset = (long) groupId * recordSize;
+        for (int i = 0; i < recordSize; i++) {
+            if (row[i] != groupRecords.get(recordOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addNewGroup(int hashPosition, byte hashPrefix)
+    {
+        int groupId = nextGroupId++;
+        long recordOffset = (long) groupId * recordSize;
+        for (int i = 0; i < recordSize; i++) {
+            groupRecords.set(recordOffset + i, row[i]);
+        }
+        groupIdsByHash[hashPosition] = groupId;
+        rawHashByHashPosition[hashPosition] = hashPrefix;
+
+        // increase capacity, if necessary
+        if (needRehash()) {
+            tryRehash();
+        }
+        return groupId;
+    }
+
+    private boolean tryRehash()
+    {
+        long newCapacityLong = hashCapacity * 2L;
+        if (newCapacityLong > Integer.MAX_VALUE) {
+            throw new PrestoException(GENERIC_INSUFFICIENT_RESOURCES, "Size of hash table cannot exceed 1 billion entries");
+        }
+        int newCapacity = toIntExact(newCapacityLong);
+
+        // An estimate of how much extra memory is needed before we can go ahead and expand the hash table.
+        // This includes the new capacity for the hash table and the records as well as the size of the current page
+        preallocatedMemoryInBytes = (newCapacity - hashCapacity) * (long) (Integer.BYTES + Byte.BYTES) +
+                (long) (calculateMaxFill(newCapacity) - maxFill) * recordSize * Long.BYTES +
+                currentPageSizeInBytes;
+        if (!updateMemory.update()) {
+            // reserved memory but has exceeded the limit
+            return false;
+        }
+        preallocatedMemoryInBytes = 0;
+
+        expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+
+        int newMask = newCapacity - 1;
+        int[] newGroupIdsByHash = new int[newCapacity];
+        Arrays.fill(newGroupIdsByHash, -1);
+        byte[] newRawHashByHashPosition = new byte[newCapacity];
+
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            // the hash is in the record, so no key has to be hashed again
+            long rawHash = getRawHash(groupId);
+            int hashPosition = (int) getHashPosition(rawHash, newMask);
+            while (newGroupIdsByHash[hashPosition] != -1) {
+                hashPosition = (hashPosition + 1) & newMask;
+                hashCollisions++;
+            }
+            newGroupIdsByHash[hashPosition] = groupId;
+            newRawHashByHashPosition[hashPosition] = (byte) rawHash;
+        }
+
+        mask = newMask;
+        hashCapacity = newCapacity;
+        maxFill = calculateMaxFill(newCapacity);
+        groupIdsByHash = newGroupIdsByHash;
+        rawHashByHashPosition = newRawHashByHashPosition;
+        groupRecords.ensureCapacity((long) maxFill * recordSize);
+        return true;
+    }
+
+    private boolean needRehash()
+    {
+        return nextGroupId >= maxFill;
+    }
+
+    private static long getHashPosition(long rawHash, int mask)
+    {
+        return murmurHash3(rawHash) & mask;
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        checkArgument(hashSize > 0, "hashSize must be greater than 0");
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        checkArgument(hashSize > maxFill, "hashSize must be larger than maxFill");
+        return maxFill;
+    }
+
+    private enum KeyEncoding
+    {
+        LONG {
+            @Override
+            long readValue(Type type, Block block, int position)
+            {
+                return type.getLong(block, position);
+            }
+
+            @Override
+            void writeValue(Type type, BlockBuilder blockBuilder, long value)
+            {
+                type.writeLong(blockBuilder, value);
+            }
+        },
+        DOUBLE_BITS {
+            @Override
+            long readValue(Type type, Block block, int position)
+            {
+                return doubleToLongBits(type.getDouble(block, position));
+            }
+
+            @Override
+            void writeValue(Type type, BlockBuilder blockBuilder, long value)
+            {
+                type.writeDouble(blockBuilder, longBitsToDouble(value));
+            }
+        },
+        REAL_BITS {
+            @Override
+            long readValue(Type type, Block block, int position)
+            {
+                return floatToIntBits(intBitsToFloat((int) type.getLong(block, position)));
+            }
+
+            @Override
+            void writeValue(Type type, BlockBuilder blockBuilder, long value)
+            {
+                type.writeLong(blockBuilder, value);
+            }
+        };
+
+        abstract long readValue(Type type, Block block, int position);
+
+        abstract void writeValue(Type type, BlockBuilder blockBuilder, long value);
+
+        static KeyEncoding of(Type type)
+        {
+            if (type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) || type.equals(DATE) || type.equals(TIMESTAMP)) {
+                return LONG;
+            }
+            if (type instanceof DecimalType && ((DecimalType) type).isShort()) {
+                return LONG;
+            }
+            if (type.equals(DOUBLE)) {
+                return DOUBLE_BITS;
+            }
+            if (type.equals(REAL)) {
+                return REAL_BITS;
+            }
+            return null;
+        }
+    }
+
+    private class AddPageWork
+            implements Work<Void>
+    {
+        private final Page page;
+
+        private int lastPosition;
+
+        public AddPageWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition < positionCount, "position count out of bound");
+
+            // needRehash() == false indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // get the group for the current row
+                putIfAbsent(lastPosition, page);
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class GetGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final BlockBuilder blockBuilder;
+        private final Page page;
+
+        private boolean finished;
+        private int lastPosition;
+
+        public GetGroupIdsWork(Page page)
+        {
+            this.page = requireNonNull(page, "page is null");
+            // we know the exact size required for the block
+            this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(page.getPositionCount());
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = page.getPositionCount();
+            checkState(lastPosition < positionCount, "position count out of bound");
+            checkState(!finished);
+
+            // needRehash() == false indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // output the group id for this row
+                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, page));
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(lastPosition == page.getPositionCount(), "process has not yet finished");
+            checkState(!finished, "result has produced");
+            finished = true;
+            return new GroupByIdBlock(nextGroupId, blockBuilder.build());
+        }
+    }
+}
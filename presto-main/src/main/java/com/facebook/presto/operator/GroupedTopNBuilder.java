@@ -13,11 +13,13 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.array.IntBigArray;
 import com.facebook.presto.array.ObjectBigArray;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
@@ -26,15 +28,22 @@ import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
 import org.openjdk.jol.info.ClassLayout;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 import java.util.stream.IntStream;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.RANK;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.ROW_NUMBER;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -45,6 +54,8 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * This class finds the top N rows defined by {@param comparator} for each group specified by {@param groupByHash}.
+ * With {@link RankingFunction#RANK} or {@link RankingFunction#DENSE_RANK}, it instead keeps every row whose rank
+ * or dense rank is at most N, so ties at the boundary are kept, and produces that rank in place of the row number.
  */
 public class GroupedTopNBuilder
 {
@@ -54,11 +65,12 @@ public class GroupedTopNBuilder
 
     private final List<Type> sourceTypes;
     private final int topN;
+    private final RankingFunction rankingFunction;
     private final boolean produceRowNumber;
     private final GroupByHash groupByHash;
 
-    // a map of heaps, each of which records the top N rows
-    private final ObjectBigArray<RowHeap> groupedRows = new ObjectBigArray<>();
+    // a map of heaps or peer groups, each of which records the top N rows
+    private final ObjectBigArray<GroupRows> groupedRows = new ObjectBigArray<>();
     // a list of input pages, each of which has information of which row in which heap references which position
     private final ObjectBigArray<PageReference> pageReferences = new ObjectBigArray<>();
     // for heap element comparison
@@ -76,10 +88,22 @@ public class GroupedTopNBuilder
             int topN,
             boolean produceRowNumber,
             GroupByHash groupByHash)
+    {
+        this(sourceTypes, comparator, topN, ROW_NUMBER, produceRowNumber, groupByHash);
+    }
+
+    public GroupedTopNBuilder(
+            List<Type> sourceTypes,
+            PageWithPositionComparator comparator,
+            int topN,
+            RankingFunction rankingFunction,
+            boolean produceRowNumber,
+            GroupByHash groupByHash)
     {
         this.sourceTypes = requireNonNull(sourceTypes, "sourceTypes is null");
         checkArgument(topN > 0, "topN must be > 0");
         this.topN = topN;
+        this.rankingFunction = requireNonNull(rankingFunction, "rankingFunction is null");
         this.produceRowNumber = produceRowNumber;
         this.groupByHash = requireNonNull(groupByHash, "groupByHash is not null");
 
@@ -104,7 +128,15 @@ public class GroupedTopNBuilder
 
     public Iterator<Page> buildResult()
     {
-        return new ResultIterator();
+        return new ResultIterator(produceRowNumber);
+    }
+
+    /**
+     * Same as {@link #buildResult()}, but the rows are produced in the layout of the input pages, so they can be fed into another builder.
+     */
+    public Iterator<Page> buildResultWithoutRowNumber()
+    {
+        return new ResultIterator(false);
     }
 
     public long getEstimatedSizeInBytes()
@@ -117,6 +149,19 @@ public class GroupedTopNBuilder
                 emptyPageReferenceSlots.getEstimatedSizeInBytes();
     }
 
+    /**
+     * Returns the last of the top N rows of the group as a single position page, once the group holds its top N rows.
+     * No row ordered after it can make it into the result of the group.
+     */
+    public Optional<Page> getBoundaryRow(long groupId)
+    {
+        if (groupId >= groupByHash.getGroupCount() || groupedRows.get(groupId) == null) {
+            return Optional.empty();
+        }
+        return groupedRows.get(groupId).getBoundaryRow()
+                .map(row -> pageReferences.get(row.getPageId()).getPage().getSingleValuePage(row.getPosition()));
+    }
+
     @VisibleForTesting
     List<Page> getBufferedPages()
     {
@@ -150,14 +195,15 @@ public class GroupedTopNBuilder
 
         // update the affected heaps and record candidate pages that need compaction
         IntSet pagesToCompact = new IntOpenHashSet();
+        List<Row> evictedRows = new ArrayList<>();
         for (int position = 0; position < newPage.getPositionCount(); position++) {
             long groupId = groupIds.getGroupId(position);
             groupedRows.ensureCapacity(groupId + 1);
 
-            RowHeap rows = groupedRows.get(groupId);
+            GroupRows rows = groupedRows.get(groupId);
             if (rows == null) {
                 // a new group
-                rows = new RowHeap(Ordering.from(comparator).reversed());
+                rows = createGroupRows();
                 groupedRows.set(groupId, rows);
             }
             else {
@@ -166,31 +212,22 @@ public class GroupedTopNBuilder
                 memorySizeInBytes -= rows.getEstimatedSizeInBytes();
             }
 
-            if (rows.size() < topN) {
-                // still have space for the current group
-                Row row = new Row(newPageId, position);
-                rows.enqueue(row);
-                newPageReference.reference(row);
+            Row newRow = new Row(newPageId, position);
+            if (rows.add(newRow, evictedRows)) {
+                newPageReference.reference(newRow);
             }
-            else {
-                // may compare with the topN-th element with in the heap to decide if update is necessary
-                Row previousRow = rows.first();
-                Row newRow = new Row(newPageId, position);
-                if (comparator.compare(newRow, previousRow) < 0) {
-                    // update reference and the heap
-                    rows.dequeue();
-                    PageReference previousPageReference = pageReferences.get(previousRow.getPageId());
-                    previousPageReference.dereference(previousRow.getPosition());
-                    newPageReference.reference(newRow);
-                    rows.enqueue(newRow);
-
-                    // compact a page if it is not the current input page and the reference count is below the threshold
-                    if (previousPageReference.getPage() != newPage &&
-                            previousPageReference.getUsedPositionCount() * COMPACT_THRESHOLD < previousPageReference.getPage().getPositionCount()) {
-                        pagesToCompact.add(previousRow.getPageId());
-                    }
+
+            for (Row previousRow : evictedRows) {
+                PageReference previousPageReference = pageReferences.get(previousRow.getPageId());
+                previousPageReference.dereference(previousRow.getPosition());
+
+                // compact a page if it is not the current input page and the reference count is below the threshold
+                if (previousPageReference.getPage() != newPage &&
+                        previousPageReference.getUsedPositionCount() * COMPACT_THRESHOLD < previousPageReference.getPage().getPositionCount()) {
+                    pagesToCompact.add(previousRow.getPageId());
                 }
             }
+            evictedRows.clear();
 
             memorySizeInBytes += rows.getEstimatedSizeInBytes();
         }
@@ -219,6 +256,14 @@ public class GroupedTopNBuilder
         }
     }
 
+    private GroupRows createGroupRows()
+    {
+        if (rankingFunction == ROW_NUMBER) {
+            return new RowHeap(comparator, topN);
+        }
+        return new PeerGroups(comparator, topN, rankingFunction == RANK);
+    }
+
     /**
      * The class is a pointer to a row in a page.
      * The actual position in the page is mutable because as pages are compacted, the position will change.
@@ -354,28 +399,213 @@ public class GroupedTopNBuilder
         }
     }
 
+    /**
+     * The rows of a group that are within the top N.
+     */
+    private interface GroupRows
+    {
+        /**
+         * Adds the row if it is within the top N, and collects the rows that are no longer within the top N as a result.
+         *
+         * @return whether the row was added
+         */
+        boolean add(Row row, List<Row> evictedRows);
+
+        int size();
+
+        /**
+         * Returns the row after which no row can be added, if there is one yet.
+         */
+        Optional<Row> getBoundaryRow();
+
+        /**
+         * Removes all the rows into {@code sortedRows}, in order, along with their row numbers or ranks.
+         */
+        void drainTo(ObjectBigArray<Row> sortedRows, IntBigArray rowNumbers);
+
+        long getEstimatedSizeInBytes();
+    }
+
     // this class is for precise memory tracking
     private static class RowHeap
             extends ObjectHeapPriorityQueue<Row>
+            implements GroupRows
     {
         private static final long INSTANCE_SIZE = ClassLayout.parseClass(RowHeap.class).instanceSize();
         private static final long ROW_ENTRY_SIZE = ClassLayout.parseClass(Row.class).instanceSize();
 
-        private RowHeap(Comparator<Row> comparator)
+        private final Comparator<Row> rowComparator;
+        private final int topN;
+
+        private RowHeap(Comparator<Row> rowComparator, int topN)
         {
-            super(1, comparator);
+            super(1, Ordering.from(rowComparator).reversed());
+            this.rowComparator = rowComparator;
+            this.topN = topN;
         }
 
-        private long getEstimatedSizeInBytes()
+        @Override
+        public boolean add(Row row, List<Row> evictedRows)
+        {
+            if (size() < topN) {
+                // still have space for the current group
+                enqueue(row);
+                return true;
+            }
+
+            // may compare with the topN-th element with in the heap to decide if update is necessary
+            if (rowComparator.compare(row, first()) < 0) {
+                evictedRows.add(dequeue());
+                enqueue(row);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Optional<Row> getBoundaryRow()
+        {
+            if (size() < topN) {
+                return Optional.empty();
+            }
+            return Optional.of(first());
+        }
+
+        @Override
+        public void drainTo(ObjectBigArray<Row> sortedRows, IntBigArray rowNumbers)
+        {
+            int index = size() - 1;
+            while (!isEmpty()) {
+                sortedRows.set(index, dequeue());
+                rowNumbers.set(index, index + 1);
+                index--;
+            }
+        }
+
+        @Override
+        public long getEstimatedSizeInBytes()
         {
             return INSTANCE_SIZE + sizeOf(heap) + size() * ROW_ENTRY_SIZE;
         }
     }
 
+    /**
+     * Rows grouped by their peers in the ordering, for rank and dense rank. Rows that tie with a row in the top N
+     * share its rank and are always kept; a peer group is evicted as a whole once its rank goes past N.
+     */
+    private static class PeerGroups
+            implements GroupRows
+    {
+        private static final long INSTANCE_SIZE = ClassLayout.parseClass(PeerGroups.class).instanceSize();
+        private static final long ROW_ENTRY_SIZE = ClassLayout.parseClass(Row.class).instanceSize();
+        // a TreeMap entry holds the key, value, left, right and parent references and the color
+        private static final long TREE_ENTRY_SIZE = 40;
+        private static final long PEER_GROUP_SIZE = TREE_ENTRY_SIZE + ClassLayout.parseClass(ObjectArrayList.class).instanceSize();
+
+        private final Comparator<Row> rowComparator;
+        private final int topN;
+        private final boolean rank;
+        // keyed by the first row of each peer group
+        private final TreeMap<Row, ObjectArrayList<Row>> peerGroups;
+
+        private int rowCount;
+        private long peerArraysSizeInBytes;
+
+        private PeerGroups(Comparator<Row> rowComparator, int topN, boolean rank)
+        {
+            this.rowComparator = rowComparator;
+            this.topN = topN;
+            this.rank = rank;
+            this.peerGroups = new TreeMap<>(rowComparator);
+        }
+
+        @Override
+        public boolean add(Row row, List<Row> evictedRows)
+        {
+            // a row that ties with a peer group within the top N shares its rank
+            ObjectArrayList<Row> peers = peerGroups.get(row);
+            if (peers == null) {
+                // a row after the last peer group ranks right after it
+                if (!peerGroups.isEmpty() && getRank(rowCount, peerGroups.size()) > topN && rowComparator.compare(row, peerGroups.lastKey()) > 0) {
+                    return false;
+                }
+                peers = new ObjectArrayList<>(1);
+                peerGroups.put(row, peers);
+            }
+            addPeer(peers, row);
+
+            // a row ahead of the last peer group moves it back by one rank at most
+            Map.Entry<Row, ObjectArrayList<Row>> lastPeerGroup = peerGroups.lastEntry();
+            int lastPeerGroupSize = lastPeerGroup.getValue().size();
+            if (getRank(rowCount - lastPeerGroupSize, peerGroups.size() - 1) > topN) {
+                peerGroups.pollLastEntry();
+                evictedRows.addAll(lastPeerGroup.getValue());
+                rowCount -= lastPeerGroupSize;
+                peerArraysSizeInBytes -= sizeOf(lastPeerGroup.getValue().elements());
+            }
+            return true;
+        }
+
+        @Override
+        public int size()
+        {
+            return rowCount;
+        }
+
+        @Override
+        public Optional<Row> getBoundaryRow()
+        {
+            if (peerGroups.isEmpty() || getRank(rowCount, peerGroups.size()) <= topN) {
+                return Optional.empty();
+            }
+            return Optional.of(peerGroups.lastKey());
+        }
+
+        @Override
+        public void drainTo(ObjectBigArray<Row> sortedRows, IntBigArray rowNumbers)
+        {
+            int index = 0;
+            int peerGroupIndex = 0;
+            for (ObjectArrayList<Row> peers : peerGroups.values()) {
+                int peerGroupRank = getRank(index, peerGroupIndex);
+                for (Row row : peers) {
+                    sortedRows.set(index, row);
+                    rowNumbers.set(index, peerGroupRank);
+                    index++;
+                }
+                peerGroupIndex++;
+            }
+            peerGroups.clear();
+            rowCount = 0;
+            peerArraysSizeInBytes = 0;
+        }
+
+        @Override
+        public long getEstimatedSizeInBytes()
+        {
+            return INSTANCE_SIZE + peerGroups.size() * PEER_GROUP_SIZE + peerArraysSizeInBytes + rowCount * ROW_ENTRY_SIZE;
+        }
+
+        // the rank of a row that follows the given numbers of rows and of peer groups
+        private int getRank(int precedingRowCount, int precedingPeerGroupCount)
+        {
+            return (rank ? precedingRowCount : precedingPeerGroupCount) + 1;
+        }
+
+        private void addPeer(ObjectArrayList<Row> peers, Row row)
+        {
+            peerArraysSizeInBytes -= sizeOf(peers.elements());
+            peers.add(row);
+            peerArraysSizeInBytes += sizeOf(peers.elements());
+            rowCount++;
+        }
+    }
+
     private class ResultIterator
             extends AbstractIterator<Page>
     {
         private final PageBuilder pageBuilder;
+        private final boolean produceRowNumber;
         // we may have 0 groups if there is no input page processed
         private final int groupCount = groupByHash.getGroupCount();
 
@@ -387,10 +617,13 @@ public class GroupedTopNBuilder
         // number of rows in the group
         private int currentGroupSize;
 
+        // the row number or rank of each row in the group
+        private final IntBigArray currentRowNumbers = new IntBigArray();
         private ObjectBigArray<Row> currentRows = nextGroupedRows();
 
-        ResultIterator()
+        ResultIterator(boolean produceRowNumber)
         {
+            this.produceRowNumber = produceRowNumber;
             if (produceRowNumber) {
                 pageBuilder = new PageBuilder(new ImmutableList.Builder<Type>().addAll(sourceTypes).add(BIGINT).build());
             }
@@ -422,7 +655,7 @@ public class GroupedTopNBuilder
                 }
 
                 if (produceRowNumber) {
-                    BIGINT.writeLong(pageBuilder.getBlockBuilder(sourceTypes.size()), currentGroupPosition + 1);
+                    BIGINT.writeLong(pageBuilder.getBlockBuilder(sourceTypes.size()), currentRowNumbers.get(currentGroupPosition));
                 }
                 pageBuilder.declarePosition();
                 currentGroupPosition++;
@@ -445,8 +678,8 @@ public class GroupedTopNBuilder
         private ObjectBigArray<Row> nextGroupedRows()
         {
             if (currentGroupNumber < groupCount) {
-                RowHeap rows = groupedRows.get(currentGroupNumber);
-                verify(rows != null && !rows.isEmpty(), "impossible to have inserted a group without a witness row");
+                GroupRows rows = groupedRows.get(currentGroupNumber);
+                verify(rows != null && rows.size() > 0, "impossible to have inserted a group without a witness row");
                 groupedRows.set(currentGroupNumber, null);
                 currentGroupSizeInBytes = rows.getEstimatedSizeInBytes();
                 currentGroupNumber++;
@@ -455,11 +688,8 @@ public class GroupedTopNBuilder
                 // sort output rows in a big array in case there are too many rows
                 ObjectBigArray<Row> sortedRows = new ObjectBigArray<>();
                 sortedRows.ensureCapacity(currentGroupSize);
-                int index = currentGroupSize - 1;
-                while (!rows.isEmpty()) {
-                    sortedRows.set(index, rows.dequeue());
-                    index--;
-                }
+                currentRowNumbers.ensureCapacity(currentGroupSize);
+                rows.drainTo(sortedRows, currentRowNumbers);
 
                 return sortedRows;
             }
@@ -21,6 +21,7 @@ import com.facebook.presto.operator.aggregation.Accumulator;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.builder.HashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder;
+import com.facebook.presto.operator.aggregation.builder.SkipAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.SpillableHashAggregationBuilder;
 import com.facebook.presto.operator.scalar.CombineHashFunction;
 import com.facebook.presto.spi.plan.AggregationNode.Step;
@@ -36,6 +37,9 @@ import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationMinRows;
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationUniqueRowsRatioThreshold;
+import static com.facebook.presto.SystemSessionProperties.isAdaptivePartialAggregationEnabled;
 import static com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder.toTypes;
 import static com.facebook.presto.sql.planner.optimizations.HashGenerationOptimizer.INITIAL_HASH_VALUE;
 import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
@@ -271,6 +275,15 @@ public class HashAggregationOperator
     private final List<Type> types;
     private final HashCollisionsCounter hashCollisionsCounter;
 
+    // a partial aggregation that does not reduce the number of rows stops aggregating
+    private final boolean adaptivePartialAggregation;
+    private final long adaptivePartialAggregationMinRows;
+    private final double adaptivePartialAggregationUniqueRowsRatioThreshold;
+    private long partialAggregationInputRows;
+    private long partialAggregationFlushedGroups;
+    private boolean partialAggregationDecided;
+    private boolean skipAggregation;
+
     private HashAggregationBuilder aggregationBuilder;
     private WorkProcessor<Page> outputPages;
     private boolean inputProcessed;
@@ -323,6 +336,14 @@ public class HashAggregationOperator
         this.hashCollisionsCounter = new HashCollisionsCounter(operatorContext);
         operatorContext.setInfoSupplier(hashCollisionsCounter);
         this.useSystemMemory = useSystemMemory;
+
+        this.adaptivePartialAggregation = step == Step.PARTIAL &&
+                !groupByChannels.isEmpty() &&
+                !hasOrderBy() &&
+                !hasDistinct() &&
+                isAdaptivePartialAggregationEnabled(operatorContext.getSession());
+        this.adaptivePartialAggregationMinRows = getAdaptivePartialAggregationMinRows(operatorContext.getSession());
+        this.adaptivePartialAggregationUniqueRowsRatioThreshold = getAdaptivePartialAggregationUniqueRowsRatioThreshold(operatorContext.getSession());
     }
 
     @Override
@@ -349,7 +370,8 @@ public class HashAggregationOperator
         if (finishing || outputPages != null) {
             return false;
         }
-        else if (aggregationBuilder != null && aggregationBuilder.isFull()) {
+        else if (aggregationBuilder != null && (aggregationBuilder.isFull() || skipAggregation)) {
+            // the aggregated rows have to be flushed before the input is passed through
             return false;
         }
         else {
@@ -365,7 +387,17 @@ public class HashAggregationOperator
         requireNonNull(page, "page is null");
         inputProcessed = true;
 
-        if (aggregationBuilder == null) {
+        if (skipAggregation) {
+            if (aggregationBuilder == null) {
+                aggregationBuilder = new SkipAggregationBuilder(
+                        groupByChannels,
+                        hashChannel,
+                        accumulatorFactories,
+                        useSystemMemory ? operatorContext.newLocalSystemMemoryContext(SkipAggregationBuilder.class.getSimpleName()) : operatorContext.localUserMemoryContext());
+            }
+            operatorContext.recordPartialAggregationSkippedPositions(page.getPositionCount());
+        }
+        else if (aggregationBuilder == null) {
             // TODO: We ignore spillEnabled here if any aggregate has ORDER BY clause or DISTINCT because they are not yet implemented for spilling.
             if (step.isOutputPartial() || !spillEnabled || hasOrderBy() || hasDistinct()) {
                 aggregationBuilder = new InMemoryHashAggregationBuilder(
@@ -409,6 +441,28 @@ public class HashAggregationOperator
             unfinishedWork = null;
         }
         aggregationBuilder.updateMemory();
+
+        if (adaptivePartialAggregation && !partialAggregationDecided) {
+            decideOnPartialAggregation(page.getPositionCount());
+        }
+    }
+
+    private void decideOnPartialAggregation(int inputRows)
+    {
+        partialAggregationInputRows += inputRows;
+        if (partialAggregationInputRows < adaptivePartialAggregationMinRows) {
+            return;
+        }
+        partialAggregationDecided = true;
+        if (!(aggregationBuilder instanceof InMemoryHashAggregationBuilder)) {
+            // only the in memory aggregation of a partial step tracks its groups
+            return;
+        }
+        long groups = partialAggregationFlushedGroups + ((InMemoryHashAggregationBuilder) aggregationBuilder).getGroupCount();
+        if (groups > partialAggregationInputRows * adaptivePartialAggregationUniqueRowsRatioThreshold) {
+            // flush what has been aggregated so far, and pass the rest of the input through
+            skipAggregation = true;
+        }
     }
 
     private boolean hasOrderBy()
@@ -469,8 +523,8 @@ public class HashAggregationOperator
                 }
             }
 
-            // only flush if we are finishing or the aggregation builder is full
-            if (!finishing && (aggregationBuilder == null || !aggregationBuilder.isFull())) {
+            // only flush if we are finishing, the aggregation builder is full or aggregation has been turned off
+            if (!finishing && (aggregationBuilder == null || !(aggregationBuilder.isFull() || skipAggregation))) {
                 return null;
             }
 
@@ -505,6 +559,9 @@ public class HashAggregationOperator
     {
         outputPages = null;
         if (aggregationBuilder != null) {
+            if (adaptivePartialAggregation && !partialAggregationDecided && aggregationBuilder instanceof InMemoryHashAggregationBuilder) {
+                partialAggregationFlushedGroups += ((InMemoryHashAggregationBuilder) aggregationBuilder).getGroupCount();
+            }
             aggregationBuilder.recordHashCollisions(hashCollisionsCounter);
             aggregationBuilder.close();
             // aggregationBuilder.close() will release all memory reserved in memory accounting.
@@ -22,6 +22,7 @@ import com.facebook.presto.spiller.SingleStreamSpillerFactory;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 
@@ -68,6 +69,8 @@ public class HashBuilderOperator
         private final int expectedPositions;
         private final boolean spillEnabled;
         private final SingleStreamSpillerFactory singleStreamSpillerFactory;
+        private final Optional<LocalDynamicFilter> dynamicFilter;
+        private final Map<String, Integer> dynamicFilterChannels;
 
         private final Map<Lifespan, Integer> partitionIndexManager = new HashMap<>();
 
@@ -86,7 +89,9 @@ public class HashBuilderOperator
                 int expectedPositions,
                 PagesIndex.Factory pagesIndexFactory,
                 boolean spillEnabled,
-                SingleStreamSpillerFactory singleStreamSpillerFactory)
+                SingleStreamSpillerFactory singleStreamSpillerFactory,
+                Optional<LocalDynamicFilter> dynamicFilter,
+                Map<String, Integer> dynamicFilterChannels)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -104,6 +109,9 @@ public class HashBuilderOperator
             this.pagesIndexFactory = requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
             this.spillEnabled = spillEnabled;
             this.singleStreamSpillerFactory = requireNonNull(singleStreamSpillerFactory, "singleStreamSpillerFactory is null");
+            this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
+            this.dynamicFilterChannels = ImmutableMap.copyOf(requireNonNull(dynamicFilterChannels, "dynamicFilterChannels is null"));
+            checkArgument(dynamicFilter.isPresent() != dynamicFilterChannels.isEmpty(), "both or none dynamicFilter and dynamicFilterChannels must be set");
 
             this.expectedPositions = expectedPositions;
         }
@@ -130,7 +138,9 @@ public class HashBuilderOperator
                     expectedPositions,
                     pagesIndexFactory,
                     spillEnabled,
-                    singleStreamSpillerFactory);
+                    singleStreamSpillerFactory,
+                    dynamicFilter,
+                    dynamicFilterChannels);
         }
 
         @Override
@@ -213,6 +223,9 @@ public class HashBuilderOperator
 
     private final HashCollisionsCounter hashCollisionsCounter;
 
+    private final Optional<LocalDynamicFilter> dynamicFilter;
+    private final Optional<DynamicFilterCollector> dynamicFilterCollector;
+
     private State state = State.CONSUMING_INPUT;
     private Optional<ListenableFuture<?>> lookupSourceNotNeeded = Optional.empty();
     private final SpilledLookupSourceHandle spilledLookupSourceHandle = new SpilledLookupSourceHandle();
@@ -238,7 +251,9 @@ public class HashBuilderOperator
             int expectedPositions,
             PagesIndex.Factory pagesIndexFactory,
             boolean spillEnabled,
-            SingleStreamSpillerFactory singleStreamSpillerFactory)
+            SingleStreamSpillerFactory singleStreamSpillerFactory,
+            Optional<LocalDynamicFilter> dynamicFilter,
+            Map<String, Integer> dynamicFilterChannels)
     {
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
@@ -263,6 +278,12 @@ public class HashBuilderOperator
 
         this.spillEnabled = spillEnabled;
         this.singleStreamSpillerFactory = requireNonNull(singleStreamSpillerFactory, "singleStreamSpillerFactory is null");
+
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
+        this.dynamicFilterCollector = dynamicFilter.map(filter -> filter.createCollector(
+                dynamicFilterChannels,
+                lookupSourceFactory.getTypes(),
+                operatorContext.newLocalSystemMemoryContext(HashBuilderOperator.class.getSimpleName())));
     }
 
     @Override
@@ -277,6 +298,13 @@ public class HashBuilderOperator
         return state;
     }
 
+    @VisibleForTesting
+    @Nullable
+    LookupSourceSupplier getLookupSourceSupplier()
+    {
+        return lookupSourceSupplier;
+    }
+
     @Override
     public ListenableFuture<?> isBlocked()
     {
@@ -324,6 +352,9 @@ public class HashBuilderOperator
             return;
         }
 
+        // values are collected regardless of spilling, so that the filter covers the whole partition
+        dynamicFilterCollector.ifPresent(collector -> collector.add(page));
+
         if (state == State.SPILLING_INPUT) {
             spillInput(page);
             return;
@@ -380,6 +411,11 @@ public class HashBuilderOperator
             return spillIndex();
         }
         else if (state == State.LOOKUP_SOURCE_BUILT) {
+            if (lookupSourceFactory.isOuter()) {
+                // Stale revoking request, a built outer partition is accounted as user memory, see finishInput
+                finishMemoryRevoke = Optional.of(() -> {});
+                return immediateFuture(null);
+            }
             finishMemoryRevoke = Optional.of(() -> {
                 lookupSourceFactory.setPartitionSpilledLookupSourceHandle(partitionIndex, spilledLookupSourceHandle);
                 lookupSourceNotNeeded = Optional.empty();
@@ -483,11 +519,15 @@ public class HashBuilderOperator
             return;
         }
 
+        publishDynamicFilter();
+
         LookupSourceSupplier partition = buildLookupSource();
-        if (spillEnabled) {
+        // For outer join the visited positions of the lent lookup source are tracked until all probes finish, so it can not be spilled anymore
+        if (spillEnabled && !lookupSourceFactory.isOuter()) {
             localRevocableMemoryContext.setBytes(partition.get().getInMemorySizeInBytes());
         }
         else {
+            localRevocableMemoryContext.setBytes(0);
             localUserMemoryContext.setBytes(partition.get().getInMemorySizeInBytes());
         }
         lookupSourceNotNeeded = Optional.of(lookupSourceFactory.lendPartitionLookupSource(partitionIndex, partition));
@@ -518,9 +558,17 @@ public class HashBuilderOperator
             return;
         }
         checkSuccess(spillInProgress, "spilling failed");
+        publishDynamicFilter();
         state = State.INPUT_SPILLED;
     }
 
+    private void publishDynamicFilter()
+    {
+        if (dynamicFilterCollector.isPresent()) {
+            dynamicFilter.get().addPartition(dynamicFilterCollector.get().build(), lookupSourceFactory.partitions());
+        }
+    }
+
     private void unspillLookupSourceIfRequested()
     {
         checkState(state == State.INPUT_SPILLED);
@@ -586,6 +634,11 @@ public class HashBuilderOperator
 
     private LookupSourceSupplier buildLookupSource()
     {
+        // a direct-addressed lookup source allocates its key array while building, before its size can be reported
+        long directLookupSourceSize = index.getEstimatedDirectLookupSourceSize(operatorContext.getSession(), hashChannels, sortChannel);
+        if (directLookupSourceSize > 0) {
+            localUserMemoryContext.setBytes(localUserMemoryContext.getBytes() + directLookupSourceSize);
+        }
         LookupSourceSupplier partition = index.createLookupSourceSupplier(operatorContext.getSession(), hashChannels, preComputedHashChannel, filterFunctionFactory, sortChannel, searchFunctionFactories, Optional.of(outputChannels));
         hashCollisionsCounter.recordHashCollision(partition.getHashCollisions(), partition.getExpectedHashCollisions());
         checkState(lookupSourceSupplier == null, "lookupSourceSupplier is already set");
@@ -627,6 +680,7 @@ public class HashBuilderOperator
             spiller.ifPresent(closer::register);
             closer.register(() -> localUserMemoryContext.setBytes(0));
             closer.register(() -> localRevocableMemoryContext.setBytes(0));
+            dynamicFilterCollector.ifPresent(collector -> closer.register(collector::close));
         }
         catch (IOException e) {
             throw new RuntimeException(e);
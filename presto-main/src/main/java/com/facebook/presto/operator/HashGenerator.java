@@ -19,6 +19,16 @@ public interface HashGenerator
 {
     long hashPosition(int position, Page page);
 
+    /**
+     * Computes the hashes of the positions {@code [positionOffset, positionOffset + length)} of the page into the beginning of {@code hashes}.
+     */
+    default void hashPositions(Page page, int positionOffset, int length, long[] hashes)
+    {
+        for (int i = 0; i < length; i++) {
+            hashes[i] = hashPosition(positionOffset + i, page);
+        }
+    }
+
     default int getPartition(int partitionCount, int position, Page page)
     {
         long rawHash = hashPosition(position, page);
@@ -17,16 +17,25 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
-import static com.facebook.airlift.concurrent.MoreFutures.tryGetFutureValue;
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class HashSemiJoinOperator
@@ -42,9 +51,16 @@ public class HashSemiJoinOperator
         private final SetSupplier setSupplier;
         private final List<Type> probeTypes;
         private final int probeJoinChannel;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
         private boolean closed;
 
-        public HashSemiJoinOperatorFactory(int operatorId, PlanNodeId planNodeId, SetSupplier setSupplier, List<? extends Type> probeTypes, int probeJoinChannel)
+        public HashSemiJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                SetSupplier setSupplier,
+                List<? extends Type> probeTypes,
+                int probeJoinChannel,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -52,6 +68,8 @@ public class HashSemiJoinOperator
             this.probeTypes = ImmutableList.copyOf(probeTypes);
             checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
             this.probeJoinChannel = probeJoinChannel;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            setSupplier.getSpilledChannelSetHandle().probeFactoryCreated();
         }
 
         @Override
@@ -59,30 +77,46 @@ public class HashSemiJoinOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, HashSemiJoinOperator.class.getSimpleName());
-            return new HashSemiJoinOperator(operatorContext, setSupplier, probeJoinChannel);
+            return new HashSemiJoinOperator(operatorContext, setSupplier, probeTypes, probeJoinChannel, partitioningSpillerFactory);
         }
 
         @Override
         public void noMoreOperators()
         {
+            if (closed) {
+                return;
+            }
             closed = true;
+            setSupplier.getSpilledChannelSetHandle().probeFactoryClosed();
         }
 
         @Override
         public OperatorFactory duplicate()
         {
-            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel);
+            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, partitioningSpillerFactory);
         }
     }
 
+    private final List<Type> probeTypes;
     private final int probeJoinChannel;
     private final ListenableFuture<ChannelSet> channelSetFuture;
+    private final SpilledChannelSetHandle spilledChannelSetHandle;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
     private ChannelSet channelSet;
     private Page outputPage;
     private boolean finishing;
 
-    public HashSemiJoinOperator(OperatorContext operatorContext, SetSupplier channelSetFuture, int probeJoinChannel)
+    // the probe side is partitioned like the build side when the set has been spilled
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private boolean spilledInputFinished;
+    private int processedPartitions;
+    private ListenableFuture<ChannelSet> partitionFuture;
+    private Iterator<Page> partitionPages;
+    private boolean closed;
+
+    public HashSemiJoinOperator(OperatorContext operatorContext, SetSupplier channelSetFuture, List<Type> probeTypes, int probeJoinChannel, PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
@@ -91,7 +125,11 @@ public class HashSemiJoinOperator
         checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
 
         this.channelSetFuture = channelSetFuture.getChannelSet();
+        this.spilledChannelSetHandle = channelSetFuture.getSpilledChannelSetHandle();
+        this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
         this.probeJoinChannel = probeJoinChannel;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        spilledChannelSetHandle.probeOperatorCreated();
     }
 
     @Override
@@ -109,26 +147,48 @@ public class HashSemiJoinOperator
     @Override
     public boolean isFinished()
     {
+        if (spiller.isPresent()) {
+            return finishing && processedPartitions == spilledChannelSetHandle.getPartitionCount();
+        }
         return finishing && outputPage == null;
     }
 
     @Override
     public ListenableFuture<?> isBlocked()
     {
-        return channelSetFuture;
+        if (!channelSetFuture.isDone()) {
+            return channelSetFuture;
+        }
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
+        if (partitionFuture != null && !partitionFuture.isDone()) {
+            return partitionFuture;
+        }
+        return NOT_BLOCKED;
     }
 
     @Override
     public boolean needsInput()
     {
-        if (finishing || outputPage != null) {
+        if (finishing || outputPage != null || !channelSetFuture.isDone() || !spillInProgress.isDone()) {
             return false;
         }
 
-        if (channelSet == null) {
-            channelSet = tryGetFutureValue(channelSetFuture).orElse(null);
+        if (channelSet == null && !spiller.isPresent()) {
+            channelSet = getFutureValue(channelSetFuture);
+            if (channelSet == null) {
+                // the set has been spilled, so the probe side is partitioned the same way
+                spiller = Optional.of(partitioningSpillerFactory.create(
+                        probeTypes,
+                        new LocalPartitionGenerator(
+                                new InterpretedHashGenerator(ImmutableList.of(probeTypes.get(probeJoinChannel)), new int[] {probeJoinChannel}),
+                                spilledChannelSetHandle.getPartitionCount()),
+                        operatorContext.getSpillContext(),
+                        operatorContext.newAggregateSystemMemoryContext()));
+            }
         }
-        return channelSet != null;
+        return true;
     }
 
     @Override
@@ -136,9 +196,68 @@ public class HashSemiJoinOperator
     {
         requireNonNull(page, "page is null");
         checkState(!finishing, "Operator is finishing");
-        checkState(channelSet != null, "Set has not been built yet");
+        checkState(channelSet != null || spiller.isPresent(), "Set has not been built yet");
         checkState(outputPage == null, "Operator still has pending output");
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (spiller.isPresent()) {
+            spillInProgress = spiller.get().partitionAndSpill(page, partition -> true).getSpillingFuture();
+            return;
+        }
+
+        outputPage = semiJoin(page, channelSet, channelSet.containsNull(), channelSet.isEmpty());
+    }
 
+    @Override
+    public Page getOutput()
+    {
+        if (spiller.isPresent()) {
+            return getSpilledOutput();
+        }
+
+        Page result = outputPage;
+        outputPage = null;
+        return result;
+    }
+
+    private Page getSpilledOutput()
+    {
+        if (!finishing || !spillInProgress.isDone()) {
+            return null;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (!spilledInputFinished) {
+            spilledInputFinished = true;
+            spilledChannelSetHandle.probeInputFinished();
+        }
+
+        while (processedPartitions < spilledChannelSetHandle.getPartitionCount()) {
+            if (partitionFuture == null) {
+                partitionFuture = spilledChannelSetHandle.getPartition(processedPartitions);
+            }
+            if (!partitionFuture.isDone()) {
+                return null;
+            }
+            if (partitionPages == null) {
+                partitionPages = spiller.get().getSpilledPages(processedPartitions);
+            }
+            if (partitionPages.hasNext()) {
+                // nulls are matched against the whole set, not just the partition
+                return semiJoin(partitionPages.next(), getFutureValue(partitionFuture), spilledChannelSetHandle.containsNull(), spilledChannelSetHandle.isEmpty());
+            }
+
+            partitionFuture = null;
+            partitionPages = null;
+            spilledChannelSetHandle.partitionProcessed(processedPartitions);
+            processedPartitions++;
+        }
+        spiller.get().verifyAllPartitionsRead();
+        return null;
+    }
+
+    private Page semiJoin(Page page, ChannelSet channelSet, boolean containsNull, boolean empty)
+    {
         // create the block builder for the new boolean column
         // we know the exact size required for the block
         BlockBuilder blockBuilder = BOOLEAN.createFixedSizeBlockBuilder(page.getPositionCount());
@@ -148,7 +267,7 @@ public class HashSemiJoinOperator
         // update hashing strategy to use probe cursor
         for (int position = 0; position < page.getPositionCount(); position++) {
             if (probeJoinPage.getBlock(0).isNull(position)) {
-                if (channelSet.isEmpty()) {
+                if (empty) {
                     BOOLEAN.writeBoolean(blockBuilder, false);
                 }
                 else {
@@ -157,7 +276,7 @@ public class HashSemiJoinOperator
             }
             else {
                 boolean contains = channelSet.contains(position, probeJoinPage);
-                if (!contains && channelSet.containsNull()) {
+                if (!contains && containsNull) {
                     blockBuilder.appendNull();
                 }
                 else {
@@ -167,14 +286,24 @@ public class HashSemiJoinOperator
         }
 
         // add the new boolean column to the page
-        outputPage = page.appendColumn(blockBuilder.build());
+        return page.appendColumn(blockBuilder.build());
     }
 
     @Override
-    public Page getOutput()
+    public void close()
     {
-        Page result = outputPage;
-        outputPage = null;
-        return result;
+        if (closed) {
+            return;
+        }
+        closed = true;
+        spilledChannelSetHandle.probeOperatorClosed(spilledInputFinished, processedPartitions);
+        if (spiller.isPresent()) {
+            try {
+                spiller.get().close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 }
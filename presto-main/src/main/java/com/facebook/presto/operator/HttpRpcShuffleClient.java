@@ -22,17 +22,21 @@ import com.facebook.airlift.http.client.ResponseTooLargeException;
 import com.facebook.airlift.log.Logger;
 import com.facebook.presto.operator.PageBufferClient.PagesResponse;
 import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
 import com.google.common.net.MediaType;
 import com.google.common.util.concurrent.ListenableFuture;
-import io.airlift.slice.InputStreamSliceInput;
-import io.airlift.slice.SliceInput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
 import io.airlift.units.DataSize;
 
 import javax.annotation.concurrent.ThreadSafe;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URI;
 import java.util.List;
@@ -52,8 +56,10 @@ import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_TOKEN;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_TASK_INSTANCE_ID;
 import static com.facebook.presto.operator.PageBufferClient.PagesResponse.createEmptyPagesResponse;
 import static com.facebook.presto.operator.PageBufferClient.PagesResponse.createPagesResponse;
-import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.facebook.presto.server.SerializedPageWriteListener.PAGE_METADATA_SIZE;
 import static com.google.common.net.HttpHeaders.CONTENT_TYPE;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
@@ -184,8 +190,8 @@ public final class HttpRpcShuffleClient
                 long nextToken = getNextToken(response);
                 boolean complete = getComplete(response);
 
-                try (SliceInput input = new InputStreamSliceInput(response.getInputStream())) {
-                    List<SerializedPage> pages = ImmutableList.copyOf(readSerializedPages(input));
+                try (InputStream input = response.getInputStream()) {
+                    List<SerializedPage> pages = readSerializedPages(input);
                     return createPagesResponse(taskInstanceId, token, nextToken, pages, complete);
                 }
                 catch (IOException e) {
@@ -197,6 +203,37 @@ public final class HttpRpcShuffleClient
             }
         }
 
+        /**
+         * Reads the data of every page straight from the response stream into an array of its own, rather than
+         * through the buffer of an InputStreamSliceInput, so that the data is copied once on its way from the
+         * response. The pages don't share a buffer, so that a page holds on to no more memory than it reports.
+         */
+        @VisibleForTesting
+        static List<SerializedPage> readSerializedPages(InputStream input)
+                throws IOException
+        {
+            ImmutableList.Builder<SerializedPage> pages = ImmutableList.builder();
+            Slice metadata = Slices.allocate(PAGE_METADATA_SIZE);
+            while (true) {
+                int metadataSize = ByteStreams.read(input, metadata.byteArray(), 0, PAGE_METADATA_SIZE);
+                if (metadataSize == 0) {
+                    return pages.build();
+                }
+                if (metadataSize < PAGE_METADATA_SIZE) {
+                    throw new EOFException(format("Expected %s bytes of page metadata, but got %s", PAGE_METADATA_SIZE, metadataSize));
+                }
+
+                int positionCount = metadata.getInt(0);
+                byte codecMarkers = metadata.getByte(SIZE_OF_INT);
+                int uncompressedSizeInBytes = metadata.getInt(SIZE_OF_INT + SIZE_OF_BYTE);
+                int sizeInBytes = metadata.getInt(SIZE_OF_INT * 2 + SIZE_OF_BYTE);
+
+                byte[] data = new byte[sizeInBytes];
+                ByteStreams.readFully(input, data);
+                pages.add(new SerializedPage(Slices.wrappedBuffer(data), codecMarkers, positionCount, uncompressedSizeInBytes));
+            }
+        }
+
         private static String getTaskInstanceId(Response response)
         {
             String taskInstanceId = response.getHeader(PRESTO_TASK_INSTANCE_ID);
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Share of the probe rows of a join operator that pass the Bloom filter of the lookup source. Once enough
+ * rows have been tested, a filter that lets most of them through is not consulted anymore, since testing
+ * the rows then costs more than the lookups it saves.
+ */
+@NotThreadSafe
+public class JoinBloomFilterPassRate
+{
+    private static final long DEFAULT_MIN_TESTED_ROWS = 16 * 1024;
+    private static final double DEFAULT_MAX_PASS_RATE = 0.8;
+
+    private final long minTestedRows;
+    private final double maxPassRate;
+
+    private long testedRows;
+    private long passedRows;
+    private boolean bloomFilterConsulted = true;
+
+    public JoinBloomFilterPassRate()
+    {
+        this(DEFAULT_MIN_TESTED_ROWS, DEFAULT_MAX_PASS_RATE);
+    }
+
+    @VisibleForTesting
+    JoinBloomFilterPassRate(long minTestedRows, double maxPassRate)
+    {
+        checkArgument(minTestedRows > 0, "minTestedRows must be positive");
+        checkArgument(maxPassRate >= 0 && maxPassRate <= 1, "maxPassRate must be between 0 and 1");
+        this.minTestedRows = minTestedRows;
+        this.maxPassRate = maxPassRate;
+    }
+
+    public boolean isBloomFilterConsulted()
+    {
+        return bloomFilterConsulted;
+    }
+
+    public void record(int testedRows, int passedRows)
+    {
+        this.testedRows += testedRows;
+        this.passedRows += passedRows;
+        if (this.testedRows >= minTestedRows && this.passedRows > this.testedRows * maxPassRate) {
+            bloomFilterConsulted = false;
+        }
+    }
+}
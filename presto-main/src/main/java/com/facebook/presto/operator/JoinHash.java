@@ -92,6 +92,25 @@ public final class JoinHash
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
 
+    @Override
+    public boolean hasBloomFilter()
+    {
+        return pagesHash.hasBloomFilter();
+    }
+
+    @Override
+    public boolean mightContainRawHash(long rawHash)
+    {
+        return pagesHash.mightContainRawHash(rawHash);
+    }
+
+    @Override
+    public boolean isJoinPositionDeterminedByKeys()
+    {
+        // sorted position links skip the positions that the filter function rejects for the probe row
+        return positionLinks == null || positionLinks instanceof ArrayPositionLinks;
+    }
+
     private long startJoinPosition(int currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
         if (currentJoinPosition == -1) {
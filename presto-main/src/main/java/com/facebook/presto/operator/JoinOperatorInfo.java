@@ -32,8 +32,10 @@ public class JoinOperatorInfo
     private final long[] logHistogramProbes;
     private final long[] logHistogramOutput;
     private final Optional<Long> lookupSourcePositions;
+    private final long bloomFilterProbes;
+    private final long bloomFilterHits;
 
-    public static JoinOperatorInfo createJoinOperatorInfo(JoinType joinType, long[] logHistogramCounters, Optional<Long> lookupSourcePositions)
+    public static JoinOperatorInfo createJoinOperatorInfo(JoinType joinType, long[] logHistogramCounters, Optional<Long> lookupSourcePositions, long bloomFilterProbes, long bloomFilterHits)
     {
         long[] logHistogramProbes = new long[HISTOGRAM_BUCKETS];
         long[] logHistogramOutput = new long[HISTOGRAM_BUCKETS];
@@ -41,7 +43,7 @@ public class JoinOperatorInfo
             logHistogramProbes[i] = logHistogramCounters[2 * i];
             logHistogramOutput[i] = logHistogramCounters[2 * i + 1];
         }
-        return new JoinOperatorInfo(joinType, logHistogramProbes, logHistogramOutput, lookupSourcePositions);
+        return new JoinOperatorInfo(joinType, logHistogramProbes, logHistogramOutput, lookupSourcePositions, bloomFilterProbes, bloomFilterHits);
     }
 
     @JsonCreator
@@ -49,7 +51,9 @@ public class JoinOperatorInfo
             @JsonProperty("joinType") JoinType joinType,
             @JsonProperty("logHistogramProbes") long[] logHistogramProbes,
             @JsonProperty("logHistogramOutput") long[] logHistogramOutput,
-            @JsonProperty("lookupSourcePositions") Optional<Long> lookupSourcePositions)
+            @JsonProperty("lookupSourcePositions") Optional<Long> lookupSourcePositions,
+            @JsonProperty("bloomFilterProbes") long bloomFilterProbes,
+            @JsonProperty("bloomFilterHits") long bloomFilterHits)
     {
         checkArgument(logHistogramProbes.length == HISTOGRAM_BUCKETS);
         checkArgument(logHistogramOutput.length == HISTOGRAM_BUCKETS);
@@ -57,6 +61,8 @@ public class JoinOperatorInfo
         this.logHistogramProbes = logHistogramProbes;
         this.logHistogramOutput = logHistogramOutput;
         this.lookupSourcePositions = lookupSourcePositions;
+        this.bloomFilterProbes = bloomFilterProbes;
+        this.bloomFilterHits = bloomFilterHits;
     }
 
     @JsonProperty
@@ -86,6 +92,29 @@ public class JoinOperatorInfo
         return lookupSourcePositions;
     }
 
+    /**
+     * Number of probe rows tested against the Bloom filter of the lookup source
+     */
+    @JsonProperty
+    public long getBloomFilterProbes()
+    {
+        return bloomFilterProbes;
+    }
+
+    /**
+     * Number of probe rows that passed the Bloom filter and were looked up
+     */
+    @JsonProperty
+    public long getBloomFilterHits()
+    {
+        return bloomFilterHits;
+    }
+
+    public double getBloomFilterHitRate()
+    {
+        return bloomFilterProbes == 0 ? 1.0 : (double) bloomFilterHits / bloomFilterProbes;
+    }
+
     @Override
     public String toString()
     {
@@ -94,6 +123,8 @@ public class JoinOperatorInfo
                 .add("logHistogramProbes", logHistogramProbes)
                 .add("logHistogramOutput", logHistogramOutput)
                 .add("lookupSourcePositions", lookupSourcePositions)
+                .add("bloomFilterProbes", bloomFilterProbes)
+                .add("bloomFilterHits", bloomFilterHits)
                 .toString();
     }
 
@@ -113,7 +144,13 @@ public class JoinOperatorInfo
             mergedSourcePositions = Optional.of(this.lookupSourcePositions.orElse(0L) + other.lookupSourcePositions.orElse(0L));
         }
 
-        return new JoinOperatorInfo(this.joinType, logHistogramProbes, logHistogramOutput, mergedSourcePositions);
+        return new JoinOperatorInfo(
+                this.joinType,
+                logHistogramProbes,
+                logHistogramOutput,
+                mergedSourcePositions,
+                this.bloomFilterProbes + other.bloomFilterProbes,
+                this.bloomFilterHits + other.bloomFilterHits);
     }
 
     @Override
@@ -15,12 +15,17 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+
+import javax.annotation.Nullable;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.DictionaryJoinPositionCache.UNKNOWN_JOIN_POSITION;
+import static java.util.Objects.requireNonNull;
 
 public class JoinProbe
 {
@@ -39,20 +44,74 @@ public class JoinProbe
 
         public JoinProbe createJoinProbe(Page page)
         {
-            return new JoinProbe(probeOutputChannels, page, probeJoinChannels, probeHashChannel);
+            return new JoinProbe(probeOutputChannels, page, probeJoinChannels, probeHashChannel, null, null, null);
+        }
+
+        /**
+         * Creates a probe that tests the hashes of its rows against the Bloom filter of the lookup source, if it has one,
+         * before looking them up. The hash generator must produce the raw hashes of the probe join channels of the page.
+         * The filter is not consulted anymore once the pass rate shared by the pages of the operator shows that it lets
+         * through most of the rows. A dictionary encoded join key is looked up once per dictionary entry, through the
+         * cache shared by the pages of the operator.
+         */
+        public JoinProbe createJoinProbe(
+                Page page,
+                HashGenerator hashGenerator,
+                DictionaryJoinPositionCache dictionaryJoinPositionCache,
+                JoinBloomFilterPassRate bloomFilterPassRate)
+        {
+            return new JoinProbe(
+                    probeOutputChannels,
+                    page,
+                    probeJoinChannels,
+                    probeHashChannel,
+                    requireNonNull(hashGenerator, "hashGenerator is null"),
+                    requireNonNull(dictionaryJoinPositionCache, "dictionaryJoinPositionCache is null"),
+                    requireNonNull(bloomFilterPassRate, "bloomFilterPassRate is null"));
         }
     }
 
+    private static final int BLOOM_FILTER_BATCH_SIZE = 1024;
+
     private final int[] probeOutputChannels;
     private final int positionCount;
     private final Block[] probeBlocks;
     private final Page page;
     private final Page probePage;
     private final Optional<Block> probeHashBlock;
+    @Nullable
+    private final HashGenerator hashGenerator;
+    @Nullable
+    private final DictionaryJoinPositionCache dictionaryJoinPositionCache;
+    @Nullable
+    private final JoinBloomFilterPassRate bloomFilterPassRate;
+    // the only join channel, if it is dictionary encoded
+    @Nullable
+    private final DictionaryBlock dictionaryProbeBlock;
 
     private int position = -1;
 
-    private JoinProbe(int[] probeOutputChannels, Page page, List<Integer> probeJoinChannels, OptionalInt probeHashChannel)
+    // join positions of the dictionary entries of the join channel, cached for the lookup source they were looked up in
+    private LookupSource dictionaryLookupSource;
+    @Nullable
+    private long[] dictionaryJoinPositions;
+
+    // raw hashes of the current batch of rows, and whether the Bloom filter lets them through
+    private long[] batchRawHashes;
+    private boolean[] batchCandidates;
+    private int batchStart;
+    private int batchEnd;
+    private long bloomFilterProbes;
+    private long bloomFilterHits;
+
+    private JoinProbe(
+            int[] probeOutputChannels,
+            Page page,
+            List<Integer> probeJoinChannels,
+            OptionalInt probeHashChannel,
+            @Nullable HashGenerator hashGenerator,
+            @Nullable DictionaryJoinPositionCache dictionaryJoinPositionCache,
+            @Nullable JoinBloomFilterPassRate bloomFilterPassRate)
     {
         this.probeOutputChannels = probeOutputChannels;
         this.positionCount = page.getPositionCount();
@@ -64,6 +123,15 @@ public class JoinProbe
         this.page = page;
         this.probePage = new Page(page.getPositionCount(), probeBlocks);
         this.probeHashBlock = probeHashChannel.isPresent() ? Optional.of(page.getBlock(probeHashChannel.getAsInt())) : Optional.empty();
+        this.hashGenerator = hashGenerator;
+        this.dictionaryJoinPositionCache = dictionaryJoinPositionCache;
+        this.bloomFilterPassRate = bloomFilterPassRate;
+        if (dictionaryJoinPositionCache != null && probeBlocks.length == 1 && probeBlocks[0].getLoadedBlock() instanceof DictionaryBlock) {
+            this.dictionaryProbeBlock = (DictionaryBlock) probeBlocks[0].getLoadedBlock();
+        }
+        else {
+            this.dictionaryProbeBlock = null;
+        }
     }
 
     public int[] getOutputChannels()
@@ -82,6 +150,32 @@ public class JoinProbe
         if (currentRowContainsNull()) {
             return -1;
         }
+        if (dictionaryProbeBlock != null) {
+            if (lookupSource != dictionaryLookupSource) {
+                dictionaryLookupSource = lookupSource;
+                dictionaryJoinPositions = dictionaryJoinPositionCache.getJoinPositions(lookupSource, dictionaryProbeBlock);
+            }
+            if (dictionaryJoinPositions != null) {
+                int dictionaryId = dictionaryProbeBlock.getId(position);
+                long joinPosition = dictionaryJoinPositions[dictionaryId];
+                if (joinPosition == UNKNOWN_JOIN_POSITION) {
+                    joinPosition = dictionaryJoinPositionCache.lookup(lookupSource, dictionaryId);
+                }
+                return joinPosition;
+            }
+        }
+        if (position >= batchEnd && hashGenerator != null && lookupSource.hasBloomFilter() && bloomFilterPassRate.isBloomFilterConsulted()) {
+            hashBatch(lookupSource);
+        }
+        if (position < batchEnd) {
+            int batchPosition = position - batchStart;
+            bloomFilterProbes++;
+            if (!batchCandidates[batchPosition]) {
+                return -1;
+            }
+            bloomFilterHits++;
+            return lookupSource.getJoinPosition(position, probePage, page, batchRawHashes[batchPosition]);
+        }
         if (probeHashBlock.isPresent()) {
             long rawHash = BIGINT.getLong(probeHashBlock.get(), position);
             return lookupSource.getJoinPosition(position, probePage, page, rawHash);
@@ -89,6 +183,16 @@ public class JoinProbe
         return lookupSource.getJoinPosition(position, probePage, page);
     }
 
+    public long getBloomFilterProbes()
+    {
+        return bloomFilterProbes;
+    }
+
+    public long getBloomFilterHits()
+    {
+        return bloomFilterHits;
+    }
+
     public int getPosition()
     {
         return position;
@@ -99,6 +203,25 @@ public class JoinProbe
         return page;
     }
 
+    private void hashBatch(LookupSource lookupSource)
+    {
+        if (batchRawHashes == null) {
+            int batchSize = Math.min(BLOOM_FILTER_BATCH_SIZE, positionCount);
+            batchRawHashes = new long[batchSize];
+            batchCandidates = new boolean[batchSize];
+        }
+        batchStart = position;
+        batchEnd = Math.min(position + batchRawHashes.length, positionCount);
+        int length = batchEnd - batchStart;
+        hashGenerator.hashPositions(page, batchStart, length, batchRawHashes);
+        int passedRows = 0;
+        for (int i = 0; i < length; i++) {
+            batchCandidates[i] = lookupSource.mightContainRawHash(batchRawHashes[i]);
+            passedRows += batchCandidates[i] ? 1 : 0;
+        }
+        bloomFilterPassRate.record(length, passedRows);
+    }
+
     private boolean currentRowContainsNull()
     {
         for (Block probeBlock : probeBlocks) {
@@ -41,6 +41,9 @@ public class JoinStatisticsCounter
      */
     private Optional<Long> lookupSourcePositions = Optional.empty();
 
+    private long bloomFilterProbes;
+    private long bloomFilterHits;
+
     public JoinStatisticsCounter(JoinType joinType)
     {
         this.joinType = requireNonNull(joinType, "joinType is null");
@@ -51,6 +54,12 @@ public class JoinStatisticsCounter
         this.lookupSourcePositions = Optional.of(this.lookupSourcePositions.orElse(0L) + lookupSourcePositionsDelta);
     }
 
+    public void recordBloomFilterProbes(long probes, long hits)
+    {
+        bloomFilterProbes += probes;
+        bloomFilterHits += hits;
+    }
+
     public void recordProbe(int numSourcePositions)
     {
         int bucket;
@@ -73,6 +82,6 @@ public class JoinStatisticsCounter
     @Override
     public JoinOperatorInfo get()
     {
-        return createJoinOperatorInfo(joinType, logHistogramCounters, lookupSourcePositions);
+        return createJoinOperatorInfo(joinType, logHistogramCounters, lookupSourcePositions, bloomFilterProbes, bloomFilterHits);
     }
 }
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.nonCancellationPropagating;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dynamic filters of a single join within a task. Every build partition reports the domains
+ * of its join keys; once all of them have reported the union of the domains becomes available
+ * to the probe side table scans.
+ */
+@ThreadSafe
+public class LocalDynamicFilter
+{
+    private final PlanNodeId joinId;
+    private final int maxDistinctValuesPerDriver;
+    private final SettableFuture<TupleDomain<String>> resultFuture = SettableFuture.create();
+
+    @GuardedBy("this")
+    private final List<TupleDomain<String>> partitions = new ArrayList<>();
+
+    public LocalDynamicFilter(PlanNodeId joinId, int maxDistinctValuesPerDriver)
+    {
+        this.joinId = requireNonNull(joinId, "joinId is null");
+        checkArgument(maxDistinctValuesPerDriver > 0, "maxDistinctValuesPerDriver must be positive");
+        this.maxDistinctValuesPerDriver = maxDistinctValuesPerDriver;
+    }
+
+    public PlanNodeId getJoinId()
+    {
+        return joinId;
+    }
+
+    /**
+     * @param buildChannels dynamic filter id to the build side channel the values are collected from
+     */
+    public DynamicFilterCollector createCollector(Map<String, Integer> buildChannels, List<Type> buildTypes, LocalMemoryContext memoryContext)
+    {
+        return new DynamicFilterCollector(buildChannels, buildTypes, maxDistinctValuesPerDriver, memoryContext);
+    }
+
+    public synchronized void addPartition(TupleDomain<String> tupleDomain, int partitionCount)
+    {
+        requireNonNull(tupleDomain, "tupleDomain is null");
+        checkState(!resultFuture.isDone(), "Dynamic filter for join %s is already complete", joinId);
+
+        partitions.add(tupleDomain);
+        checkState(partitions.size() <= partitionCount, "Too many partitions reported for join %s", joinId);
+        if (partitions.size() == partitionCount) {
+            TupleDomain<String> result = TupleDomain.columnWiseUnion(partitions);
+            partitions.clear();
+            resultFuture.set(result);
+        }
+    }
+
+    public ListenableFuture<TupleDomain<String>> getResultFuture()
+    {
+        return nonCancellationPropagating(resultFuture);
+    }
+
+    public boolean isComplete()
+    {
+        return resultFuture.isDone();
+    }
+}
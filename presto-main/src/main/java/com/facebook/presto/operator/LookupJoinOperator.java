@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.JoinProbe.JoinProbeFactory;
 import com.facebook.presto.operator.LookupJoinOperators.JoinType;
@@ -37,12 +38,12 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.function.IntPredicate;
-import java.util.function.Supplier;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
 import static com.facebook.airlift.concurrent.MoreFutures.getDone;
 import static com.facebook.presto.operator.LookupJoinOperators.JoinType.FULL_OUTER;
+import static com.facebook.presto.operator.LookupJoinOperators.JoinType.LOOKUP_OUTER;
 import static com.facebook.presto.operator.LookupJoinOperators.JoinType.PROBE_OUTER;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
@@ -55,10 +56,14 @@ public class LookupJoinOperator
 {
     private final OperatorContext operatorContext;
     private final List<Type> probeTypes;
+    private final List<Type> outputTypes;
+    private final int probeOutputChannelCount;
     private final JoinProbeFactory joinProbeFactory;
     private final Runnable afterClose;
     private final OptionalInt lookupJoinsCount;
     private final HashGenerator hashGenerator;
+    private final DictionaryJoinPositionCache dictionaryJoinPositionCache = new DictionaryJoinPositionCache();
+    private final JoinBloomFilterPassRate bloomFilterPassRate = new JoinBloomFilterPassRate();
     private final LookupSourceFactory lookupSourceFactory;
     private final PartitioningSpillerFactory partitioningSpillerFactory;
 
@@ -67,6 +72,7 @@ public class LookupJoinOperator
     private final LookupJoinPageBuilder pageBuilder;
 
     private final boolean probeOnOuterSide;
+    private final boolean lookupOnOuterSide;
 
     private final ListenableFuture<LookupSourceProvider> lookupSourceProviderFuture;
     private LookupSourceProvider lookupSourceProvider;
@@ -89,16 +95,21 @@ public class LookupJoinOperator
 
     private final Map<Integer, SavedRow> savedRows = new HashMap<>();
     @Nullable
-    private ListenableFuture<PartitionedConsumption<Supplier<LookupSource>>> partitionedConsumption;
+    private ListenableFuture<PartitionedConsumption<TrackingLookupSourceSupplier>> partitionedConsumption;
     @Nullable
-    private Iterator<Partition<Supplier<LookupSource>>> lookupPartitions;
-    private Optional<Partition<Supplier<LookupSource>>> currentPartition = Optional.empty();
-    private Optional<ListenableFuture<Supplier<LookupSource>>> unspilledLookupSource = Optional.empty();
+    private Iterator<Partition<TrackingLookupSourceSupplier>> lookupPartitions;
+    private Optional<Partition<TrackingLookupSourceSupplier>> currentPartition = Optional.empty();
+    private Optional<ListenableFuture<TrackingLookupSourceSupplier>> unspilledLookupSource = Optional.empty();
     private Iterator<Page> unspilledInputPages = emptyIterator();
+    private boolean currentPartitionConsumed;
+    private Optional<OuterPositionIterator> unspilledOuterPositions = Optional.empty();
+    @Nullable
+    private PageBuilder outerPageBuilder;
 
     public LookupJoinOperator(
             OperatorContext operatorContext,
             List<Type> probeTypes,
+            List<Type> probeOutputTypes,
             List<Type> buildOutputTypes,
             JoinType joinType,
             LookupSourceFactory lookupSourceFactory,
@@ -110,10 +121,16 @@ public class LookupJoinOperator
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
+        this.outputTypes = ImmutableList.<Type>builder()
+                .addAll(requireNonNull(probeOutputTypes, "probeOutputTypes is null"))
+                .addAll(requireNonNull(buildOutputTypes, "buildOutputTypes is null"))
+                .build();
+        this.probeOutputChannelCount = probeOutputTypes.size();
 
         requireNonNull(joinType, "joinType is null");
         // Cannot use switch case here, because javac will synthesize an inner class and cause IllegalAccessError
         probeOnOuterSide = joinType == PROBE_OUTER || joinType == FULL_OUTER;
+        lookupOnOuterSide = joinType == LOOKUP_OUTER || joinType == FULL_OUTER;
 
         this.joinProbeFactory = requireNonNull(joinProbeFactory, "joinProbeFactory is null");
         this.afterClose = requireNonNull(afterClose, "afterClose is null");
@@ -216,7 +233,7 @@ public class LookupJoinOperator
 
         // create probe
         inputPageSpillEpoch = spillInfoSnapshot.getSpillEpoch();
-        probe = joinProbeFactory.createJoinProbe(page);
+        probe = joinProbeFactory.createJoinProbe(page, hashGenerator, dictionaryJoinPositionCache, bloomFilterPassRate);
 
         // initialize to invalid join position to force output code to advance the cursors
         joinPosition = -1;
@@ -346,7 +363,7 @@ public class LookupJoinOperator
                 // Not unspilled yet
                 return;
             }
-            LookupSource lookupSource = getDone(unspilledLookupSource.get()).get();
+            LookupSource lookupSource = getDone(unspilledLookupSource.get()).getLookupSource();
             unspilledLookupSource = Optional.empty();
 
             // Close previous lookupSourceProvider (either supplied initially or for the previous partition)
@@ -371,9 +388,25 @@ public class LookupJoinOperator
             return;
         }
 
+        if (lookupOnOuterSide && currentPartition.isPresent() && !currentPartitionConsumed) {
+            currentPartitionConsumed = true;
+            if (currentPartition.get().consumed()) {
+                // No probe operator is going to visit positions of the partition anymore, so the last one produces the unvisited ones
+                unspilledOuterPositions = Optional.of(getDone(currentPartition.get().load()).getOuterPositionIterator());
+            }
+        }
+
+        if (unspilledOuterPositions.isPresent()) {
+            if (buildOuterPage(unspilledOuterPositions.get())) {
+                unspilledOuterPositions = Optional.empty();
+            }
+            return;
+        }
+
         if (lookupPartitions.hasNext()) {
             currentPartition.ifPresent(Partition::release);
             currentPartition = Optional.of(lookupPartitions.next());
+            currentPartitionConsumed = false;
             unspilledLookupSource = Optional.of(currentPartition.get().load());
 
             return;
@@ -515,6 +548,7 @@ public class LookupJoinOperator
             closer.register(afterClose::run);
 
             closer.register(pageBuilder::reset);
+            closer.register(() -> Optional.ofNullable(outerPageBuilder).ifPresent(PageBuilder::reset));
             closer.register(() -> Optional.ofNullable(lookupSourceProvider).ifPresent(LookupSourceProvider::close));
             spiller.ifPresent(closer::register);
         }
@@ -582,6 +616,40 @@ public class LookupJoinOperator
         return true;
     }
 
+    /**
+     * Produce rows for the positions of the unspilled partition that were not visited by any of the probe operators.
+     *
+     * @return whether all unvisited positions have been produced
+     */
+    private boolean buildOuterPage(OuterPositionIterator outerPositions)
+    {
+        verify(outputPage == null);
+        if (outerPageBuilder == null) {
+            outerPageBuilder = new PageBuilder(outputTypes);
+        }
+
+        boolean outerPositionsFinished = false;
+        while (!outerPageBuilder.isFull()) {
+            // write build columns
+            outerPositionsFinished = !outerPositions.appendToNext(outerPageBuilder, probeOutputChannelCount);
+            if (outerPositionsFinished) {
+                break;
+            }
+            outerPageBuilder.declarePosition();
+
+            // write nulls into probe columns
+            for (int probeChannel = 0; probeChannel < probeOutputChannelCount; probeChannel++) {
+                outerPageBuilder.getBlockBuilder(probeChannel).appendNull();
+            }
+        }
+
+        if (!outerPageBuilder.isEmpty()) {
+            outputPage = outerPageBuilder.build();
+            outerPageBuilder.reset();
+        }
+        return outerPositionsFinished;
+    }
+
     // This class must be public because LookupJoinOperator is isolated.
     public static class SpillInfoSnapshot
     {
@@ -685,6 +753,7 @@ public class LookupJoinOperator
     {
         // Before updating the probe flush the current page
         buildPage();
+        statisticsCounter.recordBloomFilterProbes(probe.getBloomFilterProbes(), probe.getBloomFilterHits());
         probe = null;
     }
 }
@@ -39,6 +39,7 @@ public class LookupJoinOperatorFactory
     private final int operatorId;
     private final PlanNodeId planNodeId;
     private final List<Type> probeTypes;
+    private final List<Type> probeOutputTypes;
     private final List<Type> buildOutputTypes;
     private final JoinType joinType;
     private final JoinProbeFactory joinProbeFactory;
@@ -67,6 +68,7 @@ public class LookupJoinOperatorFactory
         this.operatorId = operatorId;
         this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
         this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
+        this.probeOutputTypes = ImmutableList.copyOf(requireNonNull(probeOutputTypes, "probeOutputTypes is null"));
         this.buildOutputTypes = ImmutableList.copyOf(requireNonNull(buildOutputTypes, "buildOutputTypes is null"));
         this.joinType = requireNonNull(joinType, "joinType is null");
         this.joinProbeFactory = requireNonNull(joinProbeFactory, "joinProbeFactory is null");
@@ -112,6 +114,7 @@ public class LookupJoinOperatorFactory
         operatorId = other.operatorId;
         planNodeId = other.planNodeId;
         probeTypes = other.probeTypes;
+        probeOutputTypes = other.probeOutputTypes;
         buildOutputTypes = other.buildOutputTypes;
         joinType = other.joinType;
         joinProbeFactory = other.joinProbeFactory;
@@ -144,6 +147,7 @@ public class LookupJoinOperatorFactory
         return new LookupJoinOperator(
                 operatorContext,
                 probeTypes,
+                probeOutputTypes,
                 buildOutputTypes,
                 joinType,
                 lookupSourceFactory,
@@ -36,6 +36,33 @@ public interface LookupSource
 
     long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage);
 
+    /**
+     * Whether {@link #mightContainRawHash} can rule out probe rows, e.g. because the lookup source
+     * keeps a Bloom filter of the hashes of its join keys.
+     */
+    default boolean hasBloomFilter()
+    {
+        return false;
+    }
+
+    /**
+     * Returns false if no position of this lookup source can match a probe row with the given raw hash.
+     * A true result does not mean that a matching position exists.
+     */
+    default boolean mightContainRawHash(long rawHash)
+    {
+        return true;
+    }
+
+    /**
+     * Whether {@link #getJoinPosition} returns the same join position for all probe rows with equal join keys,
+     * so that it can be looked up once for all of them, e.g. once per entry of a dictionary encoded key.
+     */
+    default boolean isJoinPositionDeterminedByKeys()
+    {
+        return false;
+    }
+
     long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage);
 
     void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
@@ -15,21 +15,27 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isFlatGroupByHashEnabled;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 
 public class MarkDistinctHash
 {
+    private final List<Type> types;
     private final GroupByHash groupByHash;
     private long nextDistinctId;
 
@@ -40,7 +46,8 @@ public class MarkDistinctHash
 
     public MarkDistinctHash(Session session, List<Type> types, int[] channels, Optional<Integer> hashChannel, int expectedDistinctValues, JoinCompiler joinCompiler, UpdateMemory updateMemory)
     {
-        this.groupByHash = createGroupByHash(types, channels, hashChannel, expectedDistinctValues, isDictionaryAggregationEnabled(session), joinCompiler, updateMemory);
+        this.types = ImmutableList.copyOf(types);
+        this.groupByHash = createGroupByHash(types, channels, hashChannel, expectedDistinctValues, isDictionaryAggregationEnabled(session), isFlatGroupByHashEnabled(session), joinCompiler, updateMemory);
     }
 
     public long getEstimatedSize()
@@ -67,6 +74,45 @@ public class MarkDistinctHash
                 });
     }
 
+    /**
+     * Returns the distinct values marked so far, in the order of their first occurrence. The pages only
+     * contain the distinct channels, in the order they were given to this hash.
+     */
+    public Iterator<Page> getDistinctValues()
+    {
+        return getDistinctValues(groupByHash, types.size());
+    }
+
+    static Iterator<Page> getDistinctValues(GroupByHash groupByHash, int channelCount)
+    {
+        return new AbstractIterator<Page>()
+        {
+            private final PageBuilder pageBuilder = new PageBuilder(groupByHash.getTypes());
+            private int groupId;
+
+            @Override
+            protected Page computeNext()
+            {
+                pageBuilder.reset();
+                while (!pageBuilder.isFull() && groupId < groupByHash.getGroupCount()) {
+                    groupByHash.appendValuesTo(groupId, pageBuilder, 0);
+                    pageBuilder.declarePosition();
+                    groupId++;
+                }
+                if (pageBuilder.isEmpty()) {
+                    return endOfData();
+                }
+                // drop the precomputed hash channel
+                Page page = pageBuilder.build();
+                Block[] blocks = new Block[channelCount];
+                for (int channel = 0; channel < channelCount; channel++) {
+                    blocks[channel] = page.getBlock(channel);
+                }
+                return new Page(page.getPositionCount(), blocks);
+            }
+        };
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
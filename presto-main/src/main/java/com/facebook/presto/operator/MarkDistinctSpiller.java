@@ -0,0 +1,195 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.facebook.presto.sql.gen.JoinCompiler;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.SystemSessionProperties.getSpillerPartitionCount;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spills the state of a {@link MarkDistinctHash} that does not fit in memory. The distinct values
+ * seen so far and all of the input that arrives afterwards are hash partitioned on the distinct
+ * channels. When the partitions are read back one at a time, the first occurrence of every value
+ * that has not been seen before the spill is marked, so only the values of a single partition
+ * have to be kept in memory.
+ */
+class MarkDistinctSpiller
+        implements Closeable
+{
+    private final List<Type> distinctTypes;
+    private final int[] distinctChannels;
+    private final OperatorContext operatorContext;
+    private final JoinCompiler joinCompiler;
+    private final LocalMemoryContext localMemoryContext;
+    private final int spillPartitionCount;
+
+    private final PartitioningSpiller distinctValuesSpiller;
+    private final PartitioningSpiller inputSpiller;
+    private final Closer closer = Closer.create();
+
+    private boolean unspillingStarted;
+
+    public MarkDistinctSpiller(
+            List<Type> sourceTypes,
+            List<Type> distinctTypes,
+            int[] distinctChannels,
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            OperatorContext operatorContext,
+            JoinCompiler joinCompiler)
+    {
+        requireNonNull(sourceTypes, "sourceTypes is null");
+        requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        this.distinctTypes = ImmutableList.copyOf(requireNonNull(distinctTypes, "distinctTypes is null"));
+        this.distinctChannels = requireNonNull(distinctChannels, "distinctChannels is null").clone();
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.localMemoryContext = operatorContext.aggregateUserMemoryContext().newLocalMemoryContext(MarkDistinctSpiller.class.getSimpleName());
+        this.spillPartitionCount = getSpillerPartitionCount(operatorContext.getSession());
+
+        // both streams are partitioned on the hash of the distinct values, so a value always lands in the same partition
+        int[] distinctValuesChannels = IntStream.range(0, distinctTypes.size()).toArray();
+        this.distinctValuesSpiller = closer.register(partitioningSpillerFactory.create(
+                this.distinctTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(this.distinctTypes, distinctValuesChannels), spillPartitionCount),
+                operatorContext.getSpillContext(),
+                operatorContext.newAggregateSystemMemoryContext()));
+        this.inputSpiller = closer.register(partitioningSpillerFactory.create(
+                ImmutableList.copyOf(sourceTypes),
+                new LocalPartitionGenerator(new InterpretedHashGenerator(this.distinctTypes, this.distinctChannels), spillPartitionCount),
+                operatorContext.getSpillContext(),
+                operatorContext.newAggregateSystemMemoryContext()));
+        closer.register(() -> localMemoryContext.setBytes(0));
+    }
+
+    /**
+     * Spills the values that have already been marked, see {@link MarkDistinctHash#getDistinctValues()}.
+     */
+    public ListenableFuture<?> spillDistinctValues(Iterator<Page> distinctValues)
+    {
+        checkState(!unspillingStarted, "unspilling already started");
+        return distinctValuesSpiller.spill(distinctValues);
+    }
+
+    public ListenableFuture<?> spillInput(Page page)
+    {
+        checkState(!unspillingStarted, "unspilling already started");
+        return inputSpiller.partitionAndSpill(page, partition -> true).getSpillingFuture();
+    }
+
+    /**
+     * Returns the spilled input pages with a BOOLEAN channel appended, which marks the first occurrence
+     * of every distinct value that has not been seen before the spill.
+     */
+    public Iterator<Page> unspill()
+    {
+        checkState(!unspillingStarted, "unspilling already started");
+        unspillingStarted = true;
+        return new AbstractIterator<Page>()
+        {
+            private int partition = -1;
+            private MarkDistinctHash markDistinctHash;
+            private Iterator<Page> inputPages;
+
+            @Override
+            protected Page computeNext()
+            {
+                while (inputPages == null || !inputPages.hasNext()) {
+                    partition++;
+                    if (partition == spillPartitionCount) {
+                        distinctValuesSpiller.verifyAllPartitionsRead();
+                        inputSpiller.verifyAllPartitionsRead();
+                        markDistinctHash = null;
+                        localMemoryContext.setBytes(0);
+                        return endOfData();
+                    }
+                    loadPartition(partition);
+                }
+
+                Page page = inputPages.next();
+                Block[] distinctBlocks = new Block[distinctChannels.length];
+                for (int i = 0; i < distinctChannels.length; i++) {
+                    distinctBlocks[i] = page.getBlock(distinctChannels[i]);
+                }
+                Block distinctMask = markDistinctRows(new Page(page.getPositionCount(), distinctBlocks));
+                localMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+                return page.appendColumn(distinctMask);
+            }
+
+            private void loadPartition(int partition)
+            {
+                // release the previous partition before the next one is loaded
+                markDistinctHash = null;
+                localMemoryContext.setBytes(0);
+                markDistinctHash = new MarkDistinctHash(
+                        operatorContext.getSession(),
+                        distinctTypes,
+                        IntStream.range(0, distinctTypes.size()).toArray(),
+                        Optional.empty(),
+                        joinCompiler,
+                        this::reserveMemory);
+                Iterator<Page> distinctValues = distinctValuesSpiller.getSpilledPages(partition);
+                while (distinctValues.hasNext()) {
+                    markDistinctRows(distinctValues.next());
+                }
+                localMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+                inputPages = inputSpiller.getSpilledPages(partition);
+            }
+
+            /**
+             * Reserves the memory of the hash before it grows, the reservation fails if it exceeds the memory limit.
+             * A partition is never loaded partially, so the growth of the hash cannot be postponed.
+             */
+            private boolean reserveMemory()
+            {
+                localMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+                return true;
+            }
+
+            private Block markDistinctRows(Page page)
+            {
+                Work<Block> work = markDistinctHash.markDistinctRows(page);
+                verify(work.process(), "work must not yield when the memory is always reserved");
+                return work.getResult();
+            }
+        };
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        closer.close();
+    }
+}
@@ -0,0 +1,482 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Joins two inputs that are both sorted ascending on the join keys by walking them in lock step.
+ * Only the build rows of the current key are kept in memory, so the memory is bounded by the size
+ * of the largest key group instead of the size of the build side. Rows with a null key never match.
+ * The build side is read from a {@link MergeJoinSource}.
+ */
+public class MergeJoinOperator
+        implements Operator
+{
+    public static class MergeJoinOperatorFactory
+            implements OperatorFactory
+    {
+        private final int operatorId;
+        private final PlanNodeId planNodeId;
+        private final JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager;
+        private final boolean outer;
+        private final List<Type> probeTypes;
+        private final List<Integer> probeJoinChannels;
+        private final List<Integer> probeOutputChannels;
+        private final List<Type> buildTypes;
+        private final List<Integer> buildJoinChannels;
+        private final List<Integer> buildOutputChannels;
+
+        private boolean closed;
+
+        public MergeJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager,
+                boolean outer,
+                List<Type> probeTypes,
+                List<Integer> probeJoinChannels,
+                List<Integer> probeOutputChannels,
+                List<Type> buildTypes,
+                List<Integer> buildJoinChannels,
+                List<Integer> buildOutputChannels)
+        {
+            this.operatorId = operatorId;
+            this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+            this.mergeJoinSourceManager = requireNonNull(mergeJoinSourceManager, "mergeJoinSourceManager is null");
+            this.outer = outer;
+            this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
+            this.probeJoinChannels = ImmutableList.copyOf(requireNonNull(probeJoinChannels, "probeJoinChannels is null"));
+            this.probeOutputChannels = ImmutableList.copyOf(requireNonNull(probeOutputChannels, "probeOutputChannels is null"));
+            this.buildTypes = ImmutableList.copyOf(requireNonNull(buildTypes, "buildTypes is null"));
+            this.buildJoinChannels = ImmutableList.copyOf(requireNonNull(buildJoinChannels, "buildJoinChannels is null"));
+            this.buildOutputChannels = ImmutableList.copyOf(requireNonNull(buildOutputChannels, "buildOutputChannels is null"));
+            checkArgument(probeJoinChannels.size() == buildJoinChannels.size(), "probe and build must have the same number of join channels");
+            this.mergeJoinSourceManager.incrementProbeFactoryCount();
+        }
+
+        @Override
+        public Operator createOperator(DriverContext driverContext)
+        {
+            checkState(!closed, "Factory is already closed");
+            Lifespan lifespan = driverContext.getLifespan();
+            MergeJoinSource mergeJoinSource = mergeJoinSourceManager.getJoinBridge(lifespan);
+
+            OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MergeJoinOperator.class.getSimpleName());
+
+            mergeJoinSourceManager.probeOperatorCreated(lifespan);
+            return new MergeJoinOperator(
+                    operatorContext,
+                    mergeJoinSource,
+                    outer,
+                    probeTypes,
+                    probeJoinChannels,
+                    probeOutputChannels,
+                    buildTypes,
+                    buildJoinChannels,
+                    buildOutputChannels,
+                    () -> mergeJoinSourceManager.probeOperatorClosed(lifespan));
+        }
+
+        @Override
+        public void noMoreOperators()
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            mergeJoinSourceManager.probeOperatorFactoryClosedForAllLifespans();
+        }
+
+        @Override
+        public void noMoreOperators(Lifespan lifespan)
+        {
+            mergeJoinSourceManager.probeOperatorFactoryClosed(lifespan);
+        }
+
+        @Override
+        public OperatorFactory duplicate()
+        {
+            throw new UnsupportedOperationException("Merge join can not be duplicated");
+        }
+    }
+
+    private final OperatorContext operatorContext;
+    private final MergeJoinSource mergeJoinSource;
+    private final boolean outer;
+    private final List<Type> keyTypes;
+    private final int[] probeJoinChannels;
+    private final List<Type> probeOutputTypes;
+    private final int[] probeOutputChannels;
+    private final List<Type> buildOutputTypes;
+    private final int[] buildJoinChannels;
+    private final int[] buildOutputChannels;
+    private final Runnable afterClose;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final PageBuilder pageBuilder;
+
+    private Page probePage;
+    private int probePosition;
+
+    private Page buildPage;
+    private int buildPosition;
+
+    // the build rows sharing the key the probe is at, each page holds only rows of the group
+    private final List<Page> group = new ArrayList<>();
+    private long groupSizeInBytes;
+    private boolean groupComplete;
+    // how far the current probe row has been joined with the group
+    private int groupPageIndex;
+    private int groupPosition;
+
+    private boolean waitingForBuild;
+    private boolean finishing;
+    private boolean closed;
+
+    private MergeJoinOperator(
+            OperatorContext operatorContext,
+            MergeJoinSource mergeJoinSource,
+            boolean outer,
+            List<Type> probeTypes,
+            List<Integer> probeJoinChannels,
+            List<Integer> probeOutputChannels,
+            List<Type> buildTypes,
+            List<Integer> buildJoinChannels,
+            List<Integer> buildOutputChannels,
+            Runnable afterClose)
+    {
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.mergeJoinSource = requireNonNull(mergeJoinSource, "mergeJoinSource is null");
+        this.outer = outer;
+        this.keyTypes = probeJoinChannels.stream()
+                .map(probeTypes::get)
+                .collect(toImmutableList());
+        this.probeJoinChannels = Ints.toArray(probeJoinChannels);
+        this.probeOutputTypes = probeOutputChannels.stream()
+                .map(probeTypes::get)
+                .collect(toImmutableList());
+        this.probeOutputChannels = Ints.toArray(probeOutputChannels);
+        this.buildOutputTypes = buildOutputChannels.stream()
+                .map(buildTypes::get)
+                .collect(toImmutableList());
+        this.buildJoinChannels = Ints.toArray(buildJoinChannels);
+        this.buildOutputChannels = Ints.toArray(buildOutputChannels);
+        this.afterClose = requireNonNull(afterClose, "afterClose is null");
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.pageBuilder = new PageBuilder(ImmutableList.<Type>builder()
+                .addAll(probeOutputTypes)
+                .addAll(buildOutputTypes)
+                .build());
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (waitingForBuild) {
+            return mergeJoinSource.getNotEmptyFuture();
+        }
+        return NOT_BLOCKED;
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return !finishing && !closed && probePage == null;
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkState(needsInput(), "Operator does not need input");
+
+        if (page.getPositionCount() > 0) {
+            probePage = page;
+            probePosition = 0;
+        }
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        waitingForBuild = false;
+        while (probePage != null && !pageBuilder.isFull()) {
+            if (!joinCurrentProbeRow()) {
+                break;
+            }
+            probePosition++;
+            if (probePosition == probePage.getPositionCount()) {
+                probePage = null;
+            }
+        }
+        updateMemoryUsage();
+
+        if (pageBuilder.isEmpty() || (!pageBuilder.isFull() && probePage != null && !waitingForBuild)) {
+            return null;
+        }
+        Page output = pageBuilder.build();
+        pageBuilder.reset();
+        return output;
+    }
+
+    /**
+     * Returns false if the row could not be joined completely, either because the output is full or
+     * because more of the build side is needed.
+     */
+    private boolean joinCurrentProbeRow()
+    {
+        if (hasNullKey(probePage, probePosition, probeJoinChannels)) {
+            return appendUnmatched();
+        }
+
+        if (!group.isEmpty()) {
+            int comparison = compareToGroup();
+            if (comparison == 0) {
+                if (!groupComplete && !collectGroup()) {
+                    return false;
+                }
+                return appendGroup();
+            }
+            if (comparison < 0) {
+                return appendUnmatched();
+            }
+            // the probe is sorted, so the group will not be needed again
+            releaseGroup();
+        }
+
+        // skip the build rows that are smaller than the probe key
+        while (true) {
+            if (!nextBuildRow()) {
+                if (mergeJoinSource.isExhausted()) {
+                    return appendUnmatched();
+                }
+                waitingForBuild = true;
+                return false;
+            }
+            if (hasNullKey(buildPage, buildPosition, buildJoinChannels)) {
+                buildPosition++;
+                continue;
+            }
+            int comparison = compare(probePage, probePosition, buildPage, buildPosition);
+            if (comparison < 0) {
+                return appendUnmatched();
+            }
+            if (comparison == 0) {
+                break;
+            }
+            buildPosition++;
+        }
+
+        groupComplete = false;
+        if (!collectGroup()) {
+            return false;
+        }
+        return appendGroup();
+    }
+
+    /**
+     * Moves the build rows sharing the key of the current probe row into the group. Returns false
+     * if more of the build side is needed.
+     */
+    private boolean collectGroup()
+    {
+        while (nextBuildRow()) {
+            int start = buildPosition;
+            while (buildPosition < buildPage.getPositionCount() &&
+                    !hasNullKey(buildPage, buildPosition, buildJoinChannels) &&
+                    compare(probePage, probePosition, buildPage, buildPosition) == 0) {
+                buildPosition++;
+            }
+            if (buildPosition > start) {
+                Page groupPage = buildPage.getRegion(start, buildPosition - start);
+                group.add(groupPage);
+                groupSizeInBytes += groupPage.getRetainedSizeInBytes();
+            }
+            if (buildPosition < buildPage.getPositionCount()) {
+                groupComplete = true;
+                return true;
+            }
+        }
+
+        if (mergeJoinSource.isExhausted()) {
+            groupComplete = true;
+            return true;
+        }
+        waitingForBuild = true;
+        return false;
+    }
+
+    /**
+     * Makes sure there is a current build row. Returns false if none is available at the moment.
+     */
+    private boolean nextBuildRow()
+    {
+        while (buildPage == null || buildPosition == buildPage.getPositionCount()) {
+            buildPage = mergeJoinSource.pollPage();
+            buildPosition = 0;
+            if (buildPage == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean appendGroup()
+    {
+        while (groupPageIndex < group.size()) {
+            Page groupPage = group.get(groupPageIndex);
+            while (groupPosition < groupPage.getPositionCount()) {
+                if (pageBuilder.isFull()) {
+                    return false;
+                }
+                appendProbeRow();
+                for (int i = 0; i < buildOutputChannels.length; i++) {
+                    buildOutputTypes.get(i).appendTo(groupPage.getBlock(buildOutputChannels[i]), groupPosition, pageBuilder.getBlockBuilder(probeOutputChannels.length + i));
+                }
+                pageBuilder.declarePosition();
+                groupPosition++;
+            }
+            groupPageIndex++;
+            groupPosition = 0;
+        }
+        groupPageIndex = 0;
+        return true;
+    }
+
+    private boolean appendUnmatched()
+    {
+        if (!outer) {
+            return true;
+        }
+        if (pageBuilder.isFull()) {
+            return false;
+        }
+        appendProbeRow();
+        for (int i = 0; i < buildOutputChannels.length; i++) {
+            pageBuilder.getBlockBuilder(probeOutputChannels.length + i).appendNull();
+        }
+        pageBuilder.declarePosition();
+        return true;
+    }
+
+    private void appendProbeRow()
+    {
+        for (int i = 0; i < probeOutputChannels.length; i++) {
+            probeOutputTypes.get(i).appendTo(probePage.getBlock(probeOutputChannels[i]), probePosition, pageBuilder.getBlockBuilder(i));
+        }
+    }
+
+    private int compareToGroup()
+    {
+        return compare(probePage, probePosition, group.get(0), 0);
+    }
+
+    private int compare(Page probe, int probePosition, Page build, int buildPosition)
+    {
+        for (int i = 0; i < probeJoinChannels.length; i++) {
+            int comparison = keyTypes.get(i).compareTo(
+                    probe.getBlock(probeJoinChannels[i]),
+                    probePosition,
+                    build.getBlock(buildJoinChannels[i]),
+                    buildPosition);
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean hasNullKey(Page page, int position, int[] joinChannels)
+    {
+        for (int channel : joinChannels) {
+            Block block = page.getBlock(channel);
+            if (block.isNull(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void releaseGroup()
+    {
+        group.clear();
+        groupSizeInBytes = 0;
+        groupComplete = false;
+        groupPageIndex = 0;
+        groupPosition = 0;
+    }
+
+    private void updateMemoryUsage()
+    {
+        localUserMemoryContext.setBytes(groupSizeInBytes + pageBuilder.getRetainedSizeInBytes());
+    }
+
+    @Override
+    public void finish()
+    {
+        finishing = true;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        // an inner join has nothing left to produce once the build side is exhausted
+        boolean buildDone = !outer && group.isEmpty() && (buildPage == null || buildPosition == buildPage.getPositionCount()) && mergeJoinSource.isExhausted();
+        boolean finished = (finishing || buildDone) && probePage == null && pageBuilder.isEmpty();
+        if (finished) {
+            close();
+        }
+        return finished;
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        probePage = null;
+        buildPage = null;
+        releaseGroup();
+        pageBuilder.reset();
+        localUserMemoryContext.setBytes(0);
+        // the build side is not needed anymore, so let the sink drop the rest of it
+        mergeJoinSource.destroy();
+        afterClose.run();
+    }
+}
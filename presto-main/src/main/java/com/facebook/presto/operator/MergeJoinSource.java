@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Streams the sorted pages of the build side of a merge join to its probe. At most
+ * {@code maxBufferedBytes} are buffered, after which the {@link MergeJoinSinkOperator}
+ * is blocked until the {@link MergeJoinOperator} has taken pages out.
+ */
+@ThreadSafe
+public final class MergeJoinSource
+        implements JoinBridge
+{
+    private final long maxBufferedBytes;
+
+    @GuardedBy("this")
+    private final Queue<Page> pages = new ArrayDeque<>();
+    @GuardedBy("this")
+    private long bufferedBytes;
+    @GuardedBy("this")
+    private boolean noMorePages;
+    @GuardedBy("this")
+    private boolean destroyed;
+    @GuardedBy("this")
+    private SettableFuture<?> notFull = SettableFuture.create();
+    @GuardedBy("this")
+    private SettableFuture<?> notEmpty = SettableFuture.create();
+
+    private final SettableFuture<?> buildFinished = SettableFuture.create();
+
+    public MergeJoinSource(long maxBufferedBytes)
+    {
+        checkArgument(maxBufferedBytes > 0, "maxBufferedBytes must be positive");
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    /**
+     * Returns a future that completes when more pages can be added.
+     */
+    public synchronized ListenableFuture<?> addPage(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkState(!noMorePages, "noMorePages already called");
+        if (destroyed) {
+            // the probe is gone, so the rest of the build side is not needed
+            return immediateFuture(null);
+        }
+
+        pages.add(page);
+        bufferedBytes += page.getRetainedSizeInBytes();
+        notEmpty.set(null);
+        return getNotFullFuture();
+    }
+
+    public synchronized ListenableFuture<?> getNotFullFuture()
+    {
+        if (destroyed || bufferedBytes < maxBufferedBytes) {
+            return immediateFuture(null);
+        }
+        if (notFull.isDone()) {
+            notFull = SettableFuture.create();
+        }
+        return notFull;
+    }
+
+    public synchronized void noMorePages()
+    {
+        if (noMorePages) {
+            return;
+        }
+        noMorePages = true;
+        notEmpty.set(null);
+        buildFinished.set(null);
+    }
+
+    /**
+     * Returns the next page of the build side, or null if none is buffered at the moment.
+     */
+    public synchronized Page pollPage()
+    {
+        Page page = pages.poll();
+        if (page == null) {
+            return null;
+        }
+
+        bufferedBytes -= page.getRetainedSizeInBytes();
+        if (bufferedBytes < maxBufferedBytes) {
+            notFull.set(null);
+        }
+        if (pages.isEmpty() && !noMorePages && notEmpty.isDone()) {
+            notEmpty = SettableFuture.create();
+        }
+        return page;
+    }
+
+    /**
+     * Returns a future that completes when a page can be polled or the build side is finished.
+     */
+    public synchronized ListenableFuture<?> getNotEmptyFuture()
+    {
+        if (!pages.isEmpty() || noMorePages || destroyed) {
+            return immediateFuture(null);
+        }
+        return notEmpty;
+    }
+
+    /**
+     * Returns true once all pages of the build side have been polled.
+     */
+    public synchronized boolean isExhausted()
+    {
+        return noMorePages && pages.isEmpty();
+    }
+
+    public synchronized long getBufferedBytes()
+    {
+        return bufferedBytes;
+    }
+
+    public synchronized boolean isDestroyed()
+    {
+        return destroyed;
+    }
+
+    @Override
+    public OuterPositionIterator getOuterPositionIterator()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized void destroy()
+    {
+        destroyed = true;
+        pages.clear();
+        bufferedBytes = 0;
+        notFull.set(null);
+        notEmpty.set(null);
+        buildFinished.set(null);
+    }
+
+    @Override
+    public ListenableFuture<?> whenBuildFinishes()
+    {
+        return buildFinished;
+    }
+}
@@ -29,6 +29,8 @@ import com.google.common.collect.Iterables;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.openjdk.jol.info.ClassLayout;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -47,6 +49,7 @@ import static com.google.common.base.Verify.verify;
 import static io.airlift.slice.SizeOf.sizeOf;
 import static it.unimi.dsi.fastutil.HashCommon.arraySize;
 import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
@@ -56,6 +59,7 @@ public class MultiChannelGroupByHash
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(MultiChannelGroupByHash.class).instanceSize();
     private static final float FILL_RATIO = 0.75f;
+    private static final int BATCH_SIZE = 1024;
     private final List<Type> types;
     private final List<Type> hashTypes;
     private final int[] channels;
@@ -66,6 +70,7 @@ public class MultiChannelGroupByHash
     private final HashGenerator hashGenerator;
     private final OptionalInt precomputedHashChannel;
     private final boolean processDictionary;
+    private final boolean batchHashing;
     private PageBuilder currentPageBuilder;
 
     private long completedPagesMemorySize;
@@ -77,6 +82,10 @@ public class MultiChannelGroupByHash
     private int[] groupIdsByHash;
     private byte[] rawHashByHashPosition;
 
+    // reused across batches of positions
+    private final long[] batchRawHashes;
+    private final int[] batchHashPositions;
+
     private final LongBigArray groupAddressByGroupId;
 
     private int nextGroupId;
@@ -97,6 +106,20 @@ public class MultiChannelGroupByHash
             boolean processDictionary,
             JoinCompiler joinCompiler,
             UpdateMemory updateMemory)
+    {
+        this(hashTypes, hashChannels, inputHashChannel, expectedSize, processDictionary, true, joinCompiler, updateMemory);
+    }
+
+    @VisibleForTesting
+    MultiChannelGroupByHash(
+            List<? extends Type> hashTypes,
+            int[] hashChannels,
+            Optional<Integer> inputHashChannel,
+            int expectedSize,
+            boolean processDictionary,
+            boolean batchHashing,
+            JoinCompiler joinCompiler,
+            UpdateMemory updateMemory)
     {
         this.hashTypes = ImmutableList.copyOf(requireNonNull(hashTypes, "hashTypes is null"));
 
@@ -111,6 +134,9 @@ public class MultiChannelGroupByHash
 
         this.hashGenerator = inputHashChannel.isPresent() ? new PrecomputedHashGenerator(inputHashChannel.get()) : new InterpretedHashGenerator(this.hashTypes, hashChannels);
         this.processDictionary = processDictionary;
+        this.batchHashing = batchHashing;
+        this.batchRawHashes = batchHashing ? new long[BATCH_SIZE] : new long[0];
+        this.batchHashPositions = batchHashing ? new int[BATCH_SIZE] : new int[0];
 
         // For each hashed channel, create an appendable list to hold the blocks (builders).  As we
         // add new values we append them to the existing block builder until it fills up and then
@@ -174,6 +200,8 @@ public class MultiChannelGroupByHash
                 sizeOf(groupIdsByHash) +
                 groupAddressByGroupId.sizeOf() +
                 sizeOf(rawHashByHashPosition) +
+                sizeOf(batchRawHashes) +
+                sizeOf(batchHashPositions) +
                 preallocatedMemoryInBytes;
     }
 
@@ -272,8 +300,14 @@ public class MultiChannelGroupByHash
 
     private int putIfAbsent(int position, Page page, long rawHash)
     {
-        int hashPosition = (int) getHashPosition(rawHash, mask);
+        return putIfAbsent(position, page, rawHash, (int) getHashPosition(rawHash, mask));
+    }
 
+    /**
+     * @param hashPosition the slot to start probing at; none of the slots between the one the hash maps to and this one may contain the key
+     */
+    private int putIfAbsent(int position, Page page, long rawHash, int hashPosition)
+    {
         // look for an empty slot or a slot containing this key
         int groupId = -1;
         while (groupAddressByHash[hashPosition] != -1) {
@@ -295,6 +329,43 @@ public class MultiChannelGroupByHash
         return groupId;
     }
 
+    /**
+     * Puts the positions {@code [positionOffset, positionOffset + length)} of the page into the hash, writing their group ids
+     * to {@code groupIds} if present. The hashes of the whole batch are computed column by column first, then the table
+     * is probed in a tight loop for the first slot which is either empty or holds a key with the same hash prefix, and
+     * only then the candidate slots are compared with the rows, which resolves the collisions.
+     * <p>
+     * The batch must not add more groups than fit without a rehash, as a rehash would invalidate the probed slots.
+     */
+    private void putIfAbsentBatch(Page page, int positionOffset, int length, @Nullable BlockBuilder groupIds)
+    {
+        checkArgument(length <= BATCH_SIZE && length <= maxFill - nextGroupId, "batch of %s positions can cause a rehash", length);
+        hashGenerator.hashPositions(page, positionOffset, length, batchRawHashes);
+
+        for (int i = 0; i < length; i++) {
+            byte rawHash = (byte) batchRawHashes[i];
+            int hashPosition = (int) getHashPosition(batchRawHashes[i], mask);
+            while (groupAddressByHash[hashPosition] != -1 && rawHashByHashPosition[hashPosition] != rawHash) {
+                hashPosition = (hashPosition + 1) & mask;
+                hashCollisions++;
+            }
+            batchHashPositions[i] = hashPosition;
+        }
+
+        // Slots are never emptied, so the skipped ones still can not contain the key after the groups of the preceding rows were added
+        for (int i = 0; i < length; i++) {
+            int groupId = putIfAbsent(positionOffset + i, page, batchRawHashes[i], batchHashPositions[i]);
+            if (groupIds != null) {
+                BIGINT.writeLong(groupIds, groupId);
+            }
+        }
+    }
+
+    private int getBatchSize(int remainingPositions)
+    {
+        return min(min(BATCH_SIZE, remainingPositions), maxFill - nextGroupId);
+    }
+
     private int addNewGroup(int hashPosition, int position, Page page, long rawHash)
     {
         // add the row to the open page
@@ -582,6 +653,12 @@ public class MultiChannelGroupByHash
             // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
             // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
             while (lastPosition < positionCount && !needRehash()) {
+                if (batchHashing) {
+                    int batchSize = getBatchSize(positionCount - lastPosition);
+                    putIfAbsentBatch(page, lastPosition, batchSize, null);
+                    lastPosition += batchSize;
+                    continue;
+                }
                 // get the group for the current row
                 putIfAbsent(lastPosition, page);
                 lastPosition++;
@@ -716,6 +793,12 @@ public class MultiChannelGroupByHash
             // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
             // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
             while (lastPosition < positionCount && !needRehash()) {
+                if (batchHashing) {
+                    int batchSize = getBatchSize(positionCount - lastPosition);
+                    putIfAbsentBatch(page, lastPosition, batchSize, blockBuilder);
+                    lastPosition += batchSize;
+                    continue;
+                }
                 // output the group id for this row
                 BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, page));
                 lastPosition++;
@@ -0,0 +1,367 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.SortOrder;
+import com.facebook.presto.common.type.Type;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.Slice;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.RealType.REAL;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.common.type.Varchars.isVarcharType;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Double.doubleToLongBits;
+import static java.lang.Float.floatToIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Sorts the positions of a {@link PagesIndex} by encoding the sort keys into fixed width binary keys
+ * that order the same way as the keys themselves when compared as unsigned bytes, and radix sorting
+ * those. Each sort key is encoded as a byte for the null ordering followed by the value with the sign
+ * bit flipped (inverted for descending order). Keys that do not fit, like strings longer than the
+ * remaining key bytes, are encoded as a prefix, and runs of positions with equal binary keys are then
+ * ordered by the full comparator.
+ * <p>
+ * The sort allocates about 48 bytes per position for the binary keys and the permutation, which are
+ * released when it returns. Callers reserve {@link #getSortSizeInBytes} before sorting.
+ */
+public final class NormalizedKeySorter
+{
+    // below this the comparator sort is as fast and does not need the extra memory
+    public static final int MIN_POSITION_COUNT = 1024;
+
+    private static final int MAX_KEY_BYTES = 16;
+    private static final int KEY_LONGS = MAX_KEY_BYTES / Long.BYTES;
+
+    private final List<KeyEncoding> keyEncodings;
+    private final int keyBytes;
+    // whether the binary keys are equal exactly when all sort keys are equal
+    private final boolean exact;
+
+    private NormalizedKeySorter(List<KeyEncoding> keyEncodings, int keyBytes, boolean exact)
+    {
+        this.keyEncodings = ImmutableList.copyOf(requireNonNull(keyEncodings, "keyEncodings is null"));
+        this.keyBytes = keyBytes;
+        this.exact = exact;
+    }
+
+    /**
+     * Returns a sorter for the given sort keys, or empty if the first sort key can not be encoded.
+     */
+    public static Optional<NormalizedKeySorter> create(List<Type> sortTypes, List<Integer> sortChannels, List<SortOrder> sortOrders)
+    {
+        checkArgument(sortTypes.size() == sortChannels.size() && sortChannels.size() == sortOrders.size(), "sort types, channels and orders must have the same size");
+
+        ImmutableList.Builder<KeyEncoding> keyEncodings = ImmutableList.builder();
+        int offset = 0;
+        boolean exact = true;
+        for (int i = 0; i < sortTypes.size(); i++) {
+            Optional<Encoding> encoding = Encoding.forType(sortTypes.get(i));
+            if (!encoding.isPresent() || offset + 1 >= MAX_KEY_BYTES) {
+                exact = false;
+                break;
+            }
+
+            int valueBytes = MAX_KEY_BYTES - offset - 1;
+            if (encoding.get().getWidth() > 0 && encoding.get().getWidth() <= valueBytes) {
+                valueBytes = encoding.get().getWidth();
+            }
+            else {
+                // only a prefix of the value fits, so the keys that follow can not be encoded after it
+                exact = false;
+            }
+            keyEncodings.add(new KeyEncoding(encoding.get(), sortChannels.get(i), sortOrders.get(i), offset, valueBytes));
+            offset += 1 + valueBytes;
+
+            if (!exact) {
+                break;
+            }
+        }
+
+        List<KeyEncoding> encodings = keyEncodings.build();
+        if (encodings.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(new NormalizedKeySorter(encodings, offset, exact));
+    }
+
+    /**
+     * Returns the memory allocated while sorting the given number of positions.
+     */
+    public long getSortSizeInBytes(int positionCount)
+    {
+        // the keys and their copy, the sorted addresses and the two orders
+        long bytesPerPosition = 2L * KEY_LONGS * Long.BYTES + Long.BYTES + 2L * Integer.BYTES;
+        // the byte counts of the radix sort
+        return positionCount * bytesPerPosition + keyBytes * 256L * Integer.BYTES;
+    }
+
+    public void sort(PagesIndex pagesIndex, PagesIndexOrdering tieBreaker, int startPosition, int endPosition)
+    {
+        int positionCount = endPosition - startPosition;
+        if (positionCount < 2) {
+            return;
+        }
+
+        long[] keys = new long[toIntExact((long) positionCount * KEY_LONGS)];
+        for (int i = 0; i < positionCount; i++) {
+            for (KeyEncoding keyEncoding : keyEncodings) {
+                keyEncoding.encode(pagesIndex, startPosition + i, keys, i * KEY_LONGS);
+            }
+        }
+
+        int[] order = radixSort(keys, positionCount);
+
+        long[] addresses = pagesIndex.getValueAddresses().elements();
+        long[] sortedAddresses = new long[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            sortedAddresses[i] = addresses[startPosition + order[i]];
+        }
+        System.arraycopy(sortedAddresses, 0, addresses, startPosition, positionCount);
+
+        if (exact) {
+            return;
+        }
+
+        // order the runs of equal binary keys by the full comparator
+        int runStart = 0;
+        for (int i = 1; i <= positionCount; i++) {
+            if (i == positionCount || !keyEquals(keys, runStart, i)) {
+                if (i - runStart > 1) {
+                    tieBreaker.sort(pagesIndex, startPosition + runStart, startPosition + i);
+                }
+                runStart = i;
+            }
+        }
+    }
+
+    /**
+     * Sorts the keys in place with a least significant byte first radix sort and returns the original
+     * index of each sorted key. Byte positions that are the same for all keys are skipped.
+     */
+    private int[] radixSort(long[] keys, int positionCount)
+    {
+        int[][] counts = new int[keyBytes][256];
+        for (int i = 0; i < positionCount; i++) {
+            for (int byteIndex = 0; byteIndex < keyBytes; byteIndex++) {
+                counts[byteIndex][getByte(keys, i, byteIndex)]++;
+            }
+        }
+
+        int[] order = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            order[i] = i;
+        }
+        int[] nextOrder = new int[positionCount];
+        long[] nextKeys = new long[keys.length];
+
+        long[] currentKeys = keys;
+        for (int byteIndex = keyBytes - 1; byteIndex >= 0; byteIndex--) {
+            int[] count = counts[byteIndex];
+            if (count[getByte(currentKeys, 0, byteIndex)] == positionCount) {
+                continue;
+            }
+
+            int[] bucketStart = new int[256];
+            for (int bucket = 1; bucket < 256; bucket++) {
+                bucketStart[bucket] = bucketStart[bucket - 1] + count[bucket - 1];
+            }
+            for (int i = 0; i < positionCount; i++) {
+                int target = bucketStart[getByte(currentKeys, i, byteIndex)]++;
+                nextOrder[target] = order[i];
+                for (int j = 0; j < KEY_LONGS; j++) {
+                    nextKeys[target * KEY_LONGS + j] = currentKeys[i * KEY_LONGS + j];
+                }
+            }
+
+            int[] swapOrder = order;
+            order = nextOrder;
+            nextOrder = swapOrder;
+            long[] swapKeys = currentKeys;
+            currentKeys = nextKeys;
+            nextKeys = swapKeys;
+        }
+
+        if (currentKeys != keys) {
+            System.arraycopy(currentKeys, 0, keys, 0, keys.length);
+        }
+        return order;
+    }
+
+    private static int getByte(long[] keys, int index, int byteIndex)
+    {
+        long value = keys[index * KEY_LONGS + byteIndex / Long.BYTES];
+        return (int) (value >>> ((Long.BYTES - 1 - byteIndex % Long.BYTES) * Byte.SIZE)) & 0xFF;
+    }
+
+    private static boolean keyEquals(long[] keys, int left, int right)
+    {
+        for (int i = 0; i < KEY_LONGS; i++) {
+            if (keys[left * KEY_LONGS + i] != keys[right * KEY_LONGS + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes {@code length} bytes of {@code value}, most significant first, at the given byte offset of a key.
+     */
+    private static void putBytes(long[] keys, int keyOffset, int byteOffset, long value, int length)
+    {
+        for (int i = 0; i < length; i++) {
+            int byteIndex = byteOffset + i;
+            long byteValue = (value >>> ((length - 1 - i) * Byte.SIZE)) & 0xFF;
+            keys[keyOffset + byteIndex / Long.BYTES] |= byteValue << ((Long.BYTES - 1 - byteIndex % Long.BYTES) * Byte.SIZE);
+        }
+    }
+
+    private enum Encoding
+    {
+        BOOLEAN_VALUE(1),
+        TINYINT_VALUE(1),
+        SMALLINT_VALUE(2),
+        INTEGER_VALUE(4),
+        BIGINT_VALUE(8),
+        REAL_VALUE(4),
+        DOUBLE_VALUE(8),
+        // variable width values are encoded as a prefix padded with zeros
+        SLICE_VALUE(0);
+
+        private final int width;
+
+        Encoding(int width)
+        {
+            this.width = width;
+        }
+
+        public int getWidth()
+        {
+            return width;
+        }
+
+        public static Optional<Encoding> forType(Type type)
+        {
+            if (type.equals(BOOLEAN)) {
+                return Optional.of(BOOLEAN_VALUE);
+            }
+            if (type.equals(TINYINT)) {
+                return Optional.of(TINYINT_VALUE);
+            }
+            if (type.equals(SMALLINT)) {
+                return Optional.of(SMALLINT_VALUE);
+            }
+            if (type.equals(INTEGER) || type.equals(DATE)) {
+                return Optional.of(INTEGER_VALUE);
+            }
+            if (type.equals(BIGINT) || type.equals(TIMESTAMP)) {
+                return Optional.of(BIGINT_VALUE);
+            }
+            if (type.equals(REAL)) {
+                return Optional.of(REAL_VALUE);
+            }
+            if (type.equals(DOUBLE)) {
+                return Optional.of(DOUBLE_VALUE);
+            }
+            if (isVarcharType(type) || type.equals(VARBINARY)) {
+                return Optional.of(SLICE_VALUE);
+            }
+            return Optional.empty();
+        }
+    }
+
+    private static final class KeyEncoding
+    {
+        private final Encoding encoding;
+        private final int channel;
+        private final SortOrder sortOrder;
+        private final int offset;
+        private final int valueBytes;
+
+        private KeyEncoding(Encoding encoding, int channel, SortOrder sortOrder, int offset, int valueBytes)
+        {
+            this.encoding = requireNonNull(encoding, "encoding is null");
+            this.channel = channel;
+            this.sortOrder = requireNonNull(sortOrder, "sortOrder is null");
+            this.offset = offset;
+            this.valueBytes = valueBytes;
+        }
+
+        public void encode(PagesIndex pagesIndex, int position, long[] keys, int keyOffset)
+        {
+            if (pagesIndex.isNull(channel, position)) {
+                putBytes(keys, keyOffset, offset, sortOrder.isNullsFirst() ? 0 : 1, 1);
+                return;
+            }
+            putBytes(keys, keyOffset, offset, sortOrder.isNullsFirst() ? 1 : 0, 1);
+
+            if (encoding == Encoding.SLICE_VALUE) {
+                Slice slice = pagesIndex.getSlice(channel, position);
+                int length = min(slice.length(), valueBytes);
+                for (int i = 0; i < valueBytes; i++) {
+                    // bytes past the end of the value are zero for ascending and 0xFF for descending order
+                    int value = i < length ? slice.getUnsignedByte(i) : 0;
+                    putBytes(keys, keyOffset, offset + 1 + i, sortOrder.isAscending() ? value : ~value, 1);
+                }
+                return;
+            }
+
+            long value = encodeFixedWidth(pagesIndex, position);
+            if (!sortOrder.isAscending()) {
+                value = ~value;
+            }
+            putBytes(keys, keyOffset, offset + 1, value >>> ((encoding.getWidth() - valueBytes) * Byte.SIZE), valueBytes);
+        }
+
+        /**
+         * Returns the value as an unsigned number of {@code encoding.getWidth()} bytes that orders like the value.
+         */
+        private long encodeFixedWidth(PagesIndex pagesIndex, int position)
+        {
+            switch (encoding) {
+                case BOOLEAN_VALUE:
+                    return pagesIndex.getBoolean(channel, position) ? 1 : 0;
+                case TINYINT_VALUE:
+                case SMALLINT_VALUE:
+                case INTEGER_VALUE:
+                case BIGINT_VALUE:
+                    return pagesIndex.getLong(channel, position) ^ (1L << (encoding.getWidth() * Byte.SIZE - 1));
+                case REAL_VALUE:
+                    // canonicalize NaN, and order -0.0 before 0.0 like Float.compare
+                    int floatBits = floatToIntBits(intBitsToFloat(toIntExact(pagesIndex.getLong(channel, position))));
+                    return (floatBits < 0 ? ~floatBits : floatBits ^ Integer.MIN_VALUE) & 0xFFFF_FFFFL;
+                case DOUBLE_VALUE:
+                    long doubleBits = doubleToLongBits(pagesIndex.getDouble(channel, position));
+                    return doubleBits < 0 ? ~doubleBits : doubleBits ^ Long.MIN_VALUE;
+                default:
+                    throw new UnsupportedOperationException("Unsupported encoding: " + encoding);
+            }
+        }
+    }
+}
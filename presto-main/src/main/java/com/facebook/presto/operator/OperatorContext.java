@@ -73,6 +73,10 @@ public class OperatorContext
 
     private final AtomicLong physicalWrittenDataSize = new AtomicLong();
 
+    private final AtomicLong dynamicFilterPrunedPositions = new AtomicLong();
+
+    private final AtomicLong partialAggregationSkippedPositions = new AtomicLong();
+
     private final AtomicReference<SettableFuture<?>> memoryFuture;
     private final AtomicReference<SettableFuture<?>> revocableMemoryFuture;
     private final AtomicReference<BlockedMonitor> blockedMonitor = new AtomicReference<>();
@@ -204,6 +208,16 @@ public class OperatorContext
         physicalWrittenDataSize.getAndAdd(sizeInBytes);
     }
 
+    public void recordDynamicFilterPrunedPositions(long positions)
+    {
+        dynamicFilterPrunedPositions.getAndAdd(positions);
+    }
+
+    public void recordPartialAggregationSkippedPositions(long positions)
+    {
+        partialAggregationSkippedPositions.getAndAdd(positions);
+    }
+
     public void recordBlocked(ListenableFuture<?> blocked)
     {
         requireNonNull(blocked, "blocked is null");
@@ -427,6 +441,16 @@ public class OperatorContext
         return physicalWrittenDataSize.get();
     }
 
+    public long getDynamicFilterPrunedPositions()
+    {
+        return dynamicFilterPrunedPositions.get();
+    }
+
+    public long getPartialAggregationSkippedPositions()
+    {
+        return partialAggregationSkippedPositions.get();
+    }
+
     @Override
     public String toString()
     {
@@ -469,6 +493,10 @@ public class OperatorContext
 
                 succinctBytes(physicalWrittenDataSize.get()),
 
+                dynamicFilterPrunedPositions.get(),
+
+                partialAggregationSkippedPositions.get(),
+
                 succinctNanos(blockedWallNanos.get()),
 
                 finishTiming.getCalls(),
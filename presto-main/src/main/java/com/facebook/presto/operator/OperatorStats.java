@@ -64,6 +64,10 @@ public class OperatorStats
 
     private final DataSize physicalWrittenDataSize;
 
+    private final long dynamicFilterPrunedPositions;
+
+    private final long partialAggregationSkippedPositions;
+
     private final Duration blockedWall;
 
     private final long finishCalls;
@@ -114,6 +118,10 @@ public class OperatorStats
 
             @JsonProperty("physicalWrittenDataSize") DataSize physicalWrittenDataSize,
 
+            @JsonProperty("dynamicFilterPrunedPositions") long dynamicFilterPrunedPositions,
+
+            @JsonProperty("partialAggregationSkippedPositions") long partialAggregationSkippedPositions,
+
             @JsonProperty("blockedWall") Duration blockedWall,
 
             @JsonProperty("finishCalls") long finishCalls,
@@ -166,6 +174,12 @@ public class OperatorStats
 
         this.physicalWrittenDataSize = requireNonNull(physicalWrittenDataSize, "writtenDataSize is null");
 
+        checkArgument(dynamicFilterPrunedPositions >= 0, "dynamicFilterPrunedPositions is negative");
+        this.dynamicFilterPrunedPositions = dynamicFilterPrunedPositions;
+
+        checkArgument(partialAggregationSkippedPositions >= 0, "partialAggregationSkippedPositions is negative");
+        this.partialAggregationSkippedPositions = partialAggregationSkippedPositions;
+
         this.blockedWall = requireNonNull(blockedWall, "blockedWall is null");
 
         this.finishCalls = finishCalls;
@@ -326,6 +340,18 @@ public class OperatorStats
         return physicalWrittenDataSize;
     }
 
+    @JsonProperty
+    public long getDynamicFilterPrunedPositions()
+    {
+        return dynamicFilterPrunedPositions;
+    }
+
+    @JsonProperty
+    public long getPartialAggregationSkippedPositions()
+    {
+        return partialAggregationSkippedPositions;
+    }
+
     @JsonProperty
     public Duration getBlockedWall()
     {
@@ -439,6 +465,10 @@ public class OperatorStats
 
         long physicalWrittenDataSize = this.physicalWrittenDataSize.toBytes();
 
+        long dynamicFilterPrunedPositions = this.dynamicFilterPrunedPositions;
+
+        long partialAggregationSkippedPositions = this.partialAggregationSkippedPositions;
+
         long blockedWall = this.blockedWall.roundTo(NANOSECONDS);
 
         long finishCalls = this.finishCalls;
@@ -482,6 +512,10 @@ public class OperatorStats
 
             physicalWrittenDataSize += operator.getPhysicalWrittenDataSize().toBytes();
 
+            dynamicFilterPrunedPositions += operator.getDynamicFilterPrunedPositions();
+
+            partialAggregationSkippedPositions += operator.getPartialAggregationSkippedPositions();
+
             finishCalls += operator.getFinishCalls();
             finishWall += operator.getFinishWall().roundTo(NANOSECONDS);
             finishCpu += operator.getFinishCpu().roundTo(NANOSECONDS);
@@ -538,6 +572,10 @@ public class OperatorStats
 
                 succinctBytes(physicalWrittenDataSize),
 
+                dynamicFilterPrunedPositions,
+
+                partialAggregationSkippedPositions,
+
                 succinctNanos(blockedWall),
 
                 finishCalls,
@@ -601,6 +639,8 @@ public class OperatorStats
                 outputDataSize,
                 outputPositions,
                 physicalWrittenDataSize,
+                dynamicFilterPrunedPositions,
+                partialAggregationSkippedPositions,
                 blockedWall,
                 finishCalls,
                 finishWall,
@@ -14,17 +14,26 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
-import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
+import com.facebook.presto.sql.gen.OrderingCompiler;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
+import java.util.Optional;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
+import static com.facebook.presto.util.MergeSortedPages.mergeSortedPages;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class OrderByOperator
@@ -42,6 +51,9 @@ public class OrderByOperator
         private final List<SortOrder> sortOrder;
         private boolean closed;
         private final PagesIndex.Factory pagesIndexFactory;
+        private final boolean spillEnabled;
+        private final Optional<SpillerFactory> spillerFactory;
+        private final OrderingCompiler orderingCompiler;
 
         public OrderByOperatorFactory(
                 int operatorId,
@@ -51,7 +63,10 @@ public class OrderByOperator
                 int expectedPositions,
                 List<Integer> sortChannels,
                 List<SortOrder> sortOrder,
-                PagesIndex.Factory pagesIndexFactory)
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                Optional<SpillerFactory> spillerFactory,
+                OrderingCompiler orderingCompiler)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -62,6 +77,10 @@ public class OrderByOperator
             this.sortOrder = ImmutableList.copyOf(requireNonNull(sortOrder, "sortOrder is null"));
 
             this.pagesIndexFactory = requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
+            this.spillEnabled = spillEnabled;
+            this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+            this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
+            checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -77,7 +96,10 @@ public class OrderByOperator
                     expectedPositions,
                     sortChannels,
                     sortOrder,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    spillerFactory,
+                    orderingCompiler);
         }
 
         @Override
@@ -89,7 +111,7 @@ public class OrderByOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new OrderByOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, expectedPositions, sortChannels, sortOrder, pagesIndexFactory);
+            return new OrderByOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, expectedPositions, sortChannels, sortOrder, pagesIndexFactory, spillEnabled, spillerFactory, orderingCompiler);
         }
     }
 
@@ -101,15 +123,27 @@ public class OrderByOperator
     }
 
     private final OperatorContext operatorContext;
+    private final List<Type> sourceTypes;
     private final List<Integer> sortChannels;
     private final List<SortOrder> sortOrder;
     private final int[] outputChannels;
+    private final List<Type> outputTypes;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private final PagesIndex pageIndex;
 
-    private final PageBuilder pageBuilder;
-    private int currentPosition;
+    private final boolean spillEnabled;
+    private final Optional<SpillerFactory> spillerFactory;
+    private final OrderingCompiler orderingCompiler;
+
+    private Optional<Spiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    // the spill of the index that did not fit in user memory when the input finished
+    private Optional<ListenableFuture<?>> finishingSpill = Optional.empty();
+
+    private WorkProcessor<Page> sortedPages;
 
     private State state = State.NEEDS_INPUT;
 
@@ -120,19 +154,28 @@ public class OrderByOperator
             int expectedPositions,
             List<Integer> sortChannels,
             List<SortOrder> sortOrder,
-            PagesIndex.Factory pagesIndexFactory)
+            PagesIndex.Factory pagesIndexFactory,
+            boolean spillEnabled,
+            Optional<SpillerFactory> spillerFactory,
+            OrderingCompiler orderingCompiler)
     {
         requireNonNull(pagesIndexFactory, "pagesIndexFactory is null");
 
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.sourceTypes = ImmutableList.copyOf(requireNonNull(sourceTypes, "sourceTypes is null"));
         this.outputChannels = Ints.toArray(requireNonNull(outputChannels, "outputChannels is null"));
+        this.outputTypes = toTypes(sourceTypes, outputChannels);
         this.sortChannels = ImmutableList.copyOf(requireNonNull(sortChannels, "sortChannels is null"));
         this.sortOrder = ImmutableList.copyOf(requireNonNull(sortOrder, "sortOrder is null"));
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
 
         this.pageIndex = pagesIndexFactory.newPagesIndex(sourceTypes, expectedPositions);
 
-        this.pageBuilder = new PageBuilder(toTypes(sourceTypes, outputChannels));
+        this.spillEnabled = spillEnabled;
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+        this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
+        checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
     }
 
     @Override
@@ -144,12 +187,33 @@ public class OrderByOperator
     @Override
     public void finish()
     {
-        if (state == State.NEEDS_INPUT) {
-            state = State.HAS_OUTPUT;
+        if (state != State.NEEDS_INPUT || !spillInProgress.isDone()) {
+            return;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
+
+        state = State.HAS_OUTPUT;
+
+        // The sorted index is read while it is being merged, so its memory can no longer be revoked
+        long revocableBytes = localRevocableMemoryContext.getBytes();
+        if (revocableBytes > 0) {
+            localRevocableMemoryContext.setBytes(0);
+            if (!localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + revocableBytes)) {
+                // the reservation could not be converted, write the index out as one more run instead.
+                // The output is produced once the run is written, see isBlocked and getOutput.
+                localRevocableMemoryContext.setBytes(revocableBytes);
+                finishingSpill = Optional.of(spillToDisk());
+            }
+        }
+    }
 
-            // sort the index
-            pageIndex.sort(sortChannels, sortOrder);
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (finishingSpill.isPresent() && !finishingSpill.get().isDone()) {
+            return finishingSpill.get();
         }
+        return NOT_BLOCKED;
     }
 
     @Override
@@ -169,13 +233,10 @@ public class OrderByOperator
     {
         checkState(state == State.NEEDS_INPUT, "Operator is already finishing");
         requireNonNull(page, "page is null");
+        checkSuccess(spillInProgress, "spilling failed");
 
         pageIndex.addPage(page);
-
-        if (!localUserMemoryContext.trySetBytes(pageIndex.getEstimatedSize().toBytes())) {
-            pageIndex.compact();
-            localUserMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes());
-        }
+        updateMemoryUsage();
     }
 
     @Override
@@ -185,29 +246,134 @@ public class OrderByOperator
             return null;
         }
 
-        if (currentPosition >= pageIndex.getPositionCount()) {
+        if (sortedPages == null) {
+            if (finishingSpill.isPresent()) {
+                if (!finishingSpill.get().isDone()) {
+                    return null;
+                }
+                checkSuccess(finishingSpill.get(), "spilling failed");
+                clearSpilledIndex();
+                finishingSpill = Optional.empty();
+            }
+            sortedPages = sortPages();
+        }
+
+        if (!sortedPages.process()) {
+            // the merge of the spilled runs yielded
+            return null;
+        }
+        if (sortedPages.isFinished()) {
             state = State.FINISHED;
             return null;
         }
 
-        // iterate through the positions sequentially until we have one full page
-        pageBuilder.reset();
-        currentPosition = pageIndex.buildPage(currentPosition, outputChannels, pageBuilder);
+        return sortedPages.getResult();
+    }
 
-        // output the page if we have any data
-        if (pageBuilder.isEmpty()) {
-            state = State.FINISHED;
-            return null;
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+        if (state != State.NEEDS_INPUT) {
+            // stale revoking request, the index is already being read
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
         }
+        ListenableFuture<?> spillFuture = spillToDisk();
+        finishMemoryRevoke = Optional.of(this::clearSpilledIndex);
+        return spillFuture;
+    }
 
-        Page page = pageBuilder.build();
-        return page;
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
     }
 
     @Override
     public void close()
     {
         pageIndex.clear();
+        spiller.ifPresent(Spiller::close);
+        localUserMemoryContext.setBytes(0);
+        localRevocableMemoryContext.setBytes(0);
+    }
+
+    /**
+     * Writes the index out as one more sorted run. The index is cleared by {@link #clearSpilledIndex} once the run is written.
+     */
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (pageIndex.getPositionCount() == 0) {
+            return immediateFuture(null);
+        }
+
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(spillerFactory.get().create(
+                    sourceTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.newAggregateSystemMemoryContext()));
+        }
+
+        // every spill writes one sorted run, the runs are merged when the input is finished
+        pageIndex.sort(sortChannels, sortOrder, localUserMemoryContext);
+        spillInProgress = spiller.get().spill(pageIndex.getSortedPages());
+        return spillInProgress;
+    }
+
+    private void clearSpilledIndex()
+    {
+        pageIndex.clear();
+        updateMemoryUsage();
+    }
+
+    private WorkProcessor<Page> sortPages()
+    {
+        pageIndex.sort(sortChannels, sortOrder, localUserMemoryContext);
+        if (!spiller.isPresent()) {
+            return WorkProcessor.fromIterator(pageIndex.getSortedPages(outputChannels));
+        }
+        return mergeSpilledAndMemoryPages();
+    }
+
+    private WorkProcessor<Page> mergeSpilledAndMemoryPages()
+    {
+        List<WorkProcessor<Page>> sortedStreams = ImmutableList.<WorkProcessor<Page>>builder()
+                .addAll(spiller.get().getSpills().stream()
+                        .map(WorkProcessor::fromIterator)
+                        .collect(toImmutableList()))
+                .add(WorkProcessor.fromIterator(pageIndex.getSortedPages()))
+                .build();
+
+        return mergeSortedPages(
+                sortedStreams,
+                orderingCompiler.compilePageWithPositionComparator(sourceTypes, sortChannels, sortOrder),
+                Ints.asList(outputChannels),
+                outputTypes,
+                (pageBuilder, pageWithPosition) -> pageBuilder.isFull(),
+                false,
+                operatorContext.aggregateUserMemoryContext(),
+                operatorContext.getDriverContext().getYieldSignal());
+    }
+
+    private void updateMemoryUsage()
+    {
+        if (spillEnabled && state == State.NEEDS_INPUT) {
+            // the index is revocable until the input is finished
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes());
+        }
+        else {
+            localRevocableMemoryContext.setBytes(0);
+            if (!localUserMemoryContext.trySetBytes(pageIndex.getEstimatedSize().toBytes())) {
+                pageIndex.compact();
+                localUserMemoryContext.setBytes(pageIndex.getEstimatedSize().toBytes());
+            }
+        }
     }
 
     private static List<Type> toTypes(List<? extends Type> sourceTypes, List<Integer> outputChannels)
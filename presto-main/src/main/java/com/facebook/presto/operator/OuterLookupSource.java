@@ -87,6 +87,24 @@ public final class OuterLookupSource
         return lookupSource.getJoinPosition(position, hashChannelsPage, allChannelsPage);
     }
 
+    @Override
+    public boolean isJoinPositionDeterminedByKeys()
+    {
+        return lookupSource.isJoinPositionDeterminedByKeys();
+    }
+
+    @Override
+    public boolean hasBloomFilter()
+    {
+        return lookupSource.hasBloomFilter();
+    }
+
+    @Override
+    public boolean mightContainRawHash(long rawHash)
+    {
+        return lookupSource.mightContainRawHash(rawHash);
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
@@ -20,6 +20,8 @@ import it.unimi.dsi.fastutil.HashCommon;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.openjdk.jol.info.ClassLayout;
 
+import javax.annotation.Nullable;
+
 import java.util.Arrays;
 
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
@@ -50,10 +52,15 @@ public final class PagesHash
     private final long hashCollisions;
     private final double expectedHashCollisions;
 
+    // filter over the hashes of the non null keys, probes that miss it skip the table walk
+    @Nullable
+    private final BlockedBloomFilter bloomFilter;
+
     public PagesHash(
             LongArrayList addresses,
             PagesHashStrategy pagesHashStrategy,
-            PositionLinks.FactoryBuilder positionLinks)
+            PositionLinks.FactoryBuilder positionLinks,
+            boolean bloomFilterEnabled)
     {
         this.addresses = requireNonNull(addresses, "addresses is null");
         this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
@@ -67,6 +74,7 @@ public final class PagesHash
         Arrays.fill(key, -1);
 
         positionToHashes = new byte[addresses.size()];
+        bloomFilter = bloomFilterEnabled ? new BlockedBloomFilter(addresses.size()) : null;
 
         // We will process addresses in batches, to save memory on array of hashes.
         int positionsInStep = Math.min(addresses.size() + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
@@ -96,6 +104,9 @@ public final class PagesHash
                 }
 
                 long hash = positionToFullHashes[position];
+                if (bloomFilter != null) {
+                    bloomFilter.add(hash);
+                }
                 int pos = getHashPosition(hash, mask);
 
                 // look for an empty slot or a slot containing this key
@@ -119,7 +130,7 @@ public final class PagesHash
         }
 
         size = sizeOf(addresses.elements()) + pagesHashStrategy.getSizeInBytes() +
-                sizeOf(key) + sizeOf(positionToHashes);
+                sizeOf(key) + sizeOf(positionToHashes) + (bloomFilter == null ? 0 : bloomFilter.getRetainedSizeInBytes());
         hashCollisions = hashCollisionsLocal;
         expectedHashCollisions = estimateNumberOfHashCollisions(addresses.size(), hashSize);
     }
@@ -149,6 +160,16 @@ public final class PagesHash
         return expectedHashCollisions;
     }
 
+    public boolean hasBloomFilter()
+    {
+        return bloomFilter != null;
+    }
+
+    public boolean mightContainRawHash(long rawHash)
+    {
+        return bloomFilter == null || bloomFilter.mightContain(rawHash);
+    }
+
     public int getAddressIndex(int position, Page hashChannelsPage)
     {
         return getAddressIndex(position, hashChannelsPage, pagesHashStrategy.hashRow(position, hashChannelsPage));
@@ -54,6 +54,7 @@ import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+import static com.facebook.presto.SystemSessionProperties.isDirectJoinLookupSourceEnabled;
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
@@ -87,6 +88,7 @@ public class PagesIndex
     private final LongArrayList valueAddresses;
     private final ObjectArrayList<Block>[] channels;
     private final boolean eagerCompact;
+    private final boolean normalizedKeySortEnabled;
 
     private int nextBlockToCompact;
     private int positionCount;
@@ -100,7 +102,8 @@ public class PagesIndex
             boolean groupByUsesEqualTo,
             List<Type> types,
             int expectedPositions,
-            boolean eagerCompact)
+            boolean eagerCompact,
+            boolean normalizedKeySortEnabled)
     {
         this.orderingCompiler = requireNonNull(orderingCompiler, "orderingCompiler is null");
         this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
@@ -109,6 +112,7 @@ public class PagesIndex
         this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
         this.valueAddresses = new LongArrayList(expectedPositions);
         this.eagerCompact = eagerCompact;
+        this.normalizedKeySortEnabled = normalizedKeySortEnabled;
 
         //noinspection rawtypes
         channels = (ObjectArrayList<Block>[]) new ObjectArrayList[types.size()];
@@ -131,16 +135,23 @@ public class PagesIndex
         private static final JoinCompiler JOIN_COMPILER = new JoinCompiler(MetadataManager.createTestMetadataManager(), new FeaturesConfig());
         private final boolean groupByUsesEqualTo = new FeaturesConfig().isGroupByUsesEqualTo();
         private final boolean eagerCompact;
+        private final boolean normalizedKeySortEnabled;
 
         public TestingFactory(boolean eagerCompact)
+        {
+            this(eagerCompact, new FeaturesConfig().isPagesIndexNormalizedKeySortEnabled());
+        }
+
+        public TestingFactory(boolean eagerCompact, boolean normalizedKeySortEnabled)
         {
             this.eagerCompact = eagerCompact;
+            this.normalizedKeySortEnabled = normalizedKeySortEnabled;
         }
 
         @Override
         public PagesIndex newPagesIndex(List<Type> types, int expectedPositions)
         {
-            return new PagesIndex(ORDERING_COMPILER, JOIN_COMPILER, MetadataManager.createTestMetadataManager().getFunctionManager(), groupByUsesEqualTo, types, expectedPositions, eagerCompact);
+            return new PagesIndex(ORDERING_COMPILER, JOIN_COMPILER, MetadataManager.createTestMetadataManager().getFunctionManager(), groupByUsesEqualTo, types, expectedPositions, eagerCompact, normalizedKeySortEnabled);
         }
     }
 
@@ -152,6 +163,7 @@ public class PagesIndex
         private final boolean eagerCompact;
         private final FunctionManager functionManager;
         private final boolean groupByUsesEqualTo;
+        private final boolean normalizedKeySortEnabled;
 
         @Inject
         public DefaultFactory(OrderingCompiler orderingCompiler, JoinCompiler joinCompiler, FeaturesConfig featuresConfig, Metadata metadata)
@@ -161,12 +173,13 @@ public class PagesIndex
             this.eagerCompact = requireNonNull(featuresConfig, "featuresConfig is null").isPagesIndexEagerCompactionEnabled();
             this.functionManager = requireNonNull(metadata, "metadata is null").getFunctionManager();
             this.groupByUsesEqualTo = featuresConfig.isGroupByUsesEqualTo();
+            this.normalizedKeySortEnabled = featuresConfig.isPagesIndexNormalizedKeySortEnabled();
         }
 
         @Override
         public PagesIndex newPagesIndex(List<Type> types, int expectedPositions)
         {
-            return new PagesIndex(orderingCompiler, joinCompiler, functionManager, groupByUsesEqualTo, types, expectedPositions, eagerCompact);
+            return new PagesIndex(orderingCompiler, joinCompiler, functionManager, groupByUsesEqualTo, types, expectedPositions, eagerCompact, normalizedKeySortEnabled);
         }
     }
 
@@ -381,7 +394,47 @@ public class PagesIndex
 
     public void sort(List<Integer> sortChannels, List<SortOrder> sortOrders, int startPosition, int endPosition)
     {
-        createPagesIndexComparator(sortChannels, sortOrders).sort(this, startPosition, endPosition);
+        sort(sortChannels, sortOrders, startPosition, endPosition, Optional.empty());
+    }
+
+    /**
+     * Sorts like {@link #sort(List, List)}, but may use a {@link NormalizedKeySorter} if the memory it needs can be
+     * reserved in {@code sortMemoryContext} on top of the bytes already tracked there.
+     */
+    public void sort(List<Integer> sortChannels, List<SortOrder> sortOrders, LocalMemoryContext sortMemoryContext)
+    {
+        sort(sortChannels, sortOrders, 0, getPositionCount(), sortMemoryContext);
+    }
+
+    public void sort(List<Integer> sortChannels, List<SortOrder> sortOrders, int startPosition, int endPosition, LocalMemoryContext sortMemoryContext)
+    {
+        sort(sortChannels, sortOrders, startPosition, endPosition, Optional.of(requireNonNull(sortMemoryContext, "sortMemoryContext is null")));
+    }
+
+    private void sort(List<Integer> sortChannels, List<SortOrder> sortOrders, int startPosition, int endPosition, Optional<LocalMemoryContext> sortMemoryContext)
+    {
+        PagesIndexOrdering ordering = createPagesIndexComparator(sortChannels, sortOrders);
+        if (normalizedKeySortEnabled && sortMemoryContext.isPresent() && endPosition - startPosition >= NormalizedKeySorter.MIN_POSITION_COUNT) {
+            List<Type> sortTypes = sortChannels.stream()
+                    .map(types::get)
+                    .collect(toImmutableList());
+            Optional<NormalizedKeySorter> sorter = NormalizedKeySorter.create(sortTypes, sortChannels, sortOrders);
+            if (sorter.isPresent()) {
+                LocalMemoryContext memoryContext = sortMemoryContext.get();
+                long sortBytes = sorter.get().getSortSizeInBytes(endPosition - startPosition);
+                // fall back to the comparator sort, which needs no extra memory, when the sort memory can not be reserved
+                if (memoryContext.trySetBytes(memoryContext.getBytes() + sortBytes)) {
+                    try {
+                        sorter.get().sort(this, ordering, startPosition, endPosition);
+                    }
+                    finally {
+                        memoryContext.setBytes(memoryContext.getBytes() - sortBytes);
+                    }
+                    return;
+                }
+            }
+        }
+        ordering.sort(this, startPosition, endPosition);
     }
 
     public boolean positionEqualsPosition(PagesHashStrategy partitionHashStrategy, int leftPosition, int rightPosition)
@@ -473,6 +526,18 @@ public class PagesIndex
         return new PagesSpatialIndexSupplier(session, valueAddresses, types, outputChannels, channels, geometryChannel, radiusChannel, partitionChannel, spatialRelationshipTest, filterFunctionFactory, partitions, localUserMemoryContext);
     }
 
+    /**
+     * Returns the memory needed on top of {@link #getEstimatedSize()} by the largest direct-addressed
+     * lookup source {@link #createLookupSourceSupplier} may build, or 0 if it builds a hash table.
+     */
+    public long getEstimatedDirectLookupSourceSize(Session session, List<Integer> joinChannels, Optional<Integer> sortChannel)
+    {
+        if (!isDirectJoinLookupSourceEnabled(session) || positionCount == 0 || !DirectJoinHashSupplier.isSupported(types, joinChannels, sortChannel)) {
+            return 0;
+        }
+        return DirectJoinHashSupplier.getMaxKeyArraySizeInBytes(positionCount);
+    }
+
     public LookupSourceSupplier createLookupSourceSupplier(
             Session session,
             List<Integer> joinChannels,
@@ -483,6 +548,22 @@ public class PagesIndex
             Optional<List<Integer>> outputChannels)
     {
         List<List<Block>> channels = ImmutableList.copyOf(this.channels);
+        if (isDirectJoinLookupSourceEnabled(session)) {
+            Optional<LookupSourceSupplier> directLookupSourceSupplier = DirectJoinHashSupplier.tryCreate(
+                    session,
+                    () -> createPagesHashStrategy(joinChannels, hashChannel, outputChannels),
+                    valueAddresses,
+                    types,
+                    channels,
+                    joinChannels,
+                    filterFunctionFactory,
+                    sortChannel,
+                    searchFunctionFactories);
+            if (directLookupSourceSupplier.isPresent()) {
+                return directLookupSourceSupplier.get();
+            }
+        }
+
         if (!joinChannels.isEmpty()) {
             // todo compiled implementation of lookup join does not support when we are joining with empty join channels.
             // This code path will trigger only for OUTER joins. To fix that we need to add support for
@@ -564,18 +645,22 @@ public class PagesIndex
         };
     }
 
-    // TODO: This is similar to what OrderByOperator does, look into reusing this logic in OrderByOperator as well.
     public Iterator<Page> getSortedPages()
     {
+        int[] outputChannels = new int[types.size()];
+        Arrays.setAll(outputChannels, IntUnaryOperator.identity());
+        return getSortedPages(outputChannels);
+    }
+
+    public Iterator<Page> getSortedPages(int[] outputChannels)
+    {
+        List<Type> outputTypes = Arrays.stream(outputChannels)
+                .mapToObj(types::get)
+                .collect(toImmutableList());
         return new AbstractIterator<Page>()
         {
             private int currentPosition;
-            private final PageBuilder pageBuilder = new PageBuilder(types);
-            private final int[] outputChannels = new int[types.size()];
-
-            {
-                Arrays.setAll(outputChannels, IntUnaryOperator.identity());
-            }
+            private final PageBuilder pageBuilder = new PageBuilder(outputTypes);
 
             @Override
             public Page computeNext()
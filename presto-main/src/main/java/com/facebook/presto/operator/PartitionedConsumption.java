@@ -121,6 +121,9 @@ public final class PartitionedConsumption<T>
         @GuardedBy("this")
         private int pendingReleases;
 
+        @GuardedBy("this")
+        private int pendingConsumptions;
+
         public Partition(
                 int consumersCount,
                 int partitionNumber,
@@ -137,6 +140,7 @@ public final class PartitionedConsumption<T>
             this.released = SettableFuture.create();
             released.addListener(() -> disposer.accept(partitionNumber), directExecutor());
             this.pendingReleases = consumersCount;
+            this.pendingConsumptions = consumersCount;
         }
 
         public int number()
@@ -150,6 +154,19 @@ public final class PartitionedConsumption<T>
             return loaded;
         }
 
+        /**
+         * Marks the partition as consumed by one of the consumers. A consumer is still allowed to use the partition until it calls {@link #release()}.
+         *
+         * @return true if all consumers are done consuming the partition
+         */
+        public synchronized boolean consumed()
+        {
+            checkState(loaded.isDone());
+            pendingConsumptions--;
+            checkState(pendingConsumptions >= 0);
+            return pendingConsumptions == 0;
+        }
+
         public synchronized void release()
         {
             checkState(loaded.isDone());
@@ -81,6 +81,8 @@ public class PartitionedLookupSource
     private final LocalPartitionGenerator partitionGenerator;
     private final int partitionMask;
     private final int shiftSize;
+    private final boolean hasBloomFilter;
+    private final boolean joinPositionDeterminedByKeys;
     @Nullable
     private final OuterPositionTracker outerPositionTracker;
 
@@ -100,6 +102,9 @@ public class PartitionedLookupSource
 
         this.partitionMask = lookupSources.size() - 1;
         this.shiftSize = numberOfTrailingZeros(lookupSources.size()) + 1;
+        // partitions without a filter, e.g. spilled ones, let every row through
+        this.hasBloomFilter = Arrays.stream(this.lookupSources).anyMatch(LookupSource::hasBloomFilter);
+        this.joinPositionDeterminedByKeys = Arrays.stream(this.lookupSources).allMatch(LookupSource::isJoinPositionDeterminedByKeys);
         this.outerPositionTracker = outerPositionTracker.orElse(null);
     }
 
@@ -147,6 +152,24 @@ public class PartitionedLookupSource
         return encodePartitionedJoinPosition(partition, toIntExact(joinPosition));
     }
 
+    @Override
+    public boolean isJoinPositionDeterminedByKeys()
+    {
+        return joinPositionDeterminedByKeys;
+    }
+
+    @Override
+    public boolean hasBloomFilter()
+    {
+        return hasBloomFilter;
+    }
+
+    @Override
+    public boolean mightContainRawHash(long rawHash)
+    {
+        return lookupSources[partitionGenerator.getPartition(rawHash)].mightContainRawHash(rawHash);
+    }
+
     @Override
     public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
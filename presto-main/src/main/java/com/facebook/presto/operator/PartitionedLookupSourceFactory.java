@@ -95,7 +95,7 @@ public final class PartitionedLookupSourceFactory
     private OptionalInt partitionedConsumptionParticipants = OptionalInt.empty();
 
     @GuardedBy("lock")
-    private final SettableFuture<PartitionedConsumption<Supplier<LookupSource>>> partitionedConsumption = SettableFuture.create();
+    private final SettableFuture<PartitionedConsumption<TrackingLookupSourceSupplier>> partitionedConsumption = SettableFuture.create();
 
     /**
      * Cached LookupSource on behalf of LookupJoinOperator (represented by SpillAwareLookupSourceProvider). LookupSource instantiation has non-negligible cost.
@@ -138,6 +138,11 @@ public final class PartitionedLookupSourceFactory
         return layout;
     }
 
+    public boolean isOuter()
+    {
+        return outer;
+    }
+
     // partitions is final, so we don't need a lock to read its length here
     @SuppressWarnings("FieldAccessNotGuarded")
     @Override
@@ -300,7 +305,7 @@ public final class PartitionedLookupSourceFactory
     }
 
     @Override
-    public ListenableFuture<PartitionedConsumption<Supplier<LookupSource>>> finishProbeOperator(OptionalInt lookupJoinsCount)
+    public ListenableFuture<PartitionedConsumption<TrackingLookupSourceSupplier>> finishProbeOperator(OptionalInt lookupJoinsCount)
     {
         lock.writeLock().lock();
         try {
@@ -326,8 +331,10 @@ public final class PartitionedLookupSourceFactory
 
             finishedProbeOperators++;
             if (finishedProbeOperators == operatorsCount) {
-                // We can dispose partitions now since as right outer is not supported with spill
-                freePartitions();
+                if (!outer) {
+                    // We can dispose partitions now. For outer join the partitions kept in memory are still needed to produce their unvisited positions.
+                    freePartitions();
+                }
                 verify(!partitionedConsumption.isDone());
                 partitionedConsumption.set(new PartitionedConsumption<>(
                         partitionedConsumptionParticipants.getAsInt(),
@@ -343,9 +350,14 @@ public final class PartitionedLookupSourceFactory
         }
     }
 
-    private ListenableFuture<Supplier<LookupSource>> loadSpilledLookupSource(int partitionNumber)
+    private ListenableFuture<TrackingLookupSourceSupplier> loadSpilledLookupSource(int partitionNumber)
     {
-        return getSpilledLookupSourceHandle(partitionNumber).getLookupSource();
+        ListenableFuture<Supplier<LookupSource>> lookupSource = getSpilledLookupSourceHandle(partitionNumber).getLookupSource();
+        if (outer) {
+            // A spilled partition is probed after all in-memory partitions, so it tracks its visited positions on its own
+            return transform(lookupSource, OuterLookupSource::createOuterLookupSourceSupplier, directExecutor());
+        }
+        return transform(lookupSource, TrackingLookupSourceSupplier::nonTracking, directExecutor());
     }
 
     private void disposeSpilledLookupSource(int partitionNumber)
@@ -558,6 +570,13 @@ public final class PartitionedLookupSourceFactory
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public boolean isJoinPositionDeterminedByKeys()
+        {
+            // the probe rows of spilled partitions are never looked up
+            return true;
+        }
+
         @Override
         public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
         {
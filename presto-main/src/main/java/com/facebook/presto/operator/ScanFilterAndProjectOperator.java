@@ -70,6 +70,7 @@ public class ScanFilterAndProjectOperator
     private final LocalMemoryContext outputMemoryContext;
     private final SettableFuture<?> blocked = SettableFuture.create();
     private final MergingPageOutput mergingOutput;
+    private final Optional<DynamicFilter> dynamicFilter;
 
     private RecordCursor cursor;
     private ConnectorPageSource pageSource;
@@ -91,7 +92,8 @@ public class ScanFilterAndProjectOperator
             TableHandle table,
             Iterable<ColumnHandle> columns,
             Iterable<Type> types,
-            MergingPageOutput mergingOutput)
+            MergingPageOutput mergingOutput,
+            Optional<DynamicFilter> dynamicFilter)
     {
         this.cursorProcessor = requireNonNull(cursorProcessor, "cursorProcessor is null");
         this.pageProcessor = requireNonNull(pageProcessor, "pageProcessor is null");
@@ -104,6 +106,7 @@ public class ScanFilterAndProjectOperator
         this.pageProcessorMemoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext(ScanFilterAndProjectOperator.class.getSimpleName());
         this.outputMemoryContext = operatorContext.newLocalSystemMemoryContext(ScanFilterAndProjectOperator.class.getSimpleName());
         this.mergingOutput = requireNonNull(mergingOutput, "mergingOutput is null");
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
 
         this.pageBuilder = new PageBuilder(ImmutableList.copyOf(requireNonNull(types, "types is null")));
     }
@@ -224,9 +227,19 @@ public class ScanFilterAndProjectOperator
         }
 
         if (!finishing && pageSource == null && cursor == null) {
-            ConnectorPageSource source = pageSourceProvider.createPageSource(operatorContext.getSession(), split, table, columns);
+            ConnectorPageSource source;
+            if (dynamicFilter.isPresent() && dynamicFilter.get().getCurrentPredicate().isNone()) {
+                // the build side of the join is empty, so none of the rows can match
+                source = new EmptySplitPageSource();
+            }
+            else {
+                source = pageSourceProvider.createPageSource(operatorContext.getSession(), dynamicFilter.map(filter -> filter.attachTo(split)).orElse(split), table, columns);
+            }
             if (source instanceof RecordPageSource) {
                 cursor = ((RecordPageSource) source).getCursor();
+                if (dynamicFilter.isPresent()) {
+                    cursor = dynamicFilter.get().filter(cursor, operatorContext::recordDynamicFilterPrunedPositions);
+                }
             }
             else {
                 pageSource = source;
@@ -277,7 +290,10 @@ public class ScanFilterAndProjectOperator
             if (page != null) {
                 // update operator stats
                 page = recordProcessedInput(page);
+                page = applyDynamicFilter(page);
+            }
 
+            if (page != null) {
                 Iterator<Optional<Page>> output = pageProcessor.process(operatorContext.getSession().getSqlFunctionProperties(), yieldSignal, pageProcessorMemoryContext, page);
                 mergingOutput.addInput(output);
             }
@@ -292,6 +308,16 @@ public class ScanFilterAndProjectOperator
         return result;
     }
 
+    private Page applyDynamicFilter(Page page)
+    {
+        if (!dynamicFilter.isPresent()) {
+            return page;
+        }
+        Page filteredPage = dynamicFilter.get().filter(page);
+        operatorContext.recordDynamicFilterPrunedPositions(page.getPositionCount() - filteredPage.getPositionCount());
+        return filteredPage.getPositionCount() == 0 ? null : filteredPage;
+    }
+
     private final class RecordingLazyBlockLoader
             implements LazyBlockLoader<LazyBlock>
     {
@@ -386,6 +412,7 @@ public class ScanFilterAndProjectOperator
         private final List<Type> types;
         private final DataSize minOutputPageSize;
         private final int minOutputPageRowCount;
+        private final Optional<DynamicFilter> dynamicFilter;
         private boolean closed;
 
         public ScanFilterAndProjectOperatorFactory(
@@ -399,7 +426,8 @@ public class ScanFilterAndProjectOperator
                 Iterable<ColumnHandle> columns,
                 List<Type> types,
                 DataSize minOutputPageSize,
-                int minOutputPageRowCount)
+                int minOutputPageRowCount,
+                Optional<DynamicFilter> dynamicFilter)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -412,6 +440,7 @@ public class ScanFilterAndProjectOperator
             this.types = requireNonNull(types, "types is null");
             this.minOutputPageSize = requireNonNull(minOutputPageSize, "minOutputPageSize is null");
             this.minOutputPageRowCount = minOutputPageRowCount;
+            this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         }
 
         @Override
@@ -434,7 +463,8 @@ public class ScanFilterAndProjectOperator
                     table,
                     columns,
                     types,
-                    new MergingPageOutput(types, minOutputPageSize.toBytes(), minOutputPageRowCount));
+                    new MergingPageOutput(types, minOutputPageSize.toBytes(), minOutputPageRowCount),
+                    dynamicFilter);
         }
 
         @Override
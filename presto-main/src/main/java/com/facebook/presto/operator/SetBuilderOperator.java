@@ -16,20 +16,32 @@ package com.facebook.presto.operator;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.ChannelSet.ChannelSetBuilder;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.Optional;
+import java.util.OptionalInt;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
+import static com.facebook.presto.SystemSessionProperties.getSpillerPartitionCount;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
@@ -40,6 +52,7 @@ public class SetBuilderOperator
     {
         private final Type type;
         private final SettableFuture<ChannelSet> channelSetFuture = SettableFuture.create();
+        private final SpilledChannelSetHandle spilledChannelSetHandle = new SpilledChannelSetHandle();
 
         public SetSupplier(Type type)
         {
@@ -51,16 +64,32 @@ public class SetBuilderOperator
             return type;
         }
 
+        /**
+         * Returns the built set. The future completes with {@code null} when the set has been spilled,
+         * in which case its partitions are served by {@link #getSpilledChannelSetHandle()}.
+         */
         public ListenableFuture<ChannelSet> getChannelSet()
         {
             return channelSetFuture;
         }
 
+        SpilledChannelSetHandle getSpilledChannelSetHandle()
+        {
+            return spilledChannelSetHandle;
+        }
+
         void setChannelSet(ChannelSet channelSet)
         {
             boolean wasSet = channelSetFuture.set(requireNonNull(channelSet, "channelSet is null"));
             checkState(wasSet, "ChannelSet already set");
         }
+
+        void setSpilled(int partitionCount, boolean containsNull, boolean empty)
+        {
+            spilledChannelSetHandle.setSpilled(partitionCount, containsNull, empty);
+            boolean wasSet = channelSetFuture.set(null);
+            checkState(wasSet, "ChannelSet already set");
+        }
     }
 
     public static class SetBuilderOperatorFactory
@@ -74,6 +103,8 @@ public class SetBuilderOperator
         private final int expectedPositions;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public SetBuilderOperatorFactory(
                 int operatorId,
@@ -82,7 +113,9 @@ public class SetBuilderOperator
                 int setChannel,
                 Optional<Integer> hashChannel,
                 int expectedPositions,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -92,6 +125,8 @@ public class SetBuilderOperator
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         public SetSupplier getSetProvider()
@@ -104,7 +139,7 @@ public class SetBuilderOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, SetBuilderOperator.class.getSimpleName());
-            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -116,7 +151,7 @@ public class SetBuilderOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
@@ -124,35 +159,71 @@ public class SetBuilderOperator
     private final SetSupplier setSupplier;
     private final int setChannel;
     private final Optional<Integer> hashChannel;
-
-    private final ChannelSetBuilder channelSetBuilder;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+    private final int spillPartitionCount;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
+
+    // null once the set has been spilled
+    @Nullable
+    private ChannelSetBuilder channelSetBuilder;
 
     private boolean finished;
 
     @Nullable
     private Work<?> unfinishedWork;  // The pending work for current page.
 
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private boolean spilledContainsNull;
+    private boolean spilledEmpty;
+    private boolean spilledSetPublished;
+
+    // state of the partition that is being unspilled for the probe side
+    private OptionalInt unspillingPartition = OptionalInt.empty();
+    @Nullable
+    private ChannelSetBuilder unspillingBuilder;
+    @Nullable
+    private Iterator<Page> unspillingPages;
+    @Nullable
+    private Work<?> unspillingWork;
+
     public SetBuilderOperator(
             OperatorContext operatorContext,
             SetSupplier setSupplier,
             int setChannel,
             Optional<Integer> hashChannel,
             int expectedPositions,
-            JoinCompiler joinCompiler)
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.setSupplier = requireNonNull(setSupplier, "setProvider is null");
         this.setChannel = setChannel;
 
         this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        this.spillPartitionCount = getSpillerPartitionCount(operatorContext.getSession());
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+
         // Set builder is has a single channel which goes in channel 0, if hash is present, add a hachBlock to channel 1
         Optional<Integer> channelSetHashChannel = hashChannel.isPresent() ? Optional.of(1) : Optional.empty();
         this.channelSetBuilder = new ChannelSetBuilder(
                 setSupplier.getType(),
                 channelSetHashChannel,
                 expectedPositions,
-                requireNonNull(operatorContext, "operatorContext is null"),
-                requireNonNull(joinCompiler, "joinCompiler is null"));
+                operatorContext,
+                spillEnabled ? localRevocableMemoryContext : localUserMemoryContext,
+                joinCompiler);
     }
 
     @Override
@@ -168,10 +239,18 @@ public class SetBuilderOperator
             return;
         }
 
+        if (spiller.isPresent()) {
+            finishSpilledSet();
+            return;
+        }
+
         ChannelSet channelSet = channelSetBuilder.build();
         setSupplier.setChannelSet(channelSet);
         operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
         finished = true;
+        // the set can no longer be spilled once the probe side uses it
+        localRevocableMemoryContext.setBytes(0);
+        localUserMemoryContext.setBytes(channelSet.getEstimatedSizeInBytes());
     }
 
     @Override
@@ -180,12 +259,27 @@ public class SetBuilderOperator
         return finished;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
+        if (spilledSetPublished && !finished) {
+            return setSupplier.getSpilledChannelSetHandle().getPartitionRequested();
+        }
+        return NOT_BLOCKED;
+    }
+
     @Override
     public boolean needsInput()
     {
         // Since SetBuilderOperator doesn't produce any output, the getOutput()
         // method may never be called. We need to handle any unfinished work
         // before addInput() can be called again.
+        if (spiller.isPresent()) {
+            return !finished && !spilledSetPublished && spillInProgress.isDone();
+        }
         return !finished && (unfinishedWork == null || processUnfinishedWork());
     }
 
@@ -194,8 +288,13 @@ public class SetBuilderOperator
     {
         requireNonNull(page, "page is null");
         checkState(!isFinished(), "Operator is already finished");
+        checkSuccess(spillInProgress, "spilling failed");
 
         Block sourceBlock = page.getBlock(setChannel);
+        if (spiller.isPresent()) {
+            spillInput(sourceBlock);
+            return;
+        }
         Page sourcePage = hashChannel.isPresent() ? new Page(sourceBlock, page.getBlock(hashChannel.get())) : new Page(sourceBlock);
 
         unfinishedWork = channelSetBuilder.addPage(sourcePage);
@@ -208,6 +307,131 @@ public class SetBuilderOperator
         return null;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+        if (finished || spiller.isPresent() || unfinishedWork != null) {
+            // stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        // the precomputed hash is not spilled, the partitions are rebuilt without it
+        Type type = setSupplier.getType();
+        spiller = Optional.of(partitioningSpillerFactory.create(
+                ImmutableList.of(type),
+                new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(type), new int[] {0}), spillPartitionCount),
+                operatorContext.getSpillContext(),
+                operatorContext.newAggregateSystemMemoryContext()));
+        spilledContainsNull = channelSetBuilder.containsNull();
+        spilledEmpty = channelSetBuilder.size() == 0;
+
+        // the values are read from the builder while they are spilled, it is released once the spilling is finished
+        spillInProgress = spiller.get().spill(channelSetBuilder.getValues());
+        finishMemoryRevoke = Optional.of(() -> {
+            channelSetBuilder = null;
+            localRevocableMemoryContext.setBytes(0);
+        });
+        return spillInProgress;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
+    private void spillInput(Block block)
+    {
+        for (int position = 0; position < block.getPositionCount() && !spilledContainsNull; position++) {
+            spilledContainsNull = block.isNull(position);
+        }
+        spilledEmpty &= block.getPositionCount() == 0;
+        spillInProgress = spiller.get().partitionAndSpill(new Page(block), partition -> true).getSpillingFuture();
+    }
+
+    private void finishSpilledSet()
+    {
+        if (!spillInProgress.isDone()) {
+            // not ready to handle finish() yet
+            return;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
+
+        SpilledChannelSetHandle handle = setSupplier.getSpilledChannelSetHandle();
+        if (!spilledSetPublished) {
+            setSupplier.setSpilled(spillPartitionCount, spilledContainsNull, spilledEmpty);
+            spilledSetPublished = true;
+        }
+
+        if (!unspillingPartition.isPresent()) {
+            unspillingPartition = handle.getRequestedPartition();
+            if (unspillingPartition.isPresent()) {
+                // the previous partition is no longer referenced by the probe side
+                localUserMemoryContext.setBytes(0);
+                unspillingBuilder = new ChannelSetBuilder(
+                        setSupplier.getType(),
+                        Optional.empty(),
+                        expectedPositions,
+                        operatorContext,
+                        localUserMemoryContext,
+                        joinCompiler);
+                unspillingPages = spiller.get().getSpilledPages(unspillingPartition.getAsInt());
+            }
+        }
+        if (unspillingPartition.isPresent()) {
+            if (!unspillPartition()) {
+                // yield when memory is not available
+                return;
+            }
+            handle.setPartition(unspillingPartition.getAsInt(), unspillingBuilder.build());
+            unspillingPartition = OptionalInt.empty();
+            unspillingBuilder = null;
+            unspillingPages = null;
+        }
+
+        if (handle.isAllPartitionsProcessed()) {
+            finished = true;
+            close();
+        }
+    }
+
+    private boolean unspillPartition()
+    {
+        while (true) {
+            if (unspillingWork != null) {
+                if (!unspillingWork.process()) {
+                    return false;
+                }
+                unspillingWork = null;
+            }
+            if (!unspillingPages.hasNext()) {
+                unspillingBuilder.updateMemoryReservation();
+                return true;
+            }
+            unspillingWork = unspillingBuilder.addPage(unspillingPages.next());
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (spiller.isPresent()) {
+            try {
+                spiller.get().close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            spiller = Optional.empty();
+        }
+        localRevocableMemoryContext.setBytes(0);
+        localUserMemoryContext.setBytes(0);
+    }
+
     private boolean processUnfinishedWork()
     {
         // Processes the unfinishedWork for this page by adding the data to the hash table. If this page
@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.type.Type;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Iterables.getLast;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Combines consecutive pages that share the dictionary of a dictionary encoded channel, such as the pages read
+ * from the same ORC stripe, before they are serialized for an exchange. Every serialized page carries the
+ * dictionaries of its blocks, so a shared dictionary is sent once for the combined page instead of once for
+ * every page. The ids of the channels that share a dictionary are concatenated, the other channels are copied.
+ */
+@NotThreadSafe
+public class SharedDictionaryPageMerger
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(SharedDictionaryPageMerger.class).instanceSize();
+
+    private final List<Type> types;
+    private final long maxPageSizeInBytes;
+
+    private final List<Page> bufferedPages = new ArrayList<>();
+    private long bufferedSizeInBytes;
+    private long bufferedRetainedSizeInBytes;
+
+    public SharedDictionaryPageMerger(List<Type> types, long maxPageSizeInBytes)
+    {
+        this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+        checkArgument(maxPageSizeInBytes > 0, "maxPageSizeInBytes must be greater than zero");
+        this.maxPageSizeInBytes = maxPageSizeInBytes;
+    }
+
+    /**
+     * Adds the page and returns the pages that are ready to be sent, in order.
+     */
+    public List<Page> add(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkArgument(page.getChannelCount() == types.size(), "Expected %s channels, but got %s", types.size(), page.getChannelCount());
+
+        ImmutableList.Builder<Page> output = ImmutableList.builder();
+        long sizeInBytes = page.getSizeInBytes();
+        if (!bufferedPages.isEmpty() && (bufferedSizeInBytes + sizeInBytes > maxPageSizeInBytes || !sharesDictionary(getLast(bufferedPages), page))) {
+            flush().ifPresent(output::add);
+        }
+
+        // a page without dictionaries, or too large for another page to fit with it, is not worth holding back
+        if (bufferedPages.isEmpty() && (sizeInBytes * 2 > maxPageSizeInBytes || !hasDictionary(page))) {
+            output.add(page);
+            return output.build();
+        }
+
+        bufferedPages.add(page);
+        bufferedSizeInBytes += sizeInBytes;
+        bufferedRetainedSizeInBytes += page.getRetainedSizeInBytes();
+        return output.build();
+    }
+
+    /**
+     * Returns the buffered pages combined into a single page, if there are any.
+     */
+    public Optional<Page> flush()
+    {
+        if (bufferedPages.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Page page = bufferedPages.size() == 1 ? bufferedPages.get(0) : combine(bufferedPages);
+        bufferedPages.clear();
+        bufferedSizeInBytes = 0;
+        bufferedRetainedSizeInBytes = 0;
+        return Optional.of(page);
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + bufferedRetainedSizeInBytes;
+    }
+
+    private Page combine(List<Page> pages)
+    {
+        int positionCount = 0;
+        for (Page page : pages) {
+            positionCount += page.getPositionCount();
+        }
+
+        Block[] blocks = new Block[types.size()];
+        for (int channel = 0; channel < types.size(); channel++) {
+            if (sharesDictionary(pages, channel)) {
+                DictionaryBlock first = (DictionaryBlock) pages.get(0).getBlock(channel);
+                int[] ids = new int[positionCount];
+                int index = 0;
+                for (Page page : pages) {
+                    DictionaryBlock block = (DictionaryBlock) page.getBlock(channel);
+                    for (int position = 0; position < block.getPositionCount(); position++) {
+                        ids[index++] = block.getId(position);
+                    }
+                }
+                blocks[channel] = new DictionaryBlock(positionCount, first.getDictionary(), ids, first.getDictionarySourceId());
+            }
+            else {
+                Type type = types.get(channel);
+                BlockBuilder blockBuilder = type.createBlockBuilder(null, positionCount);
+                for (Page page : pages) {
+                    Block block = page.getBlock(channel);
+                    for (int position = 0; position < block.getPositionCount(); position++) {
+                        type.appendTo(block, position, blockBuilder);
+                    }
+                }
+                blocks[channel] = blockBuilder.build();
+            }
+        }
+        return new Page(positionCount, blocks);
+    }
+
+    private static boolean hasDictionary(Page page)
+    {
+        for (int channel = 0; channel < page.getChannelCount(); channel++) {
+            if (page.getBlock(channel) instanceof DictionaryBlock) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sharesDictionary(Page left, Page right)
+    {
+        for (int channel = 0; channel < left.getChannelCount(); channel++) {
+            if (isSameDictionary(left.getBlock(channel), right.getBlock(channel))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean sharesDictionary(List<Page> pages, int channel)
+    {
+        Block first = pages.get(0).getBlock(channel);
+        for (int i = 1; i < pages.size(); i++) {
+            if (!isSameDictionary(first, pages.get(i).getBlock(channel))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameDictionary(Block left, Block right)
+    {
+        if (!(left instanceof DictionaryBlock) || !(right instanceof DictionaryBlock)) {
+            return false;
+        }
+        // readers like the ORC dictionary readers give every block a new dictionary source id, but keep the dictionary itself
+        return ((DictionaryBlock) left).getDictionary() == ((DictionaryBlock) right).getDictionary();
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Coordinates a {@link SetBuilderOperator} that spilled its set with the {@link HashSemiJoinOperator}s
+ * probing it. Once every probe operator has spilled its input, the partitions of the set are loaded by
+ * the builder one at a time, and the next partition is requested when all probe operators are done with
+ * the current one.
+ */
+@ThreadSafe
+final class SpilledChannelSetHandle
+{
+    @GuardedBy("this")
+    private int probeFactoryCount;
+    @GuardedBy("this")
+    private int activeProbeCount;
+    @GuardedBy("this")
+    private int inputFinishedProbeCount;
+    @GuardedBy("this")
+    private int partitionProcessedProbeCount;
+
+    @GuardedBy("this")
+    private boolean spilled;
+    private volatile int partitionCount;
+    private volatile boolean containsNull;
+    private volatile boolean empty;
+
+    @GuardedBy("this")
+    private final List<SettableFuture<ChannelSet>> partitions = new ArrayList<>();
+    @GuardedBy("this")
+    private int currentPartition = -1;
+    @GuardedBy("this")
+    private boolean currentPartitionLoaded;
+    @GuardedBy("this")
+    private SettableFuture<?> partitionRequested = SettableFuture.create();
+    @GuardedBy("this")
+    private boolean allPartitionsProcessed;
+
+    public synchronized void probeFactoryCreated()
+    {
+        probeFactoryCount++;
+    }
+
+    public synchronized void probeFactoryClosed()
+    {
+        checkState(probeFactoryCount > 0, "no probe factory is open");
+        probeFactoryCount--;
+        requestNextPartitionIfReady();
+    }
+
+    public synchronized void probeOperatorCreated()
+    {
+        checkState(currentPartition == -1, "probe operator created after the spilled set has been loaded");
+        activeProbeCount++;
+    }
+
+    public synchronized void probeOperatorClosed(boolean inputFinished, int processedPartitions)
+    {
+        activeProbeCount--;
+        if (inputFinished) {
+            inputFinishedProbeCount--;
+            if (currentPartition >= 0 && processedPartitions > currentPartition) {
+                partitionProcessedProbeCount--;
+            }
+        }
+        requestNextPartitionIfReady();
+    }
+
+    public synchronized void probeInputFinished()
+    {
+        inputFinishedProbeCount++;
+        requestNextPartitionIfReady();
+    }
+
+    public synchronized void partitionProcessed(int partition)
+    {
+        checkArgument(partition == currentPartition, "partition %s is not the current partition %s", partition, currentPartition);
+        partitionProcessedProbeCount++;
+        requestNextPartitionIfReady();
+    }
+
+    public synchronized ListenableFuture<ChannelSet> getPartition(int partition)
+    {
+        checkState(spilled, "set has not been spilled");
+        checkArgument(partition >= currentPartition, "partition %s has already been released", partition);
+        return requireNonNull(partitions.get(partition), "partition future is null");
+    }
+
+    /**
+     * Called by the set builder once all of its input has been spilled.
+     */
+    public synchronized void setSpilled(int partitionCount, boolean containsNull, boolean empty)
+    {
+        checkState(!spilled, "set already spilled");
+        this.spilled = true;
+        this.partitionCount = partitionCount;
+        this.containsNull = containsNull;
+        this.empty = empty;
+        for (int partition = 0; partition < partitionCount; partition++) {
+            partitions.add(SettableFuture.create());
+        }
+        requestNextPartitionIfReady();
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    public boolean containsNull()
+    {
+        return containsNull;
+    }
+
+    public boolean isEmpty()
+    {
+        return empty;
+    }
+
+    /**
+     * Returns the partition the builder should load, if any.
+     */
+    public synchronized OptionalInt getRequestedPartition()
+    {
+        if (allPartitionsProcessed || currentPartition < 0 || currentPartitionLoaded) {
+            return OptionalInt.empty();
+        }
+        return OptionalInt.of(currentPartition);
+    }
+
+    public synchronized void setPartition(int partition, ChannelSet channelSet)
+    {
+        checkArgument(partition == currentPartition, "partition %s is not the current partition %s", partition, currentPartition);
+        checkState(!currentPartitionLoaded, "partition %s already loaded", partition);
+        currentPartitionLoaded = true;
+        partitions.get(partition).set(requireNonNull(channelSet, "channelSet is null"));
+    }
+
+    /**
+     * Returns a future that completes when the builder has to load the next partition or can finish.
+     */
+    public synchronized ListenableFuture<?> getPartitionRequested()
+    {
+        if (allPartitionsProcessed || (currentPartition >= 0 && !currentPartitionLoaded)) {
+            return immediateFuture(null);
+        }
+        return partitionRequested;
+    }
+
+    public synchronized boolean isAllPartitionsProcessed()
+    {
+        return allPartitionsProcessed;
+    }
+
+    @GuardedBy("this")
+    private void requestNextPartitionIfReady()
+    {
+        if (!spilled || allPartitionsProcessed || probeFactoryCount > 0 || inputFinishedProbeCount < activeProbeCount) {
+            return;
+        }
+        if (currentPartition >= 0 && (!currentPartitionLoaded || partitionProcessedProbeCount < activeProbeCount)) {
+            return;
+        }
+
+        if (currentPartition >= 0) {
+            // let the memory of the processed partition go
+            partitions.set(currentPartition, null);
+        }
+        currentPartition++;
+        currentPartitionLoaded = false;
+        partitionProcessedProbeCount = 0;
+        if (currentPartition == partitionCount || activeProbeCount == 0) {
+            allPartitionsProcessed = true;
+        }
+
+        SettableFuture<?> requested = partitionRequested;
+        partitionRequested = SettableFuture.create();
+        requested.set(null);
+    }
+}
@@ -125,7 +125,7 @@ public class StreamingAggregationOperator
     {
         ImmutableList.Builder<Aggregator> builder = ImmutableList.builder();
         for (AccumulatorFactory factory : accumulatorFactories) {
-            builder.add(new Aggregator(factory, step));
+            builder.add(new Aggregator(factory, step, step.isOutputPartial() ? systemMemoryContext : userMemoryContext));
         }
         return builder.build();
     }
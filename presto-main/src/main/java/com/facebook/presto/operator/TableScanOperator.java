@@ -51,6 +51,7 @@ public class TableScanOperator
         private final PageSourceProvider pageSourceProvider;
         private final TableHandle table;
         private final List<ColumnHandle> columns;
+        private final Optional<DynamicFilter> dynamicFilter;
         private boolean closed;
 
         public TableScanOperatorFactory(
@@ -58,13 +59,15 @@ public class TableScanOperator
                 PlanNodeId sourceId,
                 PageSourceProvider pageSourceProvider,
                 TableHandle table,
-                Iterable<ColumnHandle> columns)
+                Iterable<ColumnHandle> columns,
+                Optional<DynamicFilter> dynamicFilter)
         {
             this.operatorId = operatorId;
             this.sourceId = requireNonNull(sourceId, "sourceId is null");
             this.pageSourceProvider = requireNonNull(pageSourceProvider, "pageSourceProvider is null");
             this.table = requireNonNull(table, "table is null");
             this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
+            this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         }
 
         @Override
@@ -83,7 +86,8 @@ public class TableScanOperator
                     sourceId,
                     pageSourceProvider,
                     table,
-                    columns);
+                    columns,
+                    dynamicFilter);
         }
 
         @Override
@@ -98,6 +102,7 @@ public class TableScanOperator
     private final PageSourceProvider pageSourceProvider;
     private final TableHandle table;
     private final List<ColumnHandle> columns;
+    private final Optional<DynamicFilter> dynamicFilter;
     private final LocalMemoryContext systemMemoryContext;
     private final SettableFuture<?> blocked = SettableFuture.create();
 
@@ -115,13 +120,15 @@ public class TableScanOperator
             PlanNodeId planNodeId,
             PageSourceProvider pageSourceProvider,
             TableHandle table,
-            Iterable<ColumnHandle> columns)
+            Iterable<ColumnHandle> columns,
+            Optional<DynamicFilter> dynamicFilter)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
         this.pageSourceProvider = requireNonNull(pageSourceProvider, "pageSourceProvider is null");
         this.table = requireNonNull(table, "table is null");
         this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         this.systemMemoryContext = operatorContext.newLocalSystemMemoryContext(TableScanOperator.class.getSimpleName());
     }
 
@@ -245,7 +252,13 @@ public class TableScanOperator
             return null;
         }
         if (source == null) {
-            source = pageSourceProvider.createPageSource(operatorContext.getSession(), split, table, columns);
+            if (dynamicFilter.isPresent() && dynamicFilter.get().getCurrentPredicate().isNone()) {
+                // the build side of the join is empty, so none of the rows can match
+                source = new EmptySplitPageSource();
+            }
+            else {
+                source = pageSourceProvider.createPageSource(operatorContext.getSession(), dynamicFilter.map(filter -> filter.attachTo(split)).orElse(split), table, columns);
+            }
         }
 
         Page page = source.getNextPage();
@@ -256,6 +269,12 @@ public class TableScanOperator
             // update operator stats
             operatorContext.recordProcessedInput(page.getSizeInBytes(), page.getPositionCount());
             recordSourceRawInputStats();
+
+            if (dynamicFilter.isPresent()) {
+                Page filteredPage = dynamicFilter.get().filter(page);
+                operatorContext.recordDynamicFilterPrunedPositions(page.getPositionCount() - filteredPage.getPositionCount());
+                page = filteredPage.getPositionCount() == 0 ? null : filteredPage;
+            }
         }
 
         // updating system memory usage should happen after page is loaded.
@@ -16,6 +16,7 @@ package com.facebook.presto.operator;
 import com.facebook.airlift.stats.CounterStat;
 import com.facebook.airlift.stats.GcMonitor;
 import com.facebook.presto.Session;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskState;
@@ -27,6 +28,7 @@ import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.memory.context.MemoryTrackingContext;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.AtomicDouble;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -37,7 +39,9 @@ import org.joda.time.DateTime;
 import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
@@ -84,6 +88,11 @@ public class TaskContext
 
     private final Set<Lifespan> completedDriverGroups = newConcurrentHashSet();
 
+    @GuardedBy("this")
+    private final Map<String, Domain> dynamicFilterDomains = new HashMap<>();
+    @GuardedBy("this")
+    private long dynamicFilterDomainsVersion;
+
     private final List<PipelineContext> pipelineContexts = new CopyOnWriteArrayList<>();
 
     private final boolean perOperatorCpuTimerEnabled;
@@ -277,6 +286,32 @@ public class TaskContext
         completedDriverGroups.add(driverGroup);
     }
 
+    /**
+     * Returns the domains of the dynamic filters whose build side has completed in this task,
+     * so that the coordinator can use them to prune splits.
+     */
+    public synchronized Map<String, Domain> getDynamicFilterDomains()
+    {
+        return ImmutableMap.copyOf(dynamicFilterDomains);
+    }
+
+    /**
+     * Returns the version of the domains of the dynamic filters, which is incremented every time domains are added.
+     */
+    public synchronized long getDynamicFilterDomainsVersion()
+    {
+        return dynamicFilterDomainsVersion;
+    }
+
+    public synchronized void addDynamicFilterDomains(Map<String, Domain> domains)
+    {
+        if (domains.isEmpty()) {
+            return;
+        }
+        dynamicFilterDomains.putAll(domains);
+        dynamicFilterDomainsVersion++;
+    }
+
     public List<PipelineContext> getPipelineContexts()
     {
         return pipelineContexts;
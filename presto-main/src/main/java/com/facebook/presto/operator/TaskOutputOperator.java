@@ -17,16 +17,19 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.buffer.OutputBuffer;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.planner.OutputPartitioning;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 
+import static com.facebook.presto.SystemSessionProperties.isExchangeSharedDictionaryPageMergingEnabled;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -56,7 +59,7 @@ public class TaskOutputOperator
                 PagesSerdeFactory serdeFactory)
         {
             checkArgument(!outputPartitioning.isPresent(), "outputPartitioning is not expected to be present");
-            return new TaskOutputOperatorFactory(operatorId, planNodeId, outputBuffer, pagePreprocessor, serdeFactory);
+            return new TaskOutputOperatorFactory(operatorId, planNodeId, types, outputBuffer, pagePreprocessor, serdeFactory);
         }
     }
 
@@ -65,14 +68,16 @@ public class TaskOutputOperator
     {
         private final int operatorId;
         private final PlanNodeId planNodeId;
+        private final List<Type> types;
         private final OutputBuffer outputBuffer;
         private final Function<Page, Page> pagePreprocessor;
         private final PagesSerdeFactory serdeFactory;
 
-        public TaskOutputOperatorFactory(int operatorId, PlanNodeId planNodeId, OutputBuffer outputBuffer, Function<Page, Page> pagePreprocessor, PagesSerdeFactory serdeFactory)
+        public TaskOutputOperatorFactory(int operatorId, PlanNodeId planNodeId, List<Type> types, OutputBuffer outputBuffer, Function<Page, Page> pagePreprocessor, PagesSerdeFactory serdeFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+            this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.pagePreprocessor = requireNonNull(pagePreprocessor, "pagePreprocessor is null");
             this.serdeFactory = requireNonNull(serdeFactory, "serdeFactory is null");
@@ -82,7 +87,7 @@ public class TaskOutputOperator
         public Operator createOperator(DriverContext driverContext)
         {
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, TaskOutputOperator.class.getSimpleName());
-            return new TaskOutputOperator(operatorContext, outputBuffer, pagePreprocessor, serdeFactory);
+            return new TaskOutputOperator(operatorContext, types, outputBuffer, pagePreprocessor, serdeFactory);
         }
 
         @Override
@@ -93,7 +98,7 @@ public class TaskOutputOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new TaskOutputOperatorFactory(operatorId, planNodeId, outputBuffer, pagePreprocessor, serdeFactory);
+            return new TaskOutputOperatorFactory(operatorId, planNodeId, types, outputBuffer, pagePreprocessor, serdeFactory);
         }
     }
 
@@ -101,14 +106,19 @@ public class TaskOutputOperator
     private final OutputBuffer outputBuffer;
     private final Function<Page, Page> pagePreprocessor;
     private final PagesSerde serde;
+    private final Optional<SharedDictionaryPageMerger> pageMerger;
+    private final LocalMemoryContext systemMemoryContext;
     private boolean finished;
 
-    public TaskOutputOperator(OperatorContext operatorContext, OutputBuffer outputBuffer, Function<Page, Page> pagePreprocessor, PagesSerdeFactory serdeFactory)
+    public TaskOutputOperator(OperatorContext operatorContext, List<Type> types, OutputBuffer outputBuffer, Function<Page, Page> pagePreprocessor, PagesSerdeFactory serdeFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        requireNonNull(types, "types is null");
         this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
         this.pagePreprocessor = requireNonNull(pagePreprocessor, "pagePreprocessor is null");
         this.serde = requireNonNull(serdeFactory, "serdeFactory is null").createPagesSerde();
+        this.pageMerger = isExchangeSharedDictionaryPageMergingEnabled(operatorContext.getSession()) ? Optional.of(new SharedDictionaryPageMerger(types, DEFAULT_MAX_PAGE_SIZE_IN_BYTES)) : Optional.empty();
+        this.systemMemoryContext = operatorContext.newLocalSystemMemoryContext(TaskOutputOperator.class.getSimpleName());
     }
 
     @Override
@@ -120,6 +130,10 @@ public class TaskOutputOperator
     @Override
     public void finish()
     {
+        if (!finished && pageMerger.isPresent()) {
+            pageMerger.get().flush().ifPresent(page -> enqueue(ImmutableList.of(page)));
+            systemMemoryContext.setBytes(pageMerger.get().getRetainedSizeInBytes());
+        }
         finished = true;
     }
 
@@ -152,11 +166,13 @@ public class TaskOutputOperator
 
         page = pagePreprocessor.apply(page);
 
-        List<SerializedPage> serializedPages = splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
-                .map(serde::serialize)
-                .collect(toImmutableList());
-
-        outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), serializedPages);
+        if (pageMerger.isPresent()) {
+            enqueue(pageMerger.get().add(page));
+            systemMemoryContext.setBytes(pageMerger.get().getRetainedSizeInBytes());
+        }
+        else {
+            enqueue(ImmutableList.of(page));
+        }
         operatorContext.recordOutput(page.getSizeInBytes(), page.getPositionCount());
     }
 
@@ -165,4 +181,24 @@ public class TaskOutputOperator
     {
         return null;
     }
+
+    @Override
+    public void close()
+    {
+        systemMemoryContext.close();
+    }
+
+    private void enqueue(List<Page> pages)
+    {
+        if (pages.isEmpty()) {
+            return;
+        }
+
+        List<SerializedPage> serializedPages = pages.stream()
+                .flatMap(page -> splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream())
+                .map(serde::serialize)
+                .collect(toImmutableList());
+
+        outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), serializedPages);
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.SortOrder;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.plan.PlanNodeId;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Dynamic filter of a single TopN within a task. Once a TopN operator holds N rows, no row ordered after
+ * the last of them can make it into the result, so the range of the leading sort key up to that row is
+ * published to the table scans below. Every operator of the TopN tightens the same range, which only
+ * ever narrows; rows that tie with the boundary are kept.
+ */
+@ThreadSafe
+public class TopNDynamicFilter
+{
+    private final PlanNodeId topNId;
+    private final Type type;
+    private final SortOrder sortOrder;
+
+    @GuardedBy("this")
+    private Domain domain;
+    // incremented every time the domain narrows, so that readers can tell whether their copy is stale
+    private volatile long version;
+
+    public TopNDynamicFilter(PlanNodeId topNId, Type type, SortOrder sortOrder)
+    {
+        this.topNId = requireNonNull(topNId, "topNId is null");
+        this.type = requireNonNull(type, "type is null");
+        this.sortOrder = requireNonNull(sortOrder, "sortOrder is null");
+        this.domain = Domain.all(type);
+    }
+
+    public PlanNodeId getTopNId()
+    {
+        return topNId;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    /**
+     * Narrows the domain to the values ordered up to the sort key value at the position.
+     */
+    public void update(Block block, int position)
+    {
+        Domain boundary;
+        if (block.isNull(position)) {
+            if (!sortOrder.isNullsFirst()) {
+                // every value is ordered before null
+                return;
+            }
+            boundary = Domain.onlyNull(type);
+        }
+        else {
+            Object value = readNativeValue(type, block, position);
+            Range range = sortOrder.isAscending() ? Range.lessThanOrEqual(type, value) : Range.greaterThanOrEqual(type, value);
+            boundary = Domain.create(ValueSet.ofRanges(range), sortOrder.isNullsFirst());
+        }
+
+        synchronized (this) {
+            Domain narrowed = domain.intersect(boundary);
+            if (!narrowed.equals(domain)) {
+                domain = narrowed;
+                version++;
+            }
+        }
+    }
+
+    public synchronized Domain getDomain()
+    {
+        return domain;
+    }
+
+    public long getVersion()
+    {
+        return version;
+    }
+}
@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableList;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -44,6 +45,7 @@ public class TopNOperator
         private final int n;
         private final List<Integer> sortChannels;
         private final List<SortOrder> sortOrders;
+        private final Optional<TopNDynamicFilter> dynamicFilter;
         private boolean closed;
 
         public TopNOperatorFactory(
@@ -53,6 +55,18 @@ public class TopNOperator
                 int n,
                 List<Integer> sortChannels,
                 List<SortOrder> sortOrders)
+        {
+            this(operatorId, planNodeId, types, n, sortChannels, sortOrders, Optional.empty());
+        }
+
+        public TopNOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> types,
+                int n,
+                List<Integer> sortChannels,
+                List<SortOrder> sortOrders,
+                Optional<TopNDynamicFilter> dynamicFilter)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -60,6 +74,7 @@ public class TopNOperator
             this.n = n;
             this.sortChannels = ImmutableList.copyOf(requireNonNull(sortChannels, "sortChannels is null"));
             this.sortOrders = ImmutableList.copyOf(requireNonNull(sortOrders, "sortOrders is null"));
+            this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         }
 
         @Override
@@ -72,7 +87,8 @@ public class TopNOperator
                     sourceTypes,
                     n,
                     sortChannels,
-                    sortOrders);
+                    sortOrders,
+                    dynamicFilter);
         }
 
         @Override
@@ -84,12 +100,15 @@ public class TopNOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new TopNOperatorFactory(operatorId, planNodeId, sourceTypes, n, sortChannels, sortOrders);
+            return new TopNOperatorFactory(operatorId, planNodeId, sourceTypes, n, sortChannels, sortOrders, dynamicFilter);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final Optional<TopNDynamicFilter> dynamicFilter;
+    // the channel of the leading sort key, which the dynamic filter is on
+    private final int dynamicFilterChannel;
 
     private GroupedTopNBuilder topNBuilder;
     private boolean finishing;
@@ -101,11 +120,14 @@ public class TopNOperator
             List<Type> types,
             int n,
             List<Integer> sortChannels,
-            List<SortOrder> sortOrders)
+            List<SortOrder> sortOrders,
+            Optional<TopNDynamicFilter> dynamicFilter)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
         checkArgument(n >= 0, "n must be positive");
+        this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
+        this.dynamicFilterChannel = sortChannels.get(0);
 
         if (n == 0) {
             finishing = true;
@@ -153,6 +175,10 @@ public class TopNOperator
         // there is no grouping so work will always be done
         verify(done);
         updateMemoryReservation();
+
+        if (dynamicFilter.isPresent()) {
+            topNBuilder.getBoundaryRow(0).ifPresent(row -> dynamicFilter.get().update(row.getBlock(dynamicFilterChannel), 0));
+        }
     }
 
     @Override
@@ -18,21 +18,33 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
+import com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
+import static com.facebook.presto.SystemSessionProperties.getSpillerPartitionCount;
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isFlatGroupByHashEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class TopNRowNumberOperator
@@ -51,6 +63,7 @@ public class TopNRowNumberOperator
         private final List<Type> partitionTypes;
         private final List<Integer> sortChannels;
         private final List<SortOrder> sortOrder;
+        private final RankingFunction rankingFunction;
         private final int maxRowCountPerPartition;
         private final boolean partial;
         private final Optional<Integer> hashChannel;
@@ -59,6 +72,8 @@ public class TopNRowNumberOperator
         private final boolean generateRowNumber;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public TopNRowNumberOperatorFactory(
                 int operatorId,
@@ -69,11 +84,14 @@ public class TopNRowNumberOperator
                 List<? extends Type> partitionTypes,
                 List<Integer> sortChannels,
                 List<SortOrder> sortOrder,
+                RankingFunction rankingFunction,
                 int maxRowCountPerPartition,
                 boolean partial,
                 Optional<Integer> hashChannel,
                 int expectedPositions,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -83,6 +101,7 @@ public class TopNRowNumberOperator
             this.partitionTypes = ImmutableList.copyOf(requireNonNull(partitionTypes, "partitionTypes is null"));
             this.sortChannels = ImmutableList.copyOf(requireNonNull(sortChannels));
             this.sortOrder = ImmutableList.copyOf(requireNonNull(sortOrder));
+            this.rankingFunction = requireNonNull(rankingFunction, "rankingFunction is null");
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.partial = partial;
             checkArgument(maxRowCountPerPartition > 0, "maxRowCountPerPartition must be > 0");
@@ -91,6 +110,8 @@ public class TopNRowNumberOperator
             this.generateRowNumber = !partial;
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -106,11 +127,14 @@ public class TopNRowNumberOperator
                     partitionTypes,
                     sortChannels,
                     sortOrder,
+                    rankingFunction,
                     maxRowCountPerPartition,
                     generateRowNumber,
                     hashChannel,
                     expectedPositions,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    partitioningSpillerFactory);
         }
 
         @Override
@@ -122,17 +146,41 @@ public class TopNRowNumberOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new TopNRowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler);
+            return new TopNRowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, rankingFunction, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
+    private final List<Type> sourceTypes;
     private final List<Integer> outputChannels;
-
-    private final GroupByHash groupByHash;
-    private final GroupedTopNBuilder groupedTopNBuilder;
+    private final List<Integer> partitionChannels;
+    private final List<Type> partitionTypes;
+    private final PageWithPositionComparator comparator;
+    private final RankingFunction rankingFunction;
+    private final int maxRowCountPerPartition;
+    private final boolean generateRowNumber;
+    private final Optional<Integer> hashChannel;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+    // number of partitions the groups are hashed into when spilling; the partitions are read back one at a time
+    private final int spillPartitionCount;
+
+    private GroupByHash groupByHash;
+    private GroupedTopNBuilder groupedTopNBuilder;
+
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private Optional<ListenableFuture<?>> finishingSpill = Optional.empty();
+    // the next spill partition to be read back once the input is finished
+    private int nextSpilledPartition;
+    private Iterator<Page> spilledPages;
 
     private boolean finishing;
     private Work<?> unfinishedWork;
@@ -146,14 +194,18 @@ public class TopNRowNumberOperator
             List<Type> partitionTypes,
             List<Integer> sortChannels,
             List<SortOrder> sortOrders,
+            RankingFunction rankingFunction,
             int maxRowCountPerPartition,
             boolean generateRowNumber,
             Optional<Integer> hashChannel,
             int expectedPositions,
-            JoinCompiler joinCompiler)
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
 
         ImmutableList.Builder<Integer> outputChannelsBuilder = ImmutableList.builder();
         for (int channel : requireNonNull(outputChannels, "outputChannels is null")) {
@@ -165,15 +217,36 @@ public class TopNRowNumberOperator
         this.outputChannels = outputChannelsBuilder.build();
 
         checkArgument(maxRowCountPerPartition > 0, "maxRowCountPerPartition must be > 0");
+        checkArgument(partitionChannels.isEmpty() || expectedPositions > 0, "expectedPositions must be > 0");
 
+        this.sourceTypes = ImmutableList.copyOf(sourceTypes);
+        this.partitionChannels = ImmutableList.copyOf(requireNonNull(partitionChannels, "partitionChannels is null"));
+        this.partitionTypes = ImmutableList.copyOf(requireNonNull(partitionTypes, "partitionTypes is null"));
+        List<Type> types = toTypes(sourceTypes, outputChannels, generateRowNumber);
+        this.comparator = new SimplePageWithPositionComparator(types, sortChannels, sortOrders);
+        this.rankingFunction = requireNonNull(rankingFunction, "rankingFunction is null");
+        this.maxRowCountPerPartition = maxRowCountPerPartition;
+        this.generateRowNumber = generateRowNumber;
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        this.spillPartitionCount = getSpillerPartitionCount(operatorContext.getSession());
+
+        createGroupedTopNBuilder();
+    }
+
+    private void createGroupedTopNBuilder()
+    {
         if (!partitionChannels.isEmpty()) {
-            checkArgument(expectedPositions > 0, "expectedPositions must be > 0");
             groupByHash = createGroupByHash(
                     partitionTypes,
                     Ints.toArray(partitionChannels),
                     hashChannel,
                     expectedPositions,
                     isDictionaryAggregationEnabled(operatorContext.getSession()),
+                    isFlatGroupByHashEnabled(operatorContext.getSession()),
                     joinCompiler,
                     this::updateMemoryReservation);
         }
@@ -181,11 +254,11 @@ public class TopNRowNumberOperator
             groupByHash = new NoChannelGroupByHash();
         }
 
-        List<Type> types = toTypes(sourceTypes, outputChannels, generateRowNumber);
-        this.groupedTopNBuilder = new GroupedTopNBuilder(
-                ImmutableList.copyOf(sourceTypes),
-                new SimplePageWithPositionComparator(types, sortChannels, sortOrders),
+        groupedTopNBuilder = new GroupedTopNBuilder(
+                sourceTypes,
+                comparator,
                 maxRowCountPerPartition,
+                rankingFunction,
                 generateRowNumber,
                 groupByHash);
     }
@@ -200,13 +273,27 @@ public class TopNRowNumberOperator
     public void finish()
     {
         finishing = true;
+        updateMemoryReservation();
     }
 
     @Override
     public boolean isFinished()
     {
-        // has no more input, has finished flushing, and has no unfinished work
-        return finishing && outputIterator != null && !outputIterator.hasNext() && unfinishedWork == null;
+        // has no more input, has finished flushing (including all of the spilled partitions), and has no unfinished work
+        return finishing &&
+                outputIterator != null &&
+                !outputIterator.hasNext() &&
+                unfinishedWork == null &&
+                (!spiller.isPresent() || nextSpilledPartition == spillPartitionCount && spilledPages == null);
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (finishingSpill.isPresent() && !finishingSpill.get().isDone()) {
+            return finishingSpill.get();
+        }
+        return NOT_BLOCKED;
     }
 
     @Override
@@ -223,6 +310,7 @@ public class TopNRowNumberOperator
         checkState(unfinishedWork == null, "Cannot add input with the operator when unfinished work is not empty");
         checkState(outputIterator == null, "Cannot add input with the operator when flushing");
         requireNonNull(page, "page is null");
+        checkSuccess(spillInProgress, "spilling failed");
         unfinishedWork = groupedTopNBuilder.processPage(page);
         if (unfinishedWork.process()) {
             unfinishedWork = null;
@@ -248,7 +336,26 @@ public class TopNRowNumberOperator
 
         if (outputIterator == null) {
             // start flushing
-            outputIterator = groupedTopNBuilder.buildResult();
+            if (spiller.isPresent()) {
+                // some of the groups are on disk, so write out the rest as well and process the spill partitions one by one
+                if (!finishingSpill.isPresent()) {
+                    finishingSpill = Optional.of(spillToDisk());
+                }
+                if (!finishingSpill.get().isDone()) {
+                    return null;
+                }
+                checkSuccess(finishingSpill.get(), "spilling failed");
+                createGroupedTopNBuilder();
+                outputIterator = Collections.emptyIterator();
+            }
+            else {
+                outputIterator = groupedTopNBuilder.buildResult();
+            }
+        }
+
+        if (spiller.isPresent() && !outputIterator.hasNext() && !unspillNextPartition()) {
+            updateMemoryReservation();
+            return null;
         }
 
         Page output = null;
@@ -265,6 +372,100 @@ public class TopNRowNumberOperator
         return output;
     }
 
+    /**
+     * Reads back the rows of the next spill partition into an empty builder. A group is never split
+     * between spill partitions, so the top rows of a partition are the final top rows of its groups.
+     *
+     * @return true if the result of a spill partition is ready to be produced
+     */
+    private boolean unspillNextPartition()
+    {
+        while (spilledPages != null || nextSpilledPartition < spillPartitionCount) {
+            if (spilledPages == null) {
+                // the previous builder has been fully drained
+                createGroupedTopNBuilder();
+                spilledPages = spiller.get().getSpilledPages(nextSpilledPartition);
+                nextSpilledPartition++;
+            }
+
+            while (spilledPages.hasNext()) {
+                unfinishedWork = groupedTopNBuilder.processPage(spilledPages.next());
+                if (!unfinishedWork.process()) {
+                    return false;
+                }
+                unfinishedWork = null;
+            }
+
+            spilledPages = null;
+            outputIterator = groupedTopNBuilder.buildResult();
+            if (outputIterator.hasNext()) {
+                return true;
+            }
+        }
+        spiller.get().verifyAllPartitionsRead();
+        return false;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+        if (finishing || unfinishedWork != null) {
+            // stale revoking request, the buffered rows are not revocable anymore or a page is being processed
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+        ListenableFuture<?> spillFuture = spillToDisk();
+        finishMemoryRevoke = Optional.of(() -> {
+            createGroupedTopNBuilder();
+            updateMemoryReservation();
+        });
+        return spillFuture;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (!spiller.isPresent()) {
+            HashGenerator hashGenerator = hashChannel.isPresent()
+                    ? new PrecomputedHashGenerator(hashChannel.get())
+                    : new InterpretedHashGenerator(partitionTypes, Ints.toArray(partitionChannels));
+            spiller = Optional.of(partitioningSpillerFactory.create(
+                    sourceTypes,
+                    new LocalPartitionGenerator(hashGenerator, spillPartitionCount),
+                    operatorContext.getSpillContext(),
+                    operatorContext.newAggregateSystemMemoryContext()));
+        }
+
+        // the rows are read from the builder while they are spilled, it is replaced once the spilling is finished
+        spillInProgress = spiller.get().spill(groupedTopNBuilder.buildResultWithoutRowNumber());
+        return spillInProgress;
+    }
+
+    @Override
+    public void close()
+    {
+        localUserMemoryContext.setBytes(0);
+        localRevocableMemoryContext.setBytes(0);
+        if (spiller.isPresent()) {
+            try {
+                spiller.get().close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -274,7 +475,14 @@ public class TopNRowNumberOperator
 
     private boolean updateMemoryReservation()
     {
+        if (spillEnabled && !finishing) {
+            // the buffered rows are revocable until the input is finished
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+            return operatorContext.isWaitingForMemory().isDone();
+        }
         // TODO: may need to use trySetMemoryReservation with a compaction to free memory (but that may cause GC pressure)
+        localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
         return operatorContext.isWaitingForMemory().isDone();
     }
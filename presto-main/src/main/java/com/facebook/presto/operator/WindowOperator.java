@@ -22,11 +22,15 @@ import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.window.FramedWindowFunction;
 import com.facebook.presto.operator.window.WindowPartition;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
+import com.facebook.presto.sql.gen.OrderingCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.List;
 import java.util.Optional;
@@ -35,12 +39,16 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiPredicate;
 import java.util.stream.Stream;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
 import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_LAST;
+import static com.facebook.presto.type.TypeUtils.positionEqualsPosition;
+import static com.facebook.presto.util.MergeSortedPages.mergeSortedPages;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkPositionIndex;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Iterables.concat;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Collections.nCopies;
 import static java.util.Objects.requireNonNull;
 
@@ -63,6 +71,9 @@ public class WindowOperator
         private final int expectedPositions;
         private boolean closed;
         private final PagesIndex.Factory pagesIndexFactory;
+        private final boolean spillEnabled;
+        private final Optional<SpillerFactory> spillerFactory;
+        private final OrderingCompiler orderingCompiler;
 
         public WindowOperatorFactory(
                 int operatorId,
@@ -76,7 +87,10 @@ public class WindowOperator
                 List<SortOrder> sortOrder,
                 int preSortedChannelPrefix,
                 int expectedPositions,
-                PagesIndex.Factory pagesIndexFactory)
+                PagesIndex.Factory pagesIndexFactory,
+                boolean spillEnabled,
+                Optional<SpillerFactory> spillerFactory,
+                OrderingCompiler orderingCompiler)
         {
             requireNonNull(sourceTypes, "sourceTypes is null");
             requireNonNull(planNodeId, "planNodeId is null");
@@ -91,6 +105,9 @@ public class WindowOperator
             checkArgument(sortChannels.size() == sortOrder.size(), "Must have same number of sort channels as sort orders");
             checkArgument(preSortedChannelPrefix <= sortChannels.size(), "Cannot have more pre-sorted channels than specified sorted channels");
             checkArgument(preSortedChannelPrefix == 0 || ImmutableSet.copyOf(preGroupedChannels).equals(ImmutableSet.copyOf(partitionChannels)), "preSortedChannelPrefix can only be greater than zero if all partition channels are pre-grouped");
+            requireNonNull(spillerFactory, "spillerFactory is null");
+            requireNonNull(orderingCompiler, "orderingCompiler is null");
+            checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
 
             this.pagesIndexFactory = pagesIndexFactory;
             this.operatorId = operatorId;
@@ -104,6 +121,9 @@ public class WindowOperator
             this.sortOrder = ImmutableList.copyOf(sortOrder);
             this.preSortedChannelPrefix = preSortedChannelPrefix;
             this.expectedPositions = expectedPositions;
+            this.spillEnabled = spillEnabled;
+            this.spillerFactory = spillerFactory;
+            this.orderingCompiler = orderingCompiler;
         }
 
         @Override
@@ -123,7 +143,10 @@ public class WindowOperator
                     sortOrder,
                     preSortedChannelPrefix,
                     expectedPositions,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    spillerFactory,
+                    orderingCompiler);
         }
 
         @Override
@@ -147,7 +170,10 @@ public class WindowOperator
                     sortOrder,
                     preSortedChannelPrefix,
                     expectedPositions,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    spillEnabled,
+                    spillerFactory,
+                    orderingCompiler);
         }
     }
 
@@ -160,13 +186,17 @@ public class WindowOperator
     }
 
     private final OperatorContext operatorContext;
+    private final List<Type> sourceTypes;
     private final int[] outputChannels;
     private final List<FramedWindowFunction> windowFunctions;
     private final List<Integer> orderChannels;
     private final List<SortOrder> ordering;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private final int[] preGroupedChannels;
+    private final List<Type> preGroupedTypes;
+    private final int[] unGroupedPartitionChannels;
 
     private final PagesHashStrategy preGroupedPartitionHashStrategy;
     private final PagesHashStrategy unGroupedPartitionHashStrategy;
@@ -177,6 +207,26 @@ public class WindowOperator
 
     private final PageBuilder pageBuilder;
 
+    private final boolean spillEnabled;
+    private final Optional<SpillerFactory> spillerFactory;
+    private final List<Integer> spillOrderChannels;
+    private final List<SortOrder> spillOrdering;
+    private final OrderingCompiler orderingCompiler;
+
+    // spiller holding the sorted runs of the pre-grouped group that is currently being buffered
+    private Optional<Spiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    // pre-grouped values of the spilled rows, as the pagesIndex is empty right after a spill
+    private Optional<Page> spilledGroup = Optional.empty();
+    // the spill of the last run of the group that did not fit in memory, the runs are merged back once it is written
+    private Optional<ListenableFuture<?>> lastRunSpill = Optional.empty();
+    // the spilled runs merged back in order, read one partition at a time
+    private WorkProcessor<Page> spilledPages;
+    private Page pendingSpilledPage;
+    // whether the merge of the spilled runs yielded in the middle of loading a partition into the pagesIndex
+    private boolean loadingSpilledPartition;
+
     private final WindowInfo.DriverWindowInfoBuilder windowInfo;
     private final AtomicReference<Optional<WindowInfo.DriverWindowInfo>> driverWindowInfo = new AtomicReference<>(Optional.empty());
 
@@ -197,7 +247,10 @@ public class WindowOperator
             List<SortOrder> sortOrder,
             int preSortedChannelPrefix,
             int expectedPositions,
-            PagesIndex.Factory pagesIndexFactory)
+            PagesIndex.Factory pagesIndexFactory,
+            boolean spillEnabled,
+            Optional<SpillerFactory> spillerFactory,
+            OrderingCompiler orderingCompiler)
     {
         requireNonNull(operatorContext, "operatorContext is null");
         requireNonNull(outputChannels, "outputChannels is null");
@@ -211,9 +264,14 @@ public class WindowOperator
         checkArgument(sortChannels.size() == sortOrder.size(), "Must have same number of sort channels as sort orders");
         checkArgument(preSortedChannelPrefix <= sortChannels.size(), "Cannot have more pre-sorted channels than specified sorted channels");
         checkArgument(preSortedChannelPrefix == 0 || ImmutableSet.copyOf(preGroupedChannels).equals(ImmutableSet.copyOf(partitionChannels)), "preSortedChannelPrefix can only be greater than zero if all partition channels are pre-grouped");
+        requireNonNull(spillerFactory, "spillerFactory is null");
+        requireNonNull(orderingCompiler, "orderingCompiler is null");
+        checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
 
         this.operatorContext = operatorContext;
+        this.sourceTypes = ImmutableList.copyOf(sourceTypes);
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         this.outputChannels = Ints.toArray(outputChannels);
         this.windowFunctions = windowFunctionDefinitions.stream()
                 .map(functionDefinition -> new FramedWindowFunction(functionDefinition.createWindowFunction(), functionDefinition.getFrameInfo()))
@@ -228,10 +286,14 @@ public class WindowOperator
 
         this.pagesIndex = pagesIndexFactory.newPagesIndex(sourceTypes, expectedPositions);
         this.preGroupedChannels = Ints.toArray(preGroupedChannels);
+        this.preGroupedTypes = preGroupedChannels.stream()
+                .map(sourceTypes::get)
+                .collect(toImmutableList());
         this.preGroupedPartitionHashStrategy = pagesIndex.createPagesHashStrategy(preGroupedChannels, OptionalInt.empty());
         List<Integer> unGroupedPartitionChannels = partitionChannels.stream()
                 .filter(channel -> !preGroupedChannels.contains(channel))
                 .collect(toImmutableList());
+        this.unGroupedPartitionChannels = Ints.toArray(unGroupedPartitionChannels);
         this.unGroupedPartitionHashStrategy = pagesIndex.createPagesHashStrategy(unGroupedPartitionChannels, OptionalInt.empty());
         List<Integer> preSortedChannels = sortChannels.stream()
                 .limit(preSortedChannelPrefix)
@@ -252,6 +314,19 @@ public class WindowOperator
             this.ordering = ImmutableList.copyOf(concat(nCopies(unGroupedPartitionChannels.size(), ASC_NULLS_LAST), sortOrder));
         }
 
+        this.spillEnabled = spillEnabled;
+        this.spillerFactory = spillerFactory;
+        this.orderingCompiler = orderingCompiler;
+        if (preSortedChannelPrefix > 0) {
+            // The pre-sorted channels only order the rows within a run, the runs are merged on all sort channels
+            this.spillOrderChannels = ImmutableList.copyOf(sortChannels);
+            this.spillOrdering = ImmutableList.copyOf(sortOrder);
+        }
+        else {
+            this.spillOrderChannels = orderChannels;
+            this.spillOrdering = ordering;
+        }
+
         windowInfo = new WindowInfo.DriverWindowInfoBuilder();
         operatorContext.setInfoSupplier(this::getWindowInfo);
     }
@@ -273,11 +348,17 @@ public class WindowOperator
         if (state == State.FINISHING || state == State.FINISHED) {
             return;
         }
+        if (!spillInProgress.isDone()) {
+            return;
+        }
+        checkSuccess(spillInProgress, "spilling failed");
+
         if (state == State.NEEDS_INPUT) {
             // Since was waiting for more input, prepare what we have for output since we will not be getting any more input
             finishPagesIndex();
         }
         state = State.FINISHING;
+        updateMemoryUsage();
     }
 
     @Override
@@ -286,6 +367,15 @@ public class WindowOperator
         return state == State.FINISHED;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (lastRunSpill.isPresent() && !lastRunSpill.get().isDone()) {
+            return lastRunSpill.get();
+        }
+        return NOT_BLOCKED;
+    }
+
     @Override
     public boolean needsInput()
     {
@@ -298,6 +388,7 @@ public class WindowOperator
         checkState(state == State.NEEDS_INPUT, "Operator can not take input at this time");
         requireNonNull(page, "page is null");
         checkState(pendingInput == null, "Operator already has pending input");
+        checkSuccess(spillInProgress, "spilling failed");
 
         if (page.getPositionCount() == 0) {
             return;
@@ -307,7 +398,7 @@ public class WindowOperator
         if (processPendingInput()) {
             state = State.HAS_OUTPUT;
         }
-        localUserMemoryContext.setBytes(pagesIndex.getEstimatedSize().toBytes());
+        updateMemoryUsage();
     }
 
     /**
@@ -338,7 +429,7 @@ public class WindowOperator
 
         // TODO: Fix pagesHashStrategy to allow specifying channels for comparison, it currently requires us to rearrange the right side blocks in consecutive channel order
         Page preGroupedPage = rearrangePage(page, preGroupedChannels);
-        if (pagesIndex.getPositionCount() == 0 || pagesIndex.positionEqualsRow(preGroupedPartitionHashStrategy, 0, 0, preGroupedPage)) {
+        if (isCurrentGroup(preGroupedPage)) {
             // Find the position where the pre-grouped columns change
             int groupEnd = findGroupEnd(preGroupedPage, preGroupedPartitionHashStrategy, 0);
 
@@ -360,6 +451,21 @@ public class WindowOperator
         }
     }
 
+    private boolean isCurrentGroup(Page preGroupedPage)
+    {
+        if (pagesIndex.getPositionCount() > 0) {
+            return pagesIndex.positionEqualsRow(preGroupedPartitionHashStrategy, 0, 0, preGroupedPage);
+        }
+        if (spilledGroup.isPresent()) {
+            for (int i = 0; i < preGroupedTypes.size(); i++) {
+                if (!positionEqualsPosition(preGroupedTypes.get(i), spilledGroup.get().getBlock(i), 0, preGroupedPage.getBlock(i), 0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private static Page rearrangePage(Page page, int[] channels)
     {
         Block[] newBlocks = new Block[channels.length];
@@ -377,26 +483,51 @@ public class WindowOperator
         }
 
         Page page = extractOutput();
-        localUserMemoryContext.setBytes(pagesIndex.getEstimatedSize().toBytes());
+        updateMemoryUsage();
         return page;
     }
 
     private Page extractOutput()
     {
-        // INVARIANT: pagesIndex contains the full grouped & sorted data for one or more partitions
+        if (lastRunSpill.isPresent()) {
+            if (!lastRunSpill.get().isDone()) {
+                return null;
+            }
+            checkSuccess(lastRunSpill.get(), "spilling failed");
+            lastRunSpill = Optional.empty();
+            clearSpilledPagesIndex();
+            spilledPages = mergeSpilledPages();
+        }
+
+        // INVARIANT: pagesIndex contains the full grouped & sorted data for one or more partitions, unless a spilled partition is being loaded
 
         // Iterate through the positions sequentially until we have one full page
         while (!pageBuilder.isFull()) {
             if (partition == null || !partition.hasNext()) {
                 int partitionStart = partition == null ? 0 : partition.getPartitionEnd();
 
-                if (partitionStart >= pagesIndex.getPositionCount()) {
-                    // Finished all of the partitions in the current pagesIndex
-                    partition = null;
-                    pagesIndex.clear();
+                if (loadingSpilledPartition || partitionStart >= pagesIndex.getPositionCount()) {
+                    if (!loadingSpilledPartition) {
+                        // Finished all of the partitions in the current pagesIndex
+                        partition = null;
+                        pagesIndex.clear();
+                    }
 
+                    // Read back the next spilled partition of the current group before moving on to the pendingInput
+                    SpilledPartitionLoad spilledPartitionLoad = spilledPages == null ? SpilledPartitionLoad.NONE : loadSpilledPartition();
+                    if (spilledPartitionLoad == SpilledPartitionLoad.YIELDED) {
+                        // the rows in the pageBuilder are kept for the next call
+                        return null;
+                    }
+                    if (spilledPartitionLoad == SpilledPartitionLoad.LOADED) {
+                        partitionStart = 0;
+                    }
                     // Try to extract more partitions from the pendingInput
-                    if (pendingInput != null && processPendingInput()) {
+                    else if (pendingInput != null && processPendingInput()) {
+                        if (lastRunSpill.isPresent()) {
+                            // wait for the last run of the group to be written, see isBlocked
+                            return null;
+                        }
                         partitionStart = 0;
                     }
                     else if (state == State.FINISHING) {
@@ -434,7 +565,7 @@ public class WindowOperator
             int startPosition = 0;
             while (startPosition < pagesIndex.getPositionCount()) {
                 int endPosition = findGroupEnd(pagesIndex, preSortedPartitionHashStrategy, startPosition);
-                pagesIndex.sort(orderChannels, ordering, startPosition, endPosition);
+                pagesIndex.sort(orderChannels, ordering, startPosition, endPosition, localUserMemoryContext);
                 startPosition = endPosition;
             }
         }
@@ -442,10 +573,161 @@ public class WindowOperator
 
     private void finishPagesIndex()
     {
+        if (spiller.isPresent()) {
+            // The group did not fit in memory, write out the rest of it as the last run. The runs are merged back
+            // once it is written, so that only one partition has to be held at a time, see extractOutput.
+            lastRunSpill = Optional.of(spillToDisk());
+            return;
+        }
         sortPagesIndexIfNecessary();
         windowInfo.addIndex(pagesIndex);
     }
 
+    private enum SpilledPartitionLoad
+    {
+        LOADED,
+        YIELDED,
+        NONE
+    }
+
+    /**
+     * Loads the next partition of the merged spilled runs into the pagesIndex. The pagesIndex is empty, unless the
+     * merge yielded in the middle of the partition before, in which case the loading picks up where it left off.
+     *
+     * @return NONE if all of the spilled rows have been read back
+     */
+    private SpilledPartitionLoad loadSpilledPartition()
+    {
+        checkState(loadingSpilledPartition || pagesIndex.getPositionCount() == 0, "pagesIndex is not empty");
+        loadingSpilledPartition = true;
+        while (true) {
+            if (pendingSpilledPage == null) {
+                if (!spilledPages.process()) {
+                    return SpilledPartitionLoad.YIELDED;
+                }
+                if (spilledPages.isFinished()) {
+                    // All of the runs of the group have been read, the next group starts from scratch
+                    spilledPages = null;
+                    spiller.ifPresent(Spiller::close);
+                    spiller = Optional.empty();
+                    spilledGroup = Optional.empty();
+                    break;
+                }
+                pendingSpilledPage = spilledPages.getResult();
+                if (pendingSpilledPage.getPositionCount() == 0) {
+                    pendingSpilledPage = null;
+                    continue;
+                }
+            }
+
+            Page partitionPage = rearrangePage(pendingSpilledPage, unGroupedPartitionChannels);
+            if (pagesIndex.getPositionCount() > 0 && !pagesIndex.positionEqualsRow(unGroupedPartitionHashStrategy, 0, 0, partitionPage)) {
+                break;
+            }
+
+            int partitionEnd = findGroupEnd(partitionPage, unGroupedPartitionHashStrategy, 0);
+            pagesIndex.addPage(pendingSpilledPage.getRegion(0, partitionEnd));
+            if (partitionEnd < pendingSpilledPage.getPositionCount()) {
+                pendingSpilledPage = pendingSpilledPage.getRegion(partitionEnd, pendingSpilledPage.getPositionCount() - partitionEnd);
+                break;
+            }
+            pendingSpilledPage = null;
+        }
+        loadingSpilledPartition = false;
+
+        if (pagesIndex.getPositionCount() == 0) {
+            return SpilledPartitionLoad.NONE;
+        }
+        // The merged runs are already sorted
+        windowInfo.addIndex(pagesIndex);
+        return SpilledPartitionLoad.LOADED;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+        if (state != State.NEEDS_INPUT || pagesIndex.getPositionCount() == 0) {
+            // stale revoking request, the pagesIndex is already being processed
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+        ListenableFuture<?> spillFuture = spillToDisk();
+        finishMemoryRevoke = Optional.of(this::clearSpilledPagesIndex);
+        return spillFuture;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSuccess(spillInProgress, "spilling failed");
+
+        if (pagesIndex.getPositionCount() == 0) {
+            return immediateFuture(null);
+        }
+
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(spillerFactory.get().create(
+                    sourceTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.newAggregateSystemMemoryContext()));
+        }
+
+        if (!spilledGroup.isPresent()) {
+            Block[] groupBlocks = new Block[preGroupedChannels.length];
+            for (int i = 0; i < preGroupedChannels.length; i++) {
+                groupBlocks[i] = pagesIndex.getSingleValueBlock(preGroupedChannels[i], 0);
+            }
+            spilledGroup = Optional.of(new Page(1, groupBlocks));
+        }
+
+        // every spill writes one sorted run of the current group, the runs are merged when the group is complete
+        sortPagesIndexIfNecessary();
+        spillInProgress = spiller.get().spill(pagesIndex.getSortedPages());
+        return spillInProgress;
+    }
+
+    private void clearSpilledPagesIndex()
+    {
+        pagesIndex.clear();
+        updateMemoryUsage();
+    }
+
+    private WorkProcessor<Page> mergeSpilledPages()
+    {
+        List<WorkProcessor<Page>> sortedStreams = spiller.get().getSpills().stream()
+                .map(WorkProcessor::fromIterator)
+                .collect(toImmutableList());
+
+        // the merge can yield in the middle of a partition, the loading of the partition is then resumed by the next getOutput
+        return mergeSortedPages(
+                sortedStreams,
+                orderingCompiler.compilePageWithPositionComparator(sourceTypes, spillOrderChannels, spillOrdering),
+                sourceTypes,
+                operatorContext.aggregateUserMemoryContext(),
+                operatorContext.getDriverContext().getYieldSignal());
+    }
+
+    private void updateMemoryUsage()
+    {
+        if (spillEnabled && state == State.NEEDS_INPUT) {
+            // the rows of the group being buffered are revocable until the group is complete
+            localUserMemoryContext.setBytes(0);
+            localRevocableMemoryContext.setBytes(pagesIndex.getEstimatedSize().toBytes());
+        }
+        else {
+            localRevocableMemoryContext.setBytes(0);
+            localUserMemoryContext.setBytes(pagesIndex.getEstimatedSize().toBytes());
+        }
+    }
+
     // Assumes input grouped on relevant pagesHashStrategy columns
     private static int findGroupEnd(Page page, PagesHashStrategy pagesHashStrategy, int startPosition)
     {
@@ -497,5 +779,7 @@ public class WindowOperator
     public void close()
     {
         driverWindowInfo.set(Optional.of(windowInfo.build()));
+        spiller.ifPresent(Spiller::close);
+        localRevocableMemoryContext.setBytes(0);
     }
 }
@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.operator.aggregation;
 
+import com.facebook.presto.memory.context.LocalMemoryContext;
+
 import java.util.List;
 
 public interface AccumulatorFactory
@@ -21,10 +23,22 @@ public interface AccumulatorFactory
 
     Accumulator createAccumulator();
 
+    /**
+     * Creates an accumulator that reserves the memory it only needs while evaluating, e.g. to sort
+     * the input of an ordered aggregation, in {@code sortMemoryContext}.
+     */
+    Accumulator createAccumulator(LocalMemoryContext sortMemoryContext);
+
     Accumulator createIntermediateAccumulator();
 
     GroupedAccumulator createGroupedAccumulator();
 
+    /**
+     * Creates a grouped accumulator that reserves the memory it only needs while evaluating, e.g. to sort
+     * the input of an ordered aggregation, in {@code sortMemoryContext}.
+     */
+    GroupedAccumulator createGroupedAccumulator(LocalMemoryContext sortMemoryContext);
+
     GroupedAccumulator createGroupedIntermediateAccumulator();
 
     boolean hasOrderBy();
@@ -19,6 +19,7 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.GroupByIdBlock;
 import com.facebook.presto.operator.MarkDistinctHash;
 import com.facebook.presto.operator.PagesIndex;
@@ -110,6 +111,17 @@ public class GenericAccumulatorFactory
 
     @Override
     public Accumulator createAccumulator()
+    {
+        return createAccumulator(Optional.empty());
+    }
+
+    @Override
+    public Accumulator createAccumulator(LocalMemoryContext sortMemoryContext)
+    {
+        return createAccumulator(Optional.of(requireNonNull(sortMemoryContext, "sortMemoryContext is null")));
+    }
+
+    private Accumulator createAccumulator(Optional<LocalMemoryContext> sortMemoryContext)
     {
         Accumulator accumulator;
 
@@ -135,7 +147,7 @@ public class GenericAccumulatorFactory
             return accumulator;
         }
 
-        return new OrderingAccumulator(accumulator, sourceTypes, orderByChannels, orderings, pagesIndexFactory);
+        return new OrderingAccumulator(accumulator, sourceTypes, orderByChannels, orderings, pagesIndexFactory, sortMemoryContext);
     }
 
     @Override
@@ -151,6 +163,17 @@ public class GenericAccumulatorFactory
 
     @Override
     public GroupedAccumulator createGroupedAccumulator()
+    {
+        return createGroupedAccumulator(Optional.empty());
+    }
+
+    @Override
+    public GroupedAccumulator createGroupedAccumulator(LocalMemoryContext sortMemoryContext)
+    {
+        return createGroupedAccumulator(Optional.of(requireNonNull(sortMemoryContext, "sortMemoryContext is null")));
+    }
+
+    private GroupedAccumulator createGroupedAccumulator(Optional<LocalMemoryContext> sortMemoryContext)
     {
         GroupedAccumulator accumulator;
 
@@ -177,7 +200,7 @@ public class GenericAccumulatorFactory
             return accumulator;
         }
 
-        return new OrderingGroupedAccumulator(accumulator, sourceTypes, orderByChannels, orderings, pagesIndexFactory);
+        return new OrderingGroupedAccumulator(accumulator, sourceTypes, orderByChannels, orderings, pagesIndexFactory, sortMemoryContext);
     }
 
     @Override
@@ -430,18 +453,21 @@ public class GenericAccumulatorFactory
         private final List<Integer> orderByChannels;
         private final List<SortOrder> orderings;
         private final PagesIndex pagesIndex;
+        private final Optional<LocalMemoryContext> sortMemoryContext;
 
         private OrderingAccumulator(
                 Accumulator accumulator,
                 List<Type> aggregationSourceTypes,
                 List<Integer> orderByChannels,
                 List<SortOrder> orderings,
-                PagesIndex.Factory pagesIndexFactory)
+                PagesIndex.Factory pagesIndexFactory,
+                Optional<LocalMemoryContext> sortMemoryContext)
         {
             this.accumulator = requireNonNull(accumulator, "accumulator is null");
             this.orderByChannels = ImmutableList.copyOf(requireNonNull(orderByChannels, "orderByChannels is null"));
             this.orderings = ImmutableList.copyOf(requireNonNull(orderings, "orderings is null"));
             this.pagesIndex = pagesIndexFactory.newPagesIndex(aggregationSourceTypes, 10_000);
+            this.sortMemoryContext = requireNonNull(sortMemoryContext, "sortMemoryContext is null");
         }
 
         @Override
@@ -489,7 +515,7 @@ public class GenericAccumulatorFactory
         @Override
         public void evaluateFinal(BlockBuilder blockBuilder)
         {
-            pagesIndex.sort(orderByChannels, orderings);
+            sort(pagesIndex, orderByChannels, orderings, sortMemoryContext);
             Iterator<Page> pagesIterator = pagesIndex.getSortedPages();
             pagesIterator.forEachRemaining(accumulator::addInput);
             accumulator.evaluateFinal(blockBuilder);
@@ -503,6 +529,7 @@ public class GenericAccumulatorFactory
         private final List<Integer> orderByChannels;
         private final List<SortOrder> orderings;
         private final PagesIndex pagesIndex;
+        private final Optional<LocalMemoryContext> sortMemoryContext;
         private long groupCount;
 
         private OrderingGroupedAccumulator(
@@ -510,7 +537,8 @@ public class GenericAccumulatorFactory
                 List<Type> aggregationSourceTypes,
                 List<Integer> orderByChannels,
                 List<SortOrder> orderings,
-                PagesIndex.Factory pagesIndexFactory)
+                PagesIndex.Factory pagesIndexFactory,
+                Optional<LocalMemoryContext> sortMemoryContext)
         {
             this.accumulator = requireNonNull(accumulator, "accumulator is null");
             requireNonNull(aggregationSourceTypes, "aggregationSourceTypes is null");
@@ -520,6 +548,7 @@ public class GenericAccumulatorFactory
             // Add group id column
             pageIndexTypes.add(BIGINT);
             this.pagesIndex = pagesIndexFactory.newPagesIndex(pageIndexTypes, 10_000);
+            this.sortMemoryContext = requireNonNull(sortMemoryContext, "sortMemoryContext is null");
             this.groupCount = 0;
         }
 
@@ -575,7 +604,7 @@ public class GenericAccumulatorFactory
         @Override
         public void prepareFinal()
         {
-            pagesIndex.sort(orderByChannels, orderings);
+            sort(pagesIndex, orderByChannels, orderings, sortMemoryContext);
             Iterator<Page> pagesIterator = pagesIndex.getSortedPages();
             pagesIterator.forEachRemaining(page -> {
                 // The last channel of the page is the group id
@@ -586,4 +615,14 @@ public class GenericAccumulatorFactory
             });
         }
     }
+
+    private static void sort(PagesIndex pagesIndex, List<Integer> orderByChannels, List<SortOrder> orderings, Optional<LocalMemoryContext> sortMemoryContext)
+    {
+        if (sortMemoryContext.isPresent()) {
+            pagesIndex.sort(orderByChannels, orderings, sortMemoryContext.get());
+        }
+        else {
+            pagesIndex.sort(orderByChannels, orderings);
+        }
+    }
 }
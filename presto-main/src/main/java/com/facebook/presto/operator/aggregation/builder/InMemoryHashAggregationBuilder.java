@@ -48,7 +48,9 @@ import java.util.Optional;
 import java.util.OptionalLong;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isFlatGroupByHashEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
@@ -127,6 +129,7 @@ public class InMemoryHashAggregationBuilder
                 hashChannel,
                 expectedGroups,
                 isDictionaryAggregationEnabled(operatorContext.getSession()),
+                isFlatGroupByHashEnabled(operatorContext.getSession()),
                 joinCompiler,
                 updateMemory);
         this.operatorContext = operatorContext;
@@ -145,7 +148,7 @@ public class InMemoryHashAggregationBuilder
             if (overwriteIntermediateChannelOffset.isPresent()) {
                 overwriteIntermediateChannel = Optional.of(overwriteIntermediateChannelOffset.get() + i);
             }
-            builder.add(new Aggregator(accumulatorFactory, step, overwriteIntermediateChannel));
+            builder.add(new Aggregator(accumulatorFactory, step, overwriteIntermediateChannel, useSystemMemory ? systemMemoryContext : localUserMemoryContext));
         }
         aggregators = builder.build();
     }
@@ -390,11 +393,11 @@ public class InMemoryHashAggregationBuilder
         private AggregationNode.Step step;
         private final int intermediateChannel;
 
-        private Aggregator(AccumulatorFactory accumulatorFactory, AggregationNode.Step step, Optional<Integer> overwriteIntermediateChannel)
+        private Aggregator(AccumulatorFactory accumulatorFactory, AggregationNode.Step step, Optional<Integer> overwriteIntermediateChannel, LocalMemoryContext sortMemoryContext)
         {
             if (step.isInputRaw()) {
                 this.intermediateChannel = -1;
-                this.aggregation = accumulatorFactory.createGroupedAccumulator();
+                this.aggregation = accumulatorFactory.createGroupedAccumulator(sortMemoryContext);
             }
             else if (overwriteIntermediateChannel.isPresent()) {
                 this.intermediateChannel = overwriteIntermediateChannel.get();
@@ -466,8 +469,10 @@ public class InMemoryHashAggregationBuilder
         if (hashChannel.isPresent()) {
             types.add(BIGINT);
         }
+        // the aggregators are only created for their types, they never sort
+        LocalMemoryContext sortMemoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext(InMemoryHashAggregationBuilder.class.getSimpleName());
         for (AccumulatorFactory factory : factories) {
-            types.add(new Aggregator(factory, step, Optional.empty()).getType());
+            types.add(new Aggregator(factory, step, Optional.empty(), sortMemoryContext).getType());
         }
         return types.build();
     }
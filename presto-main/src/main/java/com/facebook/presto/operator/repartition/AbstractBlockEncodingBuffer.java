@@ -139,6 +139,14 @@ public abstract class AbstractBlockEncodingBuffer
         // decodedBlock could be a block or ColumnarArray/Map/Row
         Object decodedBlock = decodedBlockNode.getDecodedBlock();
 
+        // Top level Dictionary/Rle blocks of primitive types keep their encoding, so that the partitions don't get inflated copies of the values.
+        if (!isNested && (decodedBlock instanceof DictionaryBlock || decodedBlock instanceof RunLengthEncodedBlock)) {
+            DecodedBlockNode dictionaryNode = decodedBlockNode.getChildren().get(0);
+            if (dictionaryNode.getDecodedBlock() instanceof Block) {
+                return new DictionaryBlockEncodingBuffer(createBlockEncodingBuffers(dictionaryNode, bufferAllocator, false), bufferAllocator);
+            }
+        }
+
         // Skip the Dictionary/Rle block node. The mapping info is not needed when creating buffers.
         // This is because the AbstractBlockEncodingBuffer is only created once, while position mapping for Dictionar/Rle blocks
         // need to be done for every incoming block.
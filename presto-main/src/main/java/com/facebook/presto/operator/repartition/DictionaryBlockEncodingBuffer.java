@@ -0,0 +1,350 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import io.airlift.slice.SliceOutput;
+import org.openjdk.jol.info.ClassLayout;
+
+import javax.annotation.Nullable;
+
+import static com.facebook.presto.array.Arrays.ExpansionFactor.LARGE;
+import static com.facebook.presto.array.Arrays.ExpansionFactor.SMALL;
+import static com.facebook.presto.array.Arrays.ExpansionOption.INITIALIZE;
+import static com.facebook.presto.array.Arrays.ExpansionOption.NONE;
+import static com.facebook.presto.array.Arrays.ExpansionOption.PRESERVE;
+import static com.facebook.presto.array.Arrays.ensureCapacity;
+import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
+import static com.facebook.presto.operator.UncheckedByteArrays.setIntUnchecked;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.util.Objects.requireNonNull;
+import static sun.misc.Unsafe.ARRAY_INT_INDEX_SCALE;
+
+/**
+ * Buffer for a top level column whose blocks are dictionary or run length encoded. Instead of copying the
+ * values of the rows, it builds a dictionary for the partition out of the entries the rows refer to, and
+ * serializes the rows as a DictionaryBlock over that dictionary, or as a RunLengthEncodedBlock if all the
+ * rows share a single entry. Rows of blocks whose dictionary is larger than the rows of the partition are
+ * not worth deduplicating and are copied like flat values, and as long as all rows since the last flush
+ * were copied that way they are serialized as a flat block.
+ * <p>
+ * For example, a VARCHAR column with 5 rows - ['b', 'a', 'b', 'a', 'c'] is represented as a DictionaryBlock
+ * with dictionary ['a', 'b', 'c'] and ids [1, 0, 1, 0, 2]. Copying positions [0, 1, 2] for this column buffers
+ * the dictionary ['b', 'a'] and the ids [0, 1, 0].
+ */
+public class DictionaryBlockEncodingBuffer
+        extends AbstractBlockEncodingBuffer
+{
+    private static final String DICTIONARY_NAME = "DICTIONARY";
+    private static final String RLE_NAME = "RLE";
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DictionaryBlockEncodingBuffer.class).instanceSize();
+
+    // The buffer for the entries of the dictionary of the partition
+    private final BlockEncodingBuffer dictionaryBuffer;
+
+    // The dictionary of the incoming block, or the incoming block itself if it is not encoded
+    private DecodedBlockNode dictionaryNode;
+
+    private int partitionBufferCapacity;
+    private long estimatedSerializedPageSize;
+
+    // The number of entries in the dictionary of the partition
+    private int dictionarySize;
+
+    // The id in the dictionary of the partition plus one of each entry of the incoming dictionary, or 0 if the entry is not there yet.
+    // It is kept for as long as the incoming blocks share the dictionary.
+    @Nullable
+    private int[] partitionIds;
+
+    // The positions in the incoming dictionary of the entries set in partitionIds, so that only those are cleared on reset
+    @Nullable
+    private int[] mappedEntries;
+    private int mappedEntryCount;
+
+    // The dictionary the partitionIds are for
+    @Nullable
+    private Block lastDictionary;
+
+    // Whether the rows of the current block refer to the entries of the dictionary of the partition. If not, every row adds a new entry.
+    private boolean deduplicated;
+
+    // Whether every row since the last flush added its own entry, in which case the ids are not written and the entries are
+    // serialized as a flat block
+    private boolean flat = true;
+
+    // The positions in the incoming dictionary of the entries added by the current batch
+    @Nullable
+    private int[] newEntries;
+
+    // Scratch buffer for the serialized sizes of the incoming dictionary entries
+    @Nullable
+    private int[] entrySizes;
+
+    // The buffer for the ids of all rows so far
+    private byte[] idsBuffer;
+
+    // The address that the next id will be written to.
+    private int idsBufferIndex;
+
+    public DictionaryBlockEncodingBuffer(BlockEncodingBuffer dictionaryBuffer, ArrayAllocator bufferAllocator)
+    {
+        super(bufferAllocator, false);
+        this.dictionaryBuffer = requireNonNull(dictionaryBuffer, "dictionaryBuffer is null");
+    }
+
+    @Override
+    public void setupDecodedBlocksAndPositions(DecodedBlockNode decodedBlockNode, int[] positions, int positionCount, int partitionBufferCapacity, long estimatedSerializedPageSize)
+    {
+        this.partitionBufferCapacity = partitionBufferCapacity;
+        this.estimatedSerializedPageSize = estimatedSerializedPageSize;
+        super.setupDecodedBlocksAndPositions(decodedBlockNode, positions, positionCount, partitionBufferCapacity, estimatedSerializedPageSize);
+    }
+
+    @Override
+    public void accumulateSerializedRowSizes(int[] serializedRowSizes)
+    {
+        int[] positions = getPositions();
+
+        entrySizes = ensureCapacity(entrySizes, positionCount, SMALL, INITIALIZE, bufferAllocator);
+        dictionaryBuffer.setupDecodedBlocksAndPositions(dictionaryNode, positions, positionCount, partitionBufferCapacity, estimatedSerializedPageSize);
+        dictionaryBuffer.accumulateSerializedRowSizes(entrySizes);
+
+        if (!deduplicated) {
+            int idSize = flat ? 0 : SIZE_OF_INT;
+            for (int i = 0; i < positionCount; i++) {
+                serializedRowSizes[i] += idSize + entrySizes[i];
+            }
+            return;
+        }
+
+        // Only the first row referring to an entry that is not in the dictionary of the partition yet adds the entry.
+        // The entries are marked with -1 while the sizes are accumulated.
+        for (int i = 0; i < positionCount; i++) {
+            serializedRowSizes[i] += SIZE_OF_INT;
+            if (partitionIds[positions[i]] == 0) {
+                serializedRowSizes[i] += entrySizes[i];
+                partitionIds[positions[i]] = -1;
+            }
+        }
+        for (int i = 0; i < positionCount; i++) {
+            if (partitionIds[positions[i]] == -1) {
+                partitionIds[positions[i]] = 0;
+            }
+        }
+    }
+
+    @Override
+    public void appendDataInBatch()
+    {
+        if (batchSize == 0) {
+            return;
+        }
+
+        if (deduplicated && flat) {
+            // The rows buffered so far each have their own entry, so their ids are the entries in order
+            idsBuffer = ensureCapacity(idsBuffer, (dictionarySize + batchSize) * ARRAY_INT_INDEX_SCALE, partitionBufferCapacity, LARGE, PRESERVE, bufferAllocator);
+            for (int id = 0; id < dictionarySize; id++) {
+                idsBufferIndex = setIntUnchecked(idsBuffer, idsBufferIndex, id);
+            }
+            flat = false;
+        }
+
+        if (!flat) {
+            idsBuffer = ensureCapacity(idsBuffer, idsBufferIndex + batchSize * ARRAY_INT_INDEX_SCALE, partitionBufferCapacity, LARGE, PRESERVE, bufferAllocator);
+        }
+        if (deduplicated) {
+            mappedEntries = ensureCapacity(mappedEntries, mappedEntryCount + batchSize, SMALL, PRESERVE);
+        }
+        newEntries = ensureCapacity(newEntries, batchSize, SMALL, NONE, bufferAllocator);
+
+        int[] positions = getPositions();
+        int newEntryCount = 0;
+        for (int i = positionsOffset; i < positionsOffset + batchSize; i++) {
+            int position = positions[i];
+            int id;
+            if (!deduplicated) {
+                id = dictionarySize++;
+                newEntries[newEntryCount++] = position;
+            }
+            else {
+                id = partitionIds[position] - 1;
+                if (id < 0) {
+                    id = dictionarySize++;
+                    partitionIds[position] = id + 1;
+                    mappedEntries[mappedEntryCount++] = position;
+                    newEntries[newEntryCount++] = position;
+                }
+            }
+            if (!flat) {
+                idsBufferIndex = setIntUnchecked(idsBuffer, idsBufferIndex, id);
+            }
+        }
+
+        if (newEntryCount > 0) {
+            dictionaryBuffer.setupDecodedBlocksAndPositions(dictionaryNode, newEntries, newEntryCount, partitionBufferCapacity, estimatedSerializedPageSize);
+            dictionaryBuffer.setNextBatch(0, newEntryCount);
+            dictionaryBuffer.appendDataInBatch();
+        }
+
+        bufferedPositionCount += batchSize;
+    }
+
+    @Override
+    public void serializeTo(SliceOutput output)
+    {
+        if (flat) {
+            dictionaryBuffer.serializeTo(output);
+            return;
+        }
+
+        if (dictionarySize == 1) {
+            writeLengthPrefixedString(output, RLE_NAME);
+            output.writeInt(bufferedPositionCount);
+            dictionaryBuffer.serializeTo(output);
+            return;
+        }
+
+        writeLengthPrefixedString(output, DICTIONARY_NAME);
+
+        output.writeInt(bufferedPositionCount);
+
+        // dictionary
+        dictionaryBuffer.serializeTo(output);
+
+        // ids
+        if (idsBufferIndex > 0) {
+            output.appendBytes(idsBuffer, 0, idsBufferIndex);
+        }
+
+        // The dictionary is only ever shared by the rows of this block
+        DictionaryId dictionaryId = randomDictionaryId();
+        output.appendLong(dictionaryId.getMostSignificantBits());
+        output.appendLong(dictionaryId.getLeastSignificantBits());
+        output.appendLong(dictionaryId.getSequenceId());
+    }
+
+    @Override
+    public void resetBuffers()
+    {
+        bufferedPositionCount = 0;
+        idsBufferIndex = 0;
+        dictionarySize = 0;
+        clearPartitionIds();
+        flat = true;
+        flushed = true;
+        dictionaryBuffer.resetBuffers();
+    }
+
+    @Override
+    public void noMoreBatches()
+    {
+        super.noMoreBatches();
+        dictionaryBuffer.noMoreBatches();
+
+        if (newEntries != null) {
+            bufferAllocator.returnArray(newEntries);
+            newEntries = null;
+        }
+
+        if (entrySizes != null) {
+            bufferAllocator.returnArray(entrySizes);
+            entrySizes = null;
+        }
+
+        if (flushed && idsBuffer != null) {
+            bufferAllocator.returnArray(idsBuffer);
+            idsBuffer = null;
+        }
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + dictionaryBuffer.getRetainedSizeInBytes() + sizeOf(partitionIds) + sizeOf(mappedEntries);
+    }
+
+    @Override
+    public long getSerializedSizeInBytes()
+    {
+        if (flat) {
+            return dictionaryBuffer.getSerializedSizeInBytes();
+        }
+
+        if (dictionarySize == 1) {
+            return RLE_NAME.length() + SIZE_OF_INT +   // NAME
+                    SIZE_OF_INT +                       // positionCount
+                    dictionaryBuffer.getSerializedSizeInBytes();    // value
+        }
+
+        return DICTIONARY_NAME.length() + SIZE_OF_INT +    // NAME
+                SIZE_OF_INT +                               // positionCount
+                dictionaryBuffer.getSerializedSizeInBytes() +   // dictionary
+                idsBufferIndex +                            // ids
+                SIZE_OF_LONG * 3;                           // dictionary id
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(getClass().getSimpleName()).append("{");
+        sb.append("dictionarySize=").append(dictionarySize).append(",");
+        sb.append("idsBufferCapacity=").append(idsBuffer == null ? 0 : idsBuffer.length).append(",");
+        sb.append("idsBufferIndex=").append(idsBufferIndex).append(",");
+        sb.append("dictionaryBuffer=").append(dictionaryBuffer.toString()).append("}");
+        return sb.toString();
+    }
+
+    @Override
+    protected void setupDecodedBlockAndMapPositions(DecodedBlockNode decodedBlockNode, int partitionBufferCapacity, double decodedBlockPageSizeFraction)
+    {
+        requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+        Object decodedObject = decodedBlockNode.getDecodedBlock();
+        dictionaryNode = mapPositionsToNestedBlock(decodedBlockNode);
+        decodedBlock = (Block) dictionaryNode.getDecodedBlock();
+
+        if (decodedBlock != lastDictionary) {
+            // The entries of the dictionary of the partition for the previous dictionary stay where they are, only the mapping starts over
+            clearPartitionIds();
+            lastDictionary = decodedBlock;
+        }
+
+        // Deduplicating pays off if the rows of the partition refer to fewer entries than there are rows, which is unlikely
+        // when the dictionary is larger than the rows, unless the rows refer to entries mapped for earlier blocks already
+        deduplicated = decodedObject instanceof RunLengthEncodedBlock ||
+                (decodedObject instanceof DictionaryBlock && (mappedEntryCount > 0 || decodedBlock.getPositionCount() <= positionCount));
+        if (deduplicated) {
+            partitionIds = ensureCapacity(partitionIds, decodedBlock.getPositionCount());
+        }
+    }
+
+    private void clearPartitionIds()
+    {
+        for (int i = 0; i < mappedEntryCount; i++) {
+            partitionIds[mappedEntries[i]] = 0;
+        }
+        mappedEntryCount = 0;
+    }
+
+    @Override
+    protected void accumulateSerializedRowSizes(int[] positionOffsets, int positionCount, int[] serializedRowSizes)
+    {
+        throw new UnsupportedOperationException("DictionaryBlockEncodingBuffer is only used for top level columns");
+    }
+}
@@ -38,6 +38,7 @@ import com.facebook.presto.operator.OperatorContext;
 import com.facebook.presto.operator.OperatorFactory;
 import com.facebook.presto.operator.OutputFactory;
 import com.facebook.presto.operator.PartitionFunction;
+import com.facebook.presto.operator.SharedDictionaryPageMerger;
 import com.facebook.presto.operator.SimpleArrayAllocator;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.page.SerializedPage;
@@ -61,6 +62,7 @@ import java.util.OptionalInt;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import static com.facebook.presto.SystemSessionProperties.isExchangeSharedDictionaryPageMergingEnabled;
 import static com.facebook.presto.array.Arrays.ExpansionFactor.MEDIUM;
 import static com.facebook.presto.array.Arrays.ExpansionFactor.SMALL;
 import static com.facebook.presto.array.Arrays.ExpansionOption.INITIALIZE;
@@ -85,6 +87,7 @@ public class OptimizedPartitionedOutputOperator
     private final OperatorContext operatorContext;
     private final Function<Page, Page> pagePreprocessor;
     private final PagePartitioner pagePartitioner;
+    private final Optional<SharedDictionaryPageMerger> pageMerger;
     private final LocalMemoryContext systemMemoryContext;
     private boolean finished;
 
@@ -116,10 +119,13 @@ public class OptimizedPartitionedOutputOperator
                 maxMemory,
                 maxBufferCount,
                 operatorContext.getDriverContext().getLifespan());
+        // the dictionary buffers deduplicate the rows of a partition that refer to the same dictionary, which pays off for
+        // more of the rows when consecutive pages sharing a dictionary are partitioned as one
+        this.pageMerger = isExchangeSharedDictionaryPageMergingEnabled(operatorContext.getSession()) ? Optional.of(new SharedDictionaryPageMerger(sourceTypes, DEFAULT_MAX_PAGE_SIZE_IN_BYTES)) : Optional.empty();
 
         operatorContext.setInfoSupplier(this::getInfo);
         this.systemMemoryContext = operatorContext.newLocalSystemMemoryContext(PartitionedOutputOperator.class.getSimpleName());
-        this.systemMemoryContext.setBytes(pagePartitioner.getRetainedSizeInBytes());
+        updateMemoryUsage();
     }
 
     @Override
@@ -136,6 +142,10 @@ public class OptimizedPartitionedOutputOperator
     @Override
     public void finish()
     {
+        if (!finished && pageMerger.isPresent()) {
+            pageMerger.get().flush().ifPresent(pagePartitioner::partitionPage);
+            updateMemoryUsage();
+        }
         finished = true;
         pagePartitioner.flush();
     }
@@ -169,12 +179,26 @@ public class OptimizedPartitionedOutputOperator
         }
 
         page = pagePreprocessor.apply(page);
-        pagePartitioner.partitionPage(page);
+        if (pageMerger.isPresent()) {
+            pageMerger.get().add(page).forEach(pagePartitioner::partitionPage);
+        }
+        else {
+            pagePartitioner.partitionPage(page);
+        }
 
         // TODO: PartitionedOutputOperator reports incorrect output data size #11770
         operatorContext.recordOutput(page.getSizeInBytes(), page.getPositionCount());
 
-        systemMemoryContext.setBytes(pagePartitioner.getRetainedSizeInBytes());
+        updateMemoryUsage();
+    }
+
+    private void updateMemoryUsage()
+    {
+        long retainedSizeInBytes = pagePartitioner.getRetainedSizeInBytes();
+        if (pageMerger.isPresent()) {
+            retainedSizeInBytes += pageMerger.get().getRetainedSizeInBytes();
+        }
+        systemMemoryContext.setBytes(retainedSizeInBytes);
     }
 
     @Override
@@ -369,6 +393,8 @@ public class OptimizedPartitionedOutputOperator
         private final OptionalInt nullChannel; // when present, send the position to every partition if this channel is null.
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final AtomicLong uncompressedSizeInBytes = new AtomicLong();
+        private final AtomicLong serializedSizeInBytes = new AtomicLong();
 
         // The ArrayAllocator used by BlockFlattener for decoding blocks.
         // There could be queries that shuffles data with up to 1000 columns so we need to set the maxOutstandingArrays a high number.
@@ -417,7 +443,17 @@ public class OptimizedPartitionedOutputOperator
 
             partitionBuffers = new PartitionBuffer[partitionCount];
             for (int i = 0; i < partitionCount; i++) {
-                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, pagesAdded, rowsAdded, serde, lifespan, bufferAllocator);
+                partitionBuffers[i] = new PartitionBuffer(
+                        i,
+                        sourceTypes.size(),
+                        partitionBufferCapacity,
+                        pagesAdded,
+                        rowsAdded,
+                        uncompressedSizeInBytes,
+                        serializedSizeInBytes,
+                        serde,
+                        lifespan,
+                        bufferAllocator);
             }
 
             this.sourceTypes = sourceTypes;
@@ -444,7 +480,7 @@ public class OptimizedPartitionedOutputOperator
 
         public PartitionedOutputInfo getInfo()
         {
-            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage());
+            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage(), uncompressedSizeInBytes.get(), serializedSizeInBytes.get());
         }
 
         public void partitionPage(Page page)
@@ -560,6 +596,8 @@ public class OptimizedPartitionedOutputOperator
         private final int partition;
         private final AtomicLong rowsAdded;
         private final AtomicLong pagesAdded;
+        private final AtomicLong uncompressedSizeInBytes;
+        private final AtomicLong serializedSizeInBytes;
         private final PagesSerde serde;
         private final Lifespan lifespan;
         private final int capacity;
@@ -573,13 +611,25 @@ public class OptimizedPartitionedOutputOperator
         private int bufferedRowCount;
         private boolean bufferFull;
 
-        PartitionBuffer(int partition, int channelCount, int capacity, AtomicLong pagesAdded, AtomicLong rowsAdded, PagesSerde serde, Lifespan lifespan, ArrayAllocator bufferAllocator)
+        PartitionBuffer(
+                int partition,
+                int channelCount,
+                int capacity,
+                AtomicLong pagesAdded,
+                AtomicLong rowsAdded,
+                AtomicLong uncompressedSizeInBytes,
+                AtomicLong serializedSizeInBytes,
+                PagesSerde serde,
+                Lifespan lifespan,
+                ArrayAllocator bufferAllocator)
         {
             this.partition = partition;
             this.channelCount = channelCount;
             this.capacity = capacity;
             this.pagesAdded = requireNonNull(pagesAdded, "pagesAdded is null");
             this.rowsAdded = requireNonNull(rowsAdded, "rowsAdded is null");
+            this.uncompressedSizeInBytes = requireNonNull(uncompressedSizeInBytes, "uncompressedSizeInBytes is null");
+            this.serializedSizeInBytes = requireNonNull(serializedSizeInBytes, "serializedSizeInBytes is null");
             this.serde = requireNonNull(serde, "serde is null");
             this.lifespan = requireNonNull(lifespan, "lifespan is null");
             this.bufferAllocator = requireNonNull(bufferAllocator, "bufferAllocator is null");
@@ -725,6 +775,8 @@ public class OptimizedPartitionedOutputOperator
             outputBuffer.enqueue(lifespan, partition, ImmutableList.of(serializedPage));
             pagesAdded.incrementAndGet();
             rowsAdded.addAndGet(bufferedRowCount);
+            uncompressedSizeInBytes.addAndGet(serializedPage.getUncompressedSizeInBytes());
+            serializedSizeInBytes.addAndGet(serializedPage.getSizeInBytes());
 
             bufferedRowCount = 0;
         }
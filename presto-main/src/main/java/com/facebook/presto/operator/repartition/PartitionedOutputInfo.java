@@ -26,16 +26,23 @@ public class PartitionedOutputInfo
     private final long rowsAdded;
     private final long pagesAdded;
     private final long outputBufferPeakMemoryUsage;
+    // size of the serialized pages before and after compression, which tells the achieved compression ratio
+    private final long uncompressedSizeInBytes;
+    private final long serializedSizeInBytes;
 
     @JsonCreator
     public PartitionedOutputInfo(
             @JsonProperty("rowsAdded") long rowsAdded,
             @JsonProperty("pagesAdded") long pagesAdded,
-            @JsonProperty("outputBufferPeakMemoryUsage") long outputBufferPeakMemoryUsage)
+            @JsonProperty("outputBufferPeakMemoryUsage") long outputBufferPeakMemoryUsage,
+            @JsonProperty("uncompressedSizeInBytes") long uncompressedSizeInBytes,
+            @JsonProperty("serializedSizeInBytes") long serializedSizeInBytes)
     {
         this.rowsAdded = rowsAdded;
         this.pagesAdded = pagesAdded;
         this.outputBufferPeakMemoryUsage = outputBufferPeakMemoryUsage;
+        this.uncompressedSizeInBytes = uncompressedSizeInBytes;
+        this.serializedSizeInBytes = serializedSizeInBytes;
     }
 
     @JsonProperty
@@ -56,13 +63,27 @@ public class PartitionedOutputInfo
         return outputBufferPeakMemoryUsage;
     }
 
+    @JsonProperty
+    public long getUncompressedSizeInBytes()
+    {
+        return uncompressedSizeInBytes;
+    }
+
+    @JsonProperty
+    public long getSerializedSizeInBytes()
+    {
+        return serializedSizeInBytes;
+    }
+
     @Override
     public PartitionedOutputInfo mergeWith(PartitionedOutputInfo other)
     {
         return new PartitionedOutputInfo(
                 rowsAdded + other.rowsAdded,
                 pagesAdded + other.pagesAdded,
-                Math.max(outputBufferPeakMemoryUsage, other.outputBufferPeakMemoryUsage));
+                Math.max(outputBufferPeakMemoryUsage, other.outputBufferPeakMemoryUsage),
+                uncompressedSizeInBytes + other.uncompressedSizeInBytes,
+                serializedSizeInBytes + other.serializedSizeInBytes);
     }
 
     @Override
@@ -78,6 +99,8 @@ public class PartitionedOutputInfo
                 .add("rowsAdded", rowsAdded)
                 .add("pagesAdded", pagesAdded)
                 .add("outputBufferPeakMemoryUsage", outputBufferPeakMemoryUsage)
+                .add("uncompressedSizeInBytes", uncompressedSizeInBytes)
+                .add("serializedSizeInBytes", serializedSizeInBytes)
                 .toString();
     }
 }
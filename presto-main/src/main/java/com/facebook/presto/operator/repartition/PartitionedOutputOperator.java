@@ -27,6 +27,7 @@ import com.facebook.presto.operator.OperatorContext;
 import com.facebook.presto.operator.OperatorFactory;
 import com.facebook.presto.operator.OutputFactory;
 import com.facebook.presto.operator.PartitionFunction;
+import com.facebook.presto.operator.SharedDictionaryPageMerger;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.plan.PlanNodeId;
@@ -41,6 +42,7 @@ import java.util.OptionalInt;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import static com.facebook.presto.SystemSessionProperties.isExchangeSharedDictionaryPageMergingEnabled;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -179,6 +181,8 @@ public class PartitionedOutputOperator
     private final OperatorContext operatorContext;
     private final Function<Page, Page> pagePreprocessor;
     private final PagePartitioner partitionFunction;
+    private final Optional<SharedDictionaryPageMerger> pageMerger;
+    private final LocalMemoryContext pageMergerMemoryContext;
     private boolean finished;
 
     public PartitionedOutputOperator(
@@ -207,6 +211,8 @@ public class PartitionedOutputOperator
                 sourceTypes,
                 maxMemory,
                 operatorContext);
+        this.pageMerger = isExchangeSharedDictionaryPageMergingEnabled(operatorContext.getSession()) ? Optional.of(new SharedDictionaryPageMerger(sourceTypes, DEFAULT_MAX_PAGE_SIZE_IN_BYTES)) : Optional.empty();
+        this.pageMergerMemoryContext = operatorContext.newLocalSystemMemoryContext(SharedDictionaryPageMerger.class.getSimpleName());
 
         operatorContext.setInfoSupplier(this::getInfo);
     }
@@ -225,6 +231,10 @@ public class PartitionedOutputOperator
     @Override
     public void finish()
     {
+        if (!finished && pageMerger.isPresent()) {
+            pageMerger.get().flush().ifPresent(partitionFunction::partitionPage);
+            pageMergerMemoryContext.setBytes(pageMerger.get().getRetainedSizeInBytes());
+        }
         finished = true;
         partitionFunction.flush(true);
     }
@@ -258,7 +268,14 @@ public class PartitionedOutputOperator
         }
 
         page = pagePreprocessor.apply(page);
-        partitionFunction.partitionPage(page);
+        if (pageMerger.isPresent()) {
+            // the rows are copied into the partitions, so a combined page only saves the work done per page
+            pageMerger.get().add(page).forEach(partitionFunction::partitionPage);
+            pageMergerMemoryContext.setBytes(pageMerger.get().getRetainedSizeInBytes());
+        }
+        else {
+            partitionFunction.partitionPage(page);
+        }
     }
 
     @Override
@@ -280,6 +297,8 @@ public class PartitionedOutputOperator
         private final OptionalInt nullChannel; // when present, send the position to every partition if this channel is null.
         private final AtomicLong rowsAdded = new AtomicLong();
         private final AtomicLong pagesAdded = new AtomicLong();
+        private final AtomicLong uncompressedSizeInBytes = new AtomicLong();
+        private final AtomicLong serializedSizeInBytes = new AtomicLong();
         private boolean hasAnyRowBeenReplicated;
         private final OperatorContext operatorContext;
         private final LocalMemoryContext systemMemoryContext;
@@ -354,7 +373,7 @@ public class PartitionedOutputOperator
 
         public PartitionedOutputInfo getInfo()
         {
-            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage());
+            return new PartitionedOutputInfo(rowsAdded.get(), pagesAdded.get(), outputBuffer.getPeakMemoryUsage(), uncompressedSizeInBytes.get(), serializedSizeInBytes.get());
         }
 
         public void partitionPage(Page page)
@@ -426,6 +445,10 @@ public class PartitionedOutputOperator
                     outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), partition, serializedPages);
                     pagesAdded.incrementAndGet();
                     rowsAdded.addAndGet(pagePartition.getPositionCount());
+                    for (SerializedPage serializedPage : serializedPages) {
+                        uncompressedSizeInBytes.addAndGet(serializedPage.getUncompressedSizeInBytes());
+                        serializedSizeInBytes.addAndGet(serializedPage.getSizeInBytes());
+                    }
                 }
             }
         }
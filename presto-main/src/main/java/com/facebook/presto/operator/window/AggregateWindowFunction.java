@@ -14,6 +14,11 @@
 package com.facebook.presto.operator.window;
 
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.DoubleType;
+import com.facebook.presto.common.type.FixedWidthType;
+import com.facebook.presto.common.type.RealType;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.aggregation.Accumulator;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.InternalAggregationFunction;
@@ -21,19 +26,29 @@ import com.facebook.presto.spi.function.Signature;
 import com.facebook.presto.spi.function.WindowFunction;
 import com.facebook.presto.spi.function.WindowIndex;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
 
 public class AggregateWindowFunction
         implements WindowFunction
 {
+    // frames smaller than this are aggregated row by row, as that is cheaper than combining states
+    private static final int MIN_SEGMENT_TREE_FRAME_SIZE = 4 * WindowSegmentTree.CHUNK_SIZE;
+    // aggregations that give the same result for any grouping of their input, whatever their types
+    private static final Set<String> REASSOCIABLE_AGGREGATIONS = ImmutableSet.of("min", "max");
+
     private final List<Integer> argumentChannels;
     private final AccumulatorFactory accumulatorFactory;
+    private final Type intermediateType;
+    private final boolean segmentTreeSupported;
 
     private WindowIndex windowIndex;
+    private WindowSegmentTree segmentTree;
     private Accumulator accumulator;
     private int currentStart;
     private int currentEnd;
@@ -42,12 +57,20 @@ public class AggregateWindowFunction
     {
         this.argumentChannels = ImmutableList.copyOf(argumentChannels);
         this.accumulatorFactory = function.bind(createArgs(function), Optional.empty());
+        this.intermediateType = function.getIntermediateType();
+        // the tree keeps a state for every chunk of rows, so it is only used for states of bounded size. It also
+        // combines the rows of a frame in a different grouping than adding them one by one, which changes the
+        // rounding of floating point states, e.g. of sum(double) or avg(bigint), so those are aggregated row by row
+        this.segmentTreeSupported = function.isDecomposable() &&
+                isFixedWidth(intermediateType) &&
+                (isExact(intermediateType) || REASSOCIABLE_AGGREGATIONS.contains(function.name()));
     }
 
     @Override
     public void reset(WindowIndex windowIndex)
     {
         this.windowIndex = windowIndex;
+        this.segmentTree = null;
         resetAccumulator();
     }
 
@@ -63,6 +86,16 @@ public class AggregateWindowFunction
             accumulate(currentEnd + 1, frameEnd);
             currentEnd = frameEnd;
         }
+        else if (segmentTreeSupported && frameEnd - frameStart + 1 >= MIN_SEGMENT_TREE_FRAME_SIZE) {
+            // sliding frame, assembled from the states of the chunks it covers
+            if (segmentTree == null) {
+                segmentTree = new WindowSegmentTree(accumulatorFactory, intermediateType, windowIndex, argumentChannels);
+            }
+            accumulator = accumulatorFactory.createAccumulator();
+            segmentTree.accumulate(accumulator, frameStart, frameEnd);
+            currentStart = frameStart;
+            currentEnd = frameEnd;
+        }
         else {
             // different frame
             resetAccumulator();
@@ -101,6 +134,22 @@ public class AggregateWindowFunction
         };
     }
 
+    private static boolean isFixedWidth(Type type)
+    {
+        if (type instanceof RowType) {
+            return type.getTypeParameters().stream().allMatch(AggregateWindowFunction::isFixedWidth);
+        }
+        return type instanceof FixedWidthType;
+    }
+
+    private static boolean isExact(Type type)
+    {
+        if (type instanceof RowType) {
+            return type.getTypeParameters().stream().allMatch(AggregateWindowFunction::isExact);
+        }
+        return !(type instanceof DoubleType) && !(type instanceof RealType);
+    }
+
     private static List<Integer> createArgs(InternalAggregationFunction function)
     {
         ImmutableList.Builder<Integer> list = ImmutableList.builder();
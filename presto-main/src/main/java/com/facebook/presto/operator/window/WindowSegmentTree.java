@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.window;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.aggregation.Accumulator;
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.spi.function.WindowIndex;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Intermediate aggregation states of a window partition, for chunks of {@link #CHUNK_SIZE} rows and
+ * for pairs of chunks combined level by level. The state of any frame is assembled from at most two
+ * partial chunks of rows and a logarithmic number of combined states, in row order.
+ */
+class WindowSegmentTree
+{
+    static final int CHUNK_SIZE = 32;
+
+    private final WindowIndex windowIndex;
+    private final List<Integer> argumentChannels;
+    // the first level holds a state per chunk, each next level a state per pair of states of the previous one
+    private final List<Block> levels;
+
+    public WindowSegmentTree(AccumulatorFactory accumulatorFactory, Type intermediateType, WindowIndex windowIndex, List<Integer> argumentChannels)
+    {
+        requireNonNull(accumulatorFactory, "accumulatorFactory is null");
+        requireNonNull(intermediateType, "intermediateType is null");
+        this.windowIndex = requireNonNull(windowIndex, "windowIndex is null");
+        this.argumentChannels = ImmutableList.copyOf(requireNonNull(argumentChannels, "argumentChannels is null"));
+
+        List<Block> levels = new ArrayList<>();
+        int chunkCount = windowIndex.size() / CHUNK_SIZE;
+        BlockBuilder chunkStates = intermediateType.createBlockBuilder(null, chunkCount);
+        for (int chunk = 0; chunk < chunkCount; chunk++) {
+            Accumulator accumulator = accumulatorFactory.createAccumulator();
+            accumulator.addInput(windowIndex, argumentChannels, chunk * CHUNK_SIZE, (chunk + 1) * CHUNK_SIZE - 1);
+            accumulator.evaluateIntermediate(chunkStates);
+        }
+        levels.add(chunkStates.build());
+
+        Block level = levels.get(0);
+        while (level.getPositionCount() > 1) {
+            BlockBuilder pairStates = intermediateType.createBlockBuilder(null, level.getPositionCount() / 2);
+            for (int position = 0; position + 1 < level.getPositionCount(); position += 2) {
+                Accumulator accumulator = accumulatorFactory.createAccumulator();
+                accumulator.addIntermediate(level.getRegion(position, 2));
+                accumulator.evaluateIntermediate(pairStates);
+            }
+            level = pairStates.build();
+            levels.add(level);
+        }
+        this.levels = ImmutableList.copyOf(levels);
+    }
+
+    /**
+     * Adds the rows from {@code start} to {@code end}, both inclusive, to the accumulator.
+     */
+    public void accumulate(Accumulator accumulator, int start, int end)
+    {
+        // only chunks that lie entirely within the frame are taken from the tree
+        int firstChunk = (start + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int endChunk = min((end + 1) / CHUNK_SIZE, levels.get(0).getPositionCount());
+        if (firstChunk >= endChunk) {
+            accumulator.addInput(windowIndex, argumentChannels, start, end);
+            return;
+        }
+
+        if (start < firstChunk * CHUNK_SIZE) {
+            accumulator.addInput(windowIndex, argumentChannels, start, firstChunk * CHUNK_SIZE - 1);
+        }
+
+        // take the largest aligned run of chunks that fits at each step, which keeps the states in row order
+        int chunk = firstChunk;
+        while (chunk < endChunk) {
+            int level = 0;
+            while (level + 1 < levels.size() && (chunk & ((1 << (level + 1)) - 1)) == 0 && chunk + (1 << (level + 1)) <= endChunk) {
+                level++;
+            }
+            accumulator.addIntermediate(levels.get(level).getRegion(chunk >> level, 1));
+            chunk += 1 << level;
+        }
+
+        if (endChunk * CHUNK_SIZE <= end) {
+            accumulator.addInput(windowIndex, argumentChannels, endChunk * CHUNK_SIZE, end);
+        }
+    }
+}
@@ -16,8 +16,7 @@ package com.facebook.presto.server;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.reflect.TypeToken;
-import io.airlift.slice.OutputStreamSliceOutput;
-import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slice;
 
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
@@ -29,13 +28,14 @@ import javax.ws.rs.ext.Provider;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import java.util.List;
 
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
-import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPages;
+import static com.facebook.presto.server.SerializedPageWriteListener.PAGE_METADATA_SIZE;
+import static com.facebook.presto.server.SerializedPageWriteListener.writePageMetadata;
+import static io.airlift.slice.Slices.allocate;
 
 @Provider
 @Produces(PRESTO_PAGES)
@@ -79,17 +79,19 @@ public class PagesResponseWriter
             throws IOException, WebApplicationException
     {
         try {
-            SliceOutput sliceOutput = new OutputStreamSliceOutput(output);
-            writeSerializedPages(sliceOutput, serializedPages);
+            Slice metadata = allocate(PAGE_METADATA_SIZE);
+            for (SerializedPage page : serializedPages) {
+                writePageMetadata(metadata, page);
+                output.write(metadata.byteArray(), 0, PAGE_METADATA_SIZE);
+                // The data of the page goes to the stream straight from the slice, rather than being copied to an intermediate buffer first
+                page.getSlice().getBytes(0, output, page.getSizeInBytes());
+            }
             // We use flush instead of close, because the underlying stream would be closed and that is not allowed.
-            sliceOutput.flush();
+            output.flush();
         }
-        catch (UncheckedIOException e) {
+        catch (EOFException e) {
             // EOF exception occurs when the client disconnects while writing data
             // This is not a "server" problem so we don't want to log this
-            if (!(e.getCause() instanceof EOFException)) {
-                throw e;
-            }
         }
     }
 }
@@ -67,19 +67,8 @@ public class SerializedPageWriteListener
 
             if (page == null) {
                 page = serializedPages.poll();
-
-                int bufferPosition = 0;
-
-                slice.setInt(bufferPosition, page.getPositionCount());
-                bufferPosition += SIZE_OF_INT;
-                slice.setByte(bufferPosition, page.getPageCodecMarkers());
-                bufferPosition += SIZE_OF_BYTE;
-                slice.setInt(bufferPosition, page.getUncompressedSizeInBytes());
-                bufferPosition += SIZE_OF_INT;
-                slice.setInt(bufferPosition, page.getSizeInBytes());
-                bufferPosition += SIZE_OF_INT;
-
-                output.write(slice.byteArray(), 0, bufferPosition);
+                writePageMetadata(slice, page);
+                output.write(slice.byteArray(), 0, PAGE_METADATA_SIZE);
             }
             else {
                 Object base = page.getSlice().getBase();
@@ -97,6 +86,22 @@ public class SerializedPageWriteListener
         asyncContext.complete();
     }
 
+    /**
+     * Writes the metadata that precedes the data of the page on the wire to the first {@link #PAGE_METADATA_SIZE} bytes of the slice.
+     */
+    static void writePageMetadata(Slice slice, SerializedPage page)
+    {
+        int bufferPosition = 0;
+
+        slice.setInt(bufferPosition, page.getPositionCount());
+        bufferPosition += SIZE_OF_INT;
+        slice.setByte(bufferPosition, page.getPageCodecMarkers());
+        bufferPosition += SIZE_OF_BYTE;
+        slice.setInt(bufferPosition, page.getUncompressedSizeInBytes());
+        bufferPosition += SIZE_OF_INT;
+        slice.setInt(bufferPosition, page.getSizeInBytes());
+    }
+
     private boolean writeComplete()
     {
         return serializedPages.isEmpty() && page == null;
@@ -31,6 +31,7 @@ import com.facebook.presto.server.smile.SmileCodec;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.sql.planner.PlanFragment;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -39,6 +40,7 @@ import io.airlift.units.Duration;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
@@ -69,6 +71,7 @@ import static com.facebook.presto.PrestoMediaTypes.APPLICATION_JACKSON_SMILE;
 import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_BUFFER_COMPLETE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_DYNAMIC_FILTER_DOMAINS_VERSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_SIZE;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PAGE_NEXT_TOKEN;
@@ -199,6 +202,7 @@ public class TaskResource
             @PathParam("taskId") TaskId taskId,
             @HeaderParam(PRESTO_CURRENT_STATE) TaskState currentState,
             @HeaderParam(PRESTO_MAX_WAIT) Duration maxWait,
+            @HeaderParam(PRESTO_DYNAMIC_FILTER_DOMAINS_VERSION) Long dynamicFilterDomainsVersion,
             @Context UriInfo uriInfo,
             @Suspended AsyncResponse asyncResponse)
     {
@@ -206,7 +210,7 @@ public class TaskResource
 
         if (currentState == null || maxWait == null) {
             TaskStatus taskStatus = taskManager.getTaskStatus(taskId);
-            asyncResponse.resume(taskStatus);
+            asyncResponse.resume(removeKnownDynamicFilterDomains(taskStatus, dynamicFilterDomainsVersion));
             return;
         }
 
@@ -219,6 +223,7 @@ public class TaskResource
                 () -> taskManager.getTaskStatus(taskId),
                 waitTime,
                 timeoutExecutor);
+        futureTaskStatus = Futures.transform(futureTaskStatus, taskStatus -> removeKnownDynamicFilterDomains(taskStatus, dynamicFilterDomainsVersion), directExecutor());
 
         // For hard timeout, add an additional time to max wait for thread scheduling contention and GC
         Duration timeout = new Duration(waitTime.toMillis() + ADDITIONAL_WAIT_TIME.toMillis(), MILLISECONDS);
@@ -362,4 +367,13 @@ public class TaskResource
     {
         return uriInfo.getQueryParameters().containsKey("summarize");
     }
+
+    private static TaskStatus removeKnownDynamicFilterDomains(TaskStatus taskStatus, @Nullable Long knownDynamicFilterDomainsVersion)
+    {
+        // the caller already has the domains of this version, so they are not sent again
+        if (knownDynamicFilterDomainsVersion != null && taskStatus.getDynamicFilterDomainsVersion() <= knownDynamicFilterDomainsVersion && !taskStatus.getDynamicFilterDomains().isEmpty()) {
+            return taskStatus.withDynamicFilterDomains(ImmutableMap.of());
+        }
+        return taskStatus;
+    }
 }
@@ -41,6 +41,7 @@ import java.util.function.Consumer;
 import static com.facebook.airlift.http.client.HttpUriBuilder.uriBuilderFrom;
 import static com.facebook.airlift.http.client.Request.Builder.prepareGet;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CURRENT_STATE;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_DYNAMIC_FILTER_DOMAINS_VERSION;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_MAX_WAIT;
 import static com.facebook.presto.server.RequestHelpers.setContentTypeHeaders;
 import static com.facebook.presto.server.smile.AdaptingJsonResponseHandler.createAdaptingJsonResponseHandler;
@@ -153,6 +154,7 @@ class ContinuousTaskStatusFetcher
                 .setUri(uriBuilderFrom(taskStatus.getSelf()).appendPath("status").build())
                 .setHeader(PRESTO_CURRENT_STATE, taskStatus.getState().toString())
                 .setHeader(PRESTO_MAX_WAIT, refreshMaxWait.toString())
+                .setHeader(PRESTO_DYNAMIC_FILTER_DOMAINS_VERSION, String.valueOf(taskStatus.getDynamicFilterDomainsVersion()))
                 .build();
 
         ResponseHandler responseHandler;
@@ -225,6 +227,12 @@ class ContinuousTaskStatusFetcher
 
     void updateTaskStatus(TaskStatus newValue)
     {
+        // the worker leaves out the dynamic filter domains of the version it was told this fetcher already has
+        TaskStatus currentValue = taskStatus.get();
+        if (newValue.getDynamicFilterDomainsVersion() == currentValue.getDynamicFilterDomainsVersion() && newValue.getDynamicFilterDomains().isEmpty()) {
+            newValue = newValue.withDynamicFilterDomains(currentValue.getDynamicFilterDomains());
+        }
+
         // change to new value if old value is not changed and new value has a newer version
         AtomicBoolean taskMismatch = new AtomicBoolean();
         taskStatus.setIf(newValue, oldValue -> {
@@ -21,6 +21,10 @@ import java.io.IOException;
 import java.util.Iterator;
 import java.util.function.IntPredicate;
 
+import static com.facebook.airlift.concurrent.MoreFutures.checkSuccess;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Objects.requireNonNull;
 
 public interface PartitioningSpiller
@@ -34,6 +38,26 @@ public interface PartitioningSpiller
      */
     PartitioningSpillResult partitionAndSpill(Page page, IntPredicate spillPartitionMask);
 
+    /**
+     * Partition and spill all rows of the pages, a page is enqueued once the spilling of the previous one is finished.
+     * The returned future is completed when all pages have been spilled. The remaining pages are pulled from the
+     * iterator by the thread that finishes the spilling of the previous page, so the source of the pages must not
+     * be modified until then.
+     * <p>
+     * This method may not be called if previously initiated spilling is not finished yet.
+     */
+    default ListenableFuture<?> spill(Iterator<Page> pages)
+    {
+        while (pages.hasNext()) {
+            ListenableFuture<?> spillingFuture = partitionAndSpill(pages.next(), partition -> true).getSpillingFuture();
+            if (!spillingFuture.isDone()) {
+                return transformAsync(spillingFuture, ignored -> spill(pages), directExecutor());
+            }
+            checkSuccess(spillingFuture, "spilling failed");
+        }
+        return immediateFuture(null);
+    }
+
     /**
      * Returns iterator of previously spilled pages from given partition. Callers are expected to call
      * this method once. Calling multiple times can results in undefined behavior.
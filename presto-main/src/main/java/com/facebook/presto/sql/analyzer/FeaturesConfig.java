@@ -16,6 +16,7 @@ package com.facebook.presto.sql.analyzer;
 import com.facebook.airlift.configuration.Config;
 import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.configuration.DefunctConfig;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import com.facebook.presto.operator.aggregation.histogram.HistogramGroupImplementation;
 import com.facebook.presto.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -110,9 +111,15 @@ public class FeaturesConfig
     private ArrayAggGroupImplementation arrayAggGroupImplementation = ArrayAggGroupImplementation.NEW;
     private MultimapAggGroupImplementation multimapAggGroupImplementation = MultimapAggGroupImplementation.NEW;
     private boolean spillEnabled;
+    private boolean orderBySpillEnabled = true;
+    private boolean windowSpillEnabled = true;
+    private boolean topNRowNumberSpillEnabled = true;
+    private boolean distinctSpillEnabled = true;
+    private boolean semiJoinSpillEnabled = true;
     private DataSize aggregationOperatorUnspillMemoryLimit = new DataSize(4, DataSize.Unit.MEGABYTE);
     private List<Path> spillerSpillPaths = ImmutableList.of();
     private int spillerThreads = 4;
+    private int spillerPartitionCount = 16;
     private double spillMaxUsedSpaceThreshold = 0.9;
     private boolean iterativeOptimizerEnabled = true;
     private boolean enableStatsCalculator = true;
@@ -152,6 +159,24 @@ public class FeaturesConfig
     private boolean useLegacyScheduler = true;
     private boolean optimizeCommonSubExpressions = true;
 
+    private boolean enableDynamicFiltering;
+    private int dynamicFilteringMaxPerDriverRowCount = 10_000;
+    private Duration dynamicFilteringWaitTimeout = new Duration(10, SECONDS);
+
+    private boolean adaptivePartialAggregationEnabled = true;
+    private int adaptivePartialAggregationMinRows = 100_000;
+    private double adaptivePartialAggregationUniqueRowsRatioThreshold = 0.8;
+    private boolean flatGroupByHashEnabled;
+    private boolean directJoinLookupSourceEnabled = true;
+    private boolean joinBloomFilterEnabled = true;
+    private boolean mergeJoinEnabled;
+    private boolean pagesIndexNormalizedKeySortEnabled = true;
+    private boolean topNDynamicFilteringEnabled;
+    private CompressionCodec exchangeCompressionCodec = CompressionCodec.LZ4;
+    // off by default: pages are held back until the dictionary changes and the channels that do not share it are copied,
+    // which only pays off when the sources produce long runs of pages over one dictionary
+    private boolean exchangeSharedDictionaryPageMergingEnabled;
+
     private PartitioningPrecisionStrategy partitioningPrecisionStrategy = PartitioningPrecisionStrategy.AUTOMATIC;
 
     public enum PartitioningPrecisionStrategy
@@ -732,6 +757,71 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isOrderBySpillEnabled()
+    {
+        return orderBySpillEnabled;
+    }
+
+    @Config("experimental.order-by-spill-enabled")
+    @ConfigDescription("Spill in OrderBy if spill_enabled is also set")
+    public FeaturesConfig setOrderBySpillEnabled(boolean orderBySpillEnabled)
+    {
+        this.orderBySpillEnabled = orderBySpillEnabled;
+        return this;
+    }
+
+    public boolean isWindowSpillEnabled()
+    {
+        return windowSpillEnabled;
+    }
+
+    @Config("experimental.window-spill-enabled")
+    @ConfigDescription("Enable Window Operator Spilling if spill_enabled")
+    public FeaturesConfig setWindowSpillEnabled(boolean windowSpillEnabled)
+    {
+        this.windowSpillEnabled = windowSpillEnabled;
+        return this;
+    }
+
+    public boolean isTopNRowNumberSpillEnabled()
+    {
+        return topNRowNumberSpillEnabled;
+    }
+
+    @Config("experimental.topn-row-number-spill-enabled")
+    @ConfigDescription("Spill in TopNRowNumber if spill_enabled is also set")
+    public FeaturesConfig setTopNRowNumberSpillEnabled(boolean topNRowNumberSpillEnabled)
+    {
+        this.topNRowNumberSpillEnabled = topNRowNumberSpillEnabled;
+        return this;
+    }
+
+    public boolean isDistinctSpillEnabled()
+    {
+        return distinctSpillEnabled;
+    }
+
+    @Config("experimental.distinct-spill-enabled")
+    @ConfigDescription("Spill in MarkDistinct and DistinctLimit if spill_enabled is also set")
+    public FeaturesConfig setDistinctSpillEnabled(boolean distinctSpillEnabled)
+    {
+        this.distinctSpillEnabled = distinctSpillEnabled;
+        return this;
+    }
+
+    public boolean isSemiJoinSpillEnabled()
+    {
+        return semiJoinSpillEnabled;
+    }
+
+    @Config("experimental.semi-join-spill-enabled")
+    @ConfigDescription("Spill the set of a semi join if spill_enabled is also set")
+    public FeaturesConfig setSemiJoinSpillEnabled(boolean semiJoinSpillEnabled)
+    {
+        this.semiJoinSpillEnabled = semiJoinSpillEnabled;
+        return this;
+    }
+
     public boolean isIterativeOptimizerEnabled()
     {
         return iterativeOptimizerEnabled;
@@ -849,6 +939,20 @@ public class FeaturesConfig
         return this;
     }
 
+    @Min(1)
+    public int getSpillerPartitionCount()
+    {
+        return spillerPartitionCount;
+    }
+
+    @Config("experimental.spiller-partition-count")
+    @ConfigDescription("Number of partitions the rows are hashed into when an operator spills them to be read back one partition at a time")
+    public FeaturesConfig setSpillerPartitionCount(int spillerPartitionCount)
+    {
+        this.spillerPartitionCount = spillerPartitionCount;
+        return this;
+    }
+
     @DecimalMin("0.0")
     @DecimalMax("1.0")
     public double getMemoryRevokingThreshold()
@@ -1237,4 +1341,191 @@ public class FeaturesConfig
         this.optimizeCommonSubExpressions = optimizeCommonSubExpressions;
         return this;
     }
+
+    public boolean isEnableDynamicFiltering()
+    {
+        return enableDynamicFiltering;
+    }
+
+    @Config("experimental.enable-dynamic-filtering")
+    @ConfigDescription("Experimental: Filter the probe side of hash joins with values collected from the build side")
+    public FeaturesConfig setEnableDynamicFiltering(boolean enableDynamicFiltering)
+    {
+        this.enableDynamicFiltering = enableDynamicFiltering;
+        return this;
+    }
+
+    @Min(1)
+    public int getDynamicFilteringMaxPerDriverRowCount()
+    {
+        return dynamicFilteringMaxPerDriverRowCount;
+    }
+
+    @Config("experimental.dynamic-filtering-max-per-driver-row-count")
+    @ConfigDescription("Maximum number of distinct build side values collected per driver before dynamic filters fall back to a min/max range")
+    public FeaturesConfig setDynamicFilteringMaxPerDriverRowCount(int dynamicFilteringMaxPerDriverRowCount)
+    {
+        this.dynamicFilteringMaxPerDriverRowCount = dynamicFilteringMaxPerDriverRowCount;
+        return this;
+    }
+
+    public Duration getDynamicFilteringWaitTimeout()
+    {
+        return dynamicFilteringWaitTimeout;
+    }
+
+    @Config("experimental.dynamic-filtering-wait-timeout")
+    @ConfigDescription("Maximum time split enumeration of a probe side table scan waits for the dynamic filters of joins in other stages")
+    public FeaturesConfig setDynamicFilteringWaitTimeout(Duration dynamicFilteringWaitTimeout)
+    {
+        this.dynamicFilteringWaitTimeout = dynamicFilteringWaitTimeout;
+        return this;
+    }
+
+    public boolean isAdaptivePartialAggregationEnabled()
+    {
+        return adaptivePartialAggregationEnabled;
+    }
+
+    @Config("adaptive-partial-aggregation.enabled")
+    @ConfigDescription("Stop aggregating in partial aggregations that do not reduce the number of rows")
+    public FeaturesConfig setAdaptivePartialAggregationEnabled(boolean adaptivePartialAggregationEnabled)
+    {
+        this.adaptivePartialAggregationEnabled = adaptivePartialAggregationEnabled;
+        return this;
+    }
+
+    @Min(1)
+    public int getAdaptivePartialAggregationMinRows()
+    {
+        return adaptivePartialAggregationMinRows;
+    }
+
+    @Config("adaptive-partial-aggregation.min-rows")
+    @ConfigDescription("Number of input rows after which a partial aggregation decides whether to stop aggregating")
+    public FeaturesConfig setAdaptivePartialAggregationMinRows(int adaptivePartialAggregationMinRows)
+    {
+        this.adaptivePartialAggregationMinRows = adaptivePartialAggregationMinRows;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getAdaptivePartialAggregationUniqueRowsRatioThreshold()
+    {
+        return adaptivePartialAggregationUniqueRowsRatioThreshold;
+    }
+
+    @Config("adaptive-partial-aggregation.unique-rows-ratio-threshold")
+    @ConfigDescription("Ratio of groups to input rows above which a partial aggregation stops aggregating")
+    public FeaturesConfig setAdaptivePartialAggregationUniqueRowsRatioThreshold(double adaptivePartialAggregationUniqueRowsRatioThreshold)
+    {
+        this.adaptivePartialAggregationUniqueRowsRatioThreshold = adaptivePartialAggregationUniqueRowsRatioThreshold;
+        return this;
+    }
+
+    public boolean isFlatGroupByHashEnabled()
+    {
+        return flatGroupByHashEnabled;
+    }
+
+    @Config("experimental.flat-group-by-hash-enabled")
+    @ConfigDescription("Experimental: Store the groups of fixed width keys as flat records instead of in per channel block builders")
+    public FeaturesConfig setFlatGroupByHashEnabled(boolean flatGroupByHashEnabled)
+    {
+        this.flatGroupByHashEnabled = flatGroupByHashEnabled;
+        return this;
+    }
+
+    public boolean isDirectJoinLookupSourceEnabled()
+    {
+        return directJoinLookupSourceEnabled;
+    }
+
+    @Config("join.direct-lookup-source-enabled")
+    @ConfigDescription("Index the build side of joins on a single dense integer key by an array instead of a hash table")
+    public FeaturesConfig setDirectJoinLookupSourceEnabled(boolean directJoinLookupSourceEnabled)
+    {
+        this.directJoinLookupSourceEnabled = directJoinLookupSourceEnabled;
+        return this;
+    }
+
+    public boolean isJoinBloomFilterEnabled()
+    {
+        return joinBloomFilterEnabled;
+    }
+
+    @Config("join.bloom-filter-enabled")
+    @ConfigDescription("Test probe rows against a Bloom filter of the build keys before looking them up in the join hash table")
+    public FeaturesConfig setJoinBloomFilterEnabled(boolean joinBloomFilterEnabled)
+    {
+        this.joinBloomFilterEnabled = joinBloomFilterEnabled;
+        return this;
+    }
+
+    public boolean isMergeJoinEnabled()
+    {
+        return mergeJoinEnabled;
+    }
+
+    @Config("join.merge-join-enabled")
+    @ConfigDescription("Use a merge join when both inputs of an inner or left join are single streams sorted on the join keys")
+    public FeaturesConfig setMergeJoinEnabled(boolean mergeJoinEnabled)
+    {
+        this.mergeJoinEnabled = mergeJoinEnabled;
+        return this;
+    }
+
+    public boolean isPagesIndexNormalizedKeySortEnabled()
+    {
+        return pagesIndexNormalizedKeySortEnabled;
+    }
+
+    @Config("pages-index.normalized-key-sort-enabled")
+    @ConfigDescription("Sort large pages indexes by radix sorting binary encoded sort keys instead of comparing the values")
+    public FeaturesConfig setPagesIndexNormalizedKeySortEnabled(boolean pagesIndexNormalizedKeySortEnabled)
+    {
+        this.pagesIndexNormalizedKeySortEnabled = pagesIndexNormalizedKeySortEnabled;
+        return this;
+    }
+
+    public boolean isTopNDynamicFilteringEnabled()
+    {
+        return topNDynamicFilteringEnabled;
+    }
+
+    @Config("experimental.top-n-dynamic-filtering-enabled")
+    @ConfigDescription("Experimental: Filter the table scans below a TopN with the range of the leading sort key that can still make it into the result")
+    public FeaturesConfig setTopNDynamicFilteringEnabled(boolean topNDynamicFilteringEnabled)
+    {
+        this.topNDynamicFilteringEnabled = topNDynamicFilteringEnabled;
+        return this;
+    }
+
+    @NotNull
+    public CompressionCodec getExchangeCompressionCodec()
+    {
+        return exchangeCompressionCodec;
+    }
+
+    @Config("exchange.compression-codec")
+    @ConfigDescription("Codec of the pages of compressed exchanges (LZ4, ZSTD, SNAPPY, NONE)")
+    public FeaturesConfig setExchangeCompressionCodec(CompressionCodec exchangeCompressionCodec)
+    {
+        this.exchangeCompressionCodec = exchangeCompressionCodec;
+        return this;
+    }
+
+    public boolean isExchangeSharedDictionaryPageMergingEnabled()
+    {
+        return exchangeSharedDictionaryPageMergingEnabled;
+    }
+
+    @Config("exchange.shared-dictionary-page-merging-enabled")
+    @ConfigDescription("Combine consecutive pages that share a dictionary before sending them through an exchange, so that the dictionary is sent once")
+    public FeaturesConfig setExchangeSharedDictionaryPageMergingEnabled(boolean exchangeSharedDictionaryPageMergingEnabled)
+    {
+        this.exchangeSharedDictionaryPageMergingEnabled = exchangeSharedDictionaryPageMergingEnabled;
+        return this;
+    }
 }
@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner;
+
+import com.facebook.presto.common.type.CharType;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.VarcharType;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.FilterNode;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.plan.UnionNode;
+import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
+import com.facebook.presto.sql.planner.plan.SemiJoinNode;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+public final class DynamicFilters
+{
+    private DynamicFilters() {}
+
+    /**
+     * Types for which equality of the join criteria is equality of the native values,
+     * so that build side values can be used to filter the probe side.
+     */
+    public static boolean isSupportedDynamicFilterType(Type type)
+    {
+        return type.equals(BIGINT) ||
+                type.equals(INTEGER) ||
+                type.equals(SMALLINT) ||
+                type.equals(TINYINT) ||
+                type.equals(DATE) ||
+                type.equals(TIMESTAMP) ||
+                type.equals(VARBINARY) ||
+                type instanceof DecimalType ||
+                type instanceof VarcharType ||
+                type instanceof CharType;
+    }
+
+    /**
+     * Finds the table scan columns the values of the variable are read from, within the same plan fragment.
+     * Only paths along which removing rows with values not present on the build side of a join
+     * does not change the result of the join are followed.
+     */
+    public static List<ScanTarget> findScanTargets(PlanNode node, VariableReferenceExpression variable)
+    {
+        ImmutableList.Builder<ScanTarget> targets = ImmutableList.builder();
+        node.accept(new Visitor(targets, Optional.empty()), variable);
+        return targets.build();
+    }
+
+    /**
+     * Same as {@link #findScanTargets(PlanNode, VariableReferenceExpression)}, but also follows remote exchanges
+     * and, in a fragmented plan, the remote sources into the given fragments.
+     */
+    public static List<ScanTarget> findScanTargetsAcrossFragments(PlanNode node, VariableReferenceExpression variable, Map<PlanFragmentId, PlanFragment> fragments)
+    {
+        ImmutableList.Builder<ScanTarget> targets = ImmutableList.builder();
+        node.accept(new Visitor(targets, Optional.of(fragments)), variable);
+        return targets.build();
+    }
+
+    private static class Visitor
+            extends InternalPlanVisitor<Void, VariableReferenceExpression>
+    {
+        private final ImmutableList.Builder<ScanTarget> targets;
+        // present if remote exchanges are followed
+        private final Optional<Map<PlanFragmentId, PlanFragment>> fragments;
+
+        private Visitor(ImmutableList.Builder<ScanTarget> targets, Optional<Map<PlanFragmentId, PlanFragment>> fragments)
+        {
+            this.targets = requireNonNull(targets, "targets is null");
+            this.fragments = requireNonNull(fragments, "fragments is null");
+        }
+
+        @Override
+        public Void visitPlan(PlanNode node, VariableReferenceExpression variable)
+        {
+            return null;
+        }
+
+        @Override
+        public Void visitTableScan(TableScanNode node, VariableReferenceExpression variable)
+        {
+            if (node.getAssignments().containsKey(variable)) {
+                targets.add(new ScanTarget(node.getId(), variable));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitFilter(FilterNode node, VariableReferenceExpression variable)
+        {
+            return node.getSource().accept(this, variable);
+        }
+
+        @Override
+        public Void visitProject(ProjectNode node, VariableReferenceExpression variable)
+        {
+            RowExpression expression = node.getAssignments().get(variable);
+            if (expression instanceof VariableReferenceExpression) {
+                node.getSource().accept(this, (VariableReferenceExpression) expression);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitExchange(ExchangeNode node, VariableReferenceExpression variable)
+        {
+            if (node.getScope().isRemote() && !fragments.isPresent()) {
+                return null;
+            }
+            int index = node.getOutputVariables().indexOf(variable);
+            for (int i = 0; i < node.getSources().size(); i++) {
+                node.getSources().get(i).accept(this, node.getInputs().get(i).get(index));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitRemoteSource(RemoteSourceNode node, VariableReferenceExpression variable)
+        {
+            if (!fragments.isPresent()) {
+                return null;
+            }
+            int index = node.getOutputVariables().indexOf(variable);
+            for (PlanFragmentId fragmentId : node.getSourceFragmentIds()) {
+                PlanFragment fragment = fragments.get().get(fragmentId);
+                if (fragment != null) {
+                    fragment.getRoot().accept(this, fragment.getPartitioningScheme().getOutputLayout().get(index));
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitUnion(UnionNode node, VariableReferenceExpression variable)
+        {
+            for (int i = 0; i < node.getSources().size(); i++) {
+                node.getSources().get(i).accept(this, node.sourceVariableMap(i).get(variable));
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitAggregation(AggregationNode node, VariableReferenceExpression variable)
+        {
+            // removing all the rows of a group removes the group, unless there is a global aggregation
+            if (node.getGroupingKeys().contains(variable) && node.getGlobalGroupingSets().isEmpty()) {
+                node.getSource().accept(this, variable);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitJoin(JoinNode node, VariableReferenceExpression variable)
+        {
+            if (node.getLeft().getOutputVariables().contains(variable) && (node.getType() == INNER || node.getType() == LEFT)) {
+                node.getLeft().accept(this, variable);
+            }
+            else if (node.getRight().getOutputVariables().contains(variable) && (node.getType() == INNER || node.getType() == RIGHT)) {
+                node.getRight().accept(this, variable);
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitSemiJoin(SemiJoinNode node, VariableReferenceExpression variable)
+        {
+            if (node.getSource().getOutputVariables().contains(variable)) {
+                node.getSource().accept(this, variable);
+            }
+            return null;
+        }
+    }
+
+    public static class ScanTarget
+    {
+        private final PlanNodeId scanId;
+        private final VariableReferenceExpression variable;
+
+        public ScanTarget(PlanNodeId scanId, VariableReferenceExpression variable)
+        {
+            this.scanId = requireNonNull(scanId, "scanId is null");
+            this.variable = requireNonNull(variable, "variable is null");
+        }
+
+        public PlanNodeId getScanId()
+        {
+            return scanId;
+        }
+
+        public VariableReferenceExpression getVariable()
+        {
+            return variable;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            ScanTarget that = (ScanTarget) o;
+            return scanId.equals(that.scanId) && variable.equals(that.variable);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(scanId, variable);
+        }
+
+        @Override
+        public String toString()
+        {
+            return toStringHelper(this)
+                    .add("scanId", scanId)
+                    .add("variable", variable)
+                    .toString();
+        }
+    }
+}
@@ -27,7 +27,7 @@ import com.facebook.presto.sql.gen.OrderingCompiler;
 
 import java.util.List;
 
-import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
+import static com.facebook.presto.SystemSessionProperties.getExchangeCompressionCodec;
 import static java.util.Objects.requireNonNull;
 
 public class HttpRemoteSourceFactory
@@ -51,7 +51,7 @@ public class HttpRemoteSourceFactory
                 operatorId,
                 planNodeId,
                 taskExchangeClientManager,
-                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session)));
+                new PagesSerdeFactory(blockEncodingSerde, getExchangeCompressionCodec(session)));
     }
 
     @Override
@@ -68,7 +68,7 @@ public class HttpRemoteSourceFactory
                 operatorId,
                 planNodeId,
                 taskExchangeClientManager,
-                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session)),
+                new PagesSerdeFactory(blockEncodingSerde, getExchangeCompressionCodec(session)),
                 orderingCompiler,
                 types,
                 outputChannels,
@@ -23,6 +23,8 @@ import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.function.OperatorType;
 import com.facebook.presto.common.function.QualifiedFunctionName;
 import com.facebook.presto.common.function.SqlFunctionProperties;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeSignature;
 import com.facebook.presto.execution.ExplainAnalyzeContext;
@@ -46,6 +48,7 @@ import com.facebook.presto.operator.DeleteOperator.DeleteOperatorFactory;
 import com.facebook.presto.operator.DevNullOperator.DevNullOperatorFactory;
 import com.facebook.presto.operator.DriverFactory;
 import com.facebook.presto.operator.EnforceSingleRowOperator;
+import com.facebook.presto.operator.DynamicFilter;
 import com.facebook.presto.operator.ExplainAnalyzeOperator.ExplainAnalyzeOperatorFactory;
 import com.facebook.presto.operator.FilterAndProjectOperator;
 import com.facebook.presto.operator.GroupIdOperator;
@@ -56,11 +59,15 @@ import com.facebook.presto.operator.JoinBridgeManager;
 import com.facebook.presto.operator.JoinOperatorFactory;
 import com.facebook.presto.operator.JoinOperatorFactory.OuterOperatorFactoryResult;
 import com.facebook.presto.operator.LimitOperator.LimitOperatorFactory;
+import com.facebook.presto.operator.LocalDynamicFilter;
 import com.facebook.presto.operator.LocalPlannerAware;
 import com.facebook.presto.operator.LookupJoinOperators;
 import com.facebook.presto.operator.LookupOuterOperator.LookupOuterOperatorFactory;
 import com.facebook.presto.operator.LookupSourceFactory;
 import com.facebook.presto.operator.MarkDistinctOperator.MarkDistinctOperatorFactory;
+import com.facebook.presto.operator.MergeJoinOperator.MergeJoinOperatorFactory;
+import com.facebook.presto.operator.MergeJoinSinkOperator.MergeJoinSinkOperatorFactory;
+import com.facebook.presto.operator.MergeJoinSource;
 import com.facebook.presto.operator.MetadataDeleteOperator.MetadataDeleteOperatorFactory;
 import com.facebook.presto.operator.NestedLoopJoinBridge;
 import com.facebook.presto.operator.NestedLoopJoinPagesSupplier;
@@ -90,6 +97,7 @@ import com.facebook.presto.operator.TableScanOperator.TableScanOperatorFactory;
 import com.facebook.presto.operator.TableWriterMergeOperator.TableWriterMergeOperatorFactory;
 import com.facebook.presto.operator.TaskContext;
 import com.facebook.presto.operator.TaskOutputOperator.TaskOutputFactory;
+import com.facebook.presto.operator.TopNDynamicFilter;
 import com.facebook.presto.operator.TopNOperator.TopNOperatorFactory;
 import com.facebook.presto.operator.TopNRowNumberOperator;
 import com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
@@ -155,6 +163,7 @@ import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.facebook.presto.sql.gen.OrderingCompiler;
 import com.facebook.presto.sql.gen.PageFunctionCompiler;
+import com.facebook.presto.sql.planner.DynamicFilters.ScanTarget;
 import com.facebook.presto.sql.planner.optimizations.IndexJoinOptimizer;
 import com.facebook.presto.sql.planner.plan.AssignUniqueId;
 import com.facebook.presto.sql.planner.plan.DeleteNode;
@@ -167,6 +176,7 @@ import com.facebook.presto.sql.planner.plan.IndexJoinNode;
 import com.facebook.presto.sql.planner.plan.IndexSourceNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.MetadataDeleteNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
@@ -188,6 +198,7 @@ import com.facebook.presto.sql.relational.VariableToChannelTranslator;
 import com.facebook.presto.sql.tree.SymbolReference;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.VerifyException;
+import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ContiguousSet;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableBiMap;
@@ -197,6 +208,7 @@ import com.google.common.collect.ImmutableMap.Builder;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.SetMultimap;
@@ -222,17 +234,25 @@ import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
+import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.presto.SystemSessionProperties.getAggregationOperatorUnspillMemoryLimit;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
+import static com.facebook.presto.SystemSessionProperties.getExchangeCompressionCodec;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageRowCount;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageSize;
 import static com.facebook.presto.SystemSessionProperties.getIndexLoaderTimeout;
 import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.getTaskPartitionedWriterCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskWriterCount;
-import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
+import static com.facebook.presto.SystemSessionProperties.isDistinctSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOptimizeCommonSubExpressions;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningEnabled;
+import static com.facebook.presto.SystemSessionProperties.isOrderBySpillEnabled;
+import static com.facebook.presto.SystemSessionProperties.isSemiJoinSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isSpillEnabled;
+import static com.facebook.presto.SystemSessionProperties.isTopNDynamicFilteringEnabled;
+import static com.facebook.presto.SystemSessionProperties.isTopNRowNumberSpillEnabled;
+import static com.facebook.presto.SystemSessionProperties.isWindowSpillEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.TypeSignature.parseTypeSignature;
 import static com.facebook.presto.common.type.TypeUtils.writeNativeValue;
@@ -263,6 +283,8 @@ import static com.facebook.presto.spi.plan.AggregationNode.Step.INTERMEDIATE;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
 import static com.facebook.presto.spi.relation.ExpressionOptimizer.Level.OPTIMIZED;
 import static com.facebook.presto.sql.gen.LambdaBytecodeGenerator.compileLambdaProvider;
+import static com.facebook.presto.sql.planner.DynamicFilters.findScanTargets;
+import static com.facebook.presto.sql.planner.DynamicFilters.isSupportedDynamicFilterType;
 import static com.facebook.presto.sql.planner.RowExpressionInterpreter.rowExpressionInterpreter;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.COORDINATOR_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_ARBITRARY_DISTRIBUTION;
@@ -272,6 +294,7 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DI
 import static com.facebook.presto.sql.planner.plan.AssignmentUtils.identityAssignments;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
 import static com.facebook.presto.sql.relational.Expressions.constant;
 import static com.facebook.presto.util.Reflection.constructorMethodHandle;
@@ -290,8 +313,10 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.DiscreteDomain.integers;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.collect.Maps.immutableEntry;
 import static com.google.common.collect.Range.closedOpen;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.lang.String.format;
@@ -536,7 +561,7 @@ public class LocalExecutionPlanner
                                 outputTypes,
                                 pagePreprocessor,
                                 outputPartitioning,
-                                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session))))
+                                new PagesSerdeFactory(blockEncodingSerde, getExchangeCompressionCodec(session))))
                         .build(),
                 context.getDriverInstanceCount(),
                 physicalOperation.getPipelineExecutionStrategy());
@@ -593,6 +618,10 @@ public class LocalExecutionPlanner
         // this is shared with all subContexts
         private final AtomicInteger nextPipelineId;
         private final TableWriteInfo tableWriteInfo;
+        // table scan -> dynamic filters of the joins it is on the probe side of, shared with all subContexts
+        private final ListMultimap<PlanNodeId, DynamicFilterTarget> dynamicFilterTargets;
+        // table scan -> dynamic filters of the TopNs above it, shared with all subContexts
+        private final ListMultimap<PlanNodeId, TopNDynamicFilterTarget> topNDynamicFilterTargets;
 
         private int nextOperatorId;
         private boolean inputDriver = true;
@@ -600,7 +629,7 @@ public class LocalExecutionPlanner
 
         public LocalExecutionPlanContext(TaskContext taskContext, TableWriteInfo tableWriteInfo)
         {
-            this(taskContext, new ArrayList<>(), Optional.empty(), new AtomicInteger(0), tableWriteInfo);
+            this(taskContext, new ArrayList<>(), Optional.empty(), new AtomicInteger(0), tableWriteInfo, ArrayListMultimap.create(), ArrayListMultimap.create());
         }
 
         private LocalExecutionPlanContext(
@@ -608,13 +637,17 @@ public class LocalExecutionPlanner
                 List<DriverFactory> driverFactories,
                 Optional<IndexSourceContext> indexSourceContext,
                 AtomicInteger nextPipelineId,
-                TableWriteInfo tableWriteInfo)
+                TableWriteInfo tableWriteInfo,
+                ListMultimap<PlanNodeId, DynamicFilterTarget> dynamicFilterTargets,
+                ListMultimap<PlanNodeId, TopNDynamicFilterTarget> topNDynamicFilterTargets)
         {
             this.taskContext = taskContext;
             this.driverFactories = driverFactories;
             this.indexSourceContext = indexSourceContext;
             this.nextPipelineId = nextPipelineId;
             this.tableWriteInfo = tableWriteInfo;
+            this.dynamicFilterTargets = dynamicFilterTargets;
+            this.topNDynamicFilterTargets = topNDynamicFilterTargets;
         }
 
         public void addDriverFactory(boolean inputDriver, boolean outputDriver, List<OperatorFactory> operatorFactories, OptionalInt driverInstances, PipelineExecutionStrategy pipelineExecutionStrategy)
@@ -641,6 +674,11 @@ public class LocalExecutionPlanner
             return taskContext.getSession();
         }
 
+        public TaskContext getTaskContext()
+        {
+            return taskContext;
+        }
+
         public StageExecutionId getStageExecutionId()
         {
             return taskContext.getTaskId().getStageExecutionId();
@@ -676,15 +714,35 @@ public class LocalExecutionPlanner
             return tableWriteInfo;
         }
 
+        public void addDynamicFilterTarget(PlanNodeId scanId, DynamicFilterTarget target)
+        {
+            dynamicFilterTargets.put(scanId, target);
+        }
+
+        public List<DynamicFilterTarget> getDynamicFilterTargets(PlanNodeId scanId)
+        {
+            return dynamicFilterTargets.get(scanId);
+        }
+
+        public void addTopNDynamicFilterTarget(PlanNodeId scanId, TopNDynamicFilterTarget target)
+        {
+            topNDynamicFilterTargets.put(scanId, target);
+        }
+
+        public List<TopNDynamicFilterTarget> getTopNDynamicFilterTargets(PlanNodeId scanId)
+        {
+            return topNDynamicFilterTargets.get(scanId);
+        }
+
         public LocalExecutionPlanContext createSubContext()
         {
             checkState(!indexSourceContext.isPresent(), "index build plan can not have sub-contexts");
-            return new LocalExecutionPlanContext(taskContext, driverFactories, indexSourceContext, nextPipelineId, tableWriteInfo);
+            return new LocalExecutionPlanContext(taskContext, driverFactories, indexSourceContext, nextPipelineId, tableWriteInfo, dynamicFilterTargets, topNDynamicFilterTargets);
         }
 
         public LocalExecutionPlanContext createIndexSourceSubContext(IndexSourceContext indexSourceContext)
         {
-            return new LocalExecutionPlanContext(taskContext, driverFactories, Optional.of(indexSourceContext), nextPipelineId, tableWriteInfo);
+            return new LocalExecutionPlanContext(taskContext, driverFactories, Optional.of(indexSourceContext), nextPipelineId, tableWriteInfo, dynamicFilterTargets, topNDynamicFilterTargets);
         }
 
         public OptionalInt getDriverInstanceCount()
@@ -702,6 +760,57 @@ public class LocalExecutionPlanner
         }
     }
 
+    private static class DynamicFilterTarget
+    {
+        private final LocalDynamicFilter filter;
+        private final String filterId;
+        private final VariableReferenceExpression variable;
+
+        public DynamicFilterTarget(LocalDynamicFilter filter, String filterId, VariableReferenceExpression variable)
+        {
+            this.filter = requireNonNull(filter, "filter is null");
+            this.filterId = requireNonNull(filterId, "filterId is null");
+            this.variable = requireNonNull(variable, "variable is null");
+        }
+
+        public LocalDynamicFilter getFilter()
+        {
+            return filter;
+        }
+
+        public String getFilterId()
+        {
+            return filterId;
+        }
+
+        public VariableReferenceExpression getVariable()
+        {
+            return variable;
+        }
+    }
+
+    private static class TopNDynamicFilterTarget
+    {
+        private final TopNDynamicFilter filter;
+        private final VariableReferenceExpression variable;
+
+        public TopNDynamicFilterTarget(TopNDynamicFilter filter, VariableReferenceExpression variable)
+        {
+            this.filter = requireNonNull(filter, "filter is null");
+            this.variable = requireNonNull(variable, "variable is null");
+        }
+
+        public TopNDynamicFilter getFilter()
+        {
+            return filter;
+        }
+
+        public VariableReferenceExpression getVariable()
+        {
+            return variable;
+        }
+    }
+
     private static class IndexSourceContext
     {
         private final SetMultimap<VariableReferenceExpression, Integer> indexLookupToProbeInput;
@@ -920,11 +1029,14 @@ public class LocalExecutionPlanner
                     partitionTypes,
                     sortChannels,
                     sortOrder,
+                    node.getRankingFunction(),
                     node.getMaxRowCountPerPartition(),
                     node.isPartial(),
                     hashChannel,
                     1000,
-                    joinCompiler);
+                    joinCompiler,
+                    isTopNRowNumberSpillEnabled(session),
+                    partitioningSpillerFactory);
 
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
@@ -1010,7 +1122,10 @@ public class LocalExecutionPlanner
                     sortOrder,
                     node.getPreSortedOrderPrefix(),
                     10_000,
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    isWindowSpillEnabled(session),
+                    Optional.of(spillerFactory),
+                    orderingCompiler);
 
             return new PhysicalOperation(operatorFactory, outputMappings.build(), context, source);
         }
@@ -1018,6 +1133,9 @@ public class LocalExecutionPlanner
         @Override
         public PhysicalOperation visitTopN(TopNNode node, LocalExecutionPlanContext context)
         {
+            // The table scans below need to know about the dynamic filter before they are planned
+            Optional<TopNDynamicFilter> dynamicFilter = createTopNDynamicFilter(node, context);
+
             PhysicalOperation source = node.getSource().accept(this, context);
 
             List<VariableReferenceExpression> orderByVariables = node.getOrderingScheme().getOrderByVariables();
@@ -1035,11 +1153,31 @@ public class LocalExecutionPlanner
                     source.getTypes(),
                     (int) node.getCount(),
                     sortChannels,
-                    sortOrders);
+                    sortOrders,
+                    dynamicFilter);
 
             return new PhysicalOperation(operator, source.getLayout(), context, source);
         }
 
+        private Optional<TopNDynamicFilter> createTopNDynamicFilter(TopNNode node, LocalExecutionPlanContext context)
+        {
+            VariableReferenceExpression variable = node.getOrderingScheme().getOrderByVariables().get(0);
+            if (!isTopNDynamicFilteringEnabled(session) || node.getCount() == 0 || !isSupportedDynamicFilterType(variable.getType())) {
+                return Optional.empty();
+            }
+
+            // any N rows of the TopN are ahead of the rows ordered after them, so the range holds for the rows of every driver and lifespan
+            List<ScanTarget> scanTargets = findScanTargets(node.getSource(), variable);
+            if (scanTargets.isEmpty()) {
+                return Optional.empty();
+            }
+            TopNDynamicFilter dynamicFilter = new TopNDynamicFilter(node.getId(), variable.getType(), node.getOrderingScheme().getOrdering(variable));
+            for (ScanTarget scanTarget : scanTargets) {
+                context.addTopNDynamicFilterTarget(scanTarget.getScanId(), new TopNDynamicFilterTarget(dynamicFilter, scanTarget.getVariable()));
+            }
+            return Optional.of(dynamicFilter);
+        }
+
         @Override
         public PhysicalOperation visitSort(SortNode node, LocalExecutionPlanContext context)
         {
@@ -1067,7 +1205,10 @@ public class LocalExecutionPlanner
                     10_000,
                     orderByChannels,
                     sortOrder.build(),
-                    pagesIndexFactory);
+                    pagesIndexFactory,
+                    isOrderBySpillEnabled(session),
+                    Optional.of(spillerFactory),
+                    orderingCompiler);
 
             return new PhysicalOperation(operator, source.getLayout(), context, source);
         }
@@ -1096,7 +1237,9 @@ public class LocalExecutionPlanner
                     distinctChannels,
                     node.getLimit(),
                     hashChannel,
-                    joinCompiler);
+                    joinCompiler,
+                    isDistinctSpillEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
 
@@ -1172,7 +1315,15 @@ public class LocalExecutionPlanner
 
             List<Integer> channels = getChannelsForVariables(node.getDistinctVariables(), source.getLayout());
             Optional<Integer> hashChannel = node.getHashVariable().map(variableChannelGetter(source));
-            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(context.getNextOperatorId(), node.getId(), source.getTypes(), channels, hashChannel, joinCompiler);
+            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    source.getTypes(),
+                    channels,
+                    hashChannel,
+                    joinCompiler,
+                    isDistinctSpillEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, makeLayout(node), context, source);
         }
 
@@ -1295,7 +1446,8 @@ public class LocalExecutionPlanner
                             columns,
                             projections.stream().map(RowExpression::getType).collect(toImmutableList()),
                             getFilterAndProjectMinOutputPageSize(session),
-                            getFilterAndProjectMinOutputPageRowCount(session));
+                            getFilterAndProjectMinOutputPageRowCount(session),
+                            createDynamicFilter((TableScanNode) sourceNode, columns, context));
 
                     return new PhysicalOperation(operatorFactory, outputMappings, context, stageExecutionDescriptor.isScanGroupedExecution(sourceNode.getId()) ? GROUPED_EXECUTION : UNGROUPED_EXECUTION);
                 }
@@ -1352,10 +1504,32 @@ public class LocalExecutionPlanner
             else {
                 tableHandle = node.getTable();
             }
-            OperatorFactory operatorFactory = new TableScanOperatorFactory(context.getNextOperatorId(), node.getId(), pageSourceProvider, tableHandle, columns);
+            OperatorFactory operatorFactory = new TableScanOperatorFactory(context.getNextOperatorId(), node.getId(), pageSourceProvider, tableHandle, columns, createDynamicFilter(node, columns, context));
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, stageExecutionDescriptor.isScanGroupedExecution(node.getId()) ? GROUPED_EXECUTION : UNGROUPED_EXECUTION);
         }
 
+        private Optional<DynamicFilter> createDynamicFilter(TableScanNode node, List<ColumnHandle> columns, LocalExecutionPlanContext context)
+        {
+            List<DynamicFilterTarget> targets = context.getDynamicFilterTargets(node.getId());
+            List<TopNDynamicFilterTarget> topNTargets = context.getTopNDynamicFilterTargets(node.getId());
+            if (targets.isEmpty() && topNTargets.isEmpty()) {
+                return Optional.empty();
+            }
+
+            Map<LocalDynamicFilter, ImmutableMap.Builder<String, Integer>> channelsByFilter = new LinkedHashMap<>();
+            for (DynamicFilterTarget target : targets) {
+                channelsByFilter.computeIfAbsent(target.getFilter(), filter -> ImmutableMap.builder())
+                        .put(target.getFilterId(), node.getOutputVariables().indexOf(target.getVariable()));
+            }
+            List<DynamicFilter.Source> sources = channelsByFilter.entrySet().stream()
+                    .map(entry -> new DynamicFilter.Source(entry.getKey(), entry.getValue().build()))
+                    .collect(toImmutableList());
+            List<DynamicFilter.TopNSource> topNSources = topNTargets.stream()
+                    .map(target -> new DynamicFilter.TopNSource(target.getFilter(), node.getOutputVariables().indexOf(target.getVariable())))
+                    .collect(toImmutableList());
+            return Optional.of(new DynamicFilter(sources, topNSources, columns));
+        }
+
         @Override
         public PhysicalOperation visitValues(ValuesNode node, LocalExecutionPlanContext context)
         {
@@ -1666,6 +1840,71 @@ public class LocalExecutionPlanner
             }
         }
 
+        @Override
+        public PhysicalOperation visitMergeJoin(MergeJoinNode node, LocalExecutionPlanContext context)
+        {
+            PhysicalOperation probeSource = node.getLeft().accept(this, context);
+
+            LocalExecutionPlanContext buildContext = context.createSubContext();
+            PhysicalOperation buildSource = node.getRight().accept(this, buildContext);
+
+            checkState(
+                    probeSource.getPipelineExecutionStrategy() == buildSource.getPipelineExecutionStrategy(),
+                    "Probe and build sources of a merge join are expected to use the same execution strategy");
+            checkArgument(context.getDriverInstanceCount().orElse(1) == 1, "Expected the probe side of a merge join to not be parallel");
+            checkArgument(buildContext.getDriverInstanceCount().orElse(1) == 1, "Expected the build side of a merge join to not be parallel");
+
+            JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager = new JoinBridgeManager<>(
+                    false,
+                    probeSource.getPipelineExecutionStrategy(),
+                    buildSource.getPipelineExecutionStrategy(),
+                    lifespan -> new MergeJoinSource(maxLocalExchangeBufferSize.toBytes()),
+                    buildSource.getTypes());
+            MergeJoinSinkOperatorFactory mergeJoinSinkOperatorFactory = new MergeJoinSinkOperatorFactory(
+                    buildContext.getNextOperatorId(),
+                    node.getId(),
+                    mergeJoinSourceManager);
+
+            context.addDriverFactory(
+                    buildContext.isInputDriver(),
+                    false,
+                    ImmutableList.<OperatorFactory>builder()
+                            .addAll(buildSource.getOperatorFactories())
+                            .add(mergeJoinSinkOperatorFactory)
+                            .build(),
+                    buildContext.getDriverInstanceCount(),
+                    buildSource.getPipelineExecutionStrategy());
+
+            List<VariableReferenceExpression> probeOutputVariables = node.getOutputVariables().stream()
+                    .filter(node.getLeft().getOutputVariables()::contains)
+                    .collect(toImmutableList());
+            List<VariableReferenceExpression> buildOutputVariables = node.getOutputVariables().stream()
+                    .filter(node.getRight().getOutputVariables()::contains)
+                    .collect(toImmutableList());
+
+            ImmutableMap.Builder<VariableReferenceExpression, Integer> outputMappings = ImmutableMap.builder();
+            int channel = 0;
+            for (VariableReferenceExpression variable : probeOutputVariables) {
+                outputMappings.put(variable, channel++);
+            }
+            for (VariableReferenceExpression variable : buildOutputVariables) {
+                outputMappings.put(variable, channel++);
+            }
+
+            OperatorFactory operatorFactory = new MergeJoinOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    mergeJoinSourceManager,
+                    node.getType() == LEFT,
+                    probeSource.getTypes(),
+                    getChannelsForVariables(Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause::getLeft), probeSource.getLayout()),
+                    getChannelsForVariables(probeOutputVariables, probeSource.getLayout()),
+                    buildSource.getTypes(),
+                    getChannelsForVariables(Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause::getRight), buildSource.getLayout()),
+                    getChannelsForVariables(buildOutputVariables, buildSource.getLayout()));
+            return new PhysicalOperation(operatorFactory, outputMappings.build(), context, probeSource);
+        }
+
         @Override
         public PhysicalOperation visitSpatialJoin(SpatialJoinNode node, LocalExecutionPlanContext context)
         {
@@ -2024,12 +2263,15 @@ public class LocalExecutionPlanner
                 Optional<VariableReferenceExpression> buildHashVariable,
                 LocalExecutionPlanContext context)
         {
+            // The probe side scans need to know about the dynamic filters before they are planned
+            Optional<LocalDynamicFilter> dynamicFilter = createLocalDynamicFilter(node, context);
+
             // Plan probe
             PhysicalOperation probeSource = probeNode.accept(this, context);
 
             // Plan build
             JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactory =
-                    createLookupSourceFactory(node, buildNode, buildVariables, buildHashVariable, probeSource, context);
+                    createLookupSourceFactory(node, buildNode, buildVariables, buildHashVariable, probeSource, dynamicFilter, context);
 
             OperatorFactory operator = createLookupJoin(node, probeSource, probeVariables, probeHashVariable, lookupSourceFactory, context);
 
@@ -2042,12 +2284,61 @@ public class LocalExecutionPlanner
             return new PhysicalOperation(operator, outputMappings.build(), context, probeSource);
         }
 
+        private Optional<LocalDynamicFilter> createLocalDynamicFilter(JoinNode node, LocalExecutionPlanContext context)
+        {
+            if (node.getDynamicFilters().isEmpty()) {
+                return Optional.empty();
+            }
+
+            ImmutableList.Builder<Map.Entry<PlanNodeId, DynamicFilterTarget>> targets = ImmutableList.builder();
+            LocalDynamicFilter dynamicFilter = new LocalDynamicFilter(node.getId(), getDynamicFilteringMaxPerDriverRowCount(session));
+            for (Map.Entry<String, VariableReferenceExpression> entry : node.getDynamicFilters().entrySet()) {
+                for (JoinNode.EquiJoinClause clause : node.getCriteria()) {
+                    if (!clause.getRight().equals(entry.getValue())) {
+                        continue;
+                    }
+                    for (ScanTarget scanTarget : findScanTargets(node.getLeft(), clause.getLeft())) {
+                        // lookup sources of grouped execution are built once per lifespan
+                        if (!stageExecutionDescriptor.isScanGroupedExecution(scanTarget.getScanId())) {
+                            targets.add(immutableEntry(scanTarget.getScanId(), new DynamicFilterTarget(dynamicFilter, entry.getKey(), scanTarget.getVariable())));
+                        }
+                    }
+                }
+            }
+
+            targets.build().forEach(target -> context.addDynamicFilterTarget(target.getKey(), target.getValue()));
+
+            // The collected domains are also reported to the coordinator, which uses them to prune splits of scans in other stages
+            TaskContext taskContext = context.getTaskContext();
+            addSuccessCallback(dynamicFilter.getResultFuture(), result -> taskContext.addDynamicFilterDomains(toDynamicFilterDomains(node, result)));
+            return Optional.of(dynamicFilter);
+        }
+
+        private Map<String, Domain> toDynamicFilterDomains(JoinNode node, TupleDomain<String> result)
+        {
+            ImmutableMap.Builder<String, Domain> domains = ImmutableMap.builder();
+            Map<String, Domain> resultDomains = result.getDomains().orElse(ImmutableMap.of());
+            for (Map.Entry<String, VariableReferenceExpression> entry : node.getDynamicFilters().entrySet()) {
+                Type type = entry.getValue().getType();
+                Domain domain;
+                if (result.isNone()) {
+                    domain = Domain.none(type);
+                }
+                else {
+                    domain = resultDomains.getOrDefault(entry.getKey(), Domain.all(type));
+                }
+                domains.put(entry.getKey(), domain.simplify());
+            }
+            return domains.build();
+        }
+
         private JoinBridgeManager<PartitionedLookupSourceFactory> createLookupSourceFactory(
                 JoinNode node,
                 PlanNode buildNode,
                 List<VariableReferenceExpression> buildVariables,
                 Optional<VariableReferenceExpression> buildHashVariable,
                 PhysicalOperation probeSource,
+                Optional<LocalDynamicFilter> dynamicFilter,
                 LocalExecutionPlanContext context)
         {
             LocalExecutionPlanContext buildContext = context.createSubContext();
@@ -2101,6 +2392,16 @@ public class LocalExecutionPlanner
             ImmutableList<Type> buildOutputTypes = buildOutputChannels.stream()
                     .map(buildSource.getTypes()::get)
                     .collect(toImmutableList());
+
+            // Without grouped execution every build partition reports to the same dynamic filter
+            if (buildSource.getPipelineExecutionStrategy() == GROUPED_EXECUTION) {
+                // Complete the filter right away so that split scheduling waiting for it is not blocked
+                dynamicFilter.ifPresent(filter -> filter.addPartition(TupleDomain.all(), 1));
+                dynamicFilter = Optional.empty();
+            }
+            Map<String, Integer> dynamicFilterChannels = dynamicFilter.isPresent() ? node.getDynamicFilters().entrySet().stream()
+                    .collect(toImmutableMap(Map.Entry::getKey, entry -> buildSource.getLayout().get(entry.getValue()))) : ImmutableMap.of();
+
             JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = new JoinBridgeManager<>(
                     buildOuter,
                     probeSource.getPipelineExecutionStrategy(),
@@ -2127,8 +2428,10 @@ public class LocalExecutionPlanner
                     searchFunctionFactories,
                     10_000,
                     pagesIndexFactory,
-                    spillEnabled && !buildOuter && partitionCount > 1,
-                    singleStreamSpillerFactory);
+                    spillEnabled && partitionCount > 1,
+                    singleStreamSpillerFactory,
+                    dynamicFilter,
+                    dynamicFilterChannels);
 
             context.addDriverFactory(
                     buildContext.isInputDriver(),
@@ -2239,7 +2542,9 @@ public class LocalExecutionPlanner
                     buildChannel,
                     buildHashChannel,
                     10_000,
-                    joinCompiler);
+                    joinCompiler,
+                    isSemiJoinSpillEnabled(session) && buildSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION,
+                    partitioningSpillerFactory);
             SetSupplier setProvider = setBuilderOperatorFactory.getSetProvider();
             context.addDriverFactory(
                     buildContext.isInputDriver(),
@@ -2257,7 +2562,13 @@ public class LocalExecutionPlanner
                     .put(node.getSemiJoinOutput(), probeSource.getLayout().size())
                     .build();
 
-            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(context.getNextOperatorId(), node.getId(), setProvider, probeSource.getTypes(), probeChannel);
+            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    setProvider,
+                    probeSource.getTypes(),
+                    probeChannel,
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, outputMappings, context, probeSource);
         }
 
@@ -54,6 +54,7 @@ import com.facebook.presto.sql.planner.plan.ExchangeNode;
 import com.facebook.presto.sql.planner.plan.ExplainAnalyzeNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.MetadataDeleteNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.PlanFragmentId;
@@ -86,6 +87,8 @@ import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 
+import static com.facebook.presto.SystemSessionProperties.GROUPED_EXECUTION_FOR_AGGREGATION;
+import static com.facebook.presto.SystemSessionProperties.MERGE_JOIN;
 import static com.facebook.presto.SystemSessionProperties.getExchangeMaterializationStrategy;
 import static com.facebook.presto.SystemSessionProperties.getQueryMaxStageCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskPartitionedWriterCount;
@@ -108,6 +111,7 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DI
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DISTRIBUTION;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.isCompatibleSystemPartitioning;
 import static com.facebook.presto.sql.planner.VariablesExtractor.extractOutputVariables;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_MATERIALIZED;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_STREAMING;
@@ -230,7 +234,15 @@ public class PlanFragmenter
     private SubPlan analyzeGroupedExecution(Session session, SubPlan subPlan, boolean parentContainsTableFinish)
     {
         PlanFragment fragment = subPlan.getFragment();
-        GroupedExecutionProperties properties = fragment.getRoot().accept(new GroupedExecutionTagger(session, metadata, nodePartitioningManager), null);
+        GroupedExecutionTagger groupedExecutionTagger = new GroupedExecutionTagger(session, metadata, nodePartitioningManager);
+        GroupedExecutionProperties properties = fragment.getRoot().accept(groupedExecutionTagger, null);
+        if (groupedExecutionTagger.containsBucketedMergeJoin() && !properties.isSubTreeUseful()) {
+            // every driver of an ungrouped table scan reads its own splits, so the buckets of the inputs of the merge join would not be paired
+            throw new PrestoException(NOT_SUPPORTED, format(
+                    "A merge join of bucketed tables requires the whole stage to use grouped execution, set %s or disable %s",
+                    GROUPED_EXECUTION_FOR_AGGREGATION,
+                    MERGE_JOIN));
+        }
         if (properties.isSubTreeUseful()) {
             boolean preferDynamic = fragment.getRemoteSourceNodes().stream().allMatch(node -> node.getExchangeType() == REPLICATE)
                     && isDynamicScheduleForGroupedExecution(session);
@@ -938,6 +950,7 @@ public class PlanFragmenter
         private final Metadata metadata;
         private final NodePartitioningManager nodePartitioningManager;
         private final boolean groupedExecutionForAggregation;
+        private boolean containsBucketedMergeJoin;
 
         public GroupedExecutionTagger(Session session, Metadata metadata, NodePartitioningManager nodePartitioningManager)
         {
@@ -1024,6 +1037,34 @@ public class PlanFragmenter
             }
         }
 
+        @Override
+        public GroupedExecutionProperties visitMergeJoin(MergeJoinNode node, Void context)
+        {
+            GroupedExecutionProperties left = node.getLeft().accept(this, null);
+            GroupedExecutionProperties right = node.getRight().accept(this, null);
+
+            if (!readsTableScanStreams(node.getLeft()) && !readsTableScanStreams(node.getRight())) {
+                // the inputs are single sorted streams, e.g. of ordered remote sources
+                return GroupedExecutionProperties.notCapable();
+            }
+            if (!left.currentNodeCapable || !right.currentNodeCapable) {
+                throw new PrestoException(NOT_SUPPORTED, "A merge join of bucketed tables requires both inputs to be capable of grouped execution");
+            }
+            checkState(left.totalLifespans == right.totalLifespans, format("Mismatched number of lifespans on left(%s) and right(%s) side of merge join", left.totalLifespans, right.totalLifespans));
+
+            // the inputs are only sorted within a bucket, so the merge join always joins them bucket by bucket
+            containsBucketedMergeJoin = true;
+            return new GroupedExecutionProperties(
+                    true,
+                    true,
+                    ImmutableList.<PlanNodeId>builder()
+                            .addAll(left.capableTableScanNodes)
+                            .addAll(right.capableTableScanNodes)
+                            .build(),
+                    left.totalLifespans,
+                    left.recoveryEligible && right.recoveryEligible);
+        }
+
         @Override
         public GroupedExecutionProperties visitAggregation(AggregationNode node, Void context)
         {
@@ -1119,6 +1160,20 @@ public class PlanFragmenter
             }
         }
 
+        public boolean containsBucketedMergeJoin()
+        {
+            return containsBucketedMergeJoin;
+        }
+
+        private static boolean readsTableScanStreams(PlanNode node)
+        {
+            // a local exchange in between gathers the streams of the table scan into one
+            return searchFrom(node)
+                    .where(TableScanNode.class::isInstance)
+                    .recurseOnlyWhen(source -> !(source instanceof ExchangeNode))
+                    .matches();
+        }
+
         private GroupedExecutionProperties processChildren(PlanNode node)
         {
             // Each fragment has a partitioning handle, which is derived from leaf nodes in the fragment.
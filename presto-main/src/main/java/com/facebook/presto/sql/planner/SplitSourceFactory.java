@@ -15,6 +15,7 @@ package com.facebook.presto.sql.planner;
 
 import com.facebook.airlift.log.Logger;
 import com.facebook.presto.Session;
+import com.facebook.presto.execution.scheduler.QueryDynamicFilters;
 import com.facebook.presto.execution.scheduler.TableWriteInfo;
 import com.facebook.presto.execution.scheduler.TableWriteInfo.DeleteScanInfo;
 import com.facebook.presto.operator.StageExecutionDescriptor;
@@ -44,6 +45,7 @@ import com.facebook.presto.sql.planner.plan.GroupIdNode;
 import com.facebook.presto.sql.planner.plan.IndexJoinNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.MetadataDeleteNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
@@ -78,10 +80,17 @@ public class SplitSourceFactory
     private static final Logger log = Logger.get(SplitSourceFactory.class);
 
     private final SplitSourceProvider splitSourceProvider;
+    private final QueryDynamicFilters dynamicFilters;
 
-    public SplitSourceFactory(SplitSourceProvider splitSourceProvider)
+    public SplitSourceFactory(SplitSourceProvider splitSourceProvider, QueryDynamicFilters dynamicFilters)
     {
         this.splitSourceProvider = requireNonNull(splitSourceProvider, "splitSourceProvider is null");
+        this.dynamicFilters = requireNonNull(dynamicFilters, "dynamicFilters is null");
+    }
+
+    public QueryDynamicFilters getDynamicFilters()
+    {
+        return dynamicFilters;
     }
 
     public Map<PlanNodeId, SplitSource> createSplitSources(PlanFragment fragment, Session session, TableWriteInfo tableWriteInfo)
@@ -152,7 +161,8 @@ public class SplitSourceFactory
             Supplier<SplitSource> splitSourceSupplier = () -> splitSourceProvider.getSplits(
                     session,
                     table,
-                    getSplitSchedulingStrategy(stageExecutionDescriptor, node.getId()));
+                    getSplitSchedulingStrategy(stageExecutionDescriptor, node.getId()),
+                    dynamicFilters.getPredicateSupplier(node.getId()));
 
             SplitSource splitSource = new LazySplitSource(splitSourceSupplier);
 
@@ -194,6 +204,17 @@ public class SplitSourceFactory
                     .build();
         }
 
+        @Override
+        public Map<PlanNodeId, SplitSource> visitMergeJoin(MergeJoinNode node, Context context)
+        {
+            Map<PlanNodeId, SplitSource> leftSplits = node.getLeft().accept(this, context);
+            Map<PlanNodeId, SplitSource> rightSplits = node.getRight().accept(this, context);
+            return ImmutableMap.<PlanNodeId, SplitSource>builder()
+                    .putAll(leftSplits)
+                    .putAll(rightSplits)
+                    .build();
+        }
+
         @Override
         public Map<PlanNodeId, SplitSource> visitIndexJoin(IndexJoinNode node, Context context)
         {
@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative.rule;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.matching.Captures;
+import com.facebook.presto.matching.Pattern;
+import com.facebook.presto.metadata.FunctionManager;
+import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.plan.Assignments;
+import com.facebook.presto.spi.plan.FilterNode;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.iterative.Rule;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause;
+import com.facebook.presto.sql.planner.plan.UnnestNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static com.facebook.presto.SystemSessionProperties.SKEWED_JOIN_KEYS;
+import static com.facebook.presto.SystemSessionProperties.getHashPartitionCount;
+import static com.facebook.presto.SystemSessionProperties.getSkewedJoinKeys;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_SESSION_PROPERTY;
+import static com.facebook.presto.spi.relation.SpecialFormExpression.Form.IF;
+import static com.facebook.presto.spi.relation.SpecialFormExpression.Form.IN;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.sql.planner.plan.Patterns.join;
+import static com.facebook.presto.sql.relational.Expressions.call;
+import static com.facebook.presto.sql.relational.Expressions.constant;
+import static com.facebook.presto.sql.relational.Expressions.specialForm;
+import static io.airlift.slice.Slices.utf8Slice;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spreads the rows of hot join keys, listed in the {@code skewed_join_keys} session property,
+ * over all partitions of a partitioned join. Probe rows of a hot key get a random salt in
+ * {@code [0, hash_partition_count)} while the build rows of the key are replicated once per salt,
+ * and the salt becomes part of the join criteria. All other rows get the salt 0, so their
+ * placement does not change otherwise.
+ * <p>
+ * From:
+ * <pre>
+ * - Join (partitioned, l.key = r.key)
+ *   - probe
+ *   - build
+ * </pre>
+ * To:
+ * <pre>
+ * - Join (partitioned, l.key = r.key AND salt = r_salt)
+ *   - Project (salt := IF(l.key IN (hot keys), random(partitions), 0))
+ *     - probe
+ *   - Unnest (r_salts -> r_salt)
+ *     - Project (r_salts := sequence(0, IF(r.key IN (hot keys), partitions - 1, 0)))
+ *       - build
+ * </pre>
+ * Only inner and left joins are rewritten, as replicated build rows would be emitted
+ * once per salt when they do not find a match.
+ */
+public class DistributeSkewedJoinKeys
+        implements Rule<JoinNode>
+{
+    private static final Pattern<JoinNode> PATTERN = join().matching(joinNode ->
+            (joinNode.getType() == INNER || joinNode.getType() == LEFT) &&
+                    joinNode.getDistributionType().equals(Optional.of(PARTITIONED)) &&
+                    joinNode.getCriteria().size() == 1);
+
+    private final Metadata metadata;
+
+    public DistributeSkewedJoinKeys(Metadata metadata)
+    {
+        this.metadata = requireNonNull(metadata, "metadata is null");
+    }
+
+    @Override
+    public Pattern<JoinNode> getPattern()
+    {
+        return PATTERN;
+    }
+
+    @Override
+    public boolean isEnabled(Session session)
+    {
+        return !getSkewedJoinKeys(session).isEmpty() && getHashPartitionCount(session) > 1;
+    }
+
+    @Override
+    public Result apply(JoinNode joinNode, Captures captures, Context context)
+    {
+        EquiJoinClause clause = joinNode.getCriteria().get(0);
+        Type keyType = clause.getLeft().getType();
+        if (!keyType.equals(clause.getRight().getType()) || !isSupportedType(keyType)) {
+            return Result.empty();
+        }
+
+        ListMultimap<String, String> skewedJoinKeys = getSkewedJoinKeys(context.getSession());
+        List<String> hotValues = getHotValues(skewedJoinKeys, joinNode.getLeft(), clause.getLeft(), context);
+        if (hotValues.isEmpty()) {
+            hotValues = getHotValues(skewedJoinKeys, joinNode.getRight(), clause.getRight(), context);
+        }
+        if (hotValues.isEmpty()) {
+            return Result.empty();
+        }
+        ImmutableList.Builder<RowExpression> hotKeys = ImmutableList.builder();
+        for (String value : hotValues) {
+            hotKeys.add(toConstant(value, keyType));
+        }
+
+        FunctionManager functionManager = metadata.getFunctionManager();
+        long partitionCount = getHashPartitionCount(context.getSession());
+
+        VariableReferenceExpression probeSalt = context.getVariableAllocator().newVariable("salt", BIGINT);
+        RowExpression probeSaltExpression = specialForm(
+                IF,
+                BIGINT,
+                isHotKey(clause.getLeft(), hotKeys.build()),
+                call(functionManager, "random", BIGINT, constant(partitionCount, BIGINT)),
+                constant(0L, BIGINT));
+        PlanNode probe = new ProjectNode(
+                context.getIdAllocator().getNextId(),
+                joinNode.getLeft(),
+                identityAssignmentsWith(joinNode.getLeft(), probeSalt, probeSaltExpression));
+
+        ArrayType saltsType = new ArrayType(BIGINT);
+        VariableReferenceExpression buildSalts = context.getVariableAllocator().newVariable("salts", saltsType);
+        VariableReferenceExpression buildSalt = context.getVariableAllocator().newVariable("salt", BIGINT);
+        RowExpression buildSaltsExpression = call(
+                functionManager,
+                "sequence",
+                saltsType,
+                constant(0L, BIGINT),
+                specialForm(IF, BIGINT, isHotKey(clause.getRight(), hotKeys.build()), constant(partitionCount - 1, BIGINT), constant(0L, BIGINT)));
+        PlanNode build = new UnnestNode(
+                context.getIdAllocator().getNextId(),
+                new ProjectNode(
+                        context.getIdAllocator().getNextId(),
+                        joinNode.getRight(),
+                        identityAssignmentsWith(joinNode.getRight(), buildSalts, buildSaltsExpression)),
+                joinNode.getRight().getOutputVariables(),
+                ImmutableMap.of(buildSalts, ImmutableList.of(buildSalt)),
+                Optional.empty());
+
+        return Result.ofPlanNode(new JoinNode(
+                joinNode.getId(),
+                joinNode.getType(),
+                probe,
+                build,
+                ImmutableList.of(clause, new EquiJoinClause(probeSalt, buildSalt)),
+                joinNode.getOutputVariables(),
+                joinNode.getFilter(),
+                Optional.empty(),
+                Optional.empty(),
+                joinNode.getDistributionType(),
+                joinNode.getDynamicFilters()));
+    }
+
+    /**
+     * Returns the hot values listed for the table column the variable is read from, looking through filters
+     * and identity projections. The column is listed either as {@code table.column} or as
+     * {@code schema.table.column}.
+     */
+    private List<String> getHotValues(ListMultimap<String, String> skewedJoinKeys, PlanNode node, VariableReferenceExpression variable, Context context)
+    {
+        PlanNode resolved = context.getLookup().resolve(node);
+        if (resolved instanceof TableScanNode) {
+            TableScanNode tableScan = (TableScanNode) resolved;
+            ColumnHandle column = tableScan.getAssignments().get(variable);
+            if (column == null) {
+                return ImmutableList.of();
+            }
+            SchemaTableName table = metadata.getTableMetadata(context.getSession(), tableScan.getTable()).getTable();
+            String columnName = metadata.getColumnMetadata(context.getSession(), tableScan.getTable(), column).getName();
+            return ImmutableList.<String>builder()
+                    .addAll(skewedJoinKeys.get(format("%s.%s", table.getTableName(), columnName).toLowerCase(Locale.ENGLISH)))
+                    .addAll(skewedJoinKeys.get(format("%s.%s.%s", table.getSchemaName(), table.getTableName(), columnName).toLowerCase(Locale.ENGLISH)))
+                    .build();
+        }
+        if (resolved instanceof FilterNode) {
+            return getHotValues(skewedJoinKeys, ((FilterNode) resolved).getSource(), variable, context);
+        }
+        if (resolved instanceof ProjectNode) {
+            RowExpression expression = ((ProjectNode) resolved).getAssignments().get(variable);
+            if (expression instanceof VariableReferenceExpression) {
+                return getHotValues(skewedJoinKeys, ((ProjectNode) resolved).getSource(), (VariableReferenceExpression) expression, context);
+            }
+        }
+        return ImmutableList.of();
+    }
+
+    private static boolean isSupportedType(Type type)
+    {
+        return type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) || type.equals(VARCHAR);
+    }
+
+    private static RowExpression toConstant(String value, Type type)
+    {
+        if (type.equals(VARCHAR)) {
+            return constant(utf8Slice(value), type);
+        }
+        try {
+            return constant(Long.parseLong(value), type);
+        }
+        catch (NumberFormatException e) {
+            throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s contains a value that is not a valid %s: %s", SKEWED_JOIN_KEYS, type, value), e);
+        }
+    }
+
+    private static RowExpression isHotKey(VariableReferenceExpression key, List<RowExpression> hotKeys)
+    {
+        return specialForm(IN, BOOLEAN, ImmutableList.<RowExpression>builder()
+                .add(key)
+                .addAll(hotKeys)
+                .build());
+    }
+
+    private static Assignments identityAssignmentsWith(PlanNode node, VariableReferenceExpression variable, RowExpression expression)
+    {
+        Assignments.Builder assignments = Assignments.builder();
+        for (VariableReferenceExpression outputVariable : node.getOutputVariables()) {
+            assignments.put(outputVariable, outputVariable);
+        }
+        assignments.put(variable, expression);
+        return assignments.build();
+    }
+}
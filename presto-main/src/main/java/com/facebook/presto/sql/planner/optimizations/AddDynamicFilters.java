@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.optimizations;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.execution.warnings.WarningCollector;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.PlanVariableAllocator;
+import com.facebook.presto.sql.planner.TypeProvider;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.SimplePlanRewriter;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.facebook.presto.SystemSessionProperties.isEnableDynamicFiltering;
+import static com.facebook.presto.sql.planner.DynamicFilters.findScanTargetsAcrossFragments;
+import static com.facebook.presto.sql.planner.DynamicFilters.isSupportedDynamicFilterType;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Assigns dynamic filters to the equi-join criteria of joins for which the values of the build side
+ * can be used to prune the rows or the splits of a probe side table scan. The build side values are collected
+ * at runtime, so this must run once the plan shape and the exchanges are final.
+ */
+public class AddDynamicFilters
+        implements PlanOptimizer
+{
+    @Override
+    public PlanNode optimize(PlanNode plan, Session session, TypeProvider types, PlanVariableAllocator variableAllocator, PlanNodeIdAllocator idAllocator, WarningCollector warningCollector)
+    {
+        requireNonNull(plan, "plan is null");
+        requireNonNull(session, "session is null");
+
+        if (!isEnableDynamicFiltering(session)) {
+            return plan;
+        }
+        return SimplePlanRewriter.rewriteWith(new Rewriter(), plan);
+    }
+
+    private static class Rewriter
+            extends SimplePlanRewriter<Void>
+    {
+        private int nextFilterId;
+
+        @Override
+        public PlanNode visitJoin(JoinNode node, RewriteContext<Void> context)
+        {
+            JoinNode rewritten = (JoinNode) context.defaultRewrite(node);
+            // rows of the probe side without a match are only preserved by outer joins
+            if (rewritten.getType() != INNER && rewritten.getType() != RIGHT) {
+                return rewritten;
+            }
+
+            Map<String, VariableReferenceExpression> dynamicFilters = new LinkedHashMap<>();
+            for (JoinNode.EquiJoinClause clause : rewritten.getCriteria()) {
+                VariableReferenceExpression buildVariable = clause.getRight();
+                if (dynamicFilters.containsValue(buildVariable) || !isSupportedDynamicFilterType(buildVariable.getType())) {
+                    continue;
+                }
+                // scans in other fragments are pruned by the coordinator when it enumerates their splits
+                if (findScanTargetsAcrossFragments(rewritten.getLeft(), clause.getLeft(), ImmutableMap.of()).isEmpty()) {
+                    continue;
+                }
+                dynamicFilters.put("df_" + nextFilterId++, buildVariable);
+            }
+
+            if (dynamicFilters.isEmpty()) {
+                return rewritten;
+            }
+            return rewritten.withDynamicFilters(dynamicFilters);
+        }
+    }
+}
@@ -442,6 +442,7 @@ public class AddExchanges
                                 child.getNode(),
                                 node.getSpecification(),
                                 node.getRowNumberVariable(),
+                                node.getRankingFunction(),
                                 node.getMaxRowCountPerPartition(),
                                 true,
                                 node.getHashVariable()),
@@ -43,6 +43,7 @@ import com.facebook.presto.sql.planner.plan.IndexJoinNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LateralJoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RowNumberNode;
 import com.facebook.presto.sql.planner.plan.SemiJoinNode;
@@ -57,6 +58,7 @@ import com.facebook.presto.sql.planner.plan.TopNRowNumberNode;
 import com.facebook.presto.sql.planner.plan.WindowNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -68,6 +70,7 @@ import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.getTaskPartitionedWriterCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskWriterCount;
 import static com.facebook.presto.SystemSessionProperties.isDistributedSortEnabled;
+import static com.facebook.presto.SystemSessionProperties.isMergeJoinEnabled;
 import static com.facebook.presto.SystemSessionProperties.isSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isTableWriterMergeOperatorEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -82,6 +85,7 @@ import static com.facebook.presto.sql.planner.optimizations.StreamPreferredPrope
 import static com.facebook.presto.sql.planner.optimizations.StreamPreferredProperties.exactlyPartitionedOn;
 import static com.facebook.presto.sql.planner.optimizations.StreamPreferredProperties.fixedParallelism;
 import static com.facebook.presto.sql.planner.optimizations.StreamPreferredProperties.singleStream;
+import static com.facebook.presto.sql.planner.optimizations.StreamPropertyDerivations.StreamProperties.StreamDistribution.MULTIPLE;
 import static com.facebook.presto.sql.planner.optimizations.StreamPropertyDerivations.StreamProperties.StreamDistribution.SINGLE;
 import static com.facebook.presto.sql.planner.optimizations.StreamPropertyDerivations.derivePropertiesRecursively;
 import static com.facebook.presto.sql.planner.plan.ChildReplacer.replaceChildren;
@@ -93,6 +97,8 @@ import static com.facebook.presto.sql.planner.plan.ExchangeNode.mergingExchange;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.partitionedExchange;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.roundRobinExchange;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.systemPartitionedExchange;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -662,18 +668,15 @@ public class AddLocalExchanges
         @Override
         public PlanWithProperties visitJoin(JoinNode node, StreamPreferredProperties parentPreferences)
         {
-            PlanWithProperties probe;
+            StreamPreferredProperties probeRequirement;
+            StreamPreferredProperties probePreference;
             if (isSpillEnabled(session)) {
-                probe = planAndEnforce(
-                        node.getLeft(),
-                        fixedParallelism(),
-                        parentPreferences.constrainTo(node.getLeft().getOutputVariables()).withFixedParallelism());
+                probeRequirement = fixedParallelism();
+                probePreference = parentPreferences.constrainTo(node.getLeft().getOutputVariables()).withFixedParallelism();
             }
             else {
-                probe = planAndEnforce(
-                        node.getLeft(),
-                        defaultParallelism(session),
-                        parentPreferences.constrainTo(node.getLeft().getOutputVariables()).withDefaultParallelism(session));
+                probeRequirement = defaultParallelism(session);
+                probePreference = parentPreferences.constrainTo(node.getLeft().getOutputVariables()).withDefaultParallelism(session);
             }
 
             // this build consumes the input completely, so we do not pass through parent preferences
@@ -687,11 +690,108 @@ public class AddLocalExchanges
             else {
                 buildPreference = singleStream();
             }
-            PlanWithProperties build = planAndEnforce(node.getRight(), buildPreference, buildPreference);
+
+            // the children are planned once, the merge join is decided on them before the hash join requirements are enforced
+            PlanWithProperties probe;
+            PlanWithProperties build;
+            if (isMergeJoinEnabled(session) && isMergeJoinCandidate(node)) {
+                // parallelism preferences would split sorted single streams, so the children are planned preserving the order of their streams
+                probe = plan(node.getLeft(), any().withOrderSensitivity());
+                build = plan(node.getRight(), any().withOrderSensitivity());
+                Optional<PlanWithProperties> mergeJoin = tryPlanMergeJoin(node, probe, build);
+                if (mergeJoin.isPresent()) {
+                    return mergeJoin.get();
+                }
+            }
+            else {
+                probe = plan(node.getLeft(), probePreference);
+                build = plan(node.getRight(), buildPreference);
+            }
+
+            probe = enforceRequired(probe, probeRequirement);
+            build = enforceRequired(build, buildPreference);
 
             return rebaseAndDeriveProperties(node, ImmutableList.of(probe, build));
         }
 
+        private boolean isMergeJoinCandidate(JoinNode node)
+        {
+            return (node.getType() == INNER || node.getType() == LEFT) && !node.isCrossJoin() && !node.getFilter().isPresent() && node.getDynamicFilters().isEmpty();
+        }
+
+        private Optional<PlanWithProperties> tryPlanMergeJoin(JoinNode node, PlanWithProperties probe, PlanWithProperties build)
+        {
+            Optional<List<JoinNode.EquiJoinClause>> criteria = getMergeJoinCriteria(node.getCriteria(), probe.getProperties(), build.getProperties());
+            if (!criteria.isPresent()) {
+                return Optional.empty();
+            }
+
+            // a merge join streams both inputs, so it is only used when neither side has to be gathered or sorted for it:
+            // either both inputs are single streams, or both are streams of matching buckets, e.g. scans of tables that are
+            // bucketed and sorted on the join keys, which are then joined bucket by bucket in grouped execution
+            if (!(probe.getProperties().isSingleStream() && build.getProperties().isSingleStream()) &&
+                    !isBucketedOnJoinKeys(criteria.get(), probe.getProperties(), build.getProperties())) {
+                return Optional.empty();
+            }
+
+            MergeJoinNode mergeJoin = new MergeJoinNode(node.getId(), node.getType(), probe.getNode(), build.getNode(), criteria.get(), node.getOutputVariables());
+            return Optional.of(deriveProperties(mergeJoin, ImmutableList.of(probe.getProperties(), build.getProperties())));
+        }
+
+        /**
+         * Returns the join criteria in the order both inputs are sorted on, if both inputs are sorted ascending
+         * on all join keys in the same order.
+         */
+        private Optional<List<JoinNode.EquiJoinClause>> getMergeJoinCriteria(List<JoinNode.EquiJoinClause> criteria, StreamProperties probeProperties, StreamProperties buildProperties)
+        {
+            List<LocalProperty<VariableReferenceExpression>> probeLocalProperties = LocalProperties.stripLeadingConstants(probeProperties.getLocalProperties());
+            List<LocalProperty<VariableReferenceExpression>> buildLocalProperties = LocalProperties.stripLeadingConstants(buildProperties.getLocalProperties());
+            if (probeLocalProperties.size() < criteria.size() || buildLocalProperties.size() < criteria.size()) {
+                return Optional.empty();
+            }
+
+            List<JoinNode.EquiJoinClause> sortedCriteria = new ArrayList<>();
+            for (int i = 0; i < criteria.size(); i++) {
+                Optional<VariableReferenceExpression> probeColumn = getAscendingSortColumn(probeLocalProperties.get(i));
+                Optional<VariableReferenceExpression> buildColumn = getAscendingSortColumn(buildLocalProperties.get(i));
+                if (!probeColumn.isPresent() || !buildColumn.isPresent()) {
+                    return Optional.empty();
+                }
+                JoinNode.EquiJoinClause clause = new JoinNode.EquiJoinClause(probeColumn.get(), buildColumn.get());
+                if (!criteria.contains(clause) || sortedCriteria.contains(clause)) {
+                    return Optional.empty();
+                }
+                sortedCriteria.add(clause);
+            }
+            return Optional.of(ImmutableList.copyOf(sortedCriteria));
+        }
+
+        /**
+         * Returns true if both inputs are multiple streams partitioned on the join keys, as the streams of table scans are
+         * partitioned on their bucket columns. The join being planned without a remote exchange between the inputs means
+         * their buckets match.
+         */
+        private boolean isBucketedOnJoinKeys(List<JoinNode.EquiJoinClause> criteria, StreamProperties probeProperties, StreamProperties buildProperties)
+        {
+            if (probeProperties.getDistribution() != MULTIPLE || buildProperties.getDistribution() != MULTIPLE) {
+                return false;
+            }
+            return probeProperties.isPartitionedOn(Lists.transform(criteria, JoinNode.EquiJoinClause::getLeft)) &&
+                    buildProperties.isPartitionedOn(Lists.transform(criteria, JoinNode.EquiJoinClause::getRight));
+        }
+
+        private Optional<VariableReferenceExpression> getAscendingSortColumn(LocalProperty<VariableReferenceExpression> property)
+        {
+            if (!(property instanceof SortingProperty)) {
+                return Optional.empty();
+            }
+            SortingProperty<VariableReferenceExpression> sortingProperty = (SortingProperty<VariableReferenceExpression>) property;
+            if (!sortingProperty.getOrder().isAscending()) {
+                return Optional.empty();
+            }
+            return Optional.of(sortingProperty.getColumn());
+        }
+
         @Override
         public PlanWithProperties visitSemiJoin(SemiJoinNode node, StreamPreferredProperties parentPreferences)
         {
@@ -758,13 +858,25 @@ public class AddLocalExchanges
         {
             // verify properties are in terms of symbols produced by the node
             checkArgument(requiredProperties.getPartitioningColumns().map(node.getOutputVariables()::containsAll).orElse(true));
-            checkArgument(preferredProperties.getPartitioningColumns().map(node.getOutputVariables()::containsAll).orElse(true));
 
             // plan the node using the preferred properties
-            PlanWithProperties result = node.accept(this, preferredProperties);
+            PlanWithProperties result = plan(node, preferredProperties);
 
             // enforce the required properties
-            result = enforce(result, requiredProperties);
+            return enforceRequired(result, requiredProperties);
+        }
+
+        private PlanWithProperties plan(PlanNode node, StreamPreferredProperties preferredProperties)
+        {
+            // verify properties are in terms of symbols produced by the node
+            checkArgument(preferredProperties.getPartitioningColumns().map(node.getOutputVariables()::containsAll).orElse(true));
+
+            return node.accept(this, preferredProperties);
+        }
+
+        private PlanWithProperties enforceRequired(PlanWithProperties planWithProperties, StreamPreferredProperties requiredProperties)
+        {
+            PlanWithProperties result = enforce(planWithProperties, requiredProperties);
 
             checkState(requiredProperties.isSatisfiedBy(result.getProperties()), "required properties not enforced");
             return result;
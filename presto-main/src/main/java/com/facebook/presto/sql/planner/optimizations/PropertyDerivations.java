@@ -60,6 +60,7 @@ import com.facebook.presto.sql.planner.plan.IndexSourceNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LateralJoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RowNumberNode;
 import com.facebook.presto.sql.planner.plan.SampleNode;
@@ -477,6 +478,33 @@ public class PropertyDerivations
             return inputProperties.get(0);
         }
 
+        @Override
+        public ActualProperties visitMergeJoin(MergeJoinNode node, List<ActualProperties> inputProperties)
+        {
+            ActualProperties probeProperties = inputProperties.get(0);
+            ActualProperties buildProperties = inputProperties.get(1);
+            List<VariableReferenceExpression> outputs = node.getOutputVariables();
+
+            switch (node.getType()) {
+                case INNER:
+                    probeProperties = probeProperties.translateVariable(column -> filterOrRewrite(outputs, node.getCriteria(), column));
+                    buildProperties = buildProperties.translateVariable(column -> filterOrRewrite(outputs, node.getCriteria(), column));
+
+                    Map<VariableReferenceExpression, ConstantExpression> constants = new HashMap<>();
+                    constants.putAll(probeProperties.getConstants());
+                    constants.putAll(buildProperties.getConstants());
+
+                    return ActualProperties.builderFrom(probeProperties)
+                            .constants(constants)
+                            .build();
+                case LEFT:
+                    return ActualProperties.builderFrom(probeProperties.translateVariable(column -> filterIfMissing(outputs, column)))
+                            .build();
+                default:
+                    throw new IllegalArgumentException("Unsupported merge join type: " + node.getType());
+            }
+        }
+
         @Override
         public ActualProperties visitSpatialJoin(SpatialJoinNode node, List<ActualProperties> inputProperties)
         {
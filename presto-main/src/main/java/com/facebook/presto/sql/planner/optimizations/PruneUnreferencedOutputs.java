@@ -649,6 +649,7 @@ public class PruneUnreferencedOutputs
                     source,
                     node.getSpecification(),
                     node.getRowNumberVariable(),
+                    node.getRankingFunction(),
                     node.getMaxRowCountPerPartition(),
                     node.isPartial(),
                     node.getHashVariable());
@@ -45,6 +45,7 @@ import com.facebook.presto.sql.planner.plan.IndexSourceNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LateralJoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RowNumberNode;
 import com.facebook.presto.sql.planner.plan.SampleNode;
@@ -209,6 +210,23 @@ public final class StreamPropertyDerivations
             }
         }
 
+        @Override
+        public StreamProperties visitMergeJoin(MergeJoinNode node, List<StreamProperties> inputProperties)
+        {
+            StreamProperties leftProperties = inputProperties.get(0);
+            List<VariableReferenceExpression> outputs = node.getOutputVariables();
+
+            // a merge join never spills, so the order of the probe side is preserved
+            switch (node.getType()) {
+                case INNER:
+                    return leftProperties.translate(column -> PropertyDerivations.filterOrRewrite(outputs, node.getCriteria(), column));
+                case LEFT:
+                    return leftProperties.translate(column -> PropertyDerivations.filterIfMissing(outputs, column));
+                default:
+                    throw new UnsupportedOperationException("Unsupported merge join type: " + node.getType());
+            }
+        }
+
         @Override
         public StreamProperties visitSpatialJoin(SpatialJoinNode node, List<StreamProperties> inputProperties)
         {
@@ -432,6 +432,7 @@ public class UnaliasSymbolReferences
                     context.rewrite(node.getSource()),
                     canonicalizeAndDistinct(node.getSpecification()),
                     canonicalize(node.getRowNumberVariable()),
+                    node.getRankingFunction(),
                     node.getMaxRowCountPerPartition(),
                     node.isPartial(),
                     canonicalize(node.getHashVariable()));
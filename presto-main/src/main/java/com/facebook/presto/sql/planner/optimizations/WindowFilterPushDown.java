@@ -36,6 +36,7 @@ import com.facebook.presto.sql.planner.TypeProvider;
 import com.facebook.presto.sql.planner.plan.RowNumberNode;
 import com.facebook.presto.sql.planner.plan.SimplePlanRewriter;
 import com.facebook.presto.sql.planner.plan.TopNRowNumberNode;
+import com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction;
 import com.facebook.presto.sql.planner.plan.WindowNode;
 import com.facebook.presto.sql.tree.BooleanLiteral;
 import com.facebook.presto.sql.tree.Expression;
@@ -51,6 +52,7 @@ import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.sql.planner.ExpressionDomainTranslator.ExtractionResult;
 import static com.facebook.presto.sql.planner.ExpressionDomainTranslator.fromPredicate;
 import static com.facebook.presto.sql.planner.plan.ChildReplacer.replaceChildren;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.ROW_NUMBER;
 import static com.facebook.presto.sql.relational.OriginalExpressionUtils.castToExpression;
 import static com.facebook.presto.sql.relational.OriginalExpressionUtils.castToRowExpression;
 import static com.google.common.base.Preconditions.checkState;
@@ -140,7 +142,7 @@ public class WindowFilterPushDown
                 WindowNode windowNode = (WindowNode) source;
                 // verify that unordered row_number window functions are replaced by RowNumberNode
                 verify(windowNode.getOrderingScheme().isPresent());
-                TopNRowNumberNode topNRowNumberNode = convertToTopNRowNumber(windowNode, limit);
+                TopNRowNumberNode topNRowNumberNode = convertToTopNRowNumber(windowNode, ROW_NUMBER, limit);
                 if (windowNode.getPartitionBy().isEmpty()) {
                     return topNRowNumberNode;
                 }
@@ -165,14 +167,18 @@ public class WindowFilterPushDown
                     return rewriteFilterSource(node, source, rowNumberVariable, upperBound.getAsInt());
                 }
             }
-            else if (source instanceof WindowNode && canOptimizeWindowFunction((WindowNode) source, metadata.getFunctionManager()) && isOptimizeTopNRowNumber(session)) {
+            else if (source instanceof WindowNode && isOptimizeTopNRowNumber(session)) {
                 WindowNode windowNode = (WindowNode) source;
-                VariableReferenceExpression rowNumberVariable = getOnlyElement(windowNode.getCreatedVariable());
-                OptionalInt upperBound = extractUpperBound(tupleDomain, rowNumberVariable);
-
-                if (upperBound.isPresent()) {
-                    source = convertToTopNRowNumber(windowNode, upperBound.getAsInt());
-                    return rewriteFilterSource(node, source, rowNumberVariable, upperBound.getAsInt());
+                Optional<RankingFunction> rankingFunction = getRankingFunction(windowNode, metadata.getFunctionManager());
+                // unordered row_number() is replaced by RowNumberNode above; unordered rank() and dense_rank() are constant
+                if (rankingFunction.isPresent() && windowNode.getOrderingScheme().isPresent()) {
+                    VariableReferenceExpression rowNumberVariable = getOnlyElement(windowNode.getCreatedVariable());
+                    OptionalInt upperBound = extractUpperBound(tupleDomain, rowNumberVariable);
+
+                    if (upperBound.isPresent()) {
+                        source = convertToTopNRowNumber(windowNode, rankingFunction.get(), upperBound.getAsInt());
+                        return rewriteFilterSource(node, source, rowNumberVariable, upperBound.getAsInt());
+                    }
                 }
             }
             return replaceChildren(node, ImmutableList.of(source));
@@ -254,12 +260,13 @@ public class WindowFilterPushDown
             return new RowNumberNode(node.getId(), node.getSource(), node.getPartitionBy(), node.getRowNumberVariable(), Optional.of(newRowCountPerPartition), node.getHashVariable());
         }
 
-        private TopNRowNumberNode convertToTopNRowNumber(WindowNode windowNode, int limit)
+        private TopNRowNumberNode convertToTopNRowNumber(WindowNode windowNode, RankingFunction rankingFunction, int limit)
         {
             return new TopNRowNumberNode(idAllocator.getNextId(),
                     windowNode.getSource(),
                     windowNode.getSpecification(),
                     getOnlyElement(windowNode.getCreatedVariable()),
+                    rankingFunction,
                     limit,
                     false,
                     Optional.empty());
@@ -272,17 +279,24 @@ public class WindowFilterPushDown
 
         private static boolean canOptimizeWindowFunction(WindowNode node, FunctionManager functionManager)
         {
-            if (node.getWindowFunctions().size() != 1) {
-                return false;
-            }
-            VariableReferenceExpression rowNumberVariable = getOnlyElement(node.getWindowFunctions().keySet());
-            return isRowNumberMetadata(functionManager, functionManager.getFunctionMetadata(node.getWindowFunctions().get(rowNumberVariable).getFunctionHandle()));
+            // a limit may cut through the ties of rank() and dense_rank(), so only row_number() qualifies
+            return getRankingFunction(node, functionManager).equals(Optional.of(ROW_NUMBER));
         }
 
-        private static boolean isRowNumberMetadata(FunctionManager functionManager, FunctionMetadata functionMetadata)
+        private static Optional<RankingFunction> getRankingFunction(WindowNode node, FunctionManager functionManager)
         {
-            FunctionHandle rowNumberFunction = functionManager.lookupFunction("row_number", ImmutableList.of());
-            return functionMetadata.equals(functionManager.getFunctionMetadata(rowNumberFunction));
+            if (node.getWindowFunctions().size() != 1) {
+                return Optional.empty();
+            }
+            VariableReferenceExpression rowNumberVariable = getOnlyElement(node.getWindowFunctions().keySet());
+            FunctionMetadata functionMetadata = functionManager.getFunctionMetadata(node.getWindowFunctions().get(rowNumberVariable).getFunctionHandle());
+            for (RankingFunction rankingFunction : RankingFunction.values()) {
+                FunctionHandle functionHandle = functionManager.lookupFunction(rankingFunction.getFunctionName(), ImmutableList.of());
+                if (functionMetadata.equals(functionManager.getFunctionMetadata(functionHandle))) {
+                    return Optional.of(rankingFunction);
+                }
+            }
+            return Optional.empty();
         }
     }
 }
@@ -69,6 +69,11 @@ public abstract class InternalPlanVisitor<R, C>
         return visitPlan(node, context);
     }
 
+    public R visitMergeJoin(MergeJoinNode node, C context)
+    {
+        return visitPlan(node, context);
+    }
+
     public R visitSort(SortNode node, C context)
     {
         return visitPlan(node, context);
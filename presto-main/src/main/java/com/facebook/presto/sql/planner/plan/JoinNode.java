@@ -22,12 +22,14 @@ import com.facebook.presto.sql.planner.SortExpressionContext;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
 import javax.annotation.concurrent.Immutable;
 
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
@@ -58,6 +60,22 @@ public class JoinNode
     private final Optional<VariableReferenceExpression> leftHashVariable;
     private final Optional<VariableReferenceExpression> rightHashVariable;
     private final Optional<DistributionType> distributionType;
+    // dynamic filter id -> build side variable whose values are collected for it
+    private final Map<String, VariableReferenceExpression> dynamicFilters;
+
+    public JoinNode(PlanNodeId id,
+            Type type,
+            PlanNode left,
+            PlanNode right,
+            List<EquiJoinClause> criteria,
+            List<VariableReferenceExpression> outputVariables,
+            Optional<RowExpression> filter,
+            Optional<VariableReferenceExpression> leftHashVariable,
+            Optional<VariableReferenceExpression> rightHashVariable,
+            Optional<DistributionType> distributionType)
+    {
+        this(id, type, left, right, criteria, outputVariables, filter, leftHashVariable, rightHashVariable, distributionType, ImmutableMap.of());
+    }
 
     @JsonCreator
     public JoinNode(@JsonProperty("id") PlanNodeId id,
@@ -69,7 +87,8 @@ public class JoinNode
             @JsonProperty("filter") Optional<RowExpression> filter,
             @JsonProperty("leftHashVariable") Optional<VariableReferenceExpression> leftHashVariable,
             @JsonProperty("rightHashVariable") Optional<VariableReferenceExpression> rightHashVariable,
-            @JsonProperty("distributionType") Optional<DistributionType> distributionType)
+            @JsonProperty("distributionType") Optional<DistributionType> distributionType,
+            @JsonProperty("dynamicFilters") Map<String, VariableReferenceExpression> dynamicFilters)
     {
         super(id);
         requireNonNull(type, "type is null");
@@ -81,6 +100,7 @@ public class JoinNode
         requireNonNull(leftHashVariable, "leftHashVariable is null");
         requireNonNull(rightHashVariable, "rightHashVariable is null");
         requireNonNull(distributionType, "distributionType is null");
+        requireNonNull(dynamicFilters, "dynamicFilters is null");
 
         this.type = type;
         this.left = left;
@@ -91,6 +111,7 @@ public class JoinNode
         this.leftHashVariable = leftHashVariable;
         this.rightHashVariable = rightHashVariable;
         this.distributionType = distributionType;
+        this.dynamicFilters = ImmutableMap.copyOf(dynamicFilters);
 
         Set<VariableReferenceExpression> inputVariables = ImmutableSet.<VariableReferenceExpression>builder()
                 .addAll(left.getOutputVariables())
@@ -101,6 +122,7 @@ public class JoinNode
 
         checkArgument(!(criteria.isEmpty() && leftHashVariable.isPresent()), "Left hash variable is only valid in an equijoin");
         checkArgument(!(criteria.isEmpty() && rightHashVariable.isPresent()), "Right hash variable is only valid in an equijoin");
+        checkArgument(right.getOutputVariables().containsAll(dynamicFilters.values()), "Dynamic filters must be collected from build side variables");
 
         if (distributionType.isPresent()) {
             // The implementation of full outer join only works if the data is hash partitioned.
@@ -120,6 +142,7 @@ public class JoinNode
 
     public JoinNode flipChildren()
     {
+        // dynamic filters are collected from the build side, so they do not survive flipping it
         return new JoinNode(
                 getId(),
                 flipType(type),
@@ -275,6 +298,12 @@ public class JoinNode
         return distributionType;
     }
 
+    @JsonProperty
+    public Map<String, VariableReferenceExpression> getDynamicFilters()
+    {
+        return dynamicFilters;
+    }
+
     @Override
     public <R, C> R accept(InternalPlanVisitor<R, C> visitor, C context)
     {
@@ -285,12 +314,17 @@ public class JoinNode
     public PlanNode replaceChildren(List<PlanNode> newChildren)
     {
         checkArgument(newChildren.size() == 2, "expected newChildren to contain 2 nodes");
-        return new JoinNode(getId(), type, newChildren.get(0), newChildren.get(1), criteria, outputVariables, filter, leftHashVariable, rightHashVariable, distributionType);
+        return new JoinNode(getId(), type, newChildren.get(0), newChildren.get(1), criteria, outputVariables, filter, leftHashVariable, rightHashVariable, distributionType, dynamicFilters);
     }
 
     public JoinNode withDistributionType(DistributionType distributionType)
     {
-        return new JoinNode(getId(), type, left, right, criteria, outputVariables, filter, leftHashVariable, rightHashVariable, Optional.of(distributionType));
+        return new JoinNode(getId(), type, left, right, criteria, outputVariables, filter, leftHashVariable, rightHashVariable, Optional.of(distributionType), dynamicFilters);
+    }
+
+    public JoinNode withDynamicFilters(Map<String, VariableReferenceExpression> dynamicFilters)
+    {
+        return new JoinNode(getId(), type, left, right, criteria, outputVariables, filter, leftHashVariable, rightHashVariable, distributionType, dynamicFilters);
     }
 
     public boolean isCrossJoin()
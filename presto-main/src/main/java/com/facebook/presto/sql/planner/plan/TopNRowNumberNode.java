@@ -35,9 +35,29 @@ import static java.util.Objects.requireNonNull;
 public final class TopNRowNumberNode
         extends InternalPlanNode
 {
+    public enum RankingFunction
+    {
+        ROW_NUMBER("row_number"),
+        RANK("rank"),
+        DENSE_RANK("dense_rank");
+
+        private final String functionName;
+
+        RankingFunction(String functionName)
+        {
+            this.functionName = functionName;
+        }
+
+        public String getFunctionName()
+        {
+            return functionName;
+        }
+    }
+
     private final PlanNode source;
     private final Specification specification;
     private final VariableReferenceExpression rowNumberVariable;
+    private final RankingFunction rankingFunction;
     private final int maxRowCountPerPartition;
     private final boolean partial;
     private final Optional<VariableReferenceExpression> hashVariable;
@@ -48,6 +68,7 @@ public final class TopNRowNumberNode
             @JsonProperty("source") PlanNode source,
             @JsonProperty("specification") Specification specification,
             @JsonProperty("rowNumberVariable") VariableReferenceExpression rowNumberVariable,
+            @JsonProperty("rankingFunction") RankingFunction rankingFunction,
             @JsonProperty("maxRowCountPerPartition") int maxRowCountPerPartition,
             @JsonProperty("partial") boolean partial,
             @JsonProperty("hashVariable") Optional<VariableReferenceExpression> hashVariable)
@@ -58,12 +79,14 @@ public final class TopNRowNumberNode
         requireNonNull(specification, "specification is null");
         checkArgument(specification.getOrderingScheme().isPresent(), "specification orderingScheme is absent");
         requireNonNull(rowNumberVariable, "rowNumberVariable is null");
+        requireNonNull(rankingFunction, "rankingFunction is null");
         checkArgument(maxRowCountPerPartition > 0, "maxRowCountPerPartition must be > 0");
         requireNonNull(hashVariable, "hashVariable is null");
 
         this.source = source;
         this.specification = specification;
         this.rowNumberVariable = rowNumberVariable;
+        this.rankingFunction = rankingFunction;
         this.maxRowCountPerPartition = maxRowCountPerPartition;
         this.partial = partial;
         this.hashVariable = hashVariable;
@@ -114,6 +137,12 @@ public final class TopNRowNumberNode
         return rowNumberVariable;
     }
 
+    @JsonProperty
+    public RankingFunction getRankingFunction()
+    {
+        return rankingFunction;
+    }
+
     @JsonProperty
     public int getMaxRowCountPerPartition()
     {
@@ -141,6 +170,6 @@ public final class TopNRowNumberNode
     @Override
     public PlanNode replaceChildren(List<PlanNode> newChildren)
     {
-        return new TopNRowNumberNode(getId(), Iterables.getOnlyElement(newChildren), specification, rowNumberVariable, maxRowCountPerPartition, partial, hashVariable);
+        return new TopNRowNumberNode(getId(), Iterables.getOnlyElement(newChildren), specification, rowNumberVariable, rankingFunction, maxRowCountPerPartition, partial, hashVariable);
     }
 }
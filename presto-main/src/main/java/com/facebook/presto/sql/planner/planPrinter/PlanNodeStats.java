@@ -43,6 +43,7 @@ public class PlanNodeStats
     private final DataSize planNodeRawInputDataSize;
     private final long planNodeOutputPositions;
     private final DataSize planNodeOutputDataSize;
+    private final long planNodeDynamicFilterPrunedPositions;
 
     protected final Map<String, OperatorInputStats> operatorInputStats;
 
@@ -56,6 +57,7 @@ public class PlanNodeStats
             DataSize planNodeRawInputDataSize,
             long planNodeOutputPositions,
             DataSize planNodeOutputDataSize,
+            long planNodeDynamicFilterPrunedPositions,
             Map<String, OperatorInputStats> operatorInputStats)
     {
         this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -68,6 +70,7 @@ public class PlanNodeStats
         this.planNodeRawInputDataSize = planNodeRawInputDataSize;
         this.planNodeOutputPositions = planNodeOutputPositions;
         this.planNodeOutputDataSize = planNodeOutputDataSize;
+        this.planNodeDynamicFilterPrunedPositions = planNodeDynamicFilterPrunedPositions;
 
         this.operatorInputStats = requireNonNull(operatorInputStats, "operatorInputStats is null");
     }
@@ -130,6 +133,11 @@ public class PlanNodeStats
         return planNodeOutputDataSize;
     }
 
+    public long getPlanNodeDynamicFilterPrunedPositions()
+    {
+        return planNodeDynamicFilterPrunedPositions;
+    }
+
     public Map<String, Double> getOperatorInputPositionsAverages()
     {
         return operatorInputStats.entrySet().stream()
@@ -160,6 +168,7 @@ public class PlanNodeStats
         DataSize planNodeRawInputDataSize = succinctBytes(this.planNodeRawInputDataSize.toBytes() + other.planNodeRawInputDataSize.toBytes());
         long planNodeOutputPositions = this.planNodeOutputPositions + other.planNodeOutputPositions;
         DataSize planNodeOutputDataSize = succinctBytes(this.planNodeOutputDataSize.toBytes() + other.planNodeOutputDataSize.toBytes());
+        long planNodeDynamicFilterPrunedPositions = this.planNodeDynamicFilterPrunedPositions + other.planNodeDynamicFilterPrunedPositions;
 
         Map<String, OperatorInputStats> operatorInputStats = mergeMaps(this.operatorInputStats, other.operatorInputStats, OperatorInputStats::merge);
 
@@ -170,6 +179,7 @@ public class PlanNodeStats
                 planNodeInputPositions, planNodeInputDataSize,
                 planNodeRawInputPositions, planNodeRawInputDataSize,
                 planNodeOutputPositions, planNodeOutputDataSize,
+                planNodeDynamicFilterPrunedPositions,
                 operatorInputStats);
     }
 }
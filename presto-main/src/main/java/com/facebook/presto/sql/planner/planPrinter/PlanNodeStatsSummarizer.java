@@ -78,6 +78,7 @@ public class PlanNodeStatsSummarizer
         Map<PlanNodeId, Long> planNodeRawInputBytes = new HashMap<>();
         Map<PlanNodeId, Long> planNodeOutputPositions = new HashMap<>();
         Map<PlanNodeId, Long> planNodeOutputBytes = new HashMap<>();
+        Map<PlanNodeId, Long> planNodeDynamicFilterPrunedPositions = new HashMap<>();
         Map<PlanNodeId, Long> planNodeScheduledMillis = new HashMap<>();
         Map<PlanNodeId, Long> planNodeCpuMillis = new HashMap<>();
 
@@ -106,6 +107,8 @@ public class PlanNodeStatsSummarizer
                 long cpuMillis = operatorStats.getAddInputCpu().toMillis() + operatorStats.getGetOutputCpu().toMillis() + operatorStats.getFinishCpu().toMillis();
                 planNodeCpuMillis.merge(planNodeId, cpuMillis, Long::sum);
 
+                planNodeDynamicFilterPrunedPositions.merge(planNodeId, operatorStats.getDynamicFilterPrunedPositions(), Long::sum);
+
                 // A pipeline like hash build before join might link to another "internal" pipelines which provide actual input for this plan node
                 if (operatorStats.getPlanNodeId().equals(inputPlanNode) && !pipelineStats.isInputPipeline()) {
                     continue;
@@ -194,6 +197,7 @@ public class PlanNodeStatsSummarizer
                         succinctDataSize(planNodeRawInputBytes.get(planNodeId), BYTE),
                         outputPositions,
                         succinctDataSize(planNodeOutputBytes.getOrDefault(planNodeId, 0L), BYTE),
+                        planNodeDynamicFilterPrunedPositions.getOrDefault(planNodeId, 0L),
                         operatorInputStats.get(planNodeId),
                         operatorHashCollisionsStats.get(planNodeId));
             }
@@ -208,6 +212,7 @@ public class PlanNodeStatsSummarizer
                         succinctDataSize(planNodeRawInputBytes.get(planNodeId), BYTE),
                         outputPositions,
                         succinctDataSize(planNodeOutputBytes.getOrDefault(planNodeId, 0L), BYTE),
+                        planNodeDynamicFilterPrunedPositions.getOrDefault(planNodeId, 0L),
                         operatorInputStats.get(planNodeId),
                         windowNodeStats.get(planNodeId));
             }
@@ -222,6 +227,7 @@ public class PlanNodeStatsSummarizer
                         succinctDataSize(planNodeRawInputBytes.get(planNodeId), BYTE),
                         outputPositions,
                         succinctDataSize(planNodeOutputBytes.getOrDefault(planNodeId, 0L), BYTE),
+                        planNodeDynamicFilterPrunedPositions.getOrDefault(planNodeId, 0L),
                         operatorInputStats.get(planNodeId));
             }
 
@@ -72,6 +72,7 @@ import com.facebook.presto.sql.planner.plan.IndexSourceNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LateralJoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.MetadataDeleteNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.PlanFragmentId;
@@ -130,6 +131,7 @@ import static java.lang.String.format;
 import static java.util.Arrays.stream;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
 
 public class PlanPrinter
@@ -375,6 +377,27 @@ public class PlanPrinter
             node.getDistributionType().ifPresent(distributionType -> nodeOutput.appendDetails("Distribution: %s", distributionType));
             node.getSortExpressionContext(functionManager)
                     .ifPresent(sortContext -> nodeOutput.appendDetails("SortExpression[%s]", formatter.apply(sortContext.getSortExpression())));
+            if (!node.getDynamicFilters().isEmpty()) {
+                if (!nodeOutput.getDetails().isEmpty()) {
+                    nodeOutput.appendDetails("\n");
+                }
+                nodeOutput.appendDetails("DynamicFilters: %s", formatDynamicFilters(node.getDynamicFilters()));
+            }
+            node.getLeft().accept(this, context);
+            node.getRight().accept(this, context);
+
+            return null;
+        }
+
+        @Override
+        public Void visitMergeJoin(MergeJoinNode node, Void context)
+        {
+            List<String> joinExpressions = new ArrayList<>();
+            for (JoinNode.EquiJoinClause clause : node.getCriteria()) {
+                joinExpressions.add(JoinNodeUtils.toExpression(clause).toString());
+            }
+
+            addNode(node, "Merge" + node.getType().getJoinLabel(), format("[%s]", Joiner.on(" AND ").join(joinExpressions)));
             node.getLeft().accept(this, context);
             node.getRight().accept(this, context);
 
@@ -616,7 +639,7 @@ public class PlanPrinter
                     "TopNRowNumber",
                     format("[%s limit %s]%s", Joiner.on(", ").join(args), node.getMaxRowCountPerPartition(), formatHash(node.getHashVariable())));
 
-            nodeOutput.appendDetailsLine("%s := %s", node.getRowNumberVariable(), "row_number()");
+            nodeOutput.appendDetailsLine("%s := %s()", node.getRowNumberVariable(), node.getRankingFunction().getFunctionName());
 
             return processChildren(node, context);
         }
@@ -1206,6 +1229,13 @@ public class PlanPrinter
         return builder.toString();
     }
 
+    private static String formatDynamicFilters(Map<String, VariableReferenceExpression> dynamicFilters)
+    {
+        return dynamicFilters.entrySet().stream()
+                .map(entry -> entry.getKey() + " -> " + entry.getValue())
+                .collect(joining(", ", "{", "}"));
+    }
+
     private static String formatHash(Optional<VariableReferenceExpression>... hashes)
     {
         List<VariableReferenceExpression> variables = stream(hashes)
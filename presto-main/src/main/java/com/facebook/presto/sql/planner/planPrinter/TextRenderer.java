@@ -115,6 +115,10 @@ public class TextRenderer
 
         output.append(format(", Output: %s (%s)\n", formatPositions(nodeStats.getPlanNodeOutputPositions()), nodeStats.getPlanNodeOutputDataSize().toString()));
 
+        if (nodeStats.getPlanNodeDynamicFilterPrunedPositions() > 0) {
+            output.append(format("Dynamic filter pruned: %s\n", formatPositions(nodeStats.getPlanNodeDynamicFilterPrunedPositions())));
+        }
+
         printDistributions(output, nodeStats);
 
         if (nodeStats instanceof WindowPlanNodeStats) {
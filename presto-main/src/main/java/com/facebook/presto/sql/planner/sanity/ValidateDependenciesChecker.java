@@ -49,6 +49,7 @@ import com.facebook.presto.sql.planner.plan.IndexSourceNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LateralJoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.MetadataDeleteNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
@@ -396,6 +397,24 @@ public final class ValidateDependenciesChecker
             return null;
         }
 
+        @Override
+        public Void visitMergeJoin(MergeJoinNode node, Set<VariableReferenceExpression> boundVariables)
+        {
+            node.getLeft().accept(this, boundVariables);
+            node.getRight().accept(this, boundVariables);
+
+            Set<VariableReferenceExpression> leftInputs = createInputs(node.getLeft(), boundVariables);
+            Set<VariableReferenceExpression> rightInputs = createInputs(node.getRight(), boundVariables);
+
+            for (JoinNode.EquiJoinClause clause : node.getCriteria()) {
+                checkArgument(leftInputs.contains(clause.getLeft()), "Symbol from join clause (%s) not in left source (%s)", clause.getLeft(), node.getLeft().getOutputVariables());
+                checkArgument(rightInputs.contains(clause.getRight()), "Symbol from join clause (%s) not in right source (%s)", clause.getRight(), node.getRight().getOutputVariables());
+            }
+
+            checkLeftOutputVariablesBeforeRight(node.getLeft().getOutputVariables(), node.getOutputVariables());
+            return null;
+        }
+
         @Override
         public Void visitSemiJoin(SemiJoinNode node, Set<VariableReferenceExpression> boundVariables)
         {
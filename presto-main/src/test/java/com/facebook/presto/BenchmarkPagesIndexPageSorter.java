@@ -19,7 +19,6 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.PageBuilderStatus;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.PagesIndex;
-import com.facebook.presto.spi.PageSorter;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.Fork;
 import org.openjdk.jmh.annotations.Measurement;
@@ -44,6 +43,7 @@ import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static java.util.Collections.nCopies;
 
 @State(Scope.Thread)
@@ -56,9 +56,11 @@ public class BenchmarkPagesIndexPageSorter
     @Benchmark
     public int runBenchmark(BenchmarkData data)
     {
-        PageSorter pageSorter = new PagesIndexPageSorter(new PagesIndex.TestingFactory(false));
-        long[] addresses = pageSorter.sort(data.types, data.pages, data.sortChannels, nCopies(data.sortChannels.size(), ASC_NULLS_FIRST), 10_000);
-        return addresses.length;
+        // sorts like the page sorter, but with a memory context the normalized key sort can reserve its memory in
+        PagesIndex pagesIndex = new PagesIndex.TestingFactory(false, data.normalizedKeySort).newPagesIndex(data.types, 10_000);
+        data.pages.forEach(pagesIndex::addPage);
+        pagesIndex.sort(data.sortChannels, nCopies(data.sortChannels.size(), ASC_NULLS_FIRST), newSimpleAggregatedMemoryContext().newLocalMemoryContext("sort"));
+        return pagesIndex.getPositionCount();
     }
 
     private static List<Page> createPages(int pageCount, int channelCount, Type type)
@@ -99,6 +101,9 @@ public class BenchmarkPagesIndexPageSorter
         @Param({"BIGINT", "VARCHAR", "DOUBLE", "BOOLEAN"})
         private String sortChannelType;
 
+        @Param({"true", "false"})
+        private boolean normalizedKeySort;
+
         private List<Page> pages;
         private final int maxPages = 500;
 
@@ -263,7 +263,9 @@ public class MockRemoteTaskFactory
                             new DataSize(0, BYTE),
                             new DataSize(0, BYTE),
                             0,
-                            new Duration(0, MILLISECONDS)),
+                            new Duration(0, MILLISECONDS),
+                            0,
+                            ImmutableMap.of()),
                     DateTime.now(),
                     outputBuffer.getInfo(),
                     ImmutableSet.of(),
@@ -297,7 +299,9 @@ public class MockRemoteTaskFactory
                     stats.getUserMemoryReservation(),
                     stats.getSystemMemoryReservation(),
                     0,
-                    new Duration(0, MILLISECONDS));
+                    new Duration(0, MILLISECONDS),
+                    taskContext.getDynamicFilterDomainsVersion(),
+                    taskContext.getDynamicFilterDomains());
         }
 
         private synchronized void updateSplitQueueSpace()
@@ -327,6 +331,11 @@ public class MockRemoteTaskFactory
             updateSplitQueueSpace();
         }
 
+        public synchronized Multimap<PlanNodeId, Split> getSplits()
+        {
+            return ImmutableMultimap.copyOf(splits);
+        }
+
         public synchronized void clearSplits()
         {
             splits.clear();
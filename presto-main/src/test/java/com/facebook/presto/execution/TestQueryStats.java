@@ -62,6 +62,8 @@ public class TestQueryStats
                     succinctBytes(116L),
                     117L,
                     succinctBytes(118L),
+                    132L,
+                    135L,
                     new Duration(119, NANOSECONDS),
                     120L,
                     new Duration(121, NANOSECONDS),
@@ -100,6 +102,8 @@ public class TestQueryStats
                     succinctBytes(216L),
                     217L,
                     succinctBytes(218L),
+                    133L,
+                    136L,
                     new Duration(219, NANOSECONDS),
                     220L,
                     new Duration(221, NANOSECONDS),
@@ -138,6 +142,8 @@ public class TestQueryStats
                     succinctBytes(316L),
                     317L,
                     succinctBytes(318L),
+                    134L,
+                    137L,
                     new Duration(319, NANOSECONDS),
                     320L,
                     new Duration(321, NANOSECONDS),
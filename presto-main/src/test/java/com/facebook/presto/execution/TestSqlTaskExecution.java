@@ -160,6 +160,7 @@ public class TestSqlTaskExecution
             TaskOutputOperatorFactory taskOutputOperatorFactory = new TaskOutputOperatorFactory(
                     1,
                     TABLE_SCAN_NODE_ID,
+                    ImmutableList.of(VARCHAR),
                     outputBuffer,
                     Function.identity(),
                     new PagesSerdeFactory(new BlockEncodingManager(new TestingTypeManager()), false));
@@ -389,6 +390,7 @@ public class TestSqlTaskExecution
             TaskOutputOperatorFactory taskOutputOperatorFactory = new TaskOutputOperatorFactory(
                     4,
                     joinCNodeId,
+                    ImmutableList.of(VARCHAR),
                     outputBuffer,
                     Function.identity(),
                     new PagesSerdeFactory(new BlockEncodingManager(new TestingTypeManager()), false));
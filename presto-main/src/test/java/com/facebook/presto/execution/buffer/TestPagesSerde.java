@@ -13,11 +13,16 @@
  */
 package com.facebook.presto.execution.buffer;
 
+import com.facebook.presto.block.BlockEncodingManager;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.TestingTypeManager;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.page.PageCodecMarker;
+import com.facebook.presto.spi.page.PageCompressor;
 import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
@@ -25,14 +30,23 @@ import org.testng.annotations.Test;
 
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.execution.buffer.CompressionCodec.LZ4;
+import static com.facebook.presto.execution.buffer.CompressionCodec.SNAPPY;
+import static com.facebook.presto.execution.buffer.CompressionCodec.ZSTD;
+import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
+import static com.facebook.presto.spi.page.PageCodecMarker.getCodecMarker;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readPages;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writePages;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class TestPagesSerde
 {
@@ -60,6 +74,67 @@ public class TestPagesSerde
         assertFalse(pageIterator.hasNext());
     }
 
+    @Test
+    public void testCompressionCodecs()
+    {
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(blockBuilder, i % 10);
+        }
+        Page page = new Page(blockBuilder.build());
+
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            PagesSerde serde = createPagesSerde(codec);
+            SerializedPage serializedPage = serde.serialize(page);
+            assertEquals(COMPRESSED.isSet(serializedPage.getPageCodecMarkers()), codec != CompressionCodec.NONE);
+            assertEquals(getCodecMarker(serializedPage.getPageCodecMarkers()), codec.createPageCompressor().flatMap(PageCompressor::getCodecMarker));
+            assertPageEquals(ImmutableList.of(BIGINT), serde.deserialize(serializedPage), page);
+        }
+
+        assertEquals(getCodecMarker(createPagesSerde(ZSTD).serialize(page).getPageCodecMarkers()), Optional.of(PageCodecMarker.ZSTD));
+        assertEquals(getCodecMarker(createPagesSerde(SNAPPY).serialize(page).getPageCodecMarkers()), Optional.of(PageCodecMarker.SNAPPY));
+        assertEquals(getCodecMarker(createPagesSerde(LZ4).serialize(page).getPageCodecMarkers()), Optional.empty());
+
+        try {
+            createPagesSerde(LZ4).deserialize(createPagesSerde(ZSTD).serialize(page));
+            fail("expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("decompressor is for another codec"));
+        }
+    }
+
+    @Test
+    public void testSkipCompressionOfDenseData()
+    {
+        Random random = new Random(0);
+        BlockBuilder denseBlockBuilder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(denseBlockBuilder, random.nextLong());
+        }
+        Page densePage = new Page(denseBlockBuilder.build());
+        BlockBuilder sparseBlockBuilder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(sparseBlockBuilder, 0);
+        }
+        Page sparsePage = new Page(sparseBlockBuilder.build());
+
+        PagesSerde serde = createPagesSerde(LZ4);
+
+        // the sparse page after the first dense page is not compressed, nor are the two after the second one
+        assertFalse(COMPRESSED.isSet(serde.serialize(densePage).getPageCodecMarkers()));
+        assertFalse(COMPRESSED.isSet(serde.serialize(sparsePage).getPageCodecMarkers()));
+        assertFalse(COMPRESSED.isSet(serde.serialize(densePage).getPageCodecMarkers()));
+        assertFalse(COMPRESSED.isSet(serde.serialize(sparsePage).getPageCodecMarkers()));
+        assertFalse(COMPRESSED.isSet(serde.serialize(sparsePage).getPageCodecMarkers()));
+
+        // compression is tried again, and the pause is reset once a page compresses well
+        assertTrue(COMPRESSED.isSet(serde.serialize(sparsePage).getPageCodecMarkers()));
+        assertFalse(COMPRESSED.isSet(serde.serialize(densePage).getPageCodecMarkers()));
+        assertFalse(COMPRESSED.isSet(serde.serialize(sparsePage).getPageCodecMarkers()));
+        assertTrue(COMPRESSED.isSet(serde.serialize(sparsePage).getPageCodecMarkers()));
+    }
+
     @Test
     public void testBigintSerializedSize()
     {
@@ -107,6 +182,11 @@ public class TestPagesSerde
         assertEquals(secondValueSize, 4 + 3); // length + "bob" (null shared with first entry)
     }
 
+    private static PagesSerde createPagesSerde(CompressionCodec codec)
+    {
+        return new PagesSerdeFactory(new BlockEncodingManager(new TestingTypeManager()), codec).createPagesSerde();
+    }
+
     private static int serializedSize(List<? extends Type> types, Page expectedPage)
     {
         PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
@@ -0,0 +1,218 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.cost.StatsAndCosts;
+import com.facebook.presto.operator.StageExecutionDescriptor;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.plan.ValuesNode;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.Partitioning;
+import com.facebook.presto.sql.planner.PartitioningHandle;
+import com.facebook.presto.sql.planner.PartitioningScheme;
+import com.facebook.presto.sql.planner.PlanFragment;
+import com.facebook.presto.sql.planner.SubPlan;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.JoinNode.DistributionType;
+import com.facebook.presto.sql.planner.plan.PlanFragmentId;
+import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
+import com.facebook.presto.testing.TestingMetadata.TestingColumnHandle;
+import com.facebook.presto.testing.TestingMetadata.TestingTableHandle;
+import com.facebook.presto.testing.TestingTransactionHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.execution.StageExecutionState.ABORTED;
+import static com.facebook.presto.execution.StageExecutionState.FINISHED;
+import static com.facebook.presto.execution.StageExecutionState.RUNNING;
+import static com.facebook.presto.execution.StageExecutionState.SCHEDULING;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DISTRIBUTION;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.REPARTITION;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestQueryDynamicFilters
+{
+    private static final ConnectorId CONNECTOR_ID = new ConnectorId("connector_id");
+    private static final String FILTER_ID = "df";
+    private static final PlanNodeId SCAN_ID = new PlanNodeId("scan");
+    private static final PlanFragmentId JOIN_FRAGMENT_ID = new PlanFragmentId(0);
+    private static final PlanFragmentId SCAN_FRAGMENT_ID = new PlanFragmentId(1);
+    private static final ColumnHandle COLUMN = new TestingColumnHandle("column");
+
+    private static final Domain FIRST_DOMAIN = Domain.singleValue(BIGINT, 1L);
+    private static final Domain SECOND_DOMAIN = Domain.singleValue(BIGINT, 2L);
+
+    @Test
+    public void testReplicatedJoinCompletesOnFirstTask()
+    {
+        QueryDynamicFilters dynamicFilters = QueryDynamicFilters.create(createPlan(REPLICATED));
+        // a scan in the stage of the join is never blocked
+        assertTrue(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertTrue(getPredicate(dynamicFilters).isAll());
+
+        dynamicFilters.update(JOIN_FRAGMENT_ID, SCHEDULING, ImmutableList.of(ImmutableMap.of(), ImmutableMap.of(FILTER_ID, FIRST_DOMAIN)));
+        assertEquals(getPredicate(dynamicFilters), withColumnDomain(FIRST_DOMAIN));
+    }
+
+    @Test
+    public void testPartitionedJoinWaitsForAllTasks()
+    {
+        QueryDynamicFilters dynamicFilters = QueryDynamicFilters.create(createPlan(PARTITIONED));
+        assertFalse(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+
+        // more tasks may be created while the stage is scheduling
+        dynamicFilters.update(JOIN_FRAGMENT_ID, SCHEDULING, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN)));
+        assertFalse(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertTrue(getPredicate(dynamicFilters).isAll());
+
+        // partial reports do not constrain the scan
+        dynamicFilters.update(JOIN_FRAGMENT_ID, RUNNING, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN), ImmutableMap.of()));
+        assertFalse(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertTrue(getPredicate(dynamicFilters).isAll());
+
+        dynamicFilters.update(JOIN_FRAGMENT_ID, RUNNING, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN), ImmutableMap.of(FILTER_ID, SECOND_DOMAIN)));
+        assertTrue(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertEquals(getPredicate(dynamicFilters), withColumnDomain(FIRST_DOMAIN.union(SECOND_DOMAIN)));
+    }
+
+    @Test
+    public void testStageDoneWithoutReports()
+    {
+        QueryDynamicFilters dynamicFilters = QueryDynamicFilters.create(createPlan(PARTITIONED));
+
+        dynamicFilters.update(JOIN_FRAGMENT_ID, ABORTED, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN), ImmutableMap.of()));
+        assertTrue(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertTrue(getPredicate(dynamicFilters).isAll());
+
+        dynamicFilters = QueryDynamicFilters.create(createPlan(PARTITIONED));
+        dynamicFilters.update(JOIN_FRAGMENT_ID, FINISHED, ImmutableList.of());
+        assertTrue(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertTrue(getPredicate(dynamicFilters).isAll());
+    }
+
+    @Test
+    public void testLateReportsAreIgnored()
+    {
+        QueryDynamicFilters dynamicFilters = QueryDynamicFilters.create(createPlan(PARTITIONED));
+        dynamicFilters.update(JOIN_FRAGMENT_ID, RUNNING, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN)));
+        assertEquals(getPredicate(dynamicFilters), withColumnDomain(FIRST_DOMAIN));
+
+        dynamicFilters.update(JOIN_FRAGMENT_ID, FINISHED, ImmutableList.of(ImmutableMap.of(FILTER_ID, SECOND_DOMAIN)));
+        assertEquals(getPredicate(dynamicFilters), withColumnDomain(FIRST_DOMAIN));
+
+        // a filter completed without reports stays unconstrained
+        dynamicFilters = QueryDynamicFilters.create(createPlan(PARTITIONED));
+        dynamicFilters.update(JOIN_FRAGMENT_ID, FINISHED, ImmutableList.of(ImmutableMap.of()));
+        dynamicFilters.update(JOIN_FRAGMENT_ID, FINISHED, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN)));
+        assertTrue(getPredicate(dynamicFilters).isAll());
+    }
+
+    @Test
+    public void testReportsOfOtherStagesAreIgnored()
+    {
+        QueryDynamicFilters dynamicFilters = QueryDynamicFilters.create(createPlan(PARTITIONED));
+        dynamicFilters.update(SCAN_FRAGMENT_ID, FINISHED, ImmutableList.of(ImmutableMap.of(FILTER_ID, FIRST_DOMAIN)));
+        assertFalse(dynamicFilters.getBlockedFuture(SCAN_ID).isDone());
+        assertTrue(getPredicate(dynamicFilters).isAll());
+    }
+
+    private static TupleDomain<ColumnHandle> getPredicate(QueryDynamicFilters dynamicFilters)
+    {
+        return dynamicFilters.getPredicateSupplier(SCAN_ID).get();
+    }
+
+    private static TupleDomain<ColumnHandle> withColumnDomain(Domain domain)
+    {
+        return TupleDomain.withColumnDomains(ImmutableMap.of(COLUMN, domain));
+    }
+
+    /**
+     * Creates a join with a dynamic filter on the probe side table scan. The scan is in the stage
+     * of the join for replicated joins, and in a source stage of its own for partitioned joins.
+     */
+    private static SubPlan createPlan(DistributionType distributionType)
+    {
+        VariableReferenceExpression probeVariable = new VariableReferenceExpression("probe", BIGINT);
+        VariableReferenceExpression buildVariable = new VariableReferenceExpression("build", BIGINT);
+
+        TableScanNode scan = new TableScanNode(
+                SCAN_ID,
+                new TableHandle(CONNECTOR_ID, new TestingTableHandle(), TestingTransactionHandle.create(), Optional.empty()),
+                ImmutableList.of(probeVariable),
+                ImmutableMap.of(probeVariable, COLUMN),
+                TupleDomain.all(),
+                TupleDomain.all());
+
+        boolean remoteProbe = distributionType == PARTITIONED;
+        PlanNode probe = remoteProbe
+                ? new RemoteSourceNode(new PlanNodeId("remote"), SCAN_FRAGMENT_ID, ImmutableList.of(probeVariable), false, Optional.empty(), REPARTITION)
+                : scan;
+        ValuesNode build = new ValuesNode(new PlanNodeId("build"), ImmutableList.of(buildVariable), ImmutableList.of());
+        Map<String, VariableReferenceExpression> dynamicFilters = ImmutableMap.of(FILTER_ID, buildVariable);
+        JoinNode join = new JoinNode(
+                new PlanNodeId("join"),
+                INNER,
+                probe,
+                build,
+                ImmutableList.of(new JoinNode.EquiJoinClause(probeVariable, buildVariable)),
+                ImmutableList.of(probeVariable),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.of(distributionType),
+                dynamicFilters);
+
+        PlanFragment joinFragment = createFragment(JOIN_FRAGMENT_ID, join, remoteProbe ? FIXED_HASH_DISTRIBUTION : SOURCE_DISTRIBUTION, probeVariable);
+        if (!remoteProbe) {
+            return new SubPlan(joinFragment, ImmutableList.of());
+        }
+        PlanFragment scanFragment = createFragment(SCAN_FRAGMENT_ID, scan, SOURCE_DISTRIBUTION, probeVariable);
+        return new SubPlan(joinFragment, ImmutableList.of(new SubPlan(scanFragment, ImmutableList.of())));
+    }
+
+    private static PlanFragment createFragment(PlanFragmentId id, PlanNode root, PartitioningHandle partitioning, VariableReferenceExpression variable)
+    {
+        return new PlanFragment(
+                id,
+                root,
+                ImmutableSet.of(variable),
+                partitioning,
+                partitioning == SOURCE_DISTRIBUTION ? ImmutableList.of(SCAN_ID) : ImmutableList.of(),
+                new PartitioningScheme(Partitioning.create(SINGLE_DISTRIBUTION, ImmutableList.of()), ImmutableList.of(variable)),
+                StageExecutionDescriptor.ungroupedExecution(),
+                false,
+                StatsAndCosts.empty(),
+                Optional.empty());
+    }
+}
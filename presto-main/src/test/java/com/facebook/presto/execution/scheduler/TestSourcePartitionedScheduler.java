@@ -14,6 +14,7 @@
 package com.facebook.presto.execution.scheduler;
 
 import com.facebook.presto.client.NodeVersion;
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.cost.StatsAndCosts;
 import com.facebook.presto.execution.LocationFactory;
@@ -31,7 +32,9 @@ import com.facebook.presto.failureDetector.NoOpFailureDetector;
 import com.facebook.presto.metadata.InMemoryNodeManager;
 import com.facebook.presto.metadata.InternalNode;
 import com.facebook.presto.metadata.InternalNodeManager;
+import com.facebook.presto.metadata.Split;
 import com.facebook.presto.operator.StageExecutionDescriptor;
+import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.ConnectorSplit;
 import com.facebook.presto.spi.ConnectorSplitSource;
@@ -73,6 +76,7 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
@@ -87,6 +91,9 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SOURCE_DI
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.GATHER;
 import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.slice.Slices.utf8Slice;
 import static java.lang.Integer.min;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newCachedThreadPool;
@@ -420,6 +427,37 @@ public class TestSourcePartitionedScheduler
         secondStage.abort();
     }
 
+    @Test
+    public void testAttachDynamicFilterToSplits()
+    {
+        SubPlan plan = createPlan();
+        NodeTaskMap nodeTaskMap = new NodeTaskMap(finalizerService);
+        SqlStageExecution stage = createSqlStageExecution(plan, nodeTaskMap);
+
+        AtomicReference<TupleDomain<ColumnHandle>> dynamicFilter = new AtomicReference<>(TupleDomain.all());
+        StageScheduler scheduler = getSourcePartitionedScheduler(createFixedSplitSource(20, TestingSplit::createRemoteSplit), stage, nodeManager, nodeTaskMap, 10, dynamicFilter);
+
+        // the build side of the join has not been collected yet
+        ScheduleResult scheduleResult = scheduler.schedule();
+        assertFalse(scheduleResult.isFinished());
+        assertEquals(scheduleResult.getSplitsScheduled(), 10);
+
+        TupleDomain<ColumnHandle> predicate = TupleDomain.withColumnDomains(ImmutableMap.of(new TestingColumnHandle("column"), Domain.singleValue(VARCHAR, utf8Slice("value"))));
+        dynamicFilter.set(predicate);
+        scheduleResult = scheduler.schedule();
+        assertEquals(scheduleResult.getSplitsScheduled(), 10);
+        assertEffectivelyFinished(scheduleResult, scheduler);
+
+        List<Split> splits = stage.getAllTasks().stream()
+                .flatMap(task -> ((MockRemoteTask) task).getSplits().get(TABLE_SCAN_NODE_ID).stream())
+                .collect(toImmutableList());
+        assertEquals(splits.size(), 20);
+        assertEquals(splits.stream().filter(split -> !split.getSplitContext().getDynamicFilterPredicate().isPresent()).count(), 10);
+        assertEquals(splits.stream().filter(split -> split.getSplitContext().getDynamicFilterPredicate().equals(Optional.of(predicate))).count(), 10);
+
+        stage.abort();
+    }
+
     private static void assertPartitionedSplitCount(SqlStageExecution stage, int expectedPartitionedSplitCount)
     {
         assertEquals(stage.getAllTasks().stream().mapToInt(RemoteTask::getPartitionedSplitCount).sum(), expectedPartitionedSplitCount);
@@ -446,6 +484,17 @@ public class TestSourcePartitionedScheduler
             InternalNodeManager nodeManager,
             NodeTaskMap nodeTaskMap,
             int splitBatchSize)
+    {
+        return getSourcePartitionedScheduler(connectorSplitSource, stage, nodeManager, nodeTaskMap, splitBatchSize, new AtomicReference<>(TupleDomain.all()));
+    }
+
+    private static StageScheduler getSourcePartitionedScheduler(
+            ConnectorSplitSource connectorSplitSource,
+            SqlStageExecution stage,
+            InternalNodeManager nodeManager,
+            NodeTaskMap nodeTaskMap,
+            int splitBatchSize,
+            AtomicReference<TupleDomain<ColumnHandle>> dynamicFilter)
     {
         NodeSchedulerConfig nodeSchedulerConfig = new NodeSchedulerConfig()
                 .setIncludeCoordinator(false)
@@ -454,7 +503,7 @@ public class TestSourcePartitionedScheduler
         NodeScheduler nodeScheduler = new NodeScheduler(new LegacyNetworkTopology(), nodeManager, new NodeSelectionStats(), nodeSchedulerConfig, nodeTaskMap);
         SplitSource splitSource = new ConnectorAwareSplitSource(CONNECTOR_ID, TestingTransactionHandle.create(), connectorSplitSource);
         SplitPlacementPolicy placementPolicy = new DynamicSplitPlacementPolicy(nodeScheduler.createNodeSelector(splitSource.getConnectorId()), stage::getAllTasks);
-        return newSourcePartitionedSchedulerAsStageScheduler(stage, TABLE_SCAN_NODE_ID, splitSource, placementPolicy, splitBatchSize);
+        return newSourcePartitionedSchedulerAsStageScheduler(stage, TABLE_SCAN_NODE_ID, splitSource, placementPolicy, splitBatchSize, () -> immediateFuture(null), dynamicFilter::get);
     }
 
     private static SubPlan createPlan()
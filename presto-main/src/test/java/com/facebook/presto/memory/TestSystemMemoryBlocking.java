@@ -114,7 +114,8 @@ public class TestSystemMemoryBlocking
                         new ConnectorTableHandle() {},
                         new ConnectorTransactionHandle() {},
                         Optional.empty()),
-                ImmutableList.of());
+                ImmutableList.of(),
+                Optional.empty());
         PageConsumerOperator sink = createSinkOperator(types);
         Driver driver = Driver.createDriver(driverContext, source, sink);
         assertSame(driver.getDriverContext(), driverContext);
@@ -0,0 +1,196 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
+import com.facebook.presto.sql.gen.JoinCompiler;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.UpdateMemory.NOOP;
+import static com.facebook.presto.type.TypeUtils.getHashBlock;
+
+/**
+ * Compares the columnar batch hashing of {@link MultiChannelGroupByHash} with hashing and probing one row at a time.
+ */
+@SuppressWarnings("MethodMayBeStatic")
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(2)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkBatchGroupByHash
+{
+    private static final int POSITIONS = 1_000_000;
+    private static final int EXPECTED_SIZE = 10_000;
+    // key types are cycled through for the group by channels
+    private static final List<Type> KEY_TYPES = ImmutableList.of(BIGINT, VARCHAR, DOUBLE, BIGINT);
+    private static final JoinCompiler JOIN_COMPILER = new JoinCompiler(MetadataManager.createTestMetadataManager(), new FeaturesConfig());
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public Object getGroupIds(BenchmarkData data)
+    {
+        GroupByHash groupByHash = data.createGroupByHash();
+        ImmutableList.Builder<GroupByIdBlock> groupIds = ImmutableList.builder();
+        for (Page page : data.getPages()) {
+            Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+            work.process();
+            groupIds.add(work.getResult());
+        }
+        return groupIds.build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public Object addPage(BenchmarkData data)
+    {
+        GroupByHash groupByHash = data.createGroupByHash();
+        data.getPages().forEach(page -> groupByHash.addPage(page).process());
+        return groupByHash.getGroupCount();
+    }
+
+    @SuppressWarnings("FieldMayBeFinal")
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        @Param({"1", "2", "3", "4"})
+        private int channelCount = 4;
+
+        @Param({"true", "false"})
+        private boolean batchHashing = true;
+
+        @Param({"true", "false"})
+        private boolean hashEnabled;
+
+        @Param({"1000", "100000"})
+        private int groupCount = 100_000;
+
+        private List<Type> types;
+        private int[] channels;
+        private Optional<Integer> hashChannel;
+        private List<Page> pages;
+
+        @Setup
+        public void setup()
+        {
+            types = KEY_TYPES.subList(0, channelCount);
+            channels = new int[channelCount];
+            for (int i = 0; i < channelCount; i++) {
+                channels[i] = i;
+            }
+            hashChannel = hashEnabled ? Optional.of(channelCount) : Optional.empty();
+            pages = createPages(types, groupCount, hashEnabled);
+        }
+
+        public GroupByHash createGroupByHash()
+        {
+            return new MultiChannelGroupByHash(types, channels, hashChannel, EXPECTED_SIZE, false, batchHashing, JOIN_COMPILER, NOOP);
+        }
+
+        public List<Page> getPages()
+        {
+            return pages;
+        }
+    }
+
+    private static List<Page> createPages(List<Type> types, int groupCount, boolean hashEnabled)
+    {
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        PageBuilder pageBuilder = new PageBuilder(types);
+        for (int position = 0; position < POSITIONS; position++) {
+            int value = ThreadLocalRandom.current().nextInt(groupCount);
+            pageBuilder.declarePosition();
+            for (int channel = 0; channel < types.size(); channel++) {
+                Type type = types.get(channel);
+                if (type == VARCHAR) {
+                    VARCHAR.writeString(pageBuilder.getBlockBuilder(channel), "key_" + value);
+                }
+                else if (type == DOUBLE) {
+                    DOUBLE.writeDouble(pageBuilder.getBlockBuilder(channel), value * 0.5);
+                }
+                else {
+                    BIGINT.writeLong(pageBuilder.getBlockBuilder(channel), value);
+                }
+            }
+            if (pageBuilder.isFull()) {
+                pages.add(withHash(pageBuilder.build(), types, hashEnabled));
+                pageBuilder.reset();
+            }
+        }
+        pages.add(withHash(pageBuilder.build(), types, hashEnabled));
+        return pages.build();
+    }
+
+    private static Page withHash(Page page, List<Type> types, boolean hashEnabled)
+    {
+        if (!hashEnabled) {
+            return page;
+        }
+        Block[] keyBlocks = new Block[types.size()];
+        for (int channel = 0; channel < types.size(); channel++) {
+            keyBlocks[channel] = page.getBlock(channel);
+        }
+        return page.appendColumn(getHashBlock(types, keyBlocks));
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        // assure the benchmarks are valid before running
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+        new BenchmarkBatchGroupByHash().getGroupIds(data);
+        new BenchmarkBatchGroupByHash().addPage(data);
+
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkBatchGroupByHash.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .jvmArgs("-Xmx10g")
+                .build();
+        new Runner(options).run();
+    }
+}
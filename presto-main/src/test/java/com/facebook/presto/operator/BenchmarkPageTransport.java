@@ -0,0 +1,167 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.server.PagesResponseWriter;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.PagesSerdeUtil;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
+import static com.facebook.presto.execution.buffer.TestingPagesSerdeFactory.testingPagesSerde;
+import static com.facebook.presto.operator.HttpRpcShuffleClient.PageResponseHandler.readSerializedPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPages;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Compares the page transport with and without the intermediate buffers of the slice streams. Run with the
+ * GC profiler, gc.alloc.rate.norm is the number of bytes allocated for every response written or read.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(0)
+@Warmup(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class BenchmarkPageTransport
+{
+    private static final PagesResponseWriter PAGES_RESPONSE_WRITER = new PagesResponseWriter();
+
+    @Benchmark
+    public void writeWithSliceOutput(BenchmarkData data)
+    {
+        SliceOutput output = new OutputStreamSliceOutput(ByteStreams.nullOutputStream());
+        writeSerializedPages(output, data.getSerializedPages());
+        output.flush();
+    }
+
+    @Benchmark
+    public void writeWithPagesResponseWriter(BenchmarkData data)
+            throws IOException
+    {
+        PAGES_RESPONSE_WRITER.writeTo(data.getSerializedPages(), List.class, null, null, null, null, ByteStreams.nullOutputStream());
+    }
+
+    @Benchmark
+    public List<SerializedPage> readWithSliceInput(BenchmarkData data)
+    {
+        return ImmutableList.copyOf(PagesSerdeUtil.readSerializedPages(new InputStreamSliceInput(data.getResponseStream())));
+    }
+
+    @Benchmark
+    public List<SerializedPage> readWithPageResponseHandler(BenchmarkData data)
+            throws IOException
+    {
+        return readSerializedPages(data.getResponseStream());
+    }
+
+    @Test
+    public void verifyRead()
+            throws IOException
+    {
+        BenchmarkData data = new BenchmarkData();
+        data.setup();
+
+        List<SerializedPage> expected = readWithSliceInput(data);
+        List<SerializedPage> actual = readWithPageResponseHandler(data);
+        assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(actual.get(i).getPositionCount(), expected.get(i).getPositionCount());
+            assertEquals(actual.get(i).getPageCodecMarkers(), expected.get(i).getPageCodecMarkers());
+            assertEquals(actual.get(i).getUncompressedSizeInBytes(), expected.get(i).getUncompressedSizeInBytes());
+            assertEquals(actual.get(i).getSlice(), expected.get(i).getSlice());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class BenchmarkData
+    {
+        private static final int POSITION_COUNT = 1024;
+
+        @Param({"1", "16", "128"})
+        private int pageCount = 16;
+
+        private List<SerializedPage> serializedPages;
+        private byte[] response;
+
+        @Setup
+        public void setup()
+                throws IOException
+        {
+            PagesSerde serde = testingPagesSerde();
+            ImmutableList.Builder<SerializedPage> pages = ImmutableList.builder();
+            for (int i = 0; i < pageCount; i++) {
+                pages.add(serde.serialize(new Page(createLongSequenceBlock(0, POSITION_COUNT), createRandomStringBlock(POSITION_COUNT, 0.1f, 20))));
+            }
+            serializedPages = pages.build();
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            PAGES_RESPONSE_WRITER.writeTo(serializedPages, List.class, null, null, null, null, output);
+            response = output.toByteArray();
+        }
+
+        public List<SerializedPage> getSerializedPages()
+        {
+            return serializedPages;
+        }
+
+        public ByteArrayInputStream getResponseStream()
+        {
+            return new ByteArrayInputStream(response);
+        }
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkPageTransport.class.getSimpleName() + ".*")
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.IntPredicate;
+
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+
+public class DummyPartitioningSpillerFactory
+        implements PartitioningSpillerFactory
+{
+    private long spillsCount;
+
+    @Override
+    public PartitioningSpiller create(List<Type> types, PartitionFunction partitionFunction, SpillContext spillContext, AggregatedMemoryContext memoryContext)
+    {
+        return new PartitioningSpiller()
+        {
+            private final List<List<Page>> partitions = new ArrayList<>();
+            private final Set<Integer> unreadPartitions = new HashSet<>();
+
+            {
+                for (int partition = 0; partition < partitionFunction.getPartitionCount(); partition++) {
+                    partitions.add(new ArrayList<>());
+                }
+            }
+
+            @Override
+            public PartitioningSpillResult partitionAndSpill(Page page, IntPredicate spillPartitionMask)
+            {
+                spillsCount++;
+                IntArrayList unspilledPositions = new IntArrayList();
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    int partition = partitionFunction.getPartition(page, position);
+                    if (!spillPartitionMask.test(partition)) {
+                        unspilledPositions.add(position);
+                        continue;
+                    }
+                    partitions.get(partition).add(page.getRegion(position, 1));
+                    unreadPartitions.add(partition);
+                }
+                return new PartitioningSpillResult(immediateFuture(null), page.getPositions(unspilledPositions.elements(), 0, unspilledPositions.size()));
+            }
+
+            @Override
+            public Iterator<Page> getSpilledPages(int partition)
+            {
+                unreadPartitions.remove(partition);
+                return partitions.get(partition).iterator();
+            }
+
+            @Override
+            public void verifyAllPartitionsRead()
+            {
+                verify(unreadPartitions.isEmpty(), "Some partitions were spilled but not read: %s", unreadPartitions);
+            }
+
+            @Override
+            public void close()
+            {
+            }
+        };
+    }
+
+    public long getSpillsCount()
+    {
+        return spillsCount;
+    }
+}
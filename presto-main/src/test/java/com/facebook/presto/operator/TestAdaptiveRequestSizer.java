@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static org.testng.Assert.assertEquals;
+
+public class TestAdaptiveRequestSizer
+{
+    private static final URI LOCATION = URI.create("http://localhost:8080");
+    private static final URI OTHER_LOCATION = URI.create("http://localhost:8081");
+
+    @Test
+    public void testGrowWhileResponsesFillRequests()
+    {
+        AdaptiveRequestSizer sizer = new AdaptiveRequestSizer(100, 1000, 0.5);
+
+        assertEquals(sizer.startRequest(LOCATION), 200);
+        sizer.responseReceived(LOCATION, 150);
+        assertEquals(sizer.startRequest(LOCATION), 400);
+        sizer.responseReceived(LOCATION, 400);
+        assertEquals(sizer.startRequest(LOCATION), 800);
+        sizer.responseReceived(LOCATION, 700);
+
+        // up to the max request size
+        assertEquals(sizer.startRequest(LOCATION), 1000);
+    }
+
+    @Test
+    public void testShrinkToAverageResponseSize()
+    {
+        AdaptiveRequestSizer sizer = new AdaptiveRequestSizer(10, 1000, 0.5);
+
+        // the average response size starts at the min request size
+        assertEquals(sizer.startRequest(LOCATION), 20);
+        sizer.responseReceived(LOCATION, 20);
+        assertEquals(sizer.startRequest(LOCATION), 40);
+        sizer.responseReceived(LOCATION, 40);
+        assertEquals(sizer.startRequest(LOCATION), 80);
+
+        // the average response size is (10 + 20) / 2 = 15, then (15 + 40) / 2 = 27.5, then (27.5 + 0) / 2 = 13.75
+        sizer.responseReceived(LOCATION, 0);
+        assertEquals(sizer.getNextRequestSizeInBytes(LOCATION), 27);
+
+        // not below the min request size
+        sizer.startRequest(LOCATION);
+        sizer.responseReceived(LOCATION, 0);
+        sizer.startRequest(LOCATION);
+        sizer.responseReceived(LOCATION, 0);
+        assertEquals(sizer.getNextRequestSizeInBytes(LOCATION), 10);
+    }
+
+    @Test
+    public void testClientsAreSizedIndependently()
+    {
+        AdaptiveRequestSizer sizer = new AdaptiveRequestSizer(100, 1000, 0.5);
+
+        sizer.startRequest(LOCATION);
+        sizer.startRequest(OTHER_LOCATION);
+        sizer.responseReceived(LOCATION, 200);
+        sizer.responseReceived(OTHER_LOCATION, 0);
+
+        assertEquals(sizer.getNextRequestSizeInBytes(LOCATION), 400);
+        assertEquals(sizer.getNextRequestSizeInBytes(OTHER_LOCATION), 100);
+    }
+
+    @Test
+    public void testPendingRequests()
+    {
+        AdaptiveRequestSizer sizer = new AdaptiveRequestSizer(100, 1000, 0.5);
+
+        sizer.startRequest(LOCATION);
+        sizer.startRequest(OTHER_LOCATION);
+        assertEquals(sizer.getPendingRequests(), 2);
+        assertEquals(sizer.getPendingRequestedBytes(), 400);
+        assertEquals(sizer.getPendingExpectedBytes(), 200);
+
+        sizer.responseReceived(LOCATION, 200);
+        assertEquals(sizer.getPendingRequests(), 1);
+        assertEquals(sizer.getPendingRequestedBytes(), 200);
+        assertEquals(sizer.getPendingExpectedBytes(), 100);
+
+        // a failed request is over without a response, and is only counted once
+        sizer.requestFinished(OTHER_LOCATION);
+        sizer.requestFinished(OTHER_LOCATION);
+        sizer.requestFinished(LOCATION);
+        assertEquals(sizer.getPendingRequests(), 0);
+        assertEquals(sizer.getPendingRequestedBytes(), 0);
+        assertEquals(sizer.getPendingExpectedBytes(), 0);
+
+        // the size of the next request is left as it was
+        assertEquals(sizer.getNextRequestSizeInBytes(OTHER_LOCATION), 200);
+    }
+}
@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.ArrayType;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.FunctionManager;
 import com.facebook.presto.metadata.MetadataManager;
@@ -29,17 +30,21 @@ import org.testng.annotations.Test;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.block.SortOrder.DESC_NULLS_LAST;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.RealType.REAL;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
@@ -161,6 +166,57 @@ public class TestAggregationOperator
         assertEquals(driverContext.getMemoryUsage(), 0);
     }
 
+    @Test
+    public void testOrderedAggregationReservesSortMemory()
+            throws Exception
+    {
+        int positionCount = 2000;
+        List<Page> input = rowPagesBuilder(BIGINT)
+                .addSequencePage(positionCount, 0)
+                .build();
+
+        InternalAggregationFunction arrayAgg = getAggregation("array_agg", BIGINT);
+        OperatorFactory operatorFactory = new AggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                Step.SINGLE,
+                ImmutableList.of(arrayAgg.bind(
+                        ImmutableList.of(0),
+                        Optional.empty(),
+                        ImmutableList.of(BIGINT),
+                        ImmutableList.of(0),
+                        ImmutableList.of(DESC_NULLS_LAST),
+                        new PagesIndex.TestingFactory(false, true),
+                        false,
+                        null,
+                        ImmutableList.of(),
+                        TEST_SESSION)),
+                false);
+
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), new ArrayType(BIGINT))
+                .row(LongStream.range(0, positionCount).map(value -> positionCount - 1 - value).boxed().collect(Collectors.toList()))
+                .build();
+
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            input.forEach(operator::addInput);
+            long inputMemoryUsage = driverContext.getMemoryUsage();
+            assertThat(inputMemoryUsage).isGreaterThan(0);
+
+            List<Page> output = toPages(operator, emptyIterator());
+            assertEquals(toMaterializedResult(driverContext.getSession(), ImmutableList.of(new ArrayType(BIGINT)), output), expected);
+
+            // the normalized keys of the ordered input are reserved in the user memory of the operator while sorting
+            assertThat(operator.getOperatorContext().getOperatorStats().getPeakUserMemoryReservation().toBytes()).isGreaterThanOrEqualTo(inputMemoryUsage + 48L * positionCount);
+        }
+
+        assertEquals(driverContext.getSystemMemoryUsage(), 0);
+        assertEquals(driverContext.getMemoryUsage(), 0);
+    }
+
     private static InternalAggregationFunction getAggregation(String name, Type... arguments)
     {
         return functionManager.getAggregateFunctionImplementation(functionManager.lookupFunction(name, fromTypes(arguments)));
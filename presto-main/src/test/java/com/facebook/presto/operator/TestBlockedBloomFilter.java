@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.testng.annotations.Test;
+
+import static io.airlift.slice.XxHash64.hash;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestBlockedBloomFilter
+{
+    private static final int ENTRIES = 10_000;
+
+    @Test
+    public void testNoFalseNegatives()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(ENTRIES);
+        for (long value = 0; value < ENTRIES; value++) {
+            filter.add(hash(value));
+        }
+        for (long value = 0; value < ENTRIES; value++) {
+            assertTrue(filter.mightContain(hash(value)));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRate()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(ENTRIES);
+        for (long value = 0; value < ENTRIES; value++) {
+            filter.add(hash(value));
+        }
+
+        int falsePositives = 0;
+        for (long value = ENTRIES; value < 101 * ENTRIES; value++) {
+            if (filter.mightContain(hash(value))) {
+                falsePositives++;
+            }
+        }
+        // the expected rate is well below 1% at 16 bits per entry
+        assertTrue(falsePositives < ENTRIES, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        BlockedBloomFilter filter = new BlockedBloomFilter(0);
+        for (long value = 0; value < ENTRIES; value++) {
+            assertFalse(filter.mightContain(hash(value)));
+        }
+        assertTrue(filter.getRetainedSizeInBytes() > 0);
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.operator.JoinProbe.JoinProbeFactory;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.OptionalInt;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+
+public class TestDictionaryJoinPositionCache
+{
+    private static final JoinProbeFactory JOIN_PROBE_FACTORY = new JoinProbeFactory(new int[] {0}, ImmutableList.of(0), OptionalInt.empty());
+    private static final HashGenerator HASH_GENERATOR = new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0});
+
+    @Test
+    public void testLookupOncePerDictionaryEntry()
+    {
+        Block dictionary = createLongSequenceBlock(0, 4);
+        DictionaryId dictionaryId = randomDictionaryId();
+        DictionaryJoinPositionCache cache = new DictionaryJoinPositionCache();
+        CountingLookupSource lookupSource = new CountingLookupSource(true);
+
+        assertJoinPositions(probe(cache, dictionary, dictionaryId, 1, 3, 1, 1, 3), lookupSource, 1, -1, 1, 1, -1);
+        assertEquals(lookupSource.getLookups(), 2);
+
+        // the next page shares the dictionary
+        assertJoinPositions(probe(cache, dictionary, dictionaryId, 3, 2, 1), lookupSource, -1, 2, 1);
+        assertEquals(lookupSource.getLookups(), 3);
+
+        // a new lookup source invalidates the cached positions
+        CountingLookupSource otherLookupSource = new CountingLookupSource(true);
+        assertJoinPositions(probe(cache, dictionary, dictionaryId, 1, 1), otherLookupSource, 1, 1);
+        assertEquals(otherLookupSource.getLookups(), 1);
+
+        // so does a new dictionary, which is cached as it has a single entry
+        assertJoinPositions(probe(cache, createLongSequenceBlock(2, 3), randomDictionaryId(), 0, 0), otherLookupSource, 2, 2);
+        assertEquals(otherLookupSource.getLookups(), 2);
+    }
+
+    @Test
+    public void testLookupSourceNotDeterminedByKeys()
+    {
+        Block dictionary = createLongSequenceBlock(0, 4);
+        DictionaryJoinPositionCache cache = new DictionaryJoinPositionCache();
+        CountingLookupSource lookupSource = new CountingLookupSource(false);
+
+        assertJoinPositions(probe(cache, dictionary, randomDictionaryId(), 1, 1, 1), lookupSource, 1, 1, 1);
+        assertEquals(lookupSource.getLookups(), 3);
+    }
+
+    private static JoinProbe probe(DictionaryJoinPositionCache cache, Block dictionary, DictionaryId dictionaryId, int... ids)
+    {
+        Page page = new Page(new DictionaryBlock(ids.length, dictionary, ids, dictionaryId));
+        return JOIN_PROBE_FACTORY.createJoinProbe(page, HASH_GENERATOR, cache, new JoinBloomFilterPassRate());
+    }
+
+    private static void assertJoinPositions(JoinProbe probe, LookupSource lookupSource, long... expectedJoinPositions)
+    {
+        for (long expectedJoinPosition : expectedJoinPositions) {
+            probe.advanceNextPosition();
+            assertEquals(probe.getCurrentJoinPosition(lookupSource), expectedJoinPosition);
+        }
+    }
+
+    // the join position of a key is the key itself, for keys below 3
+    private static class CountingLookupSource
+            implements LookupSource
+    {
+        private final boolean joinPositionDeterminedByKeys;
+        private int lookups;
+
+        public CountingLookupSource(boolean joinPositionDeterminedByKeys)
+        {
+            this.joinPositionDeterminedByKeys = joinPositionDeterminedByKeys;
+        }
+
+        public int getLookups()
+        {
+            return lookups;
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return false;
+        }
+
+        @Override
+        public int getChannelCount()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getJoinPositionCount()
+        {
+            return 3;
+        }
+
+        @Override
+        public long joinPositionWithinPartition(long joinPosition)
+        {
+            return joinPosition;
+        }
+
+        @Override
+        public long getInMemorySizeInBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage, long rawHash)
+        {
+            return getJoinPosition(position, hashChannelsPage, allChannelsPage);
+        }
+
+        @Override
+        public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage)
+        {
+            lookups++;
+            long key = BIGINT.getLong(hashChannelsPage.getBlock(0), position);
+            return key < 3 ? key : -1;
+        }
+
+        @Override
+        public boolean isJoinPositionDeterminedByKeys()
+        {
+            return joinPositionDeterminedByKeys;
+        }
+
+        @Override
+        public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+        {
+            return -1;
+        }
+
+        @Override
+        public boolean isJoinPositionEligible(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+        {
+            return true;
+        }
+
+        @Override
+        public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LazyBlock;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.ColumnHandle;
+import com.facebook.presto.spi.InMemoryRecordSet;
+import com.facebook.presto.spi.RecordCursor;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.testing.TestingMetadata.TestingColumnHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
+import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_FIRST;
+import static com.facebook.presto.common.block.SortOrder.DESC_NULLS_LAST;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static io.airlift.slice.Slices.utf8Slice;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestDynamicFilter
+{
+    private static final ColumnHandle KEY_COLUMN = new TestingColumnHandle("key");
+    private static final ColumnHandle NAME_COLUMN = new TestingColumnHandle("name");
+
+    @Test
+    public void testCollectDistinctValues()
+    {
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        DynamicFilterCollector collector = new DynamicFilterCollector(ImmutableMap.of("df_0", 0, "df_1", 1), ImmutableList.of(BIGINT, VARCHAR), 10, memoryContext);
+
+        collector.add(new Page(createLongsBlock(1L, 2L, null, 2L), createStringsBlock("a", "b", "c", null)));
+        assertTrue(memoryContext.getBytes() > 0);
+
+        TupleDomain<String> result = collector.build();
+        assertEquals(memoryContext.getBytes(), 0);
+        assertEquals(result, TupleDomain.withColumnDomains(ImmutableMap.of(
+                "df_0", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 2L)),
+                "df_1", Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("a"), utf8Slice("b"), utf8Slice("c"))))));
+        collector.close();
+    }
+
+    @Test
+    public void testCollectRange()
+    {
+        DynamicFilterCollector collector = new DynamicFilterCollector(ImmutableMap.of("df_0", 0), ImmutableList.of(BIGINT), 3, newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+
+        collector.add(new Page(createLongSequenceBlock(10, 20)));
+        assertEquals(collector.build(), TupleDomain.withColumnDomains(ImmutableMap.of(
+                "df_0", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 10L, true, 19L, true)), false))));
+    }
+
+    @Test
+    public void testCollectEmpty()
+    {
+        DynamicFilterCollector collector = new DynamicFilterCollector(ImmutableMap.of("df_0", 0), ImmutableList.of(BIGINT), 3, newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"));
+
+        collector.add(new Page(createLongsBlock((Long) null)));
+        assertTrue(collector.build().isNone());
+    }
+
+    @Test
+    public void testLocalDynamicFilterCompletesWithAllPartitions()
+    {
+        LocalDynamicFilter localDynamicFilter = new LocalDynamicFilter(new PlanNodeId("join"), 10);
+
+        localDynamicFilter.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of("df_0", Domain.singleValue(BIGINT, 1L))), 2);
+        assertFalse(localDynamicFilter.isComplete());
+        assertFalse(localDynamicFilter.getResultFuture().isDone());
+
+        localDynamicFilter.addPartition(TupleDomain.none(), 2);
+        assertTrue(localDynamicFilter.isComplete());
+        assertEquals(
+                getFutureValue(localDynamicFilter.getResultFuture()),
+                TupleDomain.withColumnDomains(ImmutableMap.of("df_0", Domain.singleValue(BIGINT, 1L))));
+    }
+
+    @Test
+    public void testFilterPage()
+    {
+        LocalDynamicFilter localDynamicFilter = new LocalDynamicFilter(new PlanNodeId("join"), 10);
+        DynamicFilter dynamicFilter = new DynamicFilter(
+                ImmutableList.of(new DynamicFilter.Source(localDynamicFilter, ImmutableMap.of("df_0", 0))),
+                ImmutableList.of(KEY_COLUMN, NAME_COLUMN));
+
+        Page page = new Page(createLongsBlock(1L, 2L, 3L, null), createStringsBlock("a", "b", "c", "d"));
+
+        // nothing is filtered until the build side is done
+        assertFalse(dynamicFilter.isComplete());
+        assertTrue(dynamicFilter.getCurrentPredicate().isAll());
+        assertEquals(dynamicFilter.filter(page).getPositionCount(), 4);
+
+        localDynamicFilter.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of("df_0", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 3L)))), 1);
+        assertTrue(dynamicFilter.isComplete());
+        assertEquals(
+                dynamicFilter.getCurrentPredicate(),
+                TupleDomain.withColumnDomains(ImmutableMap.of(KEY_COLUMN, Domain.multipleValues(BIGINT, ImmutableList.of(1L, 3L)))));
+
+        Page filtered = dynamicFilter.filter(page);
+        assertEquals(filtered.getPositionCount(), 2);
+        assertEquals(BIGINT.getLong(filtered.getBlock(0), 0), 1L);
+        assertEquals(BIGINT.getLong(filtered.getBlock(0), 1), 3L);
+        assertEquals(VARCHAR.getSlice(filtered.getBlock(1), 1), utf8Slice("c"));
+    }
+
+    @Test
+    public void testFilterPageWithTopNRange()
+    {
+        TopNDynamicFilter topNDynamicFilter = new TopNDynamicFilter(new PlanNodeId("topN"), BIGINT, DESC_NULLS_LAST);
+        DynamicFilter dynamicFilter = new DynamicFilter(
+                ImmutableList.of(),
+                ImmutableList.of(new DynamicFilter.TopNSource(topNDynamicFilter, 0)),
+                ImmutableList.of(KEY_COLUMN, NAME_COLUMN));
+
+        Page page = new Page(createLongsBlock(1L, 5L, 9L, null), createStringsBlock("a", "b", "c", "d"));
+        assertEquals(dynamicFilter.filter(page).getPositionCount(), 4);
+
+        topNDynamicFilter.update(createLongsBlock(5L), 0);
+        assertEquals(
+                dynamicFilter.getCurrentPredicate(),
+                TupleDomain.withColumnDomains(ImmutableMap.of(KEY_COLUMN, Domain.create(ValueSet.ofRanges(Range.greaterThanOrEqual(BIGINT, 5L)), false))));
+        assertEquals(dynamicFilter.filter(page).getPositionCount(), 2);
+
+        // the range only narrows
+        topNDynamicFilter.update(createLongsBlock(3L), 0);
+        topNDynamicFilter.update(createLongsBlock((Long) null), 0);
+        assertEquals(topNDynamicFilter.getVersion(), 1);
+
+        topNDynamicFilter.update(createLongsBlock(9L), 0);
+        Page filtered = dynamicFilter.filter(page);
+        assertEquals(filtered.getPositionCount(), 1);
+        assertEquals(VARCHAR.getSlice(filtered.getBlock(1), 0), utf8Slice("c"));
+    }
+
+    @Test
+    public void testTopNRangeWithNullsFirst()
+    {
+        TopNDynamicFilter topNDynamicFilter = new TopNDynamicFilter(new PlanNodeId("topN"), BIGINT, ASC_NULLS_FIRST);
+
+        topNDynamicFilter.update(createLongsBlock(5L), 0);
+        assertEquals(topNDynamicFilter.getDomain(), Domain.create(ValueSet.ofRanges(Range.lessThanOrEqual(BIGINT, 5L)), true));
+
+        topNDynamicFilter.update(createLongsBlock((Long) null), 0);
+        assertEquals(topNDynamicFilter.getDomain(), Domain.onlyNull(BIGINT));
+    }
+
+    @Test
+    public void testFilterKeepsOtherColumnsLazy()
+    {
+        LocalDynamicFilter localDynamicFilter = new LocalDynamicFilter(new PlanNodeId("join"), 10);
+        DynamicFilter dynamicFilter = new DynamicFilter(
+                ImmutableList.of(new DynamicFilter.Source(localDynamicFilter, ImmutableMap.of("df_0", 1))),
+                ImmutableList.of(KEY_COLUMN, NAME_COLUMN));
+        localDynamicFilter.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of("df_0", Domain.singleValue(VARCHAR, utf8Slice("b")))), 1);
+
+        Block keys = createLongsBlock(1L, 2L, 3L);
+        LazyBlock lazyKeys = new LazyBlock(3, lazyBlock -> lazyBlock.setBlock(keys));
+        Page filtered = dynamicFilter.filter(new Page(lazyKeys, createStringsBlock("a", "b", "c")));
+
+        assertEquals(filtered.getPositionCount(), 1);
+        assertFalse(lazyKeys.isLoaded());
+        assertEquals(BIGINT.getLong(filtered.getBlock(0), 0), 2L);
+    }
+
+    @Test
+    public void testFilterIntersectsJoins()
+    {
+        LocalDynamicFilter first = new LocalDynamicFilter(new PlanNodeId("join1"), 10);
+        LocalDynamicFilter second = new LocalDynamicFilter(new PlanNodeId("join2"), 10);
+        DynamicFilter dynamicFilter = new DynamicFilter(
+                ImmutableList.of(
+                        new DynamicFilter.Source(first, ImmutableMap.of("df_0", 0)),
+                        new DynamicFilter.Source(second, ImmutableMap.of("df_1", 0))),
+                ImmutableList.of(KEY_COLUMN));
+        Page page = new Page(createLongSequenceBlock(0, 10));
+
+        first.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of("df_0", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 2L, true, 6L, true)), false))), 1);
+        assertFalse(dynamicFilter.isComplete());
+        assertEquals(dynamicFilter.filter(page).getPositionCount(), 5);
+
+        second.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of("df_1", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 5L, 6L)))), 1);
+        assertTrue(dynamicFilter.isComplete());
+        List<Long> values = ImmutableList.of(5L, 6L);
+        Page filtered = dynamicFilter.filter(page);
+        assertEquals(filtered.getPositionCount(), values.size());
+        for (int position = 0; position < values.size(); position++) {
+            assertEquals(BIGINT.getLong(filtered.getBlock(0), position), (long) values.get(position));
+        }
+    }
+
+    @Test
+    public void testFilterCursor()
+    {
+        LocalDynamicFilter localDynamicFilter = new LocalDynamicFilter(new PlanNodeId("join"), 10);
+        DynamicFilter dynamicFilter = new DynamicFilter(
+                ImmutableList.of(new DynamicFilter.Source(localDynamicFilter, ImmutableMap.of("df_0", 0, "df_1", 1))),
+                ImmutableList.of(KEY_COLUMN, NAME_COLUMN));
+        localDynamicFilter.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of(
+                "df_0", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 2L, true, 4L, true)), false),
+                "df_1", Domain.multipleValues(VARCHAR, ImmutableList.of(utf8Slice("b"), utf8Slice("d"))))), 1);
+
+        RecordCursor cursor = InMemoryRecordSet.builder(ImmutableList.of(BIGINT, VARCHAR))
+                .addRow(1L, "a")
+                .addRow(2L, "b")
+                .addRow(3L, "c")
+                .addRow(null, "d")
+                .addRow(4L, "d")
+                .build()
+                .cursor();
+        AtomicLong prunedPositions = new AtomicLong();
+        RecordCursor filtered = dynamicFilter.filter(cursor, prunedPositions::addAndGet);
+
+        assertTrue(filtered.advanceNextPosition());
+        assertEquals(filtered.getLong(0), 2L);
+        assertTrue(filtered.advanceNextPosition());
+        assertEquals(filtered.getLong(0), 4L);
+        assertFalse(filtered.advanceNextPosition());
+        assertEquals(prunedPositions.get(), 3);
+    }
+
+    @Test
+    public void testEmptyBuildSide()
+    {
+        LocalDynamicFilter localDynamicFilter = new LocalDynamicFilter(new PlanNodeId("join"), 10);
+        DynamicFilter dynamicFilter = new DynamicFilter(
+                ImmutableList.of(new DynamicFilter.Source(localDynamicFilter, ImmutableMap.of("df_0", 0))),
+                ImmutableList.of(KEY_COLUMN));
+        localDynamicFilter.addPartition(TupleDomain.withColumnDomains(ImmutableMap.of("df_0", Domain.none(BIGINT))), 1);
+
+        assertTrue(dynamicFilter.getCurrentPredicate().isNone());
+        assertEquals(dynamicFilter.filter(new Page(createLongSequenceBlock(0, 10))).getPositionCount(), 0);
+    }
+}
@@ -122,6 +122,7 @@ public class TestExchangeClient
                 true,
                 false,
                 0.2,
+                false,
                 new TestingHttpClient(processor, scheduler),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -148,6 +149,53 @@ public class TestExchangeClient
         assertStatus(status.getPageBufferClientStatuses().get(0), location, "closed", 3, 3, 3, "not scheduled");
     }
 
+    @Test
+    public void testAdaptiveRequestSizing()
+    {
+        DataSize maxResponseSize = new DataSize(10, MEGABYTE);
+        MockExchangeRequestProcessor processor = new MockExchangeRequestProcessor(maxResponseSize);
+
+        URI producingLocation = URI.create("http://localhost:8080");
+        processor.addPage(producingLocation, createPage(1));
+        processor.addPage(producingLocation, createPage(2));
+        processor.addPage(producingLocation, createPage(3));
+        processor.setComplete(producingLocation);
+
+        URI idleLocation = URI.create("http://localhost:8081");
+        processor.setComplete(idleLocation);
+
+        @SuppressWarnings("resource")
+        ExchangeClient exchangeClient = new ExchangeClient(
+                new DataSize(32, MEGABYTE),
+                maxResponseSize,
+                1,
+                new Duration(1, MINUTES),
+                true,
+                false,
+                0.2,
+                true,
+                new TestingHttpClient(processor, scheduler),
+                new TestingDriftClient<>(),
+                scheduler,
+                new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), "test"),
+                pageBufferClientCallbackExecutor);
+
+        exchangeClient.addLocation(producingLocation, TaskId.valueOf("queryid.0.0.0"));
+        exchangeClient.addLocation(idleLocation, TaskId.valueOf("queryid.0.1.0"));
+        exchangeClient.noMoreLocations();
+
+        assertPageEquals(getNextPage(exchangeClient), createPage(1));
+        assertPageEquals(getNextPage(exchangeClient), createPage(2));
+        assertPageEquals(getNextPage(exchangeClient), createPage(3));
+        assertNull(getNextPage(exchangeClient));
+        assertTrue(exchangeClient.isClosed());
+
+        ExchangeClientStatus status = exchangeClient.getStatus();
+        assertEquals(status.getBufferedPages(), 0);
+        assertEquals(status.getPendingRequests(), 0);
+        assertEquals(status.getPendingRequestedBytes(), 0);
+    }
+
     @Test(timeOut = 10000)
     public void testAddLocation()
             throws Exception
@@ -164,6 +212,7 @@ public class TestExchangeClient
                 true,
                 false,
                 0.2,
+                false,
                 new TestingHttpClient(processor, testingHttpClientExecutor),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -239,6 +288,7 @@ public class TestExchangeClient
                 true,
                 false,
                 0.2,
+                false,
                 new TestingHttpClient(processor, testingHttpClientExecutor),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -324,6 +374,7 @@ public class TestExchangeClient
                 true,
                 false,
                 0.2,
+                false,
                 new TestingHttpClient(processor, testingHttpClientExecutor),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -391,6 +442,7 @@ public class TestExchangeClient
                 true,
                 false,
                 0.2,
+                false,
                 new TestingHttpClient(processor, testingHttpClientExecutor),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -469,6 +521,7 @@ public class TestExchangeClient
                 true,
                 false,
                 0.2,
+                false,
                 new TestingHttpClient(processor, testingHttpClientExecutor),
                 new TestingDriftClient<>(),
                 scheduler,
@@ -43,7 +43,8 @@ public class TestExchangeClientConfig
                 .setClientThreads(25)
                 .setAcknowledgePages(true)
                 .setResponseSizeExponentialMovingAverageDecayingAlpha(0.1)
-                .setAsyncPageTransportEnabled(false));
+                .setAsyncPageTransportEnabled(false)
+                .setAdaptiveRequestSizingEnabled(false));
     }
 
     @Test
@@ -61,6 +62,7 @@ public class TestExchangeClientConfig
                 .put("exchange.acknowledge-pages", "false")
                 .put("exchange.response-size-exponential-moving-average-decaying-alpha", "0.42")
                 .put("exchange.async-page-transport-enabled", "true")
+                .put("exchange.adaptive-request-sizing-enabled", "true")
                 .build();
 
         ExchangeClientConfig expected = new ExchangeClientConfig()
@@ -74,7 +76,8 @@ public class TestExchangeClientConfig
                 .setPageBufferClientMaxCallbackThreads(16)
                 .setAcknowledgePages(false)
                 .setResponseSizeExponentialMovingAverageDecayingAlpha(0.42)
-                .setAsyncPageTransportEnabled(true);
+                .setAsyncPageTransportEnabled(true)
+                .setAdaptiveRequestSizingEnabled(true);
 
         assertFullMapping(properties, expected);
     }
@@ -43,6 +43,7 @@ import static com.facebook.presto.block.BlockAssertions.createStringSequenceBloc
 import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.facebook.presto.type.TypeUtils.getHashBlock;
@@ -249,6 +250,114 @@ public class TestGroupByHash
         }
     }
 
+    @Test
+    public void testBatchHashing()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, DOUBLE);
+        int[] channels = new int[] {0, 1, 2};
+        PageBuilder pageBuilder = new PageBuilder(types);
+        for (int position = 0; position < 5_000; position++) {
+            // every key shows up several times within a page and across batches
+            int key = position % 1_500;
+            pageBuilder.declarePosition();
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(0), key % 7);
+            VARCHAR.writeString(pageBuilder.getBlockBuilder(1), String.valueOf(key));
+            DOUBLE.writeDouble(pageBuilder.getBlockBuilder(2), key % 3);
+        }
+        Page page = pageBuilder.build();
+        Page pageWithHash = page.appendColumn(getHashBlock(types, page.getBlock(0), page.getBlock(1), page.getBlock(2)));
+
+        for (Optional<Integer> hashChannel : ImmutableList.of(Optional.<Integer>empty(), Optional.of(3))) {
+            Page input = hashChannel.isPresent() ? pageWithHash : page;
+            // a small expected size forces rehashes between the batches
+            GroupByHash batched = new MultiChannelGroupByHash(types, channels, hashChannel, 4, false, true, JOIN_COMPILER, UpdateMemory.NOOP);
+            GroupByHash rowByRow = new MultiChannelGroupByHash(types, channels, hashChannel, 4, false, false, JOIN_COMPILER, UpdateMemory.NOOP);
+
+            Work<GroupByIdBlock> batchedWork = batched.getGroupIds(input);
+            Work<GroupByIdBlock> rowByRowWork = rowByRow.getGroupIds(input);
+            assertTrue(batchedWork.process());
+            assertTrue(rowByRowWork.process());
+            GroupByIdBlock batchedGroupIds = batchedWork.getResult();
+            GroupByIdBlock rowByRowGroupIds = rowByRowWork.getResult();
+
+            assertEquals(batched.getGroupCount(), 1_500);
+            assertEquals(batchedGroupIds.getGroupCount(), rowByRowGroupIds.getGroupCount());
+            for (int position = 0; position < input.getPositionCount(); position++) {
+                assertEquals(batchedGroupIds.getGroupId(position), rowByRowGroupIds.getGroupId(position));
+            }
+
+            // adding the page again must not create new groups
+            assertTrue(batched.addPage(input).process());
+            assertEquals(batched.getGroupCount(), 1_500);
+        }
+    }
+
+    @Test
+    public void testFlatGroupByHash()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, DOUBLE, INTEGER);
+        PageBuilder pageBuilder = new PageBuilder(types);
+        for (int position = 0; position < 1_000; position++) {
+            // 200 distinct keys, with nulls and NaN in the key channels
+            int key = position % 200;
+            pageBuilder.declarePosition();
+            if (key % 10 == 0) {
+                pageBuilder.getBlockBuilder(0).appendNull();
+            }
+            else {
+                BIGINT.writeLong(pageBuilder.getBlockBuilder(0), key);
+            }
+            DOUBLE.writeDouble(pageBuilder.getBlockBuilder(1), key % 10 == 3 ? Double.NaN : key * 0.5);
+            INTEGER.writeLong(pageBuilder.getBlockBuilder(2), key % 10);
+        }
+        Page page = pageBuilder.build();
+        Block hashBlock = getHashBlock(types, page.getBlock(0), page.getBlock(1), page.getBlock(2));
+
+        GroupByHash groupByHash = createGroupByHash(types, new int[] {0, 1, 2}, Optional.of(3), 4, false, true, JOIN_COMPILER, UpdateMemory.NOOP);
+        assertTrue(groupByHash instanceof FlatGroupByHash);
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page.appendColumn(hashBlock));
+        assertTrue(work.process());
+        GroupByIdBlock groupIds = work.getResult();
+        assertEquals(groupByHash.getGroupCount(), 200);
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            assertEquals(groupIds.getGroupId(position), position % 200);
+        }
+
+        PageBuilder outputPageBuilder = new PageBuilder(groupByHash.getTypes());
+        for (int groupId = 0; groupId < groupByHash.getGroupCount(); groupId++) {
+            outputPageBuilder.declarePosition();
+            groupByHash.appendValuesTo(groupId, outputPageBuilder, 0);
+            assertEquals(groupByHash.getRawHash(groupId), BIGINT.getLong(hashBlock, groupId));
+        }
+        Page output = outputPageBuilder.build();
+        for (int channel = 0; channel < types.size(); channel++) {
+            BlockAssertions.assertBlockEquals(types.get(channel), output.getBlock(channel), page.getBlock(channel).getRegion(0, 200));
+        }
+        BlockAssertions.assertBlockEquals(BIGINT, output.getBlock(3), hashBlock.getRegion(0, 200));
+
+        int[] containsChannels = {0, 1, 2};
+        for (int position = 0; position < 200; position++) {
+            assertTrue(groupByHash.contains(position, page, containsChannels));
+        }
+        Page missing = new Page(createLongsBlock(1L), BlockAssertions.createDoublesBlock(0.5), BlockAssertions.createIntsBlock(2));
+        assertFalse(groupByHash.contains(0, missing, containsChannels));
+    }
+
+    @Test
+    public void testFlatGroupByHashSelection()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, DOUBLE);
+        int[] hashChannels = {0, 1};
+        assertTrue(createGroupByHash(types, hashChannels, Optional.empty(), 4, false, true, JOIN_COMPILER, UpdateMemory.NOOP) instanceof FlatGroupByHash);
+        // disabled
+        assertTrue(createGroupByHash(types, hashChannels, Optional.empty(), 4, false, false, JOIN_COMPILER, UpdateMemory.NOOP) instanceof MultiChannelGroupByHash);
+        assertTrue(createGroupByHash(TEST_SESSION, types, hashChannels, Optional.empty(), 4, JOIN_COMPILER) instanceof MultiChannelGroupByHash);
+        // dictionaries are processed by the MultiChannelGroupByHash
+        assertTrue(createGroupByHash(types, hashChannels, Optional.empty(), 4, true, true, JOIN_COMPILER, UpdateMemory.NOOP) instanceof MultiChannelGroupByHash);
+        // variable width keys
+        assertTrue(createGroupByHash(ImmutableList.of(BIGINT, VARCHAR), hashChannels, Optional.empty(), 4, false, true, JOIN_COMPILER, UpdateMemory.NOOP) instanceof MultiChannelGroupByHash);
+    }
+
     @Test(dataProvider = "dataType")
     public void testUpdateMemory(Type type)
     {
@@ -154,6 +154,44 @@ public class TestGroupedTopNBuilder
         assertBuilderSize(groupByHash, types, ImmutableList.of(0, 0, 0, 0), ImmutableList.of(0, 0, 0, 0), groupedTopNBuilder.getEstimatedSizeInBytes());
     }
 
+    @Test
+    public void testBuildResultWithoutRowNumber()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, DOUBLE);
+        List<Page> input = rowPagesBuilder(types)
+                .row(1L, 0.3)
+                .row(2L, 0.2)
+                .row(1L, 0.1)
+                .pageBreak()
+                .row(1L, 0.4)
+                .row(2L, 0.5)
+                .build();
+
+        GroupByHash groupByHash = createGroupByHash(ImmutableList.of(types.get(0)), ImmutableList.of(0), NOOP);
+        GroupedTopNBuilder groupedTopNBuilder = new GroupedTopNBuilder(
+                types,
+                new SimplePageWithPositionComparator(types, ImmutableList.of(1), ImmutableList.of(ASC_NULLS_LAST)),
+                2,
+                true,
+                groupByHash);
+        for (Page page : input) {
+            assertTrue(groupedTopNBuilder.processPage(page).process());
+        }
+
+        // the rows keep the layout of the input, so they can be fed into another builder
+        List<Page> output = ImmutableList.copyOf(groupedTopNBuilder.buildResultWithoutRowNumber());
+        assertEquals(output.size(), 1);
+
+        Page expected = rowPagesBuilder(types)
+                .row(1L, 0.1)
+                .row(1L, 0.3)
+                .row(2L, 0.2)
+                .row(2L, 0.5)
+                .build()
+                .get(0);
+        assertPageEquals(types, output.get(0), expected);
+    }
+
     @Test(dataProvider = "produceRowNumbers")
     public void testSingleGroupTopN(boolean produceRowNumbers)
     {
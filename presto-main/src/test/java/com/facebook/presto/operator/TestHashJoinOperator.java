@@ -21,7 +21,6 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.execution.TaskId;
 import com.facebook.presto.execution.TaskStateMachine;
-import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashBuilderOperator.HashBuilderOperatorFactory;
 import com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
 import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
@@ -34,7 +33,6 @@ import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
 import com.facebook.presto.spiller.PartitioningSpillerFactory;
-import com.facebook.presto.spiller.SingleStreamSpiller;
 import com.facebook.presto.spiller.SingleStreamSpillerFactory;
 import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
 import com.facebook.presto.sql.planner.PartitioningProviderManager;
@@ -44,7 +42,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
@@ -55,7 +52,6 @@ import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -75,22 +71,22 @@ import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.DIRECT_JOIN_LOOKUP_SOURCE;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
 import static com.facebook.presto.operator.OperatorAssertion.dropChannel;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.OperatorAssertion.without;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
-import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_HASH_DISTRIBUTION;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.facebook.presto.testing.assertions.Assert.assertEquals;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.ImmutableList.toImmutableList;
-import static com.google.common.collect.Iterators.unmodifiableIterator;
-import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
-import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.collect.Iterables.getOnlyElement;
 import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
@@ -100,6 +96,7 @@ import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
@@ -486,6 +483,158 @@ public class TestHashJoinOperator
         }
     }
 
+    @DataProvider
+    public Object[][] lookupOuterJoinWithSpillValues()
+    {
+        List<Object[]> result = new ArrayList<>();
+        for (boolean probeHashEnabled : ImmutableList.of(true, false)) {
+            result.add(new Object[] {probeHashEnabled, nCopies(PARTITION_COUNT, WhenSpill.NEVER)});
+            result.add(new Object[] {probeHashEnabled, nCopies(PARTITION_COUNT, WhenSpill.DURING_BUILD)});
+            // only some partitions spilled
+            result.add(new Object[] {probeHashEnabled, concat(singletonList(WhenSpill.DURING_BUILD), nCopies(PARTITION_COUNT - 1, WhenSpill.NEVER))});
+        }
+        return result.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "lookupOuterJoinWithSpillValues")
+    public void testLookupOuterJoinWithSpill(boolean probeHashEnabled, List<WhenSpill> whenSpill)
+    {
+        TaskStateMachine taskStateMachine = new TaskStateMachine(new TaskId("query", 0, 0, 0), executor);
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION, taskStateMachine);
+
+        // build factory
+        RowPagesBuilder buildPages = rowPagesBuilder(ImmutableList.of(VARCHAR, BIGINT))
+                .addSequencePage(20, 20, 200);
+        BuildSideSetup buildSideSetup = setupBuildSide(true, taskContext, Ints.asList(0), buildPages, Optional.empty(), true, SINGLE_STREAM_SPILLER_FACTORY, true);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = buildSideSetup.getLookupSourceFactoryManager();
+
+        // probe factory
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), ImmutableList.of(VARCHAR, BIGINT))
+                .row("20", 123_000L)
+                .row("20", 123_001L)
+                .pageBreak()
+                .addSequencePage(5, 35, 123_000);
+        JoinOperatorFactory joinOperatorFactory = (JoinOperatorFactory) LOOKUP_JOIN_OPERATORS.lookupOuterJoin(
+                0,
+                new PlanNodeId("test"),
+                lookupSourceFactoryManager,
+                probePages.getTypes(),
+                Ints.asList(0),
+                getHashChannelAsInt(probePages),
+                Optional.empty(),
+                OptionalInt.of(1),
+                PARTITIONING_SPILLER_FACTORY);
+        OperatorFactory outerOperatorFactory = joinOperatorFactory.createOuterOperatorFactory().get().getOuterOperatorFactory();
+
+        // build lookup source, spilling the partitions before they are built
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        List<Driver> buildDrivers = buildSideSetup.getBuildDrivers();
+        int buildOperatorCount = buildDrivers.size();
+        checkState(buildOperatorCount == whenSpill.size());
+        LookupSourceFactory lookupSourceFactory = lookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide());
+        ListenableFuture<LookupSourceProvider> lookupSourceProvider = lookupSourceFactory.createLookupSourceProvider();
+        List<Boolean> revoked = new ArrayList<>(nCopies(buildOperatorCount, false));
+        while (!lookupSourceProvider.isDone()) {
+            for (int i = 0; i < buildOperatorCount; i++) {
+                checkErrors(taskStateMachine);
+                buildDrivers.get(i).process();
+                HashBuilderOperator buildOperator = buildSideSetup.getBuildOperators().get(i);
+                if (whenSpill.get(i) == WhenSpill.DURING_BUILD && buildOperator.getOperatorContext().getReservedRevocableBytes() > 0) {
+                    revokeMemory(buildOperator);
+                    revoked.set(i, true);
+                }
+            }
+        }
+        getFutureValue(lookupSourceProvider).close();
+        assertEquals(revoked, whenSpill.stream().map(WhenSpill.DURING_BUILD::equals).collect(toImmutableList()), "Some operators not spilled before LookupSource built");
+        for (HashBuilderOperator buildOperator : buildSideSetup.getBuildOperators()) {
+            // lookup source of outer join can not be spilled once built
+            assertEquals(buildOperator.getOperatorContext().getReservedRevocableBytes(), 0);
+        }
+
+        for (Driver buildDriver : buildDrivers) {
+            runDriverInThread(executor, buildDriver);
+        }
+
+        // probe, unspilling the spilled partitions
+        DriverContext joinDriverContext = taskContext.addPipelineContext(2, true, true, false).addDriverContext();
+        ValuesOperatorFactory valuesOperatorFactory = new ValuesOperatorFactory(17, new PlanNodeId("values"), probePages.build());
+        PageBuffer pageBuffer = new PageBuffer(10);
+        PageBufferOperatorFactory pageBufferOperatorFactory = new PageBufferOperatorFactory(18, new PlanNodeId("pageBuffer"), pageBuffer);
+        Operator joinOperator = joinOperatorFactory.createOperator(joinDriverContext);
+        Driver joinDriver = Driver.createDriver(joinDriverContext,
+                valuesOperatorFactory.createOperator(joinDriverContext),
+                joinOperator,
+                pageBufferOperatorFactory.createOperator(joinDriverContext));
+        joinOperatorFactory.noMoreOperators(Lifespan.taskWide());
+        joinOperatorFactory.noMoreOperators();
+
+        List<Page> actualPages = new ArrayList<>();
+        while (!joinDriver.isFinished()) {
+            processRow(joinDriver, taskStateMachine);
+            actualPages.addAll(getPages(pageBuffer));
+        }
+        actualPages.addAll(getPages(pageBuffer));
+        checkErrors(taskStateMachine);
+
+        // unvisited positions of the partitions that were kept in memory
+        Operator outerOperator = outerOperatorFactory.createOperator(taskContext.addPipelineContext(3, false, true, false).addDriverContext());
+        outerOperatorFactory.noMoreOperators(Lifespan.taskWide());
+        outerOperatorFactory.noMoreOperators();
+        while (!outerOperator.isFinished()) {
+            Page outputPage = outerOperator.getOutput();
+            if (outputPage != null) {
+                actualPages.add(outputPage);
+            }
+        }
+
+        MaterializedResult.Builder expected = MaterializedResult.resultBuilder(taskContext.getSession(), concat(probePages.getTypesWithoutHash(), buildPages.getTypesWithoutHash()))
+                .row("20", 123_000L, "20", 200L)
+                .row("20", 123_001L, "20", 200L);
+        for (int i = 21; i < 35; i++) {
+            expected.row(null, null, String.valueOf(i), 200L + i - 20);
+        }
+        for (int i = 35; i < 40; i++) {
+            expected.row(String.valueOf(i), 123_000L + i - 35, String.valueOf(i), 200L + i - 20);
+        }
+
+        assertEqualsIgnoreOrder(getProperColumns(joinOperator, concat(probePages.getTypes(), buildPages.getTypes()), probePages, actualPages).getMaterializedRows(), expected.build().getMaterializedRows());
+    }
+
+    @Test
+    public void testStaleMemoryRevokeOfBuiltLookupOuterJoin()
+    {
+        TaskContext taskContext = createTaskContext();
+        RowPagesBuilder buildPages = rowPagesBuilder(ImmutableList.of(VARCHAR, BIGINT))
+                .addSequencePage(20, 20, 200);
+        BuildSideSetup buildSideSetup = setupBuildSide(true, taskContext, Ints.asList(0), buildPages, Optional.empty(), true, SINGLE_STREAM_SPILLER_FACTORY, true);
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+
+        LookupSourceFactory lookupSourceFactory = buildSideSetup.getLookupSourceFactoryManager().getJoinBridge(Lifespan.taskWide());
+        ListenableFuture<LookupSourceProvider> lookupSourceProvider = lookupSourceFactory.createLookupSourceProvider();
+        while (!lookupSourceProvider.isDone()) {
+            for (Driver buildDriver : buildSideSetup.getBuildDrivers()) {
+                buildDriver.process();
+            }
+        }
+
+        // a revoking request issued before the partitions were built must not spill them anymore
+        for (HashBuilderOperator buildOperator : buildSideSetup.getBuildOperators()) {
+            assertEquals(buildOperator.getState(), HashBuilderOperator.State.LOOKUP_SOURCE_BUILT);
+            assertTrue(buildOperator.startMemoryRevoke().isDone());
+            buildOperator.finishMemoryRevoke();
+            assertEquals(buildOperator.getState(), HashBuilderOperator.State.LOOKUP_SOURCE_BUILT);
+        }
+
+        try (LookupSourceProvider provider = getFutureValue(lookupSourceProvider)) {
+            provider.withLease(lease -> {
+                assertFalse(lease.hasSpilled());
+                assertEquals(lease.getLookupSource().getJoinPositionCount(), 20L);
+                return null;
+            });
+        }
+    }
+
     private static void processRow(final Driver joinDriver, final TaskStateMachine taskStateMachine)
     {
         joinDriver.getDriverContext().getYieldSignal().setWithDelay(TimeUnit.SECONDS.toNanos(1), joinDriver.getDriverContext().getYieldExecutor());
@@ -760,6 +909,67 @@ public class TestHashJoinOperator
         assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
     }
 
+    @DataProvider(name = "directJoinLookupSourceValues")
+    public static Object[][] directJoinLookupSourceValuesProvider()
+    {
+        return new Object[][] {{true}, {false}};
+    }
+
+    @Test(dataProvider = "directJoinLookupSourceValues")
+    public void testDirectJoinLookupSource(boolean filterFunctionEnabled)
+    {
+        Optional<InternalJoinFilterFunction> filterFunction = Optional.empty();
+        if (filterFunctionEnabled) {
+            filterFunction = Optional.of(new TestInternalJoinFilterFunction((
+                    (leftPosition, leftPage, rightPosition, rightPage) -> BIGINT.getLong(rightPage.getBlock(1), rightPosition) % 5 != 0)));
+        }
+
+        MaterializedResult directJoinResult = probeOuterJoinDenseKeys(testSessionBuilder().setSystemProperty(DIRECT_JOIN_LOOKUP_SOURCE, "true").build(), filterFunction, true);
+        MaterializedResult pagesHashResult = probeOuterJoinDenseKeys(testSessionBuilder().setSystemProperty(DIRECT_JOIN_LOOKUP_SOURCE, "false").build(), filterFunction, false);
+        assertEqualsIgnoreOrder(directJoinResult.getMaterializedRows(), pagesHashResult.getMaterializedRows());
+    }
+
+    private MaterializedResult probeOuterJoinDenseKeys(Session session, Optional<InternalJoinFilterFunction> filterFunction, boolean expectDirectLookupSource)
+    {
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, session);
+
+        // build factory: every key in [0, 50) twice, and a few null keys
+        List<Type> buildTypes = ImmutableList.of(BIGINT, BIGINT);
+        RowPagesBuilder buildPages = rowPagesBuilder(false, Ints.asList(0), buildTypes);
+        for (long key = 0; key < 50; key++) {
+            buildPages.row(key, key)
+                    .row(key, key + 100);
+        }
+        buildPages.row(null, 1000L)
+                .row(null, 1001L);
+        BuildSideSetup buildSideSetup = setupBuildSide(false, taskContext, Ints.asList(0), buildPages, filterFunction, false, SINGLE_STREAM_SPILLER_FACTORY);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactory = buildSideSetup.getLookupSourceFactoryManager();
+
+        // probe factory: keys below, within and above the build range, and a null key
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder probePages = rowPagesBuilder(false, Ints.asList(0), probeTypes);
+        for (long key = -10; key < 60; key++) {
+            probePages.row(key);
+        }
+        List<Page> probeInput = probePages
+                .row((Long) null)
+                .build();
+        OperatorFactory joinOperatorFactory = probeOuterJoinOperatorFactory(lookupSourceFactory, probePages);
+
+        // build drivers and operators
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        buildLookupSource(buildSideSetup);
+        HashBuilderOperator buildOperator = getOnlyElement(buildSideSetup.getBuildOperators());
+        assertEquals(buildOperator.getLookupSourceSupplier() instanceof DirectJoinHashSupplier, expectDirectLookupSource);
+
+        List<Page> actualPages = toPages(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput);
+        MaterializedResult actual = toMaterializedResult(session, concat(probeTypes, buildTypes), actualPages);
+        // 10 probe rows below and 10 above the build range, and the null probe row, have no match, nor
+        // have the probe rows of the keys that are a multiple of 5 when the filter function is enabled
+        assertEquals(actual.getMaterializedRows().stream().filter(row -> row.getField(1) == null).count(), filterFunction.isPresent() ? 31L : 21L);
+        return actual;
+    }
+
     @Test(dataProvider = "hashJoinTestValues")
     public void testOuterJoinWithNullProbe(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
     {
@@ -1297,6 +1507,19 @@ public class TestHashJoinOperator
             Optional<InternalJoinFilterFunction> filterFunction,
             boolean spillEnabled,
             SingleStreamSpillerFactory singleStreamSpillerFactory)
+    {
+        return setupBuildSide(parallelBuild, taskContext, hashChannels, buildPages, filterFunction, spillEnabled, singleStreamSpillerFactory, false);
+    }
+
+    private BuildSideSetup setupBuildSide(
+            boolean parallelBuild,
+            TaskContext taskContext,
+            List<Integer> hashChannels,
+            RowPagesBuilder buildPages,
+            Optional<InternalJoinFilterFunction> filterFunction,
+            boolean spillEnabled,
+            SingleStreamSpillerFactory singleStreamSpillerFactory,
+            boolean outer)
     {
         Optional<JoinFilterFunctionFactory> filterFunctionFactory = filterFunction
                 .map(function -> (session, addresses, pages) -> new StandardJoinFilterFunction(function, addresses, pages));
@@ -1331,7 +1554,7 @@ public class TestHashJoinOperator
 
         // build side operator factories
         LocalExchangeSourceOperatorFactory sourceOperatorFactory = new LocalExchangeSourceOperatorFactory(0, new PlanNodeId("source"), localExchangeFactory);
-        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = JoinBridgeManager.lookupAllAtOnce(new PartitionedLookupSourceFactory(
+        PartitionedLookupSourceFactory lookupSourceFactory = new PartitionedLookupSourceFactory(
                 buildPages.getTypes(),
                 rangeList(buildPages.getTypes().size()).stream()
                         .map(buildPages.getTypes()::get)
@@ -1341,7 +1564,13 @@ public class TestHashJoinOperator
                         .collect(toImmutableList()),
                 partitionCount,
                 requireNonNull(ImmutableMap.of(), "layout is null"),
-                false));
+                outer);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = new JoinBridgeManager<>(
+                outer,
+                UNGROUPED_EXECUTION,
+                UNGROUPED_EXECUTION,
+                ignored -> lookupSourceFactory,
+                lookupSourceFactory.getOutputTypes());
 
         HashBuilderOperatorFactory buildOperatorFactory = new HashBuilderOperatorFactory(
                 1,
@@ -1357,7 +1586,9 @@ public class TestHashJoinOperator
                 100,
                 new PagesIndex.TestingFactory(false),
                 spillEnabled,
-                singleStreamSpillerFactory);
+                singleStreamSpillerFactory,
+                Optional.empty(),
+                ImmutableMap.of());
         return new BuildSideSetup(lookupSourceFactoryManager, buildOperatorFactory, sourceOperatorFactory, partitionCount);
     }
 
@@ -1526,76 +1757,4 @@ public class TestHashJoinOperator
             return lambda.filter(leftPosition, leftPage, rightPosition, rightPage);
         }
     }
-
-    private static class DummySpillerFactory
-            implements SingleStreamSpillerFactory
-    {
-        private volatile boolean failSpill;
-        private volatile boolean failUnspill;
-
-        void failSpill()
-        {
-            failSpill = true;
-        }
-
-        void failUnspill()
-        {
-            failUnspill = true;
-        }
-
-        @Override
-        public SingleStreamSpiller create(List<Type> types, SpillContext spillContext, LocalMemoryContext memoryContext)
-        {
-            return new SingleStreamSpiller()
-            {
-                private boolean writing = true;
-                private final List<Page> spills = new ArrayList<>();
-
-                @Override
-                public ListenableFuture<?> spill(Iterator<Page> pageIterator)
-                {
-                    checkState(writing, "writing already finished");
-                    if (failSpill) {
-                        return immediateFailedFuture(new PrestoException(GENERIC_INTERNAL_ERROR, "Spill failed"));
-                    }
-                    Iterators.addAll(spills, pageIterator);
-                    return immediateFuture(null);
-                }
-
-                @Override
-                public Iterator<Page> getSpilledPages()
-                {
-                    if (failUnspill) {
-                        throw new PrestoException(GENERIC_INTERNAL_ERROR, "Unspill failed");
-                    }
-                    writing = false;
-                    return unmodifiableIterator(spills.iterator());
-                }
-
-                @Override
-                public long getSpilledPagesInMemorySize()
-                {
-                    return spills.stream()
-                            .mapToLong(Page::getSizeInBytes)
-                            .sum();
-                }
-
-                @Override
-                public ListenableFuture<List<Page>> getAllSpilledPages()
-                {
-                    if (failUnspill) {
-                        return immediateFailedFuture(new PrestoException(GENERIC_INTERNAL_ERROR, "Unspill failed"));
-                    }
-                    writing = false;
-                    return immediateFuture(ImmutableList.copyOf(spills));
-                }
-
-                @Override
-                public void close()
-                {
-                    writing = false;
-                }
-            };
-        }
-    }
 }
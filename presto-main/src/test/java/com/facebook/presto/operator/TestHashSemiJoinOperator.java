@@ -36,8 +36,10 @@ import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThanOrEqual;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
@@ -47,6 +49,8 @@ import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
+import static com.facebook.presto.operator.OperatorAssertion.dropChannel;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.collect.Iterables.concat;
@@ -54,6 +58,8 @@ import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestHashSemiJoinOperator
@@ -113,7 +119,9 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                new DummyPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -132,7 +140,8 @@ public class TestHashSemiJoinOperator
                 new PlanNodeId("test"),
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
-                0);
+                0,
+                new DummyPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -165,7 +174,9 @@ public class TestHashSemiJoinOperator
                 0,
                 Optional.of(1),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                new DummyPartitioningSpillerFactory());
 
         // run test
         GroupByHashYieldAssertion.GroupByHashYieldResult result = finishOperatorWithYieldingGroupByHash(
@@ -204,7 +215,9 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                new DummyPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -223,7 +236,8 @@ public class TestHashSemiJoinOperator
                 new PlanNodeId("test"),
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
-                0);
+                0,
+                new DummyPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -257,7 +271,9 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                new DummyPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -279,7 +295,8 @@ public class TestHashSemiJoinOperator
                 new PlanNodeId("test"),
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
-                0);
+                0,
+                new DummyPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -314,7 +331,9 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                new DummyPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -336,7 +355,8 @@ public class TestHashSemiJoinOperator
                 new PlanNodeId("test"),
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
-                0);
+                0,
+                new DummyPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -349,6 +369,105 @@ public class TestHashSemiJoinOperator
         OperatorAssertion.assertOperatorEquals(joinOperatorFactory, driverContext, probeInput, expected, hashEnabled, ImmutableList.of(probeTypes.size()));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testSpilledBuildSide(boolean hashEnabled)
+            throws Exception
+    {
+        DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+        DummyPartitioningSpillerFactory spillerFactory = new DummyPartitioningSpillerFactory();
+
+        // build
+        List<Type> buildTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), buildTypes);
+        List<Page> buildInput = rowPagesBuilder
+                .row(0L)
+                .row(1L)
+                .row(3L)
+                .pageBreak()
+                .row((Object) null)
+                .row(5L)
+                .build();
+        SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
+                1,
+                new PlanNodeId("test"),
+                buildTypes.get(0),
+                0,
+                rowPagesBuilder.getHashChannel(),
+                10,
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                true,
+                spillerFactory);
+        SetBuilderOperator setBuilderOperator = (SetBuilderOperator) setBuilderOperatorFactory.createOperator(driverContext);
+
+        // spill the values of the first page, the second page goes to disk directly
+        setBuilderOperator.addInput(buildInput.get(0));
+        getFutureValue(setBuilderOperator.startMemoryRevoke());
+        setBuilderOperator.finishMemoryRevoke();
+        assertEquals(driverContext.getRevocableMemoryUsage(), 0);
+        setBuilderOperator.addInput(buildInput.get(1));
+
+        // probe
+        List<Type> probeTypes = ImmutableList.of(BIGINT);
+        RowPagesBuilder rowPagesBuilderProbe = rowPagesBuilder(hashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = rowPagesBuilderProbe
+                .row(0L)
+                .row((Object) null)
+                .row(1L)
+                .row(2L)
+                .row(5L)
+                .build();
+        HashSemiJoinOperatorFactory joinOperatorFactory = new HashSemiJoinOperatorFactory(
+                2,
+                new PlanNodeId("test"),
+                setBuilderOperatorFactory.getSetProvider(),
+                rowPagesBuilderProbe.getTypes(),
+                0,
+                spillerFactory);
+        Operator joinOperator = joinOperatorFactory.createOperator(driverContext);
+        joinOperatorFactory.noMoreOperators();
+
+        // the spilled set is published, but the builder stays alive to load its partitions
+        setBuilderOperator.finish();
+        assertTrue(setBuilderOperatorFactory.getSetProvider().getChannelSet().isDone());
+        assertFalse(setBuilderOperator.isFinished());
+
+        ImmutableList.Builder<Page> output = ImmutableList.builder();
+        for (Page page : probeInput) {
+            assertTrue(joinOperator.needsInput());
+            joinOperator.addInput(page);
+        }
+        joinOperator.finish();
+        while (!joinOperator.isFinished()) {
+            // the partitions of the set are loaded by the builder on request
+            setBuilderOperator.finish();
+            Page page = joinOperator.getOutput();
+            if (page != null) {
+                output.add(page);
+            }
+        }
+        joinOperator.close();
+        setBuilderOperator.finish();
+        assertTrue(setBuilderOperator.isFinished());
+        setBuilderOperator.close();
+
+        // expected
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
+                .row(0L, true)
+                .row(null, null)
+                .row(1L, true)
+                .row(2L, null)
+                .row(5L, true)
+                .build();
+
+        List<Page> pages = output.build();
+        if (hashEnabled) {
+            pages = dropChannel(pages, ImmutableList.of(probeTypes.size()));
+        }
+        MaterializedResult actual = toMaterializedResult(driverContext.getSession(), expected.getTypes(), pages);
+        assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+        assertGreaterThan(spillerFactory.getSpillsCount(), 0L);
+    }
+
     @Test(dataProvider = "hashEnabledValues", expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Query exceeded per-node user memory limit of.*")
     public void testMemoryLimit(boolean hashEnabled)
     {
@@ -369,7 +488,9 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                new DummyPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -0,0 +1,97 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.server.PagesResponseWriter;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.execution.buffer.TestingPagesSerdeFactory.testingPagesSerde;
+import static com.facebook.presto.operator.HttpRpcShuffleClient.PageResponseHandler.readSerializedPages;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestHttpRpcShuffleClient
+{
+    private static final PagesSerde PAGES_SERDE = testingPagesSerde();
+
+    @Test
+    public void testReadSerializedPages()
+            throws IOException
+    {
+        List<Page> pages = ImmutableList.of(
+                new Page(createLongSequenceBlock(0, 10), createStringSequenceBlock(0, 10)),
+                new Page(createLongSequenceBlock(10, 11), createStringSequenceBlock(10, 11)),
+                new Page(createLongSequenceBlock(0, 0), createStringSequenceBlock(0, 0)));
+
+        List<SerializedPage> serializedPages = readSerializedPages(new ByteArrayInputStream(write(pages)));
+        assertEquals(serializedPages.size(), pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            // every page has an array of its own, so that it retains no more than its own data
+            SerializedPage serializedPage = serializedPages.get(i);
+            assertEquals(((byte[]) serializedPage.getSlice().getBase()).length, serializedPage.getSizeInBytes());
+            assertPageEquals(ImmutableList.of(BIGINT, VARCHAR), PAGES_SERDE.deserialize(serializedPage), pages.get(i));
+        }
+    }
+
+    @Test
+    public void testReadEmptyResponse()
+            throws IOException
+    {
+        assertTrue(readSerializedPages(new ByteArrayInputStream(new byte[0])).isEmpty());
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testReadTruncatedMetadata()
+            throws IOException
+    {
+        byte[] response = write(ImmutableList.of(new Page(createLongSequenceBlock(0, 10))));
+        readSerializedPages(new ByteArrayInputStream(Arrays.copyOf(response, 5)));
+    }
+
+    @Test(expectedExceptions = EOFException.class)
+    public void testReadTruncatedData()
+            throws IOException
+    {
+        byte[] response = write(ImmutableList.of(new Page(createLongSequenceBlock(0, 10))));
+        readSerializedPages(new ByteArrayInputStream(Arrays.copyOf(response, response.length - 1)));
+    }
+
+    private static byte[] write(List<Page> pages)
+            throws IOException
+    {
+        ImmutableList.Builder<SerializedPage> serializedPages = ImmutableList.builder();
+        for (Page page : pages) {
+            serializedPages.add(PAGES_SERDE.serialize(page));
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new PagesResponseWriter().writeTo(serializedPages.build(), List.class, null, null, null, null, output);
+        return output.toByteArray();
+    }
+}
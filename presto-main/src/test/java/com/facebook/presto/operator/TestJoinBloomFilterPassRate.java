@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.operator.JoinProbe.JoinProbeFactory;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.OptionalInt;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestJoinBloomFilterPassRate
+{
+    private static final JoinProbeFactory JOIN_PROBE_FACTORY = new JoinProbeFactory(new int[] {0}, ImmutableList.of(0), OptionalInt.empty());
+    private static final HashGenerator HASH_GENERATOR = new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0});
+
+    @Test
+    public void testSwitchOff()
+    {
+        JoinBloomFilterPassRate passRate = new JoinBloomFilterPassRate(100, 0.5);
+        // too few rows tested to tell
+        passRate.record(99, 99);
+        assertTrue(passRate.isBloomFilterConsulted());
+        passRate.record(1, 1);
+        assertFalse(passRate.isBloomFilterConsulted());
+
+        passRate = new JoinBloomFilterPassRate(100, 0.5);
+        passRate.record(1000, 500);
+        assertTrue(passRate.isBloomFilterConsulted());
+        passRate.record(1000, 501);
+        assertFalse(passRate.isBloomFilterConsulted());
+
+        // the filter stays off
+        passRate.record(100_000, 0);
+        assertFalse(passRate.isBloomFilterConsulted());
+    }
+
+    @Test
+    public void testProbeStopsConsultingBloomFilter()
+    {
+        JoinBloomFilterPassRate passRate = new JoinBloomFilterPassRate(3000, 0.8);
+        BloomFilterLookupSource lookupSource = new BloomFilterLookupSource();
+
+        // every row passes the filter, the first page tests its rows in batches of 1024
+        JoinProbe probe = probe(passRate, 2048);
+        assertNoJoinPositions(probe, lookupSource, 2048);
+        assertEquals(probe.getBloomFilterProbes(), 2048);
+        assertEquals(lookupSource.getTestedHashes(), 2048);
+        assertTrue(passRate.isBloomFilterConsulted());
+
+        // the first batch of the next page switches the filter off, its rows are still looked up through the batch
+        probe = probe(passRate, 2048);
+        assertNoJoinPositions(probe, lookupSource, 2048);
+        assertEquals(probe.getBloomFilterProbes(), 1024);
+        assertEquals(lookupSource.getTestedHashes(), 3072);
+        assertFalse(passRate.isBloomFilterConsulted());
+
+        probe = probe(passRate, 100);
+        assertNoJoinPositions(probe, lookupSource, 100);
+        assertEquals(probe.getBloomFilterProbes(), 0);
+        assertEquals(lookupSource.getTestedHashes(), 3072);
+        assertEquals(lookupSource.getLookups(), 4196);
+    }
+
+    private static JoinProbe probe(JoinBloomFilterPassRate passRate, int positionCount)
+    {
+        Page page = new Page(createLongSequenceBlock(0, positionCount));
+        return JOIN_PROBE_FACTORY.createJoinProbe(page, HASH_GENERATOR, new DictionaryJoinPositionCache(), passRate);
+    }
+
+    private static void assertNoJoinPositions(JoinProbe probe, LookupSource lookupSource, int positionCount)
+    {
+        for (int position = 0; position < positionCount; position++) {
+            assertTrue(probe.advanceNextPosition());
+            assertEquals(probe.getCurrentJoinPosition(lookupSource), -1);
+        }
+        assertFalse(probe.advanceNextPosition());
+    }
+
+    // the Bloom filter lets all rows through, none of which has a match
+    private static class BloomFilterLookupSource
+            implements LookupSource
+    {
+        private int testedHashes;
+        private int lookups;
+
+        public int getTestedHashes()
+        {
+            return testedHashes;
+        }
+
+        public int getLookups()
+        {
+            return lookups;
+        }
+
+        @Override
+        public boolean hasBloomFilter()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean mightContainRawHash(long rawHash)
+        {
+            testedHashes++;
+            return true;
+        }
+
+        @Override
+        public boolean isEmpty()
+        {
+            return false;
+        }
+
+        @Override
+        public int getChannelCount()
+        {
+            return 1;
+        }
+
+        @Override
+        public long getJoinPositionCount()
+        {
+            return 0;
+        }
+
+        @Override
+        public long joinPositionWithinPartition(long joinPosition)
+        {
+            return joinPosition;
+        }
+
+        @Override
+        public long getInMemorySizeInBytes()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage, long rawHash)
+        {
+            return getJoinPosition(position, hashChannelsPage, allChannelsPage);
+        }
+
+        @Override
+        public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage)
+        {
+            lookups++;
+            return -1;
+        }
+
+        @Override
+        public long getNextJoinPosition(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+        {
+            return -1;
+        }
+
+        @Override
+        public boolean isJoinPositionEligible(long currentJoinPosition, int probePosition, Page allProbeChannelsPage)
+        {
+            return true;
+        }
+
+        @Override
+        public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
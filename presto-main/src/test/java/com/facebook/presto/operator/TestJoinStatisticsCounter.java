@@ -114,6 +114,21 @@ public class TestJoinStatisticsCounter
         assertEquals(makeHistogramArray(0, 2, 4, 6, 8, 21, 111, 1001101), info.getLogHistogramOutput());
     }
 
+    @Test
+    public void testRecordBloomFilterProbes()
+    {
+        JoinStatisticsCounter counter = new JoinStatisticsCounter(JoinType.INNER);
+        assertEquals(counter.get().getBloomFilterProbes(), 0);
+        assertEquals(counter.get().getBloomFilterHitRate(), 1.0);
+
+        counter.recordBloomFilterProbes(100, 10);
+        counter.recordBloomFilterProbes(300, 90);
+        JoinOperatorInfo info = counter.get();
+        assertEquals(info.getBloomFilterProbes(), 400);
+        assertEquals(info.getBloomFilterHits(), 100);
+        assertEquals(info.getBloomFilterHitRate(), 0.25);
+    }
+
     private long[] makeHistogramArray(long... longArray)
     {
         checkArgument(longArray.length == 8);
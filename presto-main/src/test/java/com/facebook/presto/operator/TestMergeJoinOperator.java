@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.MergeJoinOperator.MergeJoinOperatorFactory;
+import com.facebook.presto.operator.MergeJoinSinkOperator.MergeJoinSinkOperatorFactory;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.TestingTaskContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
+import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestMergeJoinOperator
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+        scheduledExecutor = newScheduledThreadPool(2, daemonThreadsNamed("test-scheduledExecutor-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testInnerJoin()
+    {
+        TaskContext taskContext = createTaskContext();
+
+        // build, with a key group spanning two pages
+        RowPagesBuilder buildPages = rowPagesBuilder(TYPES)
+                .row(0L, "b0")
+                .row(2L, "b2a")
+                .pageBreak()
+                .row(2L, "b2b")
+                .row(3L, "b3")
+                .row(5L, "b5a")
+                .row(5L, "b5b");
+
+        // probe
+        List<Page> probeInput = rowPagesBuilder(TYPES)
+                .row(1L, "p1")
+                .row(2L, "p2a")
+                .pageBreak()
+                .row(2L, "p2b")
+                .row(4L, "p4")
+                .row(5L, "p5")
+                .build();
+
+        MergeJoinOperatorFactory joinOperatorFactory = newJoinOperatorFactoryWithCompletedBuild(taskContext, buildPages, false);
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), BIGINT, VARCHAR, VARCHAR)
+                .row(2L, "p2a", "b2a")
+                .row(2L, "p2a", "b2b")
+                .row(2L, "p2b", "b2a")
+                .row(2L, "p2b", "b2b")
+                .row(5L, "p5", "b5a")
+                .row(5L, "p5", "b5b")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected);
+    }
+
+    @Test
+    public void testLeftJoinWithNullKeys()
+    {
+        TaskContext taskContext = createTaskContext();
+
+        RowPagesBuilder buildPages = rowPagesBuilder(TYPES)
+                .row(null, "bnull")
+                .row(2L, "b2")
+                .row(3L, "b3");
+
+        List<Page> probeInput = rowPagesBuilder(TYPES)
+                .row(null, "pnull")
+                .row(1L, "p1")
+                .row(2L, "p2")
+                .row(3L, "p3")
+                .row(4L, "p4")
+                .build();
+
+        MergeJoinOperatorFactory joinOperatorFactory = newJoinOperatorFactoryWithCompletedBuild(taskContext, buildPages, true);
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), BIGINT, VARCHAR, VARCHAR)
+                .row(null, "pnull", null)
+                .row(1L, "p1", null)
+                .row(2L, "p2", "b2")
+                .row(3L, "p3", "b3")
+                .row(4L, "p4", null)
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected);
+    }
+
+    @Test
+    public void testSourceBlocksWhenFull()
+    {
+        Page page = rowPagesBuilder(TYPES)
+                .row(1L, "a")
+                .build()
+                .get(0);
+        MergeJoinSource source = new MergeJoinSource(1);
+        assertFalse(source.getNotEmptyFuture().isDone());
+
+        ListenableFuture<?> notFull = source.addPage(page);
+        assertFalse(notFull.isDone());
+        assertTrue(source.getNotEmptyFuture().isDone());
+
+        assertEquals(source.pollPage(), page);
+        assertTrue(notFull.isDone());
+        assertNull(source.pollPage());
+        assertFalse(source.isExhausted());
+
+        source.noMorePages();
+        assertTrue(source.isExhausted());
+        assertTrue(source.whenBuildFinishes().isDone());
+    }
+
+    private TaskContext createTaskContext()
+    {
+        return TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION);
+    }
+
+    private static MergeJoinOperatorFactory newJoinOperatorFactoryWithCompletedBuild(TaskContext taskContext, RowPagesBuilder buildPages, boolean outer)
+    {
+        DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+
+        ValuesOperatorFactory valuesOperatorFactory = new ValuesOperatorFactory(0, new PlanNodeId("test"), buildPages.build());
+
+        JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager = new JoinBridgeManager<>(
+                false,
+                PipelineExecutionStrategy.UNGROUPED_EXECUTION,
+                PipelineExecutionStrategy.UNGROUPED_EXECUTION,
+                lifespan -> new MergeJoinSource(Long.MAX_VALUE),
+                buildPages.getTypes());
+        MergeJoinSinkOperatorFactory mergeJoinSinkOperatorFactory = new MergeJoinSinkOperatorFactory(1, new PlanNodeId("test"), mergeJoinSourceManager);
+        MergeJoinOperatorFactory joinOperatorFactory = new MergeJoinOperatorFactory(
+                3,
+                new PlanNodeId("test"),
+                mergeJoinSourceManager,
+                outer,
+                TYPES,
+                ImmutableList.of(0),
+                ImmutableList.of(0, 1),
+                TYPES,
+                ImmutableList.of(0),
+                ImmutableList.of(1));
+
+        Operator valuesOperator = valuesOperatorFactory.createOperator(driverContext);
+        Operator mergeJoinSinkOperator = mergeJoinSinkOperatorFactory.createOperator(driverContext);
+        Driver driver = Driver.createDriver(driverContext,
+                valuesOperator,
+                mergeJoinSinkOperator);
+
+        valuesOperatorFactory.noMoreOperators();
+        mergeJoinSinkOperatorFactory.noMoreOperators();
+
+        while (!driver.isFinished()) {
+            driver.process();
+        }
+
+        return joinOperatorFactory;
+    }
+}
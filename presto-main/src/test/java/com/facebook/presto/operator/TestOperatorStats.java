@@ -30,7 +30,7 @@ import static org.testng.Assert.assertNull;
 public class TestOperatorStats
 {
     private static final SplitOperatorInfo NON_MERGEABLE_INFO = new SplitOperatorInfo("some_info");
-    private static final PartitionedOutputInfo MERGEABLE_INFO = new PartitionedOutputInfo(1, 2, 1024);
+    private static final PartitionedOutputInfo MERGEABLE_INFO = new PartitionedOutputInfo(1, 2, 1024, 2048, 512);
 
     public static final OperatorStats EXPECTED = new OperatorStats(
             0,
@@ -61,6 +61,10 @@ public class TestOperatorStats
 
             new DataSize(14, BYTE),
 
+            26,
+
+            27,
+
             new Duration(15, NANOSECONDS),
 
             16,
@@ -107,6 +111,10 @@ public class TestOperatorStats
 
             new DataSize(14, BYTE),
 
+            26,
+
+            27,
+
             new Duration(15, NANOSECONDS),
 
             16,
@@ -161,6 +169,9 @@ public class TestOperatorStats
 
         assertEquals(actual.getPhysicalWrittenDataSize(), new DataSize(14, BYTE));
 
+        assertEquals(actual.getDynamicFilterPrunedPositions(), 26);
+        assertEquals(actual.getPartialAggregationSkippedPositions(), 27);
+
         assertEquals(actual.getBlockedWall(), new Duration(15, NANOSECONDS));
 
         assertEquals(actual.getFinishCalls(), 16);
@@ -208,6 +219,9 @@ public class TestOperatorStats
 
         assertEquals(actual.getPhysicalWrittenDataSize(), new DataSize(3 * 14, BYTE));
 
+        assertEquals(actual.getDynamicFilterPrunedPositions(), 3 * 26);
+        assertEquals(actual.getPartialAggregationSkippedPositions(), 3 * 27);
+
         assertEquals(actual.getBlockedWall(), new Duration(3 * 15, NANOSECONDS));
 
         assertEquals(actual.getFinishCalls(), 3 * 16);
@@ -254,6 +268,9 @@ public class TestOperatorStats
 
         assertEquals(actual.getPhysicalWrittenDataSize(), new DataSize(3 * 14, BYTE));
 
+        assertEquals(actual.getDynamicFilterPrunedPositions(), 3 * 26);
+        assertEquals(actual.getPartialAggregationSkippedPositions(), 3 * 27);
+
         assertEquals(actual.getBlockedWall(), new Duration(3 * 15, NANOSECONDS));
 
         assertEquals(actual.getFinishCalls(), 3 * 16);
@@ -13,19 +13,46 @@
  */
 package com.facebook.presto.operator;
 
+import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.memory.context.MemoryReservationHandler;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Supplier;
 
 import static com.facebook.presto.SequencePageBuilder.createSequencePage;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.DIRECT_JOIN_LOOKUP_SOURCE;
+import static com.facebook.presto.block.BlockAssertions.createDoublesBlock;
+import static com.facebook.presto.block.BlockAssertions.createIntsBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newRootAggregatedMemoryContext;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static io.airlift.slice.SizeOf.sizeOfIntArray;
+import static java.lang.Math.max;
 import static java.lang.String.format;
+import static java.util.Collections.nCopies;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 public class TestPagesIndex
@@ -82,11 +109,200 @@ public class TestPagesIndex
         assertEquals(lazyCompactPagesIndex.getEstimatedSize(), eagerCompactPagesIndex.getEstimatedSize());
     }
 
+    @Test
+    public void testDirectJoinLookupSource()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT);
+        PagesIndex pagesIndex = newPagesIndex(types, 10, false);
+        pagesIndex.addPage(new Page(createLongsBlock(10L, 12L, null, 12L), createLongsBlock(0, 1, 2, 3)));
+        pagesIndex.addPage(new Page(createLongsBlock(13L, 11L), createLongsBlock(4, 5)));
+
+        // the key array is reserved for up to 4 slots per row before it is built
+        assertEquals(pagesIndex.getEstimatedDirectLookupSourceSize(TEST_SESSION, ImmutableList.of(0), Optional.empty()), sizeOfIntArray(24));
+        Supplier<LookupSource> lookupSourceSupplier = pagesIndex.createLookupSourceSupplier(TEST_SESSION, ImmutableList.of(0));
+        assertTrue(lookupSourceSupplier instanceof DirectJoinHashSupplier);
+        LookupSource lookupSource = lookupSourceSupplier.get();
+        assertEquals(lookupSource.getJoinPositionCount(), 6);
+
+        Page probePage = new Page(createLongsBlock(12L, 9L, 14L, null, 10L, 13L));
+        assertEquals(getJoinPositions(lookupSource, probePage, 0), ImmutableSet.of(1L, 3L));
+        assertEquals(getJoinPositions(lookupSource, probePage, 1), ImmutableSet.of());
+        assertEquals(getJoinPositions(lookupSource, probePage, 2), ImmutableSet.of());
+        assertEquals(getJoinPositions(lookupSource, probePage, 3), ImmutableSet.of());
+        assertEquals(getJoinPositions(lookupSource, probePage, 4), ImmutableSet.of(0L));
+        assertEquals(getJoinPositions(lookupSource, probePage, 5), ImmutableSet.of(4L));
+    }
+
+    @Test
+    public void testDirectJoinLookupSourceFallback()
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+
+        // the keys are too sparse to be indexed by an array
+        PagesIndex sparsePagesIndex = newPagesIndex(types, 10, false);
+        sparsePagesIndex.addPage(new Page(createLongsBlock(0L, 1000L, Long.MIN_VALUE, Long.MAX_VALUE)));
+        assertFalse(sparsePagesIndex.createLookupSourceSupplier(TEST_SESSION, ImmutableList.of(0)) instanceof DirectJoinHashSupplier);
+
+        PagesIndex densePagesIndex = newPagesIndex(types, 10, false);
+        densePagesIndex.addPage(new Page(createLongsBlock(1L, 2L, 3L)));
+        Session session = testSessionBuilder().setSystemProperty(DIRECT_JOIN_LOOKUP_SOURCE, "false").build();
+        assertEquals(densePagesIndex.getEstimatedDirectLookupSourceSize(session, ImmutableList.of(0), Optional.empty()), 0);
+        assertFalse(densePagesIndex.createLookupSourceSupplier(session, ImmutableList.of(0)) instanceof DirectJoinHashSupplier);
+    }
+
+    @Test
+    public void testNormalizedKeySort()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, DOUBLE, INTEGER);
+        List<Page> pages = randomSortPages(new Random(42), 3, 1000);
+
+        List<List<Integer>> sortChannelsList = ImmutableList.of(
+                ImmutableList.of(0),
+                ImmutableList.of(1),
+                ImmutableList.of(2),
+                ImmutableList.of(0, 3),
+                ImmutableList.of(3, 1, 0),
+                ImmutableList.of(0, 0, 2));
+        for (List<Integer> sortChannels : sortChannelsList) {
+            for (SortOrder sortOrder : SortOrder.values()) {
+                List<SortOrder> sortOrders = nCopies(sortChannels.size(), sortOrder);
+
+                PagesIndex expected = new PagesIndex.TestingFactory(false, false).newPagesIndex(types, 3000);
+                PagesIndex actual = new PagesIndex.TestingFactory(false, true).newPagesIndex(types, 3000);
+                for (Page page : pages) {
+                    expected.addPage(page);
+                    actual.addPage(page);
+                }
+                expected.sort(sortChannels, sortOrders);
+                TestingMemoryReservationHandler reservationHandler = new TestingMemoryReservationHandler(true);
+                LocalMemoryContext sortMemoryContext = newRootAggregatedMemoryContext(reservationHandler, 0).newLocalMemoryContext("sort");
+                actual.sort(sortChannels, sortOrders, sortMemoryContext);
+
+                // the memory of the normalized keys is reserved while sorting and released afterwards
+                assertTrue(reservationHandler.getMaxReservedBytes() >= 48 * 3000);
+                assertEquals(sortMemoryContext.getBytes(), 0);
+                assertSameSortKeys(actual, expected, types, sortChannels, sortOrder);
+            }
+        }
+    }
+
+    @Test
+    public void testNormalizedKeySortWithoutMemory()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, DOUBLE, INTEGER);
+        List<Page> pages = randomSortPages(new Random(42), 3, 1000);
+        List<Integer> sortChannels = ImmutableList.of(0, 3);
+        List<SortOrder> sortOrders = nCopies(sortChannels.size(), SortOrder.ASC_NULLS_LAST);
+
+        PagesIndex expected = new PagesIndex.TestingFactory(false, false).newPagesIndex(types, 3000);
+        PagesIndex actual = new PagesIndex.TestingFactory(false, true).newPagesIndex(types, 3000);
+        for (Page page : pages) {
+            expected.addPage(page);
+            actual.addPage(page);
+        }
+        expected.sort(sortChannels, sortOrders);
+
+        // the comparator sort is used when the memory of the normalized keys can not be reserved
+        TestingMemoryReservationHandler reservationHandler = new TestingMemoryReservationHandler(false);
+        LocalMemoryContext sortMemoryContext = newRootAggregatedMemoryContext(reservationHandler, 0).newLocalMemoryContext("sort");
+        actual.sort(sortChannels, sortOrders, sortMemoryContext);
+
+        assertEquals(reservationHandler.getMaxReservedBytes(), 0);
+        assertEquals(sortMemoryContext.getBytes(), 0);
+        assertSameSortKeys(actual, expected, types, sortChannels, SortOrder.ASC_NULLS_LAST);
+    }
+
+    private static void assertSameSortKeys(PagesIndex actual, PagesIndex expected, List<Type> types, List<Integer> sortChannels, SortOrder sortOrder)
+    {
+        for (int position = 0; position < expected.getPositionCount(); position++) {
+            for (int channel : sortChannels) {
+                assertEquals(
+                        getValue(actual, types.get(channel), channel, position),
+                        getValue(expected, types.get(channel), channel, position),
+                        format("sort channels %s, order %s, position %s", sortChannels, sortOrder, position));
+            }
+        }
+    }
+
+    private static List<Page> randomSortPages(Random random, int pageCount, int positionCount)
+    {
+        List<Double> doubles = ImmutableList.of(Double.NaN, -0.0, 0.0, -1.5, 1.5, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, Double.MIN_VALUE, -Double.MAX_VALUE);
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        for (int i = 0; i < pageCount; i++) {
+            List<Long> longValues = new ArrayList<>();
+            List<String> stringValues = new ArrayList<>();
+            List<Double> doubleValues = new ArrayList<>();
+            List<Integer> intValues = new ArrayList<>();
+            for (int position = 0; position < positionCount; position++) {
+                boolean isNull = random.nextInt(10) == 0;
+                longValues.add(isNull ? null : random.nextInt(20) == 0 ? Long.MIN_VALUE : random.nextInt(100) - 50L);
+                // long strings sharing a prefix need the comparator to break the ties of the encoded prefixes
+                stringValues.add(isNull ? null : random.nextBoolean() ? "a shared prefix " + random.nextInt(30) : Integer.toString(random.nextInt(30)));
+                doubleValues.add(isNull ? null : doubles.get(random.nextInt(doubles.size())));
+                intValues.add(random.nextInt(10) == 0 ? null : random.nextInt(2000) - 1000);
+            }
+            pages.add(new Page(createLongsBlock(longValues), createStringsBlock(stringValues), createDoublesBlock(doubleValues), createIntsBlock(intValues)));
+        }
+        return pages.build();
+    }
+
+    private static Object getValue(PagesIndex pagesIndex, Type type, int channel, int position)
+    {
+        return type.getObjectValue(TEST_SESSION.getSqlFunctionProperties(), pagesIndex.getSingleValueBlock(channel, position), 0);
+    }
+
+    private static Set<Long> getJoinPositions(LookupSource lookupSource, Page probePage, int probePosition)
+    {
+        Set<Long> joinPositions = new HashSet<>();
+        for (long joinPosition = lookupSource.getJoinPosition(probePosition, probePage, probePage);
+                joinPosition >= 0;
+                joinPosition = lookupSource.getNextJoinPosition(joinPosition, probePosition, probePage)) {
+            joinPositions.add(joinPosition);
+        }
+        return joinPositions;
+    }
+
     private static PagesIndex newPagesIndex(List<Type> types, int expectedPositions, boolean eagerCompact)
     {
         return new PagesIndex.TestingFactory(eagerCompact).newPagesIndex(types, expectedPositions);
     }
 
+    private static class TestingMemoryReservationHandler
+            implements MemoryReservationHandler
+    {
+        private final boolean tryReserveSucceeds;
+        private long reservedBytes;
+        private long maxReservedBytes;
+
+        public TestingMemoryReservationHandler(boolean tryReserveSucceeds)
+        {
+            this.tryReserveSucceeds = tryReserveSucceeds;
+        }
+
+        public long getMaxReservedBytes()
+        {
+            return maxReservedBytes;
+        }
+
+        @Override
+        public ListenableFuture<?> reserveMemory(String allocationTag, long delta)
+        {
+            reservedBytes += delta;
+            return immediateFuture(null);
+        }
+
+        @Override
+        public boolean tryReserveMemory(String allocationTag, long delta)
+        {
+            if (!tryReserveSucceeds) {
+                return false;
+            }
+            reservedBytes += delta;
+            maxReservedBytes = max(maxReservedBytes, reservedBytes);
+            return true;
+        }
+    }
+
     private static Page somePage(List<Type> types)
     {
         int[] initialValues = new int[types.size()];
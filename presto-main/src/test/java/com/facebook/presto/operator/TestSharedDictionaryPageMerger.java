@@ -0,0 +1,130 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.type.Type;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static java.lang.Math.min;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestSharedDictionaryPageMerger
+{
+    private static final List<Type> TYPES = ImmutableList.of(VARCHAR, BIGINT);
+    private static final Block DICTIONARY = createStringsBlock("a", "b", "c");
+
+    @Test
+    public void testCombinePagesSharingDictionary()
+    {
+        SharedDictionaryPageMerger merger = new SharedDictionaryPageMerger(TYPES, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+
+        // the blocks have different dictionary source ids, but the same dictionary
+        assertTrue(merger.add(createPage(DICTIONARY, new int[] {0, 1}, 1, 2)).isEmpty());
+        assertTrue(merger.add(createPage(DICTIONARY, new int[] {2, 0}, 3, 4)).isEmpty());
+
+        Page page = merger.flush().get();
+        DictionaryBlock block = (DictionaryBlock) page.getBlock(0);
+        assertSame(block.getDictionary(), DICTIONARY);
+        assertPageEquals(TYPES, page, new Page(createStringsBlock("a", "b", "c", "a"), createLongsBlock(1, 2, 3, 4)));
+
+        assertFalse(merger.flush().isPresent());
+    }
+
+    @Test
+    public void testCombineBatchesOfOneDictionary()
+    {
+        // like the batches a reader produces for a dictionary encoded column of a stripe
+        int rows = 5000;
+        int batchSize = 1024;
+        Block dictionary = createStringsBlock("value 0", "value 1", "value 2", "value 3", "value 4", "value 5", "value 6", "value 7", "value 8", "value 9");
+        SharedDictionaryPageMerger merger = new SharedDictionaryPageMerger(ImmutableList.of(VARCHAR), DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        for (int start = 0; start < rows; start += batchSize) {
+            int count = min(batchSize, rows - start);
+            int[] ids = new int[count];
+            for (int i = 0; i < count; i++) {
+                ids[i] = (start + i) % 10;
+            }
+            assertTrue(merger.add(new Page(new DictionaryBlock(count, dictionary, ids))).isEmpty());
+        }
+
+        Page page = merger.flush().get();
+        DictionaryBlock block = (DictionaryBlock) page.getBlock(0);
+        assertSame(block.getDictionary(), dictionary);
+        assertEquals(block.getPositionCount(), rows);
+        for (int position = 0; position < rows; position++) {
+            assertEquals(VARCHAR.getSlice(block, position).toStringUtf8(), "value " + position % 10);
+        }
+    }
+
+    @Test
+    public void testFlushOnDifferentDictionary()
+    {
+        SharedDictionaryPageMerger merger = new SharedDictionaryPageMerger(TYPES, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+
+        // an equal dictionary that is not the same block is not shared
+        assertTrue(merger.add(createPage(DICTIONARY, new int[] {0}, 1)).isEmpty());
+        List<Page> pages = merger.add(createPage(createStringsBlock("a", "b", "c"), new int[] {1}, 2));
+        assertEquals(pages.size(), 1);
+        assertPageEquals(TYPES, pages.get(0), new Page(createStringsBlock("a"), createLongsBlock(1)));
+
+        assertPageEquals(TYPES, merger.flush().get(), new Page(createStringsBlock("b"), createLongsBlock(2)));
+    }
+
+    @Test
+    public void testPagesWithoutDictionaryAreNotHeldBack()
+    {
+        SharedDictionaryPageMerger merger = new SharedDictionaryPageMerger(TYPES, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+
+        assertTrue(merger.add(createPage(DICTIONARY, new int[] {2}, 1)).isEmpty());
+        Page flatPage = new Page(createStringsBlock("d"), createLongsBlock(2));
+        List<Page> pages = merger.add(flatPage);
+
+        // the buffered page goes first
+        assertEquals(pages.size(), 2);
+        assertPageEquals(TYPES, pages.get(0), new Page(createStringsBlock("c"), createLongsBlock(1)));
+        assertEquals(pages.get(1), flatPage);
+        assertFalse(merger.flush().isPresent());
+    }
+
+    @Test
+    public void testMaxPageSize()
+    {
+        Page page = createPage(DICTIONARY, new int[] {0, 1, 2}, 1, 2, 3);
+        SharedDictionaryPageMerger merger = new SharedDictionaryPageMerger(TYPES, page.getSizeInBytes() * 2 - 1);
+
+        // a page that leaves no room for another page is sent right away
+        assertEquals(merger.add(page), ImmutableList.of(page));
+        assertFalse(merger.flush().isPresent());
+    }
+
+    private static Page createPage(Block dictionary, int[] ids, int... values)
+    {
+        return new Page(new DictionaryBlock(ids.length, dictionary, ids), createLongsBlock(values));
+    }
+}
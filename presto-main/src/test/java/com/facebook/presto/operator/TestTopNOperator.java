@@ -15,6 +15,9 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.operator.TopNOperator.TopNOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.testing.MaterializedResult;
@@ -25,6 +28,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -101,6 +105,42 @@ public class TestTopNOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @Test
+    public void testDynamicFilter()
+    {
+        List<Page> input = rowPagesBuilder(BIGINT, DOUBLE)
+                .row(1L, 0.1)
+                .row(2L, 0.2)
+                .pageBreak()
+                .row(-1L, -0.1)
+                .row(4L, 0.4)
+                .pageBreak()
+                .row(5L, 0.5)
+                .row(4L, 0.41)
+                .row(6L, 0.6)
+                .build();
+
+        TopNDynamicFilter dynamicFilter = new TopNDynamicFilter(new PlanNodeId("test"), BIGINT, DESC_NULLS_LAST);
+        TopNOperatorFactory operatorFactory = new TopNOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                2,
+                ImmutableList.of(0),
+                ImmutableList.of(DESC_NULLS_LAST),
+                Optional.of(dynamicFilter));
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, DOUBLE)
+                .row(6L, 0.6)
+                .row(5L, 0.5)
+                .build();
+
+        assertOperatorEquals(operatorFactory, driverContext, input, expected);
+        // the range narrowed after every page, down to the last of the top rows
+        assertEquals(dynamicFilter.getVersion(), 3);
+        assertEquals(dynamicFilter.getDomain(), Domain.create(ValueSet.ofRanges(Range.greaterThanOrEqual(BIGINT, 5L)), false));
+    }
+
     @Test
     public void testMultiFieldKey()
     {
@@ -21,6 +21,7 @@ import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.gen.JoinCompiler;
+import com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
@@ -43,12 +44,18 @@ import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
 import static com.facebook.presto.operator.TopNRowNumberOperator.TopNRowNumberOperatorFactory;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.DENSE_RANK;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.RANK;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.ROW_NUMBER;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static java.lang.String.format;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestTopNRowNumberOperator
@@ -56,6 +63,7 @@ public class TestTopNRowNumberOperator
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
     private DriverContext driverContext;
+    private DummyPartitioningSpillerFactory spillerFactory;
     private JoinCompiler joinCompiler;
 
     @BeforeMethod
@@ -67,6 +75,7 @@ public class TestTopNRowNumberOperator
                 .addPipelineContext(0, true, true, false)
                 .addDriverContext();
         joinCompiler = new JoinCompiler(MetadataManager.createTestMetadataManager(), new FeaturesConfig());
+        spillerFactory = new DummyPartitioningSpillerFactory();
     }
 
     @AfterMethod
@@ -74,12 +83,13 @@ public class TestTopNRowNumberOperator
     {
         executor.shutdownNow();
         scheduledExecutor.shutdownNow();
+        spillerFactory = null;
     }
 
-    @DataProvider(name = "hashEnabledValues")
-    public static Object[][] hashEnabledValuesProvider()
+    @DataProvider
+    public static Object[][] hashAndSpillEnabledValues()
     {
-        return new Object[][] {{true}, {false}};
+        return new Object[][] {{true, false}, {false, false}, {true, true}, {false, true}};
     }
 
     @DataProvider
@@ -88,8 +98,8 @@ public class TestTopNRowNumberOperator
         return new Object[][] {{true}, {false}};
     }
 
-    @Test(dataProvider = "hashEnabledValues")
-    public void testPartitioned(boolean hashEnabled)
+    @Test(dataProvider = "hashAndSpillEnabledValues")
+    public void testPartitioned(boolean hashEnabled, boolean spillEnabled)
     {
         RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT, DOUBLE);
         List<Page> input = rowPagesBuilder
@@ -117,11 +127,14 @@ public class TestTopNRowNumberOperator
                 ImmutableList.of(BIGINT),
                 Ints.asList(1),
                 ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                ROW_NUMBER,
                 3,
                 false,
                 Optional.empty(),
                 10,
-                joinCompiler);
+                joinCompiler,
+                spillEnabled,
+                spillerFactory);
 
         MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
                 .row(0.3, 1L, 1L)
@@ -134,7 +147,14 @@ public class TestTopNRowNumberOperator
                 .row(0.91, 3L, 2L)
                 .build();
 
-        assertOperatorEquals(operatorFactory, driverContext, input, expected);
+        if (spillEnabled) {
+            // groups are produced one spill partition at a time
+            assertOperatorEqualsIgnoreOrder(operatorFactory, driverContext, input, expected);
+        }
+        else {
+            assertOperatorEquals(operatorFactory, driverContext, input, expected);
+        }
+        assertTrue(spillEnabled == (spillerFactory.getSpillsCount() > 0), format("Spill state mismatch. Expected spill: %s, spill count: %s", spillEnabled, spillerFactory.getSpillsCount()));
     }
 
     @Test(dataProvider = "partial")
@@ -165,11 +185,14 @@ public class TestTopNRowNumberOperator
                 ImmutableList.of(),
                 Ints.asList(1),
                 ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                ROW_NUMBER,
                 3,
                 partial,
                 Optional.empty(),
                 10,
-                joinCompiler);
+                joinCompiler,
+                false,
+                spillerFactory);
 
         MaterializedResult expected;
         if (partial) {
@@ -190,6 +213,76 @@ public class TestTopNRowNumberOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @Test
+    public void testRank()
+    {
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.1, 1L, 1L)
+                .row(0.1, 1L, 1L)
+                .row(0.5, 2L, 1L)
+                .row(0.6, 2L, 2L)
+                .row(0.6, 2L, 2L)
+                .build();
+
+        assertOperatorEquals(createRankingOperatorFactory(RANK), driverContext, createRankingInput(), expected);
+    }
+
+    @Test
+    public void testDenseRank()
+    {
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.1, 1L, 1L)
+                .row(0.1, 1L, 1L)
+                .row(0.2, 1L, 2L)
+                .row(0.2, 1L, 2L)
+                .row(0.5, 2L, 1L)
+                .row(0.6, 2L, 2L)
+                .row(0.6, 2L, 2L)
+                .build();
+
+        assertOperatorEquals(createRankingOperatorFactory(DENSE_RANK), driverContext, createRankingInput(), expected);
+    }
+
+    private static List<Page> createRankingInput()
+    {
+        // ties are added both to the last peer group and to the ones ahead of it
+        return rowPagesBuilder(BIGINT, DOUBLE)
+                .row(1L, 0.3)
+                .row(1L, 0.2)
+                .row(2L, 0.7)
+                .pageBreak()
+                .row(1L, 0.1)
+                .row(2L, 0.6)
+                .row(1L, 0.1)
+                .pageBreak()
+                .row(1L, 0.2)
+                .row(2L, 0.5)
+                .row(2L, 0.6)
+                .row(2L, 0.7)
+                .build();
+    }
+
+    private TopNRowNumberOperatorFactory createRankingOperatorFactory(RankingFunction rankingFunction)
+    {
+        return new TopNRowNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                Ints.asList(1, 0),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                Ints.asList(1),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                rankingFunction,
+                2,
+                false,
+                Optional.empty(),
+                10,
+                joinCompiler,
+                false,
+                spillerFactory);
+    }
+
     public void testMemoryReservationYield()
     {
         Type type = BIGINT;
@@ -204,11 +297,14 @@ public class TestTopNRowNumberOperator
                 ImmutableList.of(type),
                 Ints.asList(0),
                 ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                ROW_NUMBER,
                 3,
                 false,
                 Optional.empty(),
                 10,
-                joinCompiler);
+                joinCompiler,
+                false,
+                spillerFactory);
 
         // get result with yield; pick a relatively small buffer for heaps
         GroupByHashYieldAssertion.GroupByHashYieldResult result = finishOperatorWithYieldingGroupByHash(
@@ -32,6 +32,7 @@ import com.facebook.presto.block.BlockEncodingManager;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockFlattener;
 import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.function.OperatorType;
 import com.facebook.presto.common.type.ArrayType;
 import com.facebook.presto.common.type.DecimalType;
@@ -68,6 +69,7 @@ import static com.facebook.presto.block.BlockAssertions.createRandomShortDecimal
 import static com.facebook.presto.block.BlockAssertions.createRandomSmallintsBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
 import static com.facebook.presto.block.BlockAssertions.createRleBlockWithRandomValue;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.block.BlockAssertions.wrapBlock;
 import static com.facebook.presto.common.block.ArrayBlock.fromElementBlock;
 import static com.facebook.presto.common.block.BlockSerdeUtil.readBlock;
@@ -91,6 +93,8 @@ import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestBlockEncodingBuffers
 {
@@ -134,6 +138,86 @@ public class TestBlockEncodingBuffers
         testBlock(VARCHAR, createRleBlockWithRandomValue(createRandomStringBlock(POSITIONS_PER_BLOCK, 0.2f, 0), POSITIONS_PER_BLOCK));
     }
 
+    @Test
+    public void testDictionaryAndRleEncodingsArePreserved()
+    {
+        Closer blockLeaseCloser = Closer.create();
+        BlockFlattener flattener = new BlockFlattener(new SimpleArrayAllocator());
+
+        Block dictionary = createStringsBlock("a", "bb", null);
+        DecodedBlockNode decodedBlock = decodeBlock(flattener, blockLeaseCloser, new DictionaryBlock(dictionary, new int[] {0, 1, 0, 2, 1, 0}));
+        BlockEncodingBuffer buffer = createBlockEncodingBuffers(decodedBlock, new SimpleArrayAllocator(1000), false);
+
+        // only the first row referring to an entry pays for the entry
+        copyPositions(decodedBlock, buffer, new int[] {0, 1, 2, 3}, new int[] {10, 11, 4, 9, 0, 0});
+
+        // the next block shares the dictionary, so no entries are added
+        decodedBlock = decodeBlock(flattener, blockLeaseCloser, new DictionaryBlock(dictionary, new int[] {1, 1}));
+        copyPositions(decodedBlock, buffer, new int[] {0, 1}, new int[] {4, 4});
+
+        Block serialized = serialize(buffer);
+        assertTrue(serialized instanceof DictionaryBlock);
+        assertEquals(((DictionaryBlock) serialized).getDictionary().getPositionCount(), 3);
+        assertBlockEquals(VARCHAR, serialized, createStringsBlock("a", "bb", "a", null, "bb", "bb"));
+
+        buffer.resetBuffers();
+        decodedBlock = decodeBlock(flattener, blockLeaseCloser, new RunLengthEncodedBlock(createStringsBlock("a"), 10));
+        copyPositions(decodedBlock, buffer, new int[] {0, 1, 2}, new int[] {10, 4, 4});
+
+        serialized = serialize(buffer);
+        assertTrue(serialized instanceof RunLengthEncodedBlock);
+        assertBlockEquals(VARCHAR, serialized, createStringsBlock("a", "a", "a"));
+
+        try {
+            blockLeaseCloser.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    public void testDictionaryLargerThanPartitionIsFlattened()
+    {
+        Closer blockLeaseCloser = Closer.create();
+        BlockFlattener flattener = new BlockFlattener(new SimpleArrayAllocator());
+
+        // the 2 rows of the partition refer to a dictionary of 4 entries, so the rows are copied without ids
+        Block dictionary = createStringsBlock("a", "bb", "ccc", "dddd");
+        DecodedBlockNode decodedBlock = decodeBlock(flattener, blockLeaseCloser, new DictionaryBlock(dictionary, new int[] {3, 0, 1, 0, 2, 3}));
+        BlockEncodingBuffer buffer = createBlockEncodingBuffers(decodedBlock, new SimpleArrayAllocator(1000), false);
+        copyPositions(decodedBlock, buffer, new int[] {0, 1}, new int[] {9, 6, 0, 0, 0, 0});
+
+        Block serialized = serialize(buffer);
+        assertFalse(serialized instanceof DictionaryBlock);
+        assertBlockEquals(VARCHAR, serialized, createStringsBlock("dddd", "a"));
+
+        // the rows of the next block are deduplicated, the flat rows keep their own entries
+        decodedBlock = decodeBlock(flattener, blockLeaseCloser, new DictionaryBlock(dictionary, new int[] {1, 1, 1, 1, 1}));
+        copyPositions(decodedBlock, buffer, new int[] {0, 1, 2, 3, 4}, new int[] {11, 4, 4, 4, 4});
+
+        serialized = serialize(buffer);
+        assertTrue(serialized instanceof DictionaryBlock);
+        assertEquals(((DictionaryBlock) serialized).getDictionary().getPositionCount(), 3);
+        assertBlockEquals(VARCHAR, serialized, createStringsBlock("dddd", "a", "bb", "bb", "bb", "bb", "bb"));
+
+        // the mapping to the flushed entries is cleared
+        buffer.resetBuffers();
+        decodedBlock = decodeBlock(flattener, blockLeaseCloser, new DictionaryBlock(dictionary, new int[] {1, 1, 1, 1}));
+        copyPositions(decodedBlock, buffer, new int[] {0, 1, 2, 3}, new int[] {11, 4, 4, 4});
+
+        serialized = serialize(buffer);
+        assertTrue(serialized instanceof RunLengthEncodedBlock);
+        assertBlockEquals(VARCHAR, serialized, createStringsBlock("bb", "bb", "bb", "bb"));
+
+        try {
+            blockLeaseCloser.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     @Test
     public void testArray()
     {
@@ -14,14 +14,21 @@
 package com.facebook.presto.operator.window;
 
 import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.MaterializedRow;
 import org.intellij.lang.annotations.Language;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static java.lang.String.format;
+import static org.testng.Assert.assertEquals;
 
 public class TestAggregateWindowFunction
         extends AbstractTestWindowFunction
@@ -530,4 +537,78 @@ public class TestAggregateWindowFunction
                         .row(null, null, null)
                         .build());
     }
+
+    @Test
+    public void testLargeSlidingFrames()
+    {
+        assertSlidingFrame(200, -50);
+        assertSlidingFrame(1000, 300);
+        assertSlidingFrame(130, 0);
+    }
+
+    @Test
+    public void testLargeSlidingFramesOfDoubles()
+    {
+        int rowCount = 1000;
+        String frame = "OVER (ORDER BY x ROWS BETWEEN 300 PRECEDING AND CURRENT ROW)";
+        MaterializedResult actual = queryRunner.execute(format("" +
+                        "SELECT x, sum(v) %1$s, avg(v) %1$s, min(v) %1$s, max(v) %1$s " +
+                        "FROM (SELECT x, x * 0.1E0 AS v FROM UNNEST(sequence(1, %2$s)) AS t(x)) " +
+                        "ORDER BY x",
+                frame,
+                rowCount));
+
+        // floating point sums are added row by row, so they round exactly like adding the frame in row order
+        List<MaterializedRow> rows = actual.getMaterializedRows();
+        assertEquals(rows.size(), rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            double sum = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            int start = Math.max(0, row - 300);
+            for (int i = start; i <= row; i++) {
+                double value = (i + 1) * 0.1;
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            assertEquals(rows.get(row).getFields(), Arrays.asList((long) row + 1, sum, sum / (row - start + 1), min, max), format("row %s of frame %s", row, frame));
+        }
+    }
+
+    private void assertSlidingFrame(int startPreceding, int endPreceding)
+    {
+        int rowCount = 2000;
+        String frame = format("OVER (ORDER BY x ROWS BETWEEN %s PRECEDING AND %s)", startPreceding, endPreceding >= 0 ? endPreceding + " PRECEDING" : -endPreceding + " FOLLOWING");
+        MaterializedResult actual = queryRunner.execute(format("" +
+                        "SELECT x, sum(v) %1$s, count(v) %1$s, min(v) %1$s, max(v) %1$s " +
+                        "FROM (SELECT x, IF(x %% 7 = 0 OR x BETWEEN 300 AND 600, NULL, (x * 37) %% 101) AS v FROM UNNEST(sequence(1, %2$s)) AS t(x)) " +
+                        "ORDER BY x",
+                frame,
+                rowCount));
+
+        List<Long> values = new ArrayList<>();
+        for (long x = 1; x <= rowCount; x++) {
+            values.add(x % 7 == 0 || (x >= 300 && x <= 600) ? null : (x * 37) % 101);
+        }
+
+        List<MaterializedRow> rows = actual.getMaterializedRows();
+        assertEquals(rows.size(), rowCount);
+        for (int row = 0; row < rowCount; row++) {
+            Long sum = null;
+            long count = 0;
+            Long min = null;
+            Long max = null;
+            for (int i = Math.max(0, row - startPreceding); i <= Math.min(rowCount - 1, row - endPreceding); i++) {
+                Long value = values.get(i);
+                if (value != null) {
+                    sum = sum == null ? value : sum + value;
+                    count++;
+                    min = min == null ? value : Math.min(min, value);
+                    max = max == null ? value : Math.max(max, value);
+                }
+            }
+            assertEquals(rows.get(row).getFields(), Arrays.asList((long) row + 1, sum, count, min, max), format("row %s of frame %s", row, frame));
+        }
+    }
 }
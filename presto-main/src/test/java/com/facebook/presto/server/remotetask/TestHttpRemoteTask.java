@@ -512,7 +512,9 @@ public class TestHttpRemoteTask
                     initialTaskStatus.getMemoryReservation(),
                     initialTaskStatus.getSystemMemoryReservation(),
                     initialTaskStatus.getFullGcCount(),
-                    initialTaskStatus.getFullGcTime());
+                    initialTaskStatus.getFullGcTime(),
+                    initialTaskStatus.getDynamicFilterDomainsVersion(),
+                    initialTaskStatus.getDynamicFilterDomains());
         }
     }
 }
@@ -15,6 +15,7 @@ package com.facebook.presto.sql.analyzer;
 
 import com.facebook.airlift.configuration.ConfigurationFactory;
 import com.facebook.airlift.configuration.testing.ConfigAssertions;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import com.facebook.presto.operator.aggregation.histogram.HistogramGroupImplementation;
 import com.facebook.presto.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -86,9 +87,15 @@ public class TestFeaturesConfig
                 .setRe2JDfaStatesLimit(Integer.MAX_VALUE)
                 .setRe2JDfaRetries(5)
                 .setSpillEnabled(false)
+                .setOrderBySpillEnabled(true)
+                .setWindowSpillEnabled(true)
+                .setTopNRowNumberSpillEnabled(true)
+                .setDistinctSpillEnabled(true)
+                .setSemiJoinSpillEnabled(true)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("4MB"))
                 .setSpillerSpillPaths("")
                 .setSpillerThreads(4)
+                .setSpillerPartitionCount(16)
                 .setSpillMaxUsedSpaceThreshold(0.9)
                 .setMemoryRevokingThreshold(0.9)
                 .setMemoryRevokingTarget(0.5)
@@ -132,7 +139,21 @@ public class TestFeaturesConfig
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.AUTOMATIC)
                 .setExperimentalFunctionsEnabled(false)
                 .setUseLegacyScheduler(true)
-                .setOptimizeCommonSubExpressions(true));
+                .setOptimizeCommonSubExpressions(true)
+                .setEnableDynamicFiltering(false)
+                .setDynamicFilteringMaxPerDriverRowCount(10_000)
+                .setDynamicFilteringWaitTimeout(new Duration(10, SECONDS))
+                .setAdaptivePartialAggregationEnabled(true)
+                .setAdaptivePartialAggregationMinRows(100_000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.8)
+                .setFlatGroupByHashEnabled(false)
+                .setDirectJoinLookupSourceEnabled(true)
+                .setJoinBloomFilterEnabled(true)
+                .setMergeJoinEnabled(false)
+                .setPagesIndexNormalizedKeySortEnabled(true)
+                .setTopNDynamicFilteringEnabled(false)
+                .setExchangeCompressionCodec(CompressionCodec.LZ4)
+                .setExchangeSharedDictionaryPageMergingEnabled(false));
     }
 
     @Test
@@ -185,9 +206,15 @@ public class TestFeaturesConfig
                 .put("re2j.dfa-states-limit", "42")
                 .put("re2j.dfa-retries", "42")
                 .put("experimental.spill-enabled", "true")
+                .put("experimental.order-by-spill-enabled", "false")
+                .put("experimental.window-spill-enabled", "false")
+                .put("experimental.topn-row-number-spill-enabled", "false")
+                .put("experimental.distinct-spill-enabled", "false")
+                .put("experimental.semi-join-spill-enabled", "false")
                 .put("experimental.aggregation-operator-unspill-memory-limit", "100MB")
                 .put("experimental.spiller-spill-path", "/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .put("experimental.spiller-threads", "42")
+                .put("experimental.spiller-partition-count", "8")
                 .put("experimental.spiller-max-used-space-threshold", "0.8")
                 .put("experimental.memory-revoking-threshold", "0.2")
                 .put("experimental.memory-revoking-target", "0.8")
@@ -221,6 +248,20 @@ public class TestFeaturesConfig
                 .put("experimental-functions-enabled", "true")
                 .put("use-legacy-scheduler", "false")
                 .put("optimize-common-sub-expressions", "false")
+                .put("experimental.enable-dynamic-filtering", "true")
+                .put("experimental.dynamic-filtering-max-per-driver-row-count", "256")
+                .put("experimental.dynamic-filtering-wait-timeout", "3s")
+                .put("adaptive-partial-aggregation.enabled", "false")
+                .put("adaptive-partial-aggregation.min-rows", "1000")
+                .put("adaptive-partial-aggregation.unique-rows-ratio-threshold", "0.5")
+                .put("experimental.flat-group-by-hash-enabled", "true")
+                .put("join.direct-lookup-source-enabled", "false")
+                .put("join.bloom-filter-enabled", "false")
+                .put("join.merge-join-enabled", "true")
+                .put("pages-index.normalized-key-sort-enabled", "false")
+                .put("experimental.top-n-dynamic-filtering-enabled", "true")
+                .put("exchange.compression-codec", "ZSTD")
+                .put("exchange.shared-dictionary-page-merging-enabled", "true")
                 .build();
 
         FeaturesConfig expected = new FeaturesConfig()
@@ -266,9 +307,15 @@ public class TestFeaturesConfig
                 .setRe2JDfaStatesLimit(42)
                 .setRe2JDfaRetries(42)
                 .setSpillEnabled(true)
+                .setOrderBySpillEnabled(false)
+                .setWindowSpillEnabled(false)
+                .setTopNRowNumberSpillEnabled(false)
+                .setDistinctSpillEnabled(false)
+                .setSemiJoinSpillEnabled(false)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"))
                 .setSpillerSpillPaths("/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .setSpillerThreads(42)
+                .setSpillerPartitionCount(8)
                 .setSpillMaxUsedSpaceThreshold(0.8)
                 .setMemoryRevokingThreshold(0.2)
                 .setMemoryRevokingTarget(0.8)
@@ -305,7 +352,21 @@ public class TestFeaturesConfig
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.PREFER_EXACT_PARTITIONING)
                 .setExperimentalFunctionsEnabled(true)
                 .setUseLegacyScheduler(false)
-                .setOptimizeCommonSubExpressions(false);
+                .setOptimizeCommonSubExpressions(false)
+                .setEnableDynamicFiltering(true)
+                .setDynamicFilteringMaxPerDriverRowCount(256)
+                .setDynamicFilteringWaitTimeout(new Duration(3, SECONDS))
+                .setAdaptivePartialAggregationEnabled(false)
+                .setAdaptivePartialAggregationMinRows(1000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.5)
+                .setFlatGroupByHashEnabled(true)
+                .setDirectJoinLookupSourceEnabled(false)
+                .setJoinBloomFilterEnabled(false)
+                .setMergeJoinEnabled(true)
+                .setPagesIndexNormalizedKeySortEnabled(false)
+                .setTopNDynamicFilteringEnabled(true)
+                .setExchangeCompressionCodec(CompressionCodec.ZSTD)
+                .setExchangeSharedDictionaryPageMergingEnabled(true);
         assertFullMapping(properties, expected);
     }
 
@@ -32,6 +32,7 @@ import com.facebook.presto.sql.planner.plan.ExchangeNode;
 import com.facebook.presto.sql.planner.plan.IndexJoinNode;
 import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.facebook.presto.sql.planner.plan.LateralJoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.SemiJoinNode;
 import com.facebook.presto.sql.planner.plan.StatisticsWriterNode;
 import com.facebook.presto.sql.tree.LongLiteral;
@@ -49,6 +50,7 @@ import java.util.function.Predicate;
 import static com.facebook.presto.SystemSessionProperties.DISTRIBUTED_SORT;
 import static com.facebook.presto.SystemSessionProperties.FORCE_SINGLE_NODE_OUTPUT;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
+import static com.facebook.presto.SystemSessionProperties.MERGE_JOIN;
 import static com.facebook.presto.SystemSessionProperties.OPTIMIZE_HASH_GENERATION;
 import static com.facebook.presto.common.block.SortOrder.ASC_NULLS_LAST;
 import static com.facebook.presto.common.predicate.Domain.singleValue;
@@ -870,6 +872,44 @@ public class TestLogicalPlanner
                 validateSingleRemoteExchange.andThen(validateSingleStreamingAggregation));
     }
 
+    @Test
+    public void testMergeJoinOfTablesSortedOnJoinKeys()
+    {
+        Session mergeJoin = Session.builder(this.getQueryRunner().getDefaultSession())
+                .setSystemProperty(MERGE_JOIN, Boolean.toString(true))
+                .setSystemProperty(FORCE_SINGLE_NODE_OUTPUT, Boolean.toString(false))
+                .build();
+
+        // orders and lineitem are partitioned and sorted on orderkey, so they are joined stream by stream
+        assertPlanWithSession(
+                "SELECT o.orderstatus, l.linenumber FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey",
+                mergeJoin,
+                false,
+                anyTree(
+                        node(MergeJoinNode.class,
+                                anyTree(
+                                        node(TableScanNode.class)),
+                                anyTree(
+                                        node(TableScanNode.class)))),
+                plan -> assertEquals(
+                        countOfMatchingNodes(
+                                plan,
+                                node -> node instanceof ExchangeNode && ((ExchangeNode) node).getScope().isRemote()),
+                        1));
+
+        // lineitem is not sorted on suppkey after orderkey, so the join stays a hash join
+        assertPlanWithSession(
+                "SELECT o.orderstatus, l.linenumber FROM orders o JOIN lineitem l ON o.orderkey = l.orderkey AND o.custkey = l.suppkey",
+                mergeJoin,
+                false,
+                anyTree(
+                        node(JoinNode.class,
+                                anyTree(
+                                        node(TableScanNode.class)),
+                                anyTree(
+                                        node(TableScanNode.class)))));
+    }
+
     @Test
     public void testUsesDistributedJoinIfNaturallyPartitionedOnProbeSymbols()
     {
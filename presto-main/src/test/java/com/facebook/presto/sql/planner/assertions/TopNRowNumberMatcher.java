@@ -21,6 +21,7 @@ import com.facebook.presto.spi.plan.PlanNode;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
 import com.facebook.presto.sql.planner.Symbol;
 import com.facebook.presto.sql.planner.plan.TopNRowNumberNode;
+import com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction;
 import com.facebook.presto.sql.planner.plan.WindowNode;
 
 import java.util.List;
@@ -40,6 +41,7 @@ public class TopNRowNumberMatcher
 {
     private final Optional<ExpectedValueProvider<WindowNode.Specification>> specification;
     private final Optional<SymbolAlias> rowNumberSymbol;
+    private final Optional<RankingFunction> rankingFunction;
     private final Optional<Integer> maxRowCountPerPartition;
     private final Optional<Boolean> partial;
     private final Optional<Optional<SymbolAlias>> hashSymbol;
@@ -47,12 +49,14 @@ public class TopNRowNumberMatcher
     private TopNRowNumberMatcher(
             Optional<ExpectedValueProvider<WindowNode.Specification>> specification,
             Optional<SymbolAlias> rowNumberSymbol,
+            Optional<RankingFunction> rankingFunction,
             Optional<Integer> maxRowCountPerPartition,
             Optional<Boolean> partial,
             Optional<Optional<SymbolAlias>> hashSymbol)
     {
         this.specification = requireNonNull(specification, "specification is null");
         this.rowNumberSymbol = requireNonNull(rowNumberSymbol, "rowNumberSymbol is null");
+        this.rankingFunction = requireNonNull(rankingFunction, "rankingFunction is null");
         this.maxRowCountPerPartition = requireNonNull(maxRowCountPerPartition, "maxRowCountPerPartition is null");
         this.partial = requireNonNull(partial, "partial is null");
         this.hashSymbol = requireNonNull(hashSymbol, "hashVariable is null");
@@ -85,6 +89,12 @@ public class TopNRowNumberMatcher
             return NO_MATCH;
         }
 
+        if (!rankingFunction
+                .map(expectedRankingFunction -> expectedRankingFunction == topNRowNumberNode.getRankingFunction())
+                .orElse(true)) {
+            return NO_MATCH;
+        }
+
         if (!maxRowCountPerPartition
                 .map(expectedMaxRowCountPerPartition -> expectedMaxRowCountPerPartition.equals(topNRowNumberNode.getMaxRowCountPerPartition()))
                 .orElse(true)) {
@@ -116,6 +126,7 @@ public class TopNRowNumberMatcher
         return toStringHelper(this)
                 .add("specification", specification)
                 .add("rowNumberSymbol", rowNumberSymbol)
+                .add("rankingFunction", rankingFunction)
                 .add("maxRowCountPerPartition", maxRowCountPerPartition)
                 .add("partial", partial)
                 .add("hashSymbol", hashSymbol)
@@ -127,6 +138,7 @@ public class TopNRowNumberMatcher
         private final PlanMatchPattern source;
         private Optional<ExpectedValueProvider<WindowNode.Specification>> specification = Optional.empty();
         private Optional<SymbolAlias> rowNumberSymbol = Optional.empty();
+        private Optional<RankingFunction> rankingFunction = Optional.empty();
         private Optional<Integer> maxRowCountPerPartition = Optional.empty();
         private Optional<Boolean> partial = Optional.empty();
         private Optional<Optional<SymbolAlias>> hashSymbol = Optional.empty();
@@ -151,6 +163,12 @@ public class TopNRowNumberMatcher
             return this;
         }
 
+        public Builder rankingFunction(RankingFunction rankingFunction)
+        {
+            this.rankingFunction = Optional.of(requireNonNull(rankingFunction, "rankingFunction is null"));
+            return this;
+        }
+
         public Builder maxRowCountPerPartition(int maxRowCountPerPartition)
         {
             this.maxRowCountPerPartition = Optional.of(maxRowCountPerPartition);
@@ -175,6 +193,7 @@ public class TopNRowNumberMatcher
                     new TopNRowNumberMatcher(
                             specification,
                             rowNumberSymbol,
+                            rankingFunction,
                             maxRowCountPerPartition,
                             partial,
                             hashSymbol));
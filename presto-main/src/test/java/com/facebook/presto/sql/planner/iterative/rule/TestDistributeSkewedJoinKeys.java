@@ -0,0 +1,180 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.sql.planner.iterative.rule;
+
+import com.facebook.presto.metadata.SessionPropertyManager;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.iterative.rule.test.BaseRuleTest;
+import com.facebook.presto.sql.planner.iterative.rule.test.PlanBuilder;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.JoinNode.EquiJoinClause;
+import com.facebook.presto.testing.TestingTransactionHandle;
+import com.facebook.presto.tpch.TpchColumnHandle;
+import com.facebook.presto.tpch.TpchTableHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.facebook.presto.SystemSessionProperties.SKEWED_JOIN_KEYS;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_SESSION_PROPERTY;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.node;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.project;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.tableScan;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.unnest;
+import static com.facebook.presto.sql.planner.iterative.rule.test.RuleTester.CONNECTOR_ID;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.PARTITIONED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.DistributionType.REPLICATED;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
+import static com.facebook.presto.tpch.TpchMetadata.TINY_SCALE_FACTOR;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class TestDistributeSkewedJoinKeys
+        extends BaseRuleTest
+{
+    @Test
+    public void testDistributesHotKeys()
+    {
+        for (JoinNode.Type type : ImmutableList.of(INNER, LEFT)) {
+            tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                    .setSystemProperty(SKEWED_JOIN_KEYS, "orders.custkey=1, orders.custkey=2")
+                    .on(p -> ordersJoinCustomer(p, type, PARTITIONED))
+                    .matches(
+                            node(JoinNode.class,
+                                    project(tableScan("orders")),
+                                    unnest(project(tableScan("customer")))));
+        }
+
+        // a column may be qualified with the schema of its table
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "tiny.orders.custkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .matches(
+                        node(JoinNode.class,
+                                project(tableScan("orders")),
+                                unnest(project(tableScan("customer")))));
+
+        // the hot keys of the build side are used when the probe side has none
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "tiny.customer.custkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .matches(
+                        node(JoinNode.class,
+                                project(tableScan("orders")),
+                                unnest(project(tableScan("customer")))));
+    }
+
+    @Test
+    public void testDoesNotFireWithoutHotKeys()
+    {
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .doesNotFire();
+
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "orders.orderkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .doesNotFire();
+
+        // a column of another table with the same name is not a hot key of this join
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "lineitem.custkey=1, sf1.orders.custkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .doesNotFire();
+
+        // columns that do not exist can not be validated when the property is set, and are not hot keys of any join
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "orders.nonexistent=1, tiny.nonexistent.custkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .doesNotFire();
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "skewed_join_keys must be a list of table.column=value pairs: custkey=1")
+    public void testRejectsUnqualifiedColumn()
+    {
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "custkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .doesNotFire();
+    }
+
+    @Test
+    public void testValidatesPropertyWhenSet()
+    {
+        SessionPropertyManager sessionPropertyManager = new SessionPropertyManager();
+        sessionPropertyManager.validateSystemSessionProperty(SKEWED_JOIN_KEYS, "orders.custkey=1, tiny.orders.custkey=2");
+        for (String value : ImmutableList.of("custkey=1", "orders.custkey", "orders.custkey=", ".custkey=1", "a.b.c.d=1")) {
+            try {
+                sessionPropertyManager.validateSystemSessionProperty(SKEWED_JOIN_KEYS, value);
+                fail("expected invalid value to be rejected: " + value);
+            }
+            catch (PrestoException e) {
+                assertEquals(e.getErrorCode(), INVALID_SESSION_PROPERTY.toErrorCode());
+            }
+        }
+    }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "skewed_join_keys contains a value that is not a valid bigint: abc")
+    public void testRejectsValueOfWrongType()
+    {
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "orders.custkey=abc")
+                .on(p -> ordersJoinCustomer(p, INNER, PARTITIONED))
+                .doesNotFire();
+    }
+
+    @Test
+    public void testDoesNotFireForReplicatedOrRightJoin()
+    {
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "orders.custkey=1")
+                .on(p -> ordersJoinCustomer(p, INNER, REPLICATED))
+                .doesNotFire();
+
+        tester().assertThat(new DistributeSkewedJoinKeys(tester().getMetadata()))
+                .setSystemProperty(SKEWED_JOIN_KEYS, "orders.custkey=1")
+                .on(p -> ordersJoinCustomer(p, RIGHT, PARTITIONED))
+                .doesNotFire();
+    }
+
+    private static PlanNode ordersJoinCustomer(PlanBuilder p, JoinNode.Type type, JoinNode.DistributionType distributionType)
+    {
+        VariableReferenceExpression orderCustkey = p.variable("o_custkey", BIGINT);
+        VariableReferenceExpression customerCustkey = p.variable("c_custkey", BIGINT);
+        return p.join(
+                type,
+                p.tableScan(
+                        new TableHandle(CONNECTOR_ID, new TpchTableHandle("orders", TINY_SCALE_FACTOR), TestingTransactionHandle.create(), Optional.empty()),
+                        ImmutableList.of(orderCustkey),
+                        ImmutableMap.of(orderCustkey, new TpchColumnHandle("custkey", BIGINT))),
+                p.tableScan(
+                        new TableHandle(CONNECTOR_ID, new TpchTableHandle("customer", TINY_SCALE_FACTOR), TestingTransactionHandle.create(), Optional.empty()),
+                        ImmutableList.of(customerCustkey),
+                        ImmutableMap.of(customerCustkey, new TpchColumnHandle("custkey", BIGINT))),
+                ImmutableList.of(new EquiJoinClause(orderCustkey, customerCustkey)),
+                ImmutableList.of(orderCustkey, customerCustkey),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.empty(),
+                Optional.of(distributionType));
+    }
+}
@@ -27,6 +27,9 @@ import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.anyTre
 import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.limit;
 import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.node;
 import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.tableScan;
+import static com.facebook.presto.sql.planner.assertions.PlanMatchPattern.topNRowNumber;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.DENSE_RANK;
+import static com.facebook.presto.sql.planner.plan.TopNRowNumberNode.RankingFunction.RANK;
 
 public class TestWindowFilterPushDown
         extends BasePlanTest
@@ -87,6 +90,51 @@ public class TestWindowFilterPushDown
                                                         tableScan("lineitem")))))));
     }
 
+    @Test
+    public void testFilterAboveRankWindow()
+    {
+        assertPlanWithSession(
+                "SELECT * FROM (SELECT rank() OVER (PARTITION BY suppkey ORDER BY orderkey) partition_rank FROM lineitem) WHERE partition_rank <= 10",
+                optimizeTopNRowNumber(true),
+                true,
+                anyTree(
+                        anyNot(FilterNode.class,
+                                topNRowNumber(builder -> builder
+                                                .rankingFunction(RANK)
+                                                .maxRowCountPerPartition(10)
+                                                .partial(false),
+                                        anyTree(
+                                                tableScan("lineitem"))))));
+
+        assertPlanWithSession(
+                "SELECT * FROM (SELECT dense_rank() OVER (PARTITION BY suppkey ORDER BY orderkey) partition_rank FROM lineitem) WHERE partition_rank < 10",
+                optimizeTopNRowNumber(true),
+                true,
+                anyTree(
+                        anyNot(FilterNode.class,
+                                topNRowNumber(builder -> builder
+                                                .rankingFunction(DENSE_RANK)
+                                                .maxRowCountPerPartition(9)
+                                                .partial(false),
+                                        anyTree(
+                                                tableScan("lineitem"))))));
+    }
+
+    @Test
+    public void testLimitAboveRankWindow()
+    {
+        // a limit may cut through ties, so it does not turn rank() into a TopNRowNumberNode
+        assertPlanWithSession(
+                "SELECT rank() OVER (PARTITION BY suppkey ORDER BY orderkey) partition_rank FROM lineitem LIMIT 10",
+                optimizeTopNRowNumber(true),
+                true,
+                anyTree(
+                        limit(10, anyTree(
+                                node(WindowNode.class,
+                                        anyTree(
+                                                tableScan("lineitem")))))));
+    }
+
     private Session optimizeTopNRowNumber(boolean enabled)
     {
         return Session.builder(this.getQueryRunner().getDefaultSession())
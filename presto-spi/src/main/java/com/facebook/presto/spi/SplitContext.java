@@ -13,20 +13,34 @@
  */
 package com.facebook.presto.spi;
 
+import com.facebook.presto.common.predicate.TupleDomain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
 // TODO: Use builder pattern for SplitContext if we are to add optional field
 public class SplitContext
 {
     public static final SplitContext NON_CACHEABLE = new SplitContext(false);
 
     private final boolean cacheable;
+    private final Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate;
+
+    public SplitContext(boolean cacheable)
+    {
+        this(cacheable, Optional.empty());
+    }
 
     @JsonCreator
-    public SplitContext(@JsonProperty boolean cacheable)
+    public SplitContext(
+            @JsonProperty("cacheable") boolean cacheable,
+            @JsonProperty("dynamicFilterPredicate") Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate)
     {
         this.cacheable = cacheable;
+        this.dynamicFilterPredicate = requireNonNull(dynamicFilterPredicate, "dynamicFilterPredicate is null");
     }
 
     @JsonProperty
@@ -34,4 +48,28 @@ public class SplitContext
     {
         return cacheable;
     }
+
+    /**
+     * Predicate on the columns of the split collected at runtime from the build side of a join.
+     * Rows not matching it will be discarded by the engine, so connectors may use it to skip data.
+     * The predicate is set by the coordinator for joins in other stages and by the worker for
+     * joins in the same stage as the table scan.
+     */
+    @JsonProperty
+    public Optional<TupleDomain<ColumnHandle>> getDynamicFilterPredicate()
+    {
+        return dynamicFilterPredicate;
+    }
+
+    /**
+     * Returns a copy of this context whose dynamic filter predicate is narrowed by the given predicate.
+     */
+    public SplitContext withDynamicFilterPredicate(TupleDomain<ColumnHandle> predicate)
+    {
+        requireNonNull(predicate, "predicate is null");
+        if (predicate.isAll()) {
+            return this;
+        }
+        return new SplitContext(cacheable, Optional.of(dynamicFilterPredicate.map(predicate::intersect).orElse(predicate)));
+    }
 }
@@ -13,10 +13,14 @@
  */
 package com.facebook.presto.spi.connector;
 
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplitSource;
 import com.facebook.presto.spi.ConnectorTableLayoutHandle;
 
+import java.util.function.Supplier;
+
 import static java.util.Objects.requireNonNull;
 
 public interface ConnectorSplitManager
@@ -38,6 +42,7 @@ public interface ConnectorSplitManager
     {
         private final SplitSchedulingStrategy splitSchedulingStrategy;
         private final boolean schedulerUsesHostAddresses;
+        private final Supplier<TupleDomain<ColumnHandle>> dynamicFilter;
 
         /**
          * @param splitSchedulingStrategy the method by which splits are scheduled
@@ -48,9 +53,20 @@ public interface ConnectorSplitManager
          * need to provide host addresses.
          */
         public SplitSchedulingContext(SplitSchedulingStrategy splitSchedulingStrategy, boolean schedulerUsesHostAddresses)
+        {
+            this(splitSchedulingStrategy, schedulerUsesHostAddresses, TupleDomain::all);
+        }
+
+        /**
+         * @param dynamicFilter supplies the predicate on the columns of the table collected so far
+         * from the build side of joins the table is on the probe side of. The predicate may become
+         * narrower while the splits are being enumerated; splits not matching it can be skipped.
+         */
+        public SplitSchedulingContext(SplitSchedulingStrategy splitSchedulingStrategy, boolean schedulerUsesHostAddresses, Supplier<TupleDomain<ColumnHandle>> dynamicFilter)
         {
             this.splitSchedulingStrategy = requireNonNull(splitSchedulingStrategy, "splitSchedulingStrategy is null");
             this.schedulerUsesHostAddresses = schedulerUsesHostAddresses;
+            this.dynamicFilter = requireNonNull(dynamicFilter, "dynamicFilter is null");
         }
 
         public SplitSchedulingStrategy getSplitSchedulingStrategy()
@@ -62,5 +78,10 @@ public interface ConnectorSplitManager
         {
             return schedulerUsesHostAddresses;
         }
+
+        public Supplier<TupleDomain<ColumnHandle>> getDynamicFilter()
+        {
+            return dynamicFilter;
+        }
     }
 }
@@ -14,7 +14,9 @@
 package com.facebook.presto.spi.page;
 
 import java.util.Arrays;
+import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.lang.String.format;
 
@@ -25,7 +27,10 @@ import static java.lang.String.format;
 public enum PageCodecMarker
 {
     COMPRESSED(1),
-    ENCRYPTED(2);
+    ENCRYPTED(2),
+    // set together with COMPRESSED for the pages that are not compressed with LZ4
+    ZSTD(3),
+    SNAPPY(4);
 
     private final int mask;
 
@@ -58,6 +63,16 @@ public enum PageCodecMarker
         return 0;
     }
 
+    /**
+     * The marker of the codec that compressed a page with the given markers, which is absent for LZ4
+     */
+    public static Optional<PageCodecMarker> getCodecMarker(byte markers)
+    {
+        return Stream.of(ZSTD, SNAPPY)
+                .filter(marker -> marker.isSet(markers))
+                .findFirst();
+    }
+
     public static String toSummaryString(byte markers)
     {
         if (markers == none()) {
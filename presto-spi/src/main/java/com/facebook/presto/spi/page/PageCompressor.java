@@ -14,6 +14,7 @@
 package com.facebook.presto.spi.page;
 
 import java.nio.ByteBuffer;
+import java.util.Optional;
 
 public interface PageCompressor
 {
@@ -28,4 +29,12 @@ public interface PageCompressor
             int maxOutputLength);
 
     void compress(ByteBuffer input, ByteBuffer output);
+
+    /**
+     * The {@link PageCodecMarker} of the codec of the pages compressed by this compressor, which is absent for LZ4
+     */
+    default Optional<PageCodecMarker> getCodecMarker()
+    {
+        return Optional.empty();
+    }
 }
@@ -14,6 +14,7 @@
 package com.facebook.presto.spi.page;
 
 import java.nio.ByteBuffer;
+import java.util.Optional;
 
 public interface PageDecompressor
 {
@@ -26,4 +27,12 @@ public interface PageDecompressor
             int maxOutputLength);
 
     void decompress(ByteBuffer input, ByteBuffer output);
+
+    /**
+     * The {@link PageCodecMarker} of the codec of the pages this decompressor reads, which is absent for LZ4
+     */
+    default Optional<PageCodecMarker> getCodecMarker()
+    {
+        return Optional.empty();
+    }
 }
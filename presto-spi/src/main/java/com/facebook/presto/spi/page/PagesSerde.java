@@ -28,9 +28,11 @@ import java.util.Optional;
 
 import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
 import static com.facebook.presto.spi.page.PageCodecMarker.ENCRYPTED;
+import static com.facebook.presto.spi.page.PageCodecMarker.getCodecMarker;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readRawPage;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writeRawPage;
 import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
@@ -39,6 +41,7 @@ import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 public class PagesSerde
 {
     private static final double MINIMUM_COMPRESSION_RATIO = 0.8;
+    private static final int MAXIMUM_COMPRESSION_SKIP_PAGES = 64;
 
     private final BlockEncodingSerde blockEncodingSerde;
     private final Optional<PageCompressor> compressor;
@@ -46,6 +49,10 @@ public class PagesSerde
     private final Optional<SpillCipher> spillCipher;
 
     private byte[] compressionBuffer;
+    // pages that do not compress well are followed by pages that are not even tried, as many as twice
+    // the previous run each time it happens again, so that dense data is not compressed over and over
+    private int compressionSkipPages;
+    private int remainingCompressionSkipPages;
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<PageCompressor> compressor, Optional<PageDecompressor> decompressor, Optional<SpillCipher> spillCipher)
     {
@@ -84,6 +91,9 @@ public class PagesSerde
 
         if (COMPRESSED.isSet(serializedPage.getPageCodecMarkers())) {
             checkState(decompressor.isPresent(), "Page is compressed, but decompressor is missing");
+            checkState(
+                    getCodecMarker(serializedPage.getPageCodecMarkers()).equals(decompressor.get().getCodecMarker()),
+                    "Page is compressed with " + PageCodecMarker.toSummaryString(serializedPage.getPageCodecMarkers()) + ", but decompressor is for another codec");
 
             int uncompressedSize = serializedPage.getUncompressedSizeInBytes();
             ByteBuffer decompressionBuffer = ByteBuffer.allocate(uncompressedSize);
@@ -113,7 +123,10 @@ public class PagesSerde
         int uncompressedSize = slice.length();
         byte markers = PageCodecMarker.none();
 
-        if (compressor.isPresent()) {
+        if (compressor.isPresent() && remainingCompressionSkipPages > 0) {
+            remainingCompressionSkipPages--;
+        }
+        else if (compressor.isPresent()) {
             int maxCompressedSize = compressor.get().maxCompressedLength(uncompressedSize);
             compressionBuffer = ensureCapacity(compressionBuffer, maxCompressedSize);
             int compressedSize = compressor.get().compress(
@@ -127,6 +140,14 @@ public class PagesSerde
             if (compressedSize / (double) uncompressedSize <= MINIMUM_COMPRESSION_RATIO) {
                 slice = Slices.copyOf(Slices.wrappedBuffer(compressionBuffer, 0, compressedSize));
                 markers = COMPRESSED.set(markers);
+                if (compressor.get().getCodecMarker().isPresent()) {
+                    markers = compressor.get().getCodecMarker().get().set(markers);
+                }
+                compressionSkipPages = 0;
+            }
+            else {
+                compressionSkipPages = min(compressionSkipPages == 0 ? 1 : compressionSkipPages * 2, MAXIMUM_COMPRESSION_SKIP_PAGES);
+                remainingCompressionSkipPages = compressionSkipPages;
             }
         }
 
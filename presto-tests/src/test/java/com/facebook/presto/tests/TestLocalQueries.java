@@ -17,6 +17,7 @@ import com.facebook.presto.Session;
 import com.facebook.presto.metadata.SessionPropertyManager;
 import com.facebook.presto.spi.CatalogSchemaTableName;
 import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.planner.planPrinter.IOPlanPrinter.ColumnConstraint;
 import com.facebook.presto.sql.planner.planPrinter.IOPlanPrinter.FormattedDomain;
 import com.facebook.presto.sql.planner.planPrinter.IOPlanPrinter.FormattedMarker;
@@ -54,6 +55,11 @@ public class TestLocalQueries
     }
 
     public static LocalQueryRunner createLocalQueryRunner()
+    {
+        return createLocalQueryRunner(new FeaturesConfig());
+    }
+
+    public static LocalQueryRunner createLocalQueryRunner(FeaturesConfig featuresConfig)
     {
         Session defaultSession = testSessionBuilder()
                 .setCatalog("local")
@@ -61,7 +67,7 @@ public class TestLocalQueries
                 .setSystemProperty(PUSH_PARTIAL_AGGREGATION_THROUGH_JOIN, "true")
                 .build();
 
-        LocalQueryRunner localQueryRunner = new LocalQueryRunner(defaultSession);
+        LocalQueryRunner localQueryRunner = new LocalQueryRunner(defaultSession, featuresConfig);
 
         // add the tpch catalog
         // local queries run directly against the generator